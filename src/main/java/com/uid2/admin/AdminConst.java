@@ -9,4 +9,18 @@ public final class AdminConst {
     public static final String ROLE_OKTA_GROUP_MAP_PRIVILEGED = "role_okta_group_map_privileged";
     public static final String ROLE_OKTA_GROUP_MAP_SUPER_USER = "role_okta_group_map_super_user";
     public static final String ENABLE_V4_RAW_UID = "enable_v4_raw_uid";
+    public static final String STORE_VERSIONED_DATA_FILES = "store_versioned_data_files";
+    public static final String STORE_DELTA_LOG_COMPACTION_INTERVAL = "store_delta_log_compaction_interval";
+    public static final String GROUP_COMMIT_WINDOW_MS = "group_commit_window_ms";
+    public static final String STORE_CONTENT_ENCODINGS = "store_content_encodings";
+    public static final String STORE_COMPACT_JSON = "store_compact_json";
+    public static final String SALT_TAGGING_PARALLELISM = "salt_tagging_parallelism";
+    public static final String STORE_CHANGE_SYNC_DEBOUNCE_MS = "store_change_sync_debounce_ms";
+    public static final String STARTUP_PARALLELISM = "startup_parallelism";
+    public static final String STORE_FILE_CACHE_DIR = "store_file_cache_dir";
+    public static final String STORE_FILE_CACHE_MAX_BYTES = "store_file_cache_max_bytes";
+    public static final String CLOUD_STORAGE_METRICS = "cloud_storage_metrics";
+    public static final String CLOUD_READ_DEADLINE_MS = "cloud_read_deadline_ms";
+    public static final String CLOUD_READ_MAX_ATTEMPTS = "cloud_read_max_attempts";
+    public static final String CLOUD_READ_HEDGING = "cloud_read_hedging";
 }
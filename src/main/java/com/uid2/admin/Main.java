@@ -8,8 +8,11 @@ import com.uid2.admin.auth.TokenRefreshHandler;
 import com.uid2.admin.cloudencryption.*;
 import com.uid2.admin.job.JobDispatcher;
 import com.uid2.admin.job.jobsync.EncryptedFilesSyncJob;
+import com.uid2.admin.job.jobsync.GlobalStores;
 import com.uid2.admin.job.jobsync.PrivateSiteDataSyncJob;
+import com.uid2.admin.job.jobsync.StoreChangeSyncCoordinator;
 import com.uid2.admin.job.jobsync.keyset.ReplaceSharingTypesWithSitesJob;
+import com.uid2.admin.job.model.Job;
 import com.uid2.admin.legacy.LegacyClientKeyStoreWriter;
 import com.uid2.admin.legacy.RotatingLegacyClientKeyProvider;
 import com.uid2.admin.managers.KeysetManager;
@@ -31,11 +34,9 @@ import com.uid2.admin.vertx.service.*;
 import com.uid2.shared.Const;
 import com.uid2.shared.Utils;
 import com.uid2.shared.secret.KeyHasher;
-import com.uid2.shared.secret.SecureKeyGenerator;
 import com.uid2.shared.auth.EnclaveIdentifierProvider;
 import com.uid2.shared.auth.RotatingOperatorKeyProvider;
 import com.uid2.shared.cloud.CloudStorageException;
-import com.uid2.shared.cloud.CloudUtils;
 import com.uid2.shared.cloud.TaggableCloudStorage;
 import com.uid2.shared.jmx.AdminApi;
 import com.uid2.shared.model.Site;
@@ -63,9 +64,11 @@ import io.vertx.micrometer.VertxPrometheusOptions;
 import io.vertx.micrometer.backends.BackendRegistries;
 
 import javax.management.*;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static com.uid2.admin.AdminConst.enableKeysetConfigProp;
 
@@ -83,57 +86,67 @@ public class Main {
         try {
             boolean enableKeysets = config.getBoolean(enableKeysetConfigProp);
             AuthProvider authProvider = new OktaAuthProvider(config);
-            TaggableCloudStorage cloudStorage = CloudUtils.createStorage(config.getString(Const.Config.CoreS3BucketProp), config);
+            TaggableCloudStorage cloudStorage = new ContentDecodingCloudStorage(createStoreStorage());
             FileStorage fileStorage = new TmpFileStorage();
-            ObjectWriter jsonWriter = JsonUtil.createJsonWriter();
-            FileManager fileManager = new FileManager(cloudStorage, fileStorage);
+            ObjectWriter jsonWriter = config.getBoolean(AdminConst.STORE_COMPACT_JSON, false)
+                    ? JsonUtil.createCompactJsonWriter()
+                    : JsonUtil.createJsonWriter();
+            FileManager fileManager = new FileManager(cloudStorage, fileStorage, config.getBoolean(AdminConst.STORE_VERSIONED_DATA_FILES, false), ContentEncoding.fromConfig(config));
+            int deltaLogCompactionInterval = config.getInteger(AdminConst.STORE_DELTA_LOG_COMPACTION_INTERVAL, 0);
             Clock clock = new InstantClock();
             VersionGenerator versionGenerator = new EpochVersionGenerator(clock);
+            // stores are loaded concurrently, each stage as soon as the stages it depends on are done
+            StartupGraph startup = new StartupGraph(config.getInteger(AdminConst.STARTUP_PARALLELISM, 8));
 
             CloudPath sitesMetadataPath = new CloudPath(config.getString(RotatingSiteStore.SITES_METADATA_PATH));
             GlobalScope siteGlobalScope = new GlobalScope(sitesMetadataPath);
             RotatingSiteStore siteProvider = new RotatingSiteStore(cloudStorage, siteGlobalScope);
-            siteProvider.loadContent(siteProvider.getMetadata());
-            StoreWriter<Collection<Site>> siteStoreWriter = new SiteStoreWriter(siteProvider, fileManager, jsonWriter, versionGenerator, clock, siteGlobalScope);
+            startup.stage("sites", () -> siteProvider.loadContent(siteProvider.getMetadata()));
+            SiteStoreWriter siteStoreWriter = new SiteStoreWriter(siteProvider, fileManager, jsonWriter, versionGenerator, clock, siteGlobalScope);
 
             CloudPath clientMetadataPath = new CloudPath(config.getString(Const.Config.ClientsMetadataPathProp));
             GlobalScope clientGlobalScope = new GlobalScope(clientMetadataPath);
             RotatingLegacyClientKeyProvider clientKeyProvider = new RotatingLegacyClientKeyProvider(cloudStorage, clientGlobalScope);
-            clientKeyProvider.loadContent();
-            LegacyClientKeyStoreWriter clientKeyStoreWriter = new LegacyClientKeyStoreWriter(clientKeyProvider, fileManager, jsonWriter, versionGenerator, clock, clientGlobalScope);
+            startup.stage("clients", () -> clientKeyProvider.loadContent());
+            LegacyClientKeyStoreWriter clientKeyStoreWriter = new LegacyClientKeyStoreWriter(clientKeyProvider, fileManager, jsonWriter, versionGenerator, clock, clientGlobalScope, deltaLogCompactionInterval);
 
             CloudPath keyMetadataPath = new CloudPath(config.getString(Const.Config.KeysMetadataPathProp));
             GlobalScope keyGlobalScope = new GlobalScope(keyMetadataPath);
             RotatingKeyStore keyProvider = new RotatingKeyStore(cloudStorage, keyGlobalScope);
-            keyProvider.loadContent();
+            startup.stage("keys", () -> keyProvider.loadContent());
             EncryptionKeyStoreWriter encryptionKeyStoreWriter = new EncryptionKeyStoreWriter(keyProvider, fileManager, versionGenerator, clock, keyGlobalScope);
 
             CloudPath keyAclMetadataPath = new CloudPath(config.getString(Const.Config.KeysAclMetadataPathProp));
             GlobalScope keyAclGlobalScope = new GlobalScope(keyAclMetadataPath);
             RotatingKeyAclProvider keyAclProvider = new RotatingKeyAclProvider(cloudStorage, keyAclGlobalScope);
-            keyAclProvider.loadContent();
+            startup.stage("keys_acl", () -> keyAclProvider.loadContent());
             KeyAclStoreWriter keyAclStoreWriter = new KeyAclStoreWriter(keyAclProvider, fileManager, jsonWriter, versionGenerator, clock, keyAclGlobalScope);
 
             CloudPath adminKeysetMetadataPath = new CloudPath(config.getString("admin_keysets_metadata_path"));
             GlobalScope adminKeysetGlobalScope = new GlobalScope(adminKeysetMetadataPath);
             RotatingAdminKeysetStore adminKeysetProvider = new RotatingAdminKeysetStore(cloudStorage, adminKeysetGlobalScope);
             AdminKeysetWriter adminKeysetStoreWriter = new AdminKeysetWriter(adminKeysetProvider, fileManager, jsonWriter, versionGenerator, clock, adminKeysetGlobalScope);
-            try {
-                adminKeysetProvider.loadContent();
-            } catch (CloudStorageException e) {
-                if (e.getMessage().contains("The specified key does not exist")) {
-                    adminKeysetStoreWriter.upload(new HashMap<>(), null);
+            startup.stage("admin_keysets", () -> {
+                try {
                     adminKeysetProvider.loadContent();
-                } else {
-                    throw e;
+                } catch (CloudStorageException e) {
+                    if (e.getMessage().contains("The specified key does not exist")) {
+                        adminKeysetStoreWriter.upload(new HashMap<>(), null);
+                        adminKeysetProvider.loadContent();
+                    } else {
+                        throw e;
+                    }
                 }
-            }
+            });
 
             CloudPath keysetKeyMetadataPath = new CloudPath(config.getString(Const.Config.KeysetKeysMetadataPathProp));
             GlobalScope keysetKeysGlobalScope = new GlobalScope(keysetKeyMetadataPath);
             RotatingKeysetKeyStore keysetKeysProvider = new RotatingKeysetKeyStore(cloudStorage, keysetKeysGlobalScope);
             KeysetKeyStoreWriter keysetKeyStoreWriter = new KeysetKeyStoreWriter(keysetKeysProvider, fileManager, versionGenerator, clock, keysetKeysGlobalScope, enableKeysets);
-            if (enableKeysets) {
+            startup.stage("keyset_keys", () -> {
+                if (!enableKeysets) {
+                    return;
+                }
                 try {
                     keysetKeysProvider.loadContent();
                 } catch (CloudStorageException e) {
@@ -144,89 +157,117 @@ public class Main {
                         throw e;
                     }
                 }
-            }
+            });
 
             CloudPath clientSideKeypairMetadataPath = new CloudPath(config.getString(Const.Config.ClientSideKeypairsMetadataPathProp));
             GlobalScope clientSideKeypairGlobalScope = new GlobalScope(clientSideKeypairMetadataPath);
             RotatingClientSideKeypairStore clientSideKeypairProvider = new RotatingClientSideKeypairStore(cloudStorage, clientSideKeypairGlobalScope);
             ClientSideKeypairStoreWriter clientSideKeypairStoreWriter = new ClientSideKeypairStoreWriter(clientSideKeypairProvider, fileManager, versionGenerator, clock, clientSideKeypairGlobalScope);
-            try {
-                clientSideKeypairProvider.loadContent();
-            } catch (CloudStorageException e) {
-                if (e.getMessage().contains("The specified key does not exist")) {
-                    clientSideKeypairStoreWriter.upload(new HashSet<>(), null);
+            startup.stage("client_side_keypairs", () -> {
+                try {
                     clientSideKeypairProvider.loadContent();
-                } else {
-                    throw e;
+                } catch (CloudStorageException e) {
+                    if (e.getMessage().contains("The specified key does not exist")) {
+                        clientSideKeypairStoreWriter.upload(new HashSet<>(), null);
+                        clientSideKeypairProvider.loadContent();
+                    } else {
+                        throw e;
+                    }
                 }
-            }
+            });
 
             CloudPath serviceMetadataPath = new CloudPath(config.getString(Const.Config.ServiceMetadataPathProp));
             GlobalScope serviceGlobalScope = new GlobalScope(serviceMetadataPath);
             RotatingServiceStore serviceProvider = new RotatingServiceStore(cloudStorage, serviceGlobalScope);
             ServiceStoreWriter serviceStoreWriter = new ServiceStoreWriter(serviceProvider, fileManager, jsonWriter, versionGenerator, clock, serviceGlobalScope);
-            try {
-                serviceProvider.loadContent();
-            } catch (CloudStorageException e) {
-                if (e.getMessage().contains("The specified key does not exist")) {
-                    serviceStoreWriter.upload(new HashSet<>(), null);
+            startup.stage("services", () -> {
+                try {
                     serviceProvider.loadContent();
-                } else {
-                    throw e;
+                } catch (CloudStorageException e) {
+                    if (e.getMessage().contains("The specified key does not exist")) {
+                        serviceStoreWriter.upload(new HashSet<>(), null);
+                        serviceProvider.loadContent();
+                    } else {
+                        throw e;
+                    }
                 }
-            }
+            });
 
             CloudPath serviceLinkMetadataPath = new CloudPath(config.getString(Const.Config.ServiceLinkMetadataPathProp));
             GlobalScope serviceLinkGlobalScope = new GlobalScope(serviceLinkMetadataPath);
             RotatingServiceLinkStore serviceLinkProvider = new RotatingServiceLinkStore(cloudStorage, serviceLinkGlobalScope);
             ServiceLinkStoreWriter serviceLinkStoreWriter = new ServiceLinkStoreWriter(serviceLinkProvider, fileManager, jsonWriter, versionGenerator, clock, serviceLinkGlobalScope);
-            try {
-                serviceLinkProvider.loadContent();
-            } catch (CloudStorageException e) {
-                if (e.getMessage().contains("The specified key does not exist")) {
-                    serviceLinkStoreWriter.upload(new HashSet<>(), null);
+            startup.stage("service_links", () -> {
+                try {
                     serviceLinkProvider.loadContent();
-                } else {
-                    throw e;
+                } catch (CloudStorageException e) {
+                    if (e.getMessage().contains("The specified key does not exist")) {
+                        serviceLinkStoreWriter.upload(new HashSet<>(), null);
+                        serviceLinkProvider.loadContent();
+                    } else {
+                        throw e;
+                    }
                 }
-            }
+            });
 
             CloudPath operatorMetadataPath = new CloudPath(config.getString(Const.Config.OperatorsMetadataPathProp));
             GlobalScope operatorScope = new GlobalScope(operatorMetadataPath);
             RotatingOperatorKeyProvider operatorKeyProvider = new RotatingOperatorKeyProvider(cloudStorage, cloudStorage, operatorScope);
-            operatorKeyProvider.loadContent(operatorKeyProvider.getMetadata());
+            startup.stage("operators", () -> operatorKeyProvider.loadContent(operatorKeyProvider.getMetadata()));
             OperatorKeyStoreWriter operatorKeyStoreWriter = new OperatorKeyStoreWriter(operatorKeyProvider, fileManager, jsonWriter, versionGenerator);
 
             CloudPath cloudEncryptionKeyMetadataPath = new CloudPath(config.getString(Const.Config.CloudEncryptionKeysMetadataPathProp));
             GlobalScope cloudEncryptionKeyGlobalScope = new GlobalScope(cloudEncryptionKeyMetadataPath);
             RotatingCloudEncryptionKeyProvider rotatingCloudEncryptionKeyProvider = new RotatingCloudEncryptionKeyProvider(cloudStorage, cloudEncryptionKeyGlobalScope);
             CloudEncryptionKeyStoreWriter cloudEncryptionKeyStoreWriter = new CloudEncryptionKeyStoreWriter(rotatingCloudEncryptionKeyProvider, fileManager, jsonWriter, versionGenerator, clock, cloudEncryptionKeyGlobalScope);
-            SecureKeyGenerator keyGenerator = new SecureKeyGenerator();
-            try {
-                rotatingCloudEncryptionKeyProvider.loadContent();
-            } catch (CloudStorageException e) {
-                if (e.getMessage().contains("The specified key does not exist")) {
-                    cloudEncryptionKeyStoreWriter.upload(new HashMap<>(), null);
+            BatchKeyGenerator keyGenerator = new BatchKeyGenerator();
+            startup.stage("cloud_encryption_keys", () -> {
+                try {
                     rotatingCloudEncryptionKeyProvider.loadContent();
-                } else {
-                    throw e;
+                } catch (CloudStorageException e) {
+                    if (e.getMessage().contains("The specified key does not exist")) {
+                        cloudEncryptionKeyStoreWriter.upload(new HashMap<>(), null);
+                        rotatingCloudEncryptionKeyProvider.loadContent();
+                    } else {
+                        throw e;
+                    }
                 }
-            }
+            });
 
             String enclaveMetadataPath = config.getString(EnclaveIdentifierProvider.ENCLAVES_METADATA_PATH);
             EnclaveIdentifierProvider enclaveIdProvider = new EnclaveIdentifierProvider(cloudStorage, enclaveMetadataPath);
-            enclaveIdProvider.loadContent(enclaveIdProvider.getMetadata());
+            startup.stage("enclaves", () -> enclaveIdProvider.loadContent(enclaveIdProvider.getMetadata()));
             EnclaveStoreWriter enclaveStoreWriter = new EnclaveStoreWriter(enclaveIdProvider, fileManager, jsonWriter, versionGenerator);
 
             String saltMetadataPath = config.getString(Const.Config.SaltsMetadataPathProp);
             RotatingSaltProvider saltProvider = new RotatingSaltProvider(cloudStorage, saltMetadataPath);
-            saltProvider.loadContent();
-            SaltStoreWriter saltStoreWriter = new SaltStoreWriter(config, saltProvider, fileManager, cloudStorage, versionGenerator);
+            startup.stage("salts", () -> saltProvider.loadContent());
+            // shared by the salt writer below and the encrypted salt writers of every encrypted files sync
+            ObjectTagger saltTagger = new ObjectTagger(cloudStorage, config.getInteger(AdminConst.SALT_TAGGING_PARALLELISM, 8));
+            Runtime.getRuntime().addShutdownHook(new Thread(saltTagger::close, "salt-tagger-shutdown"));
+            SaltStoreWriter saltStoreWriter = new SaltStoreWriter(config, saltProvider, fileManager, cloudStorage, versionGenerator, saltTagger);
 
             String partnerMetadataPath = config.getString(RotatingPartnerStore.PARTNERS_METADATA_PATH);
             RotatingPartnerStore partnerConfigProvider = new RotatingPartnerStore(cloudStorage, partnerMetadataPath);
-            partnerConfigProvider.loadContent();
-            PartnerStoreWriter partnerStoreWriter = new PartnerStoreWriter(partnerConfigProvider, fileManager, versionGenerator);
+            startup.stage("partners", () -> partnerConfigProvider.loadContent());
+            PartnerStoreWriter partnerStoreWriter = new PartnerStoreWriter(partnerConfigProvider, fileManager, versionGenerator, deltaLogCompactionInterval);
+
+            CloudPath keysetMetadataPath = new CloudPath(config.getString("keysets_metadata_path"));
+            GlobalScope keysetGlobalScope = new GlobalScope(keysetMetadataPath);
+            RotatingKeysetProvider keysetProvider = new RotatingKeysetProvider(cloudStorage, keysetGlobalScope);
+            KeysetStoreWriter keysetStoreWriter = new KeysetStoreWriter(keysetProvider, fileManager, jsonWriter, versionGenerator, clock, keysetGlobalScope, enableKeysets);
+            startup.stage("keysets", () -> {
+                try {
+                    keysetProvider.loadContent();
+                } catch (CloudStorageException e) {
+                    if (e.getMessage().contains("The specified key does not exist")) {
+                        keysetStoreWriter.upload(new HashMap<>(), null);
+                        keysetProvider.loadContent();
+                    } else {
+                        throw e;
+                    }
+                }
+            });
 
             AdminAuthMiddleware auth = new AdminAuthMiddleware(authProvider, config);
             TokenRefreshHandler tokenRefreshHandler = new TokenRefreshHandler(authProvider.getIdTokenVerifier(), config);
@@ -240,16 +281,63 @@ public class Main {
                     adminKeysetProvider, adminKeysetStoreWriter, encryptionKeyService, enableKeysets
             );
 
-            JobDispatcher jobDispatcher = new JobDispatcher("job-dispatcher", 1000 * 60, 3, clock);
-            jobDispatcher.start();
-
-            ClientSideKeypairService clientSideKeypairService = new ClientSideKeypairService(config, auth, writeLock, clientSideKeypairStoreWriter, clientSideKeypairProvider, siteProvider, keysetManager, keypairGenerator, clock);
-
             var cloudEncryptionSecretGenerator = new CloudSecretGenerator(keyGenerator);
             var cloudEncryptionKeyRetentionStrategy = new ExpiredKeyCountRetentionStrategy(10);
             var cloudEncryptionKeyRotationStrategy = new CloudKeyStatePlanner(cloudEncryptionSecretGenerator, clock, cloudEncryptionKeyRetentionStrategy);
             var cloudEncryptionKeyManager = new CloudEncryptionKeyManager(rotatingCloudEncryptionKeyProvider, cloudEncryptionKeyStoreWriter, operatorKeyProvider, cloudEncryptionKeyRotationStrategy);
 
+            startup.stage("cloud_encryption_keys_backfill", List.of("operators", "cloud_encryption_keys"), () -> {
+                synchronized (writeLock) {
+                    cloudEncryptionKeyManager.backfillKeys();
+                    rotatingCloudEncryptionKeyProvider.loadContent();
+                }
+            });
+
+            /*
+            This stage will:
+            1. create all copy keysets to admin keysets
+            2. Create all the keyset keys from the encryption keys
+            This should only need to happen the first time Admin starts and either of the files has not been caught up for that ENV.
+            It is synchronized so that this completes before any other operation is started.
+            The jobs are executed after because they copy data from these files locations consumed by public and private operators.
+            This caused an issue because the files were empty and the job started to fail so the operators got empty files.
+             */
+            startup.stage("keyset_sync", List.of("keysets", "admin_keysets", "keys", "keyset_keys"), () -> {
+                if (!enableKeysets) {
+                    return;
+                }
+                synchronized (writeLock) {
+                    //UID2-628 keep keys.json and keyset_keys.json in sync. This function syncs them on start up
+                    keysetProvider.loadContent();
+                    keysetManager.createAdminKeysets(keysetProvider.getAll());
+                    encryptionKeyService.createKeysetKeys();
+                }
+            });
+
+            startup.await();
+
+            JobDispatcher jobDispatcher = new JobDispatcher("job-dispatcher", 1000 * 60, 3, clock);
+            jobDispatcher.start();
+
+            GlobalStores globalStores = new GlobalStores(operatorKeyProvider, siteProvider, clientKeyProvider, keyProvider, keyAclProvider,
+                    keysetProvider, keysetKeysProvider, saltProvider, clientSideKeypairProvider);
+            Supplier<Job> reencryptionJobFactory = () -> new CloudEncryptionKeyReencryptionJob(config, writeLock, rotatingCloudEncryptionKeyProvider, saltTagger, globalStores);
+            var reencryptionScheduler = new CloudEncryptionKeyReencryptionScheduler(vertx, jobDispatcher, rotatingCloudEncryptionKeyProvider, clock,
+                    reencryptionJobFactory, 1000 * 60);
+
+            long storeChangeSyncDebounceMs = config.getLong(AdminConst.STORE_CHANGE_SYNC_DEBOUNCE_MS, 2000L);
+            if (storeChangeSyncDebounceMs > 0) {
+                StoreChangePublisher storeChangePublisher = StoreChangePublisher.eventBus(vertx.eventBus());
+                siteStoreWriter.setChangePublisher(storeChangePublisher);
+                clientKeyStoreWriter.setChangePublisher(storeChangePublisher);
+                encryptionKeyStoreWriter.setChangePublisher(storeChangePublisher);
+                new StoreChangeSyncCoordinator(vertx, jobDispatcher,
+                        (changedSiteIds, dataTypes) -> new EncryptedFilesSyncJob(config, writeLock, rotatingCloudEncryptionKeyProvider, saltTagger, changedSiteIds, dataTypes),
+                        storeChangeSyncDebounceMs).start();
+            }
+
+            ClientSideKeypairService clientSideKeypairService = new ClientSideKeypairService(config, auth, writeLock, clientSideKeypairStoreWriter, clientSideKeypairProvider, siteProvider, keysetManager, keypairGenerator, clock);
+
             IService[] services = {
                     new ClientKeyService(config, auth, writeLock, clientKeyStoreWriter, clientKeyProvider, siteProvider, keysetManager, keyGenerator, keyHasher),
                     new EnclaveIdService(auth, writeLock, enclaveStoreWriter, enclaveIdProvider, clock),
@@ -260,14 +348,14 @@ public class Main {
                     new ServiceService(auth, writeLock, serviceStoreWriter, serviceProvider, siteProvider, serviceLinkProvider),
                     new ServiceLinkService(auth, writeLock, serviceLinkStoreWriter, serviceLinkProvider, serviceProvider, siteProvider),
                     new OperatorKeyService(config, auth, writeLock, operatorKeyStoreWriter, operatorKeyProvider, siteProvider, keyGenerator, keyHasher, cloudEncryptionKeyManager),
-                    new SaltService(auth, writeLock, saltStoreWriter, saltProvider, saltRotation),
+                    new SaltService(auth, jobDispatcher, saltStoreWriter, saltProvider, saltRotation),
                     new SiteService(auth, writeLock, siteStoreWriter, siteProvider, clientKeyProvider),
                     new PartnerConfigService(auth, writeLock, partnerStoreWriter, partnerConfigProvider),
                     new PrivateSiteDataRefreshService(auth, jobDispatcher, writeLock, config),
-                    new EncryptedFilesSyncService(auth, jobDispatcher, writeLock, config, rotatingCloudEncryptionKeyProvider),
+                    new EncryptedFilesSyncService(auth, jobDispatcher, writeLock, config, rotatingCloudEncryptionKeyProvider, saltTagger, reencryptionJobFactory),
                     new JobDispatcherService(auth, jobDispatcher),
                     new SearchService(auth, clientKeyProvider, operatorKeyProvider),
-                    new CloudEncryptionKeyService(auth, cloudEncryptionKeyManager, jobDispatcher)
+                    new CloudEncryptionKeyService(auth, cloudEncryptionKeyManager, jobDispatcher, reencryptionScheduler)
             };
 
 
@@ -276,44 +364,6 @@ public class Main {
             AdminVerticle adminVerticle = new AdminVerticle(config, authProvider, tokenRefreshHandler, services, v2RouterModule.getRouter());
             vertx.deployVerticle(adminVerticle);
 
-            CloudPath keysetMetadataPath = new CloudPath(config.getString("keysets_metadata_path"));
-            GlobalScope keysetGlobalScope = new GlobalScope(keysetMetadataPath);
-            RotatingKeysetProvider keysetProvider = new RotatingKeysetProvider(cloudStorage, keysetGlobalScope);
-            KeysetStoreWriter keysetStoreWriter = new KeysetStoreWriter(keysetProvider, fileManager, jsonWriter, versionGenerator, clock, keysetGlobalScope, enableKeysets);
-            try {
-                keysetProvider.loadContent();
-            } catch (CloudStorageException e) {
-                if (e.getMessage().contains("The specified key does not exist")) {
-                    keysetStoreWriter.upload(new HashMap<>(), null);
-                    keysetProvider.loadContent();
-                } else {
-                    throw e;
-                }
-            }
-
-            synchronized (writeLock) {
-                cloudEncryptionKeyManager.backfillKeys();
-                rotatingCloudEncryptionKeyProvider.loadContent();
-            }
-
-            /*
-            This if statement will:
-            1. create all copy keysets to admin keysets
-            2. Create all the keyset keys from the encryption keys
-            This should only need to happen the first time Admin starts and either of the files has not been caught up for that ENV.
-            It is synchronized so that this completes before any other operation is started.
-            The jobs are executed after because they copy data from these files locations consumed by public and private operators.
-            This caused an issue because the files were empty and the job started to fail so the operators got empty files.
-             */
-            if (enableKeysets) {
-                synchronized (writeLock) {
-                    //UID2-628 keep keys.json and keyset_keys.json in sync. This function syncs them on start up
-                    keysetProvider.loadContent();
-                    keysetManager.createAdminKeysets(keysetProvider.getAll());
-                    encryptionKeyService.createKeysetKeys();
-                }
-            }
-
             // Data type keys should be matching uid2_config_store_version reported by operator, core, etc
             DataStoreMetrics.addDataStoreMetrics("site", siteProvider);
             DataStoreMetrics.addDataStoreMetrics("auth", clientKeyProvider);
@@ -330,28 +380,34 @@ public class Main {
             DataStoreMetrics.addDataStoreServiceLinkEntryCount("snowflake", serviceLinkProvider, serviceProvider);
 
 
-            ReplaceSharingTypesWithSitesJob replaceSharingTypesWithSitesJob = new ReplaceSharingTypesWithSitesJob(config, writeLock, adminKeysetProvider, keysetProvider, keysetStoreWriter, siteProvider);
-            jobDispatcher.enqueue(replaceSharingTypesWithSitesJob);
-            CompletableFuture<Boolean> replaceSharingTypesWithSitesJobFuture = jobDispatcher.executeNextJob();
-            replaceSharingTypesWithSitesJobFuture.get();
+            // the dispatcher runs the startup jobs in order in the background, so they no longer hold up startup
+            jobDispatcher.enqueue(new ReplaceSharingTypesWithSitesJob(config, writeLock, adminKeysetProvider, keysetProvider, keysetStoreWriter, siteProvider));
 
             //UID2-575 set up a job dispatcher that will write private site data periodically if there is any changes
             //check job for every minute
-            PrivateSiteDataSyncJob privateSiteDataSyncJob = new PrivateSiteDataSyncJob(config, writeLock);
-            jobDispatcher.enqueue(privateSiteDataSyncJob);
-            CompletableFuture<Boolean> privateSiteDataSyncJobFuture = jobDispatcher.executeNextJob();
-            privateSiteDataSyncJobFuture.get();
-
-            EncryptedFilesSyncJob encryptedFilesSyncJob = new EncryptedFilesSyncJob(config, writeLock, rotatingCloudEncryptionKeyProvider);
-            jobDispatcher.enqueue(encryptedFilesSyncJob);
-            CompletableFuture<Boolean> encryptedFilesSyncJobFuture = jobDispatcher.executeNextJob();
-            encryptedFilesSyncJobFuture.get();
+            jobDispatcher.enqueue(new PrivateSiteDataSyncJob(config, writeLock));
+
+            jobDispatcher.enqueue(new EncryptedFilesSyncJob(config, writeLock, rotatingCloudEncryptionKeyProvider, saltTagger));
+
+            // keys rotated before a restart still get their files re-encrypted when they activate
+            reencryptionScheduler.scheduleUpcomingActivations();
         } catch (Exception e) {
             LOGGER.error("failed to initialize admin verticle", e);
             System.exit(-1);
         }
     }
 
+    private TaggableCloudStorage createStoreStorage() throws IOException {
+        TaggableCloudStorage storage = CloudStorageFactory.create(config);
+        String cacheDir = config.getString(AdminConst.STORE_FILE_CACHE_DIR);
+        if (cacheDir == null || cacheDir.isBlank()) {
+            return storage;
+        }
+        Set<String> metadataPaths = CachingCloudStorage.metadataPathsToCache(config);
+        StoreFileCache cache = new StoreFileCache(Path.of(cacheDir), config.getLong(AdminConst.STORE_FILE_CACHE_MAX_BYTES, 1L << 30));
+        return new CachingCloudStorage(storage, cache, metadataPaths);
+    }
+
     public static void main(String[] args) {
         final String vertxConfigPath = System.getProperty(Const.Config.VERTX_CONFIG_PATH_PROP);
         if (vertxConfigPath != null) {
@@ -0,0 +1,93 @@
+package com.uid2.admin;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs startup stages concurrently, each stage as soon as the stages it depends on have completed.
+ * <p>
+ * The duration of every stage is logged and recorded in {@code uid2_admin_startup_stage_duration}. If a stage fails,
+ * the stages depending on it are not run and {@link #await()} throws the failure.
+ * </p>
+ */
+public class StartupGraph {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupGraph.class);
+
+    @FunctionalInterface
+    public interface Stage {
+        void run() throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<Void>> stages = new LinkedHashMap<>();
+    private final long startedAt = System.nanoTime();
+
+    public StartupGraph(int parallelism) {
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public StartupGraph stage(String name, Stage stage) {
+        return stage(name, List.of(), stage);
+    }
+
+    public StartupGraph stage(String name, List<String> dependencies, Stage stage) {
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup stage " + name);
+        }
+        CompletableFuture<?>[] dependencyFutures = dependencies.stream()
+                .map(dependency -> {
+                    CompletableFuture<Void> future = stages.get(dependency);
+                    if (future == null) {
+                        throw new IllegalArgumentException("Startup stage " + name + " depends on unknown stage " + dependency);
+                    }
+                    return future;
+                })
+                .toArray(CompletableFuture<?>[]::new);
+
+        stages.put(name, CompletableFuture.allOf(dependencyFutures).thenRunAsync(() -> run(name, stage), executor));
+        return this;
+    }
+
+    private static void run(String name, Stage stage) {
+        long start = System.nanoTime();
+        try {
+            stage.run();
+        } catch (Exception e) {
+            LOGGER.error("Startup stage {} failed", name, e);
+            throw new CompletionException(e);
+        }
+        long durationNanos = System.nanoTime() - start;
+        Timer.builder("uid2_admin_startup_stage_duration")
+                .tag("stage", name)
+                .description("duration of each admin startup stage")
+                .register(Metrics.globalRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        LOGGER.info("Startup stage {} completed in {}ms", name, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    /**
+     * Waits for every stage registered so far and shuts the graph down.
+     */
+    public void await() throws Exception {
+        try {
+            CompletableFuture.allOf(stages.values().toArray(CompletableFuture<?>[]::new)).get();
+            LOGGER.info("{} startup stages completed in {}ms", stages.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.uid2.admin.cloudencryption;
 
 import com.uid2.admin.model.CloudEncryptionKeySummary;
+import com.uid2.admin.store.StoreReloader;
 import com.uid2.admin.store.writer.CloudEncryptionKeyStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.shared.auth.OperatorKey;
 import com.uid2.shared.auth.RotatingOperatorKeyProvider;
 import com.uid2.shared.model.CloudEncryptionKey;
@@ -19,6 +21,8 @@ public class CloudEncryptionKeyManager {
     private final RotatingOperatorKeyProvider operatorKeyProvider;
     private final CloudEncryptionKeyStoreWriter keyWriter;
     private final CloudKeyStatePlanner planner;
+    private final StoreReloader keyReloader;
+    private final StoreReloader operatorKeyReloader;
     private Set<OperatorKey> operatorKeys;
     private Set<CloudEncryptionKey> existingKeys;
 
@@ -33,6 +37,8 @@ public class CloudEncryptionKeyManager {
         this.operatorKeyProvider = operatorKeyProvider;
         this.keyWriter = keyWriter;
         this.planner = planner;
+        this.keyReloader = StoreReloader.of("cloud_encryption_keys", keyProvider);
+        this.operatorKeyReloader = StoreReloader.of("operators", operatorKeyProvider);
     }
 
     public JsonObject getMetadata() throws Exception {
@@ -46,16 +52,21 @@ public class CloudEncryptionKeyManager {
 
     // For any site that has an operator create a new key activating in one hour
     // Keep up to 10 most recent old keys per site, delete the rest
+    // The files of the sites that got a new key are re-encrypted once it activates, see CloudEncryptionKeyReencryptionScheduler
     public void rotateKeys(boolean shouldFail) throws Exception {
         try {
-            refreshCloudData();
-            var desiredKeys = planner.planRotation(existingKeys, operatorKeys);
-            if (shouldFail) {
-                throw new Exception("Failing key rotation on demand due to `fail` query param being passed");
-            }
-            writeKeys(desiredKeys);
-            var diff = CloudEncryptionKeyDiff.calculateDiff(existingKeys, desiredKeys);
-            LOGGER.info("Key rotation complete. Diff: {}", diff);
+            // planned again from the reloaded keys if the commit conflicts
+            StoreCommitRetry.run(() -> {
+                refreshCloudData();
+                var desiredKeys = planner.planRotation(existingKeys, operatorKeys);
+                if (shouldFail) {
+                    throw new Exception("Failing key rotation on demand due to `fail` query param being passed");
+                }
+                writeKeys(desiredKeys);
+                var diff = CloudEncryptionKeyDiff.calculateDiff(existingKeys, desiredKeys);
+                var added = getNewKeys(existingKeys, desiredKeys);
+                LOGGER.info("Key rotation complete. Diff: {}, sites with new keys: {}", diff, getSiteIds(added));
+            });
         } catch (Exception e) {
             LOGGER.error("Key rotation failed", e);
             throw e;
@@ -65,16 +76,29 @@ public class CloudEncryptionKeyManager {
     // For any site that has an operator, if there are no keys, create a key activating now
     public void backfillKeys() throws Exception {
         try {
-            refreshCloudData();
-            var desiredKeys = planner.planBackfill(existingKeys, operatorKeys);
-            writeKeys(desiredKeys);
-            var diff = CloudEncryptionKeyDiff.calculateDiff(existingKeys, desiredKeys);
-            LOGGER.info("Key backfill complete. Diff: {}", diff);
+            StoreCommitRetry.run(() -> {
+                refreshCloudData();
+                var desiredKeys = planner.planBackfill(existingKeys, operatorKeys);
+                writeKeys(desiredKeys);
+                var diff = CloudEncryptionKeyDiff.calculateDiff(existingKeys, desiredKeys);
+                LOGGER.info("Key backfill complete. Diff: {}", diff);
+            });
         } catch (Exception e) {
             LOGGER.error("Key backfill failed", e);
         }
     }
 
+    static Set<CloudEncryptionKey> getNewKeys(Set<CloudEncryptionKey> existingKeys, Set<CloudEncryptionKey> desiredKeys) {
+        var existingIds = existingKeys.stream().map(CloudEncryptionKey::getId).collect(Collectors.toSet());
+        return desiredKeys.stream()
+                .filter(key -> !existingIds.contains(key.getId()))
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Integer> getSiteIds(Set<CloudEncryptionKey> keys) {
+        return keys.stream().map(CloudEncryptionKey::getSiteId).collect(Collectors.toCollection(TreeSet::new));
+    }
+
     private void writeKeys(Set<CloudEncryptionKey> desiredKeys) throws Exception {
         var keysForWriting = desiredKeys.stream().collect(Collectors.toMap(
                 CloudEncryptionKey::getId,
@@ -84,8 +108,8 @@ public class CloudEncryptionKeyManager {
     }
 
     private void refreshCloudData() throws Exception {
-        keyProvider.loadContent();
-        operatorKeyProvider.loadContent(operatorKeyProvider.getMetadata());
+        keyReloader.reload();
+        operatorKeyReloader.reload();
         operatorKeys = new HashSet<>(operatorKeyProvider.getAll());
         existingKeys = new HashSet<>(keyProvider.getAll().values());
     }
@@ -0,0 +1,138 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.admin.job.jobsync.EncryptedFilesSyncJob;
+import com.uid2.admin.job.jobsync.GlobalStores;
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.store.CloudStorageFactory;
+import com.uid2.admin.store.ContentDecodingCloudStorage;
+import com.uid2.admin.store.ObjectTagger;
+import com.uid2.admin.store.StoreReloader;
+import com.uid2.admin.store.writer.EncryptedScopedStoreWriter;
+import com.uid2.admin.vertx.WriteLock;
+import com.uid2.shared.Const;
+import com.uid2.shared.auth.OperatorKey;
+import com.uid2.shared.cloud.ICloudStorage;
+import com.uid2.shared.store.CloudPath;
+import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static com.uid2.admin.AdminConst.enableKeysetConfigProp;
+
+/**
+ * Re-encrypts the files of the sites whose stored files are not encrypted with the site's active cloud encryption
+ * key, e.g. after a rotated key activated, instead of running a full encrypted files sync for every site.
+ * <p>
+ * The files are encrypted from the global stores the admin service keeps loaded, see {@link GlobalStores}, so only the
+ * metadata of the stores and of the sites' encrypted files is downloaded.
+ * </p>
+ */
+public class CloudEncryptionKeyReencryptionJob extends Job {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CloudEncryptionKeyReencryptionJob.class);
+    private static final Counter SITES_REENCRYPTED = Counter.builder("uid2_admin_cloud_key_reencrypted_sites_total")
+            .description("sites re-encrypted after a cloud encryption key rotation")
+            .register(Metrics.globalRegistry);
+    private static final Timer DURATION = Timer.builder("uid2_admin_cloud_key_reencryption_duration")
+            .description("duration of a targeted re-encryption run")
+            .register(Metrics.globalRegistry);
+    private static final DistributionSummary SITES_PER_SECOND = DistributionSummary.builder("uid2_admin_cloud_key_reencryption_sites_per_second")
+            .description("sites re-encrypted per second by a targeted re-encryption run")
+            .register(Metrics.globalRegistry);
+    private static final DistributionSummary BYTES_PER_SECOND = DistributionSummary.builder("uid2_admin_cloud_key_reencryption_bytes_per_second")
+            .description("encrypted bytes uploaded per second by a targeted re-encryption run")
+            .baseUnit("bytes")
+            .register(Metrics.globalRegistry);
+
+    // the stores written per site by the encrypted files sync, other than the keyset stores
+    private static final List<String> ENCRYPTED_METADATA_PATH_PROPS = List.of(
+            Const.Config.SitesMetadataPathProp,
+            Const.Config.ClientsMetadataPathProp,
+            Const.Config.KeysMetadataPathProp,
+            Const.Config.KeysAclMetadataPathProp,
+            Const.Config.ClientSideKeypairsMetadataPathProp,
+            Const.Config.SaltsMetadataPathProp);
+
+    private final JsonObject config;
+    private final WriteLock writeLock;
+    private final RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider;
+    private final ObjectTagger saltTagger;
+    private final GlobalStores globalStores;
+
+    public CloudEncryptionKeyReencryptionJob(
+            JsonObject config,
+            WriteLock writeLock,
+            RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider,
+            ObjectTagger saltTagger,
+            GlobalStores globalStores) {
+        this.config = config;
+        this.writeLock = writeLock;
+        this.cloudEncryptionKeyProvider = cloudEncryptionKeyProvider;
+        this.saltTagger = saltTagger;
+        this.globalStores = globalStores;
+    }
+
+    @Override
+    public String getId() {
+        return "cloud-encryption-key-reencryption";
+    }
+
+    @Override
+    public void execute() throws Exception {
+        ICloudStorage cloudStorage = new ContentDecodingCloudStorage(CloudStorageFactory.create(config));
+        synchronized (writeLock) {
+            cloudEncryptionKeyProvider.loadContent();
+            StoreReloader.of("operators", globalStores.getOperators()).reload();
+        }
+
+        Set<Integer> due = findStaleSites(cloudStorage, globalStores.getOperators().getAll());
+        if (due.isEmpty()) {
+            LOGGER.info("No sites with files encrypted with a key other than their active cloud encryption key");
+            return;
+        }
+
+        LOGGER.info("Re-encrypting files of {} sites not encrypted with their active cloud encryption key: {}", due.size(), due);
+        double bytesBefore = EncryptedScopedStoreWriter.getUploadedBytesTotal();
+        long startNanos = System.nanoTime();
+
+        createSyncJob(due).execute();
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        double bytes = EncryptedScopedStoreWriter.getUploadedBytesTotal() - bytesBefore;
+        double seconds = Math.max(elapsed.toNanos() / 1e9, 1e-3);
+
+        DURATION.record(elapsed);
+        SITES_REENCRYPTED.increment(due.size());
+        SITES_PER_SECOND.record(due.size() / seconds);
+        BYTES_PER_SECOND.record(bytes / seconds);
+        LOGGER.info("Re-encrypted {} sites in {} ms: {} bytes uploaded, {} sites/sec, {} bytes/sec",
+                due.size(), elapsed.toMillis(), (long) bytes,
+                String.format("%.2f", due.size() / seconds), String.format("%.0f", bytes / seconds));
+    }
+
+    private Set<Integer> findStaleSites(ICloudStorage cloudStorage, Collection<OperatorKey> operators) throws Exception {
+        List<CloudPath> rootMetadataPaths = new ArrayList<>();
+        for (String prop : ENCRYPTED_METADATA_PATH_PROPS) {
+            rootMetadataPaths.add(new CloudPath(config.getString(prop)));
+        }
+        if (config.getBoolean(enableKeysetConfigProp)) {
+            rootMetadataPaths.add(new CloudPath(config.getString(Const.Config.KeysetsMetadataPathProp)));
+            rootMetadataPaths.add(new CloudPath(config.getString(Const.Config.KeysetKeysMetadataPathProp)));
+        }
+        return new StaleEncryptedSites(cloudStorage, rootMetadataPaths, cloudEncryptionKeyProvider).find(operators);
+    }
+
+    EncryptedFilesSyncJob createSyncJob(Set<Integer> due) {
+        return new EncryptedFilesSyncJob(config, writeLock, cloudEncryptionKeyProvider, saltTagger, globalStores, due);
+    }
+}
@@ -0,0 +1,85 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.admin.job.JobDispatcher;
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.store.Clock;
+import com.uid2.admin.store.StoreReloader;
+import com.uid2.shared.model.CloudEncryptionKey;
+import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Enqueues a {@link CloudEncryptionKeyReencryptionJob} when each upcoming cloud encryption key activates.
+ * <p>
+ * A rotated key only becomes the site's encryption key once it activates, so re-encrypting straight after a rotation
+ * would still use the old key. Call {@link #scheduleUpcomingActivations()} after a rotation and at startup; the timers
+ * are not persisted, but as the job finds the sites to re-encrypt from storage, the startup call covers a restart.
+ * If a re-encryption is still queued or running when a key activates, the job is enqueued again after
+ * {@code retryMs}.
+ * </p>
+ */
+public class CloudEncryptionKeyReencryptionScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CloudEncryptionKeyReencryptionScheduler.class);
+    // the key provider selects the active key by the current time, give it a moment past the activation
+    private static final long ACTIVATION_GRACE_MS = 1000;
+
+    private final Vertx vertx;
+    private final JobDispatcher jobDispatcher;
+    private final RotatingCloudEncryptionKeyProvider keyProvider;
+    private final StoreReloader keyReloader;
+    private final Clock clock;
+    private final Supplier<Job> jobFactory;
+    private final long retryMs;
+    // activation times (epoch seconds) with a timer set
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+
+    public CloudEncryptionKeyReencryptionScheduler(
+            Vertx vertx,
+            JobDispatcher jobDispatcher,
+            RotatingCloudEncryptionKeyProvider keyProvider,
+            Clock clock,
+            Supplier<Job> jobFactory,
+            long retryMs) {
+        this.vertx = vertx;
+        this.jobDispatcher = jobDispatcher;
+        this.keyProvider = keyProvider;
+        this.keyReloader = StoreReloader.of("cloud_encryption_keys", keyProvider);
+        this.clock = clock;
+        this.jobFactory = jobFactory;
+        this.retryMs = retryMs;
+    }
+
+    public void scheduleUpcomingActivations() throws Exception {
+        keyReloader.reload();
+        long now = clock.getEpochSecond();
+        Set<Long> activations = new TreeSet<>();
+        for (CloudEncryptionKey key : keyProvider.getAll().values()) {
+            if (key.getActivates() > now && scheduled.add(key.getActivates())) {
+                activations.add(key.getActivates());
+            }
+        }
+        for (long activates : activations) {
+            long delayMs = (activates - now) * 1000 + ACTIVATION_GRACE_MS;
+            vertx.setTimer(delayMs, id -> {
+                scheduled.remove(activates);
+                enqueue();
+            });
+            LOGGER.info("Re-encryption scheduled for cloud encryption keys activating at {}", activates);
+        }
+    }
+
+    void enqueue() {
+        if (jobDispatcher.enqueue(jobFactory.get())) {
+            LOGGER.info("Enqueued re-encryption for activated cloud encryption keys");
+        } else {
+            vertx.setTimer(retryMs, id -> enqueue());
+        }
+    }
+}
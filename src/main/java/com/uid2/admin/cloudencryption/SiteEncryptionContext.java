@@ -0,0 +1,132 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.shared.model.CloudEncryptionKey;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * The decoded cloud encryption key of a site, ready to encrypt with.
+ * <p>
+ * Produces the same envelope as {@code AesGcm.encrypt}: a random 12 byte IV followed by the AES-GCM ciphertext and
+ * 16 byte tag, Base64 encoded in the {@code encrypted_payload} field. The envelope can either be built in memory or
+ * streamed, in which case neither the ciphertext nor its Base64 encoding is ever held in memory as a whole.
+ * </p>
+ */
+public class SiteEncryptionContext {
+    private static final String CIPHER_SCHEME = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final String ENCRYPTION_VERSION = "1.0";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(CIPHER_SCHEME);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int keyId;
+    private final SecretKeySpec key;
+    // epoch second from which a newer key of the site is active and this context must no longer be used
+    private final long validUntil;
+
+    SiteEncryptionContext(CloudEncryptionKey cloudEncryptionKey, long validUntil) {
+        this.keyId = cloudEncryptionKey.getId();
+        this.key = new SecretKeySpec(Base64.getDecoder().decode(cloudEncryptionKey.getSecret()), "AES");
+        this.validUntil = validUntil;
+    }
+
+    public int getKeyId() {
+        return keyId;
+    }
+
+    boolean isValidAt(long epochSecond) {
+        return epochSecond < validUntil;
+    }
+
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        byte[] iv = newIv();
+        Cipher cipher = initCipher(iv);
+        byte[] result = new byte[IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(iv, 0, result, 0, IV_LENGTH);
+        cipher.doFinal(plaintext, 0, plaintext.length, result, IV_LENGTH);
+        return result;
+    }
+
+    public String toEnvelope(String plaintext) throws GeneralSecurityException {
+        String payload = Base64.getEncoder().encodeToString(encrypt(plaintext.getBytes(StandardCharsets.UTF_8)));
+        return envelopePrefix() + payload + envelopeSuffix();
+    }
+
+    @FunctionalInterface
+    public interface PlaintextWriter {
+        // Writes the plaintext to the stream, which encrypts it on the fly. Must not close the stream.
+        void writeTo(OutputStream plaintextOut) throws IOException;
+    }
+
+    /**
+     * Streams the encrypted envelope of the plaintext written by {@code plaintextWriter} to {@code out}. {@code out}
+     * is flushed but not closed.
+     */
+    public void writeEnvelope(OutputStream out, PlaintextWriter plaintextWriter) throws IOException, GeneralSecurityException {
+        byte[] iv = newIv();
+        Cipher cipher = initCipher(iv);
+
+        out.write(envelopePrefix().getBytes(StandardCharsets.UTF_8));
+        OutputStream base64Out = Base64.getEncoder().wrap(new NonClosingOutputStream(out));
+        base64Out.write(iv);
+        try (OutputStream cipherOut = new CipherOutputStream(base64Out, cipher)) {
+            plaintextWriter.writeTo(cipherOut);
+        }
+        // closing the cipher stream wrote the tag and closed the Base64 stream, which wrote its padding
+        out.write(envelopeSuffix().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String envelopePrefix() {
+        return "{\"key_id\":" + keyId + ",\"encryption_version\":\"" + ENCRYPTION_VERSION + "\",\"encrypted_payload\":\"";
+    }
+
+    private static String envelopeSuffix() {
+        return "\"}";
+    }
+
+    private static byte[] newIv() {
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        return iv;
+    }
+
+    private Cipher initCipher(byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        return cipher;
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
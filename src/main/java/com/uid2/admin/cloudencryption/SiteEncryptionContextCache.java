@@ -0,0 +1,73 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.shared.model.CloudEncryptionKey;
+import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the {@link SiteEncryptionContext} of each site so that the active key is selected and its secret decoded
+ * once rather than on every encrypted upload.
+ * <p>
+ * A context is dropped as soon as the provider publishes a new key snapshot, detected by the identity of
+ * {@link RotatingCloudEncryptionKeyProvider#getAll()}, or once a newer key of the site activates.
+ * </p>
+ */
+public class SiteEncryptionContextCache {
+    private static final Map<RotatingCloudEncryptionKeyProvider, SiteEncryptionContextCache> CACHES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final RotatingCloudEncryptionKeyProvider keyProvider;
+    private final Map<Integer, SiteEncryptionContext> contexts = new ConcurrentHashMap<>();
+    private Object cachedSnapshot = null;
+
+    SiteEncryptionContextCache(RotatingCloudEncryptionKeyProvider keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    // Returns the cache shared by every writer encrypting with the keys of this provider
+    public static SiteEncryptionContextCache forProvider(RotatingCloudEncryptionKeyProvider keyProvider) {
+        return CACHES.computeIfAbsent(keyProvider, SiteEncryptionContextCache::new);
+    }
+
+    /**
+     * @return the context of the key currently used to encrypt the site's files
+     * @throws IllegalStateException if the site has no active cloud encryption key
+     */
+    public SiteEncryptionContext get(int siteId) {
+        long now = Instant.now().getEpochSecond();
+        Map<Integer, CloudEncryptionKey> keys = keyProvider.getAll();
+        synchronized (this) {
+            if (cachedSnapshot != keys) {
+                contexts.clear();
+                cachedSnapshot = keys;
+            }
+        }
+
+        SiteEncryptionContext context = contexts.get(siteId);
+        if (context != null && context.isValidAt(now)) {
+            return context;
+        }
+
+        CloudEncryptionKey key = keyProvider.getEncryptionKeyForSite(siteId);
+        if (key == null) {
+            throw new IllegalStateException("No Cloud Encryption keys available for encryption for site ID: " + siteId);
+        }
+        context = new SiteEncryptionContext(key, nextActivation(keys, siteId, now));
+        contexts.put(siteId, context);
+        return context;
+    }
+
+    private static long nextActivation(Map<Integer, CloudEncryptionKey> keys, int siteId, long now) {
+        if (keys == null) {
+            return Long.MAX_VALUE;
+        }
+        return keys.values().stream()
+                .filter(key -> key.getSiteId() == siteId && key.getActivates() > now)
+                .mapToLong(CloudEncryptionKey::getActivates)
+                .min()
+                .orElse(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,100 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.shared.Utils;
+import com.uid2.shared.auth.OperatorKey;
+import com.uid2.shared.auth.OperatorType;
+import com.uid2.shared.cloud.ICloudStorage;
+import com.uid2.shared.model.CloudEncryptionKey;
+import com.uid2.shared.store.CloudPath;
+import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
+import com.uid2.shared.store.scope.EncryptedScope;
+import io.vertx.core.json.JsonObject;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Finds the sites whose encrypted files are not encrypted with the site's active cloud encryption key, e.g. because
+ * the key was rotated and has since activated.
+ * <p>
+ * The encrypted writers record the id of the key used in the metadata of each encrypted store, so the sites are found
+ * from what is stored rather than from rotations seen by this instance, and a restart loses nothing. A store whose
+ * metadata does not exist yet has never been written for the site and is left to the full sync.
+ * </p>
+ */
+public class StaleEncryptedSites {
+    static final String KEY_ID = "key_id";
+
+    private final ICloudStorage cloudStorage;
+    private final Collection<CloudPath> rootMetadataPaths;
+    private final RotatingCloudEncryptionKeyProvider keyProvider;
+
+    public StaleEncryptedSites(ICloudStorage cloudStorage, Collection<CloudPath> rootMetadataPaths, RotatingCloudEncryptionKeyProvider keyProvider) {
+        this.cloudStorage = cloudStorage;
+        this.rootMetadataPaths = rootMetadataPaths;
+        this.keyProvider = keyProvider;
+    }
+
+    /**
+     * @return the ids of the sites with an operator whose encrypted files record a key other than the site's active key
+     */
+    public Set<Integer> find(Collection<OperatorKey> operators) throws Exception {
+        Set<Integer> stale = new TreeSet<>();
+        for (Map.Entry<Integer, Set<Boolean>> site : getEncryptedScopes(operators).entrySet()) {
+            int siteId = site.getKey();
+            CloudEncryptionKey activeKey = keyProvider.getEncryptionKeyForSite(siteId);
+            if (activeKey == null) {
+                // nothing can be encrypted for the site until it has a key
+                continue;
+            }
+            if (isStale(siteId, site.getValue(), activeKey.getId())) {
+                stale.add(siteId);
+            }
+        }
+        return stale;
+    }
+
+    private boolean isStale(int siteId, Set<Boolean> scopes, int activeKeyId) throws Exception {
+        for (boolean isPublic : scopes) {
+            for (CloudPath rootMetadataPath : rootMetadataPaths) {
+                String metadataPath = new EncryptedScope(rootMetadataPath, siteId, isPublic).getMetadataPath().toString();
+                if (!cloudStorage.list(metadataPath).contains(metadataPath)) {
+                    continue;
+                }
+                JsonObject metadata;
+                try (InputStream stream = cloudStorage.download(metadataPath)) {
+                    metadata = Utils.toJsonObject(stream);
+                }
+                if (getRecordedKeyIds(metadata).stream().anyMatch(keyId -> keyId != activeKeyId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // site id -> whether the site has public operators, private operators or both
+    private static Map<Integer, Set<Boolean>> getEncryptedScopes(Collection<OperatorKey> operators) {
+        Map<Integer, Set<Boolean>> scopes = new HashMap<>();
+        for (OperatorKey operator : operators) {
+            if (operator.getSiteId() != null) {
+                scopes.computeIfAbsent(operator.getSiteId(), siteId -> new HashSet<>()).add(operator.getOperatorType() == OperatorType.PUBLIC);
+            }
+        }
+        return scopes;
+    }
+
+    // The salt writer records the key at the top level of the metadata, the other writers in the data type's entry
+    static Set<Integer> getRecordedKeyIds(JsonObject metadata) {
+        Set<Integer> keyIds = new HashSet<>();
+        if (metadata.getValue(KEY_ID) instanceof Number keyId) {
+            keyIds.add(keyId.intValue());
+        }
+        for (String field : metadata.fieldNames()) {
+            if (metadata.getValue(field) instanceof JsonObject entry && entry.getValue(KEY_ID) instanceof Number keyId) {
+                keyIds.add(keyId.intValue());
+            }
+        }
+        return keyIds;
+    }
+}
@@ -3,6 +3,7 @@ package com.uid2.admin.job.EncryptionJob;
 import com.uid2.admin.job.model.Job;
 import com.uid2.admin.model.PrivateSiteDataMap;
 import com.uid2.admin.store.MultiScopeStoreWriter;
+import com.uid2.admin.store.writer.SaltCsvCache;
 import com.uid2.admin.util.PrivateSiteUtil;
 import com.uid2.admin.util.PublicSiteUtil;
 import com.uid2.shared.auth.OperatorKey;
@@ -16,13 +17,23 @@ public class SaltEncryptionJob extends Job {
     private final Collection<OperatorKey> globalOperators;
     private final RotatingSaltProvider saltProvider;
     private final MultiScopeStoreWriter<Collection<RotatingSaltProvider.SaltSnapshot>> multiScopeStoreWriter;
+    private final SaltCsvCache csvCache;
 
     public SaltEncryptionJob(Collection<OperatorKey> globalOperators,
                              RotatingSaltProvider saltProvider,
                              MultiScopeStoreWriter<Collection<RotatingSaltProvider.SaltSnapshot>> multiScopeStoreWriter) {
+        this(globalOperators, saltProvider, multiScopeStoreWriter, null);
+    }
+
+    // csvCache is the cache used by the writers of multiScopeStoreWriter, closed once all sites are uploaded
+    public SaltEncryptionJob(Collection<OperatorKey> globalOperators,
+                             RotatingSaltProvider saltProvider,
+                             MultiScopeStoreWriter<Collection<RotatingSaltProvider.SaltSnapshot>> multiScopeStoreWriter,
+                             SaltCsvCache csvCache) {
         this.globalOperators = globalOperators;
         this.saltProvider = saltProvider;
         this.multiScopeStoreWriter = multiScopeStoreWriter;
+        this.csvCache = csvCache;
     }
 
 
@@ -33,9 +44,15 @@ public class SaltEncryptionJob extends Job {
 
     @Override
     public void execute() throws Exception {
-        List<Integer> desiredPrivateState = PrivateSiteUtil.getPrivateSaltSites(globalOperators);
-        multiScopeStoreWriter.uploadPrivateWithEncryption(desiredPrivateState, saltProvider.getSnapshots(), saltProvider.getMetadata());
-        List<Integer> desiredPublicState = PublicSiteUtil.getPublicSaltSites(globalOperators);
-        multiScopeStoreWriter.uploadPublicWithEncryption(desiredPublicState, saltProvider.getSnapshots(), saltProvider.getMetadata());
+        try {
+            List<Integer> desiredPrivateState = PrivateSiteUtil.getPrivateSaltSites(globalOperators);
+            multiScopeStoreWriter.uploadPrivateWithEncryption(desiredPrivateState, saltProvider.getSnapshots(), saltProvider.getMetadata());
+            List<Integer> desiredPublicState = PublicSiteUtil.getPublicSaltSites(globalOperators);
+            multiScopeStoreWriter.uploadPublicWithEncryption(desiredPublicState, saltProvider.getSnapshots(), saltProvider.getMetadata());
+        } finally {
+            if (csvCache != null) {
+                csvCache.close();
+            }
+        }
     }
 }
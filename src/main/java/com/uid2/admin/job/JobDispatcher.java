@@ -5,28 +5,45 @@ import com.uid2.admin.job.model.JobInfo;
 import com.uid2.admin.store.Clock;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
+/**
+ * Runs queued jobs one at a time.
+ * <p>
+ * Once started, the dispatcher is woken up as soon as a job is enqueued or the executing job finishes with more jobs
+ * queued, so a job does not wait for the next tick. The periodic tick every {@code intervalMs} is only a safety net.
+ * </p>
+ */
 public class JobDispatcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(JobDispatcher.class);
+    private static final int MAX_FINISHED_JOBS = 20;
 
     private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor();
     private final Queue<Job> jobQueue = new ConcurrentLinkedQueue<>();
     private final Object jobLock = new Object();
+    // most recently finished job per id, oldest first
+    private final LinkedHashMap<String, JobInfo> finishedJobs = new LinkedHashMap<>();
+    // completed with the outcome of each queued or executing job, keyed by instance
+    private final Map<Job, CompletableFuture<Boolean>> jobFutures = new IdentityHashMap<>();
 
     private final String id;
     private final int intervalMs;
     private final int maxRetries;
     private final Clock clock;
+    private final Timer queueLatency;
 
     private boolean started = false;
     private Job currentJob = null;
+    private CompletableFuture<Boolean> currentJobFuture = null;
     private ScheduledExecutorService scheduler;
 
     public JobDispatcher(
@@ -43,6 +60,11 @@ public class JobDispatcher {
                 .tag("job_dispatcher", id)
                 .description("gauge for " + id + " execution time")
                 .register(Metrics.globalRegistry);
+        this.queueLatency = Timer.builder("uid2_job_dispatcher_queue_latency")
+                .tag("job_dispatcher", id)
+                .description("time jobs of " + id + " spend queued before they start executing")
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
     }
 
     public void start() {
@@ -63,7 +85,10 @@ public class JobDispatcher {
         synchronized (jobLock) {
             started = false;
             currentJob = null;
+            currentJobFuture = null;
             jobQueue.clear();
+            jobFutures.values().forEach(future -> future.cancel(false));
+            jobFutures.clear();
 
             if (scheduler != null) {
                 scheduler.shutdown();
@@ -74,52 +99,106 @@ public class JobDispatcher {
 
     public void clear() {
         LOGGER.info("Clearing job dispatcher queue");
-        jobQueue.clear();
+        synchronized (jobLock) {
+            jobQueue.forEach(job -> {
+                CompletableFuture<Boolean> future = jobFutures.remove(job);
+                if (future != null) {
+                    future.cancel(false);
+                }
+            });
+            jobQueue.clear();
+        }
+    }
+
+    /**
+     * @return {@code false} if a job with the same id is already queued or executing, in which case the job is dropped
+     */
+    public boolean enqueue(Job job) {
+        return submit(job) != null;
     }
 
-    public void enqueue(Job job) {
+    /**
+     * Queues the job, like {@link #enqueue}.
+     *
+     * @return a future completed with whether this job succeeded once it has executed, or cancelled if it is cleared
+     * from the queue first. {@code null} if a job with the same id is already queued or executing, in which case the
+     * job is dropped.
+     */
+    public CompletableFuture<Boolean> submit(Job job) {
         String id = job.getId();
 
         synchronized (jobLock) {
             if ((currentJob == null || !currentJob.getId().equals(id))
                     && jobQueue.stream().noneMatch(queuedJob -> queuedJob.getId().equals(id))) {
                 LOGGER.info("Queueing new job: {}", id);
+                CompletableFuture<Boolean> future = new CompletableFuture<>();
+                jobFutures.put(job, future);
                 jobQueue.add(job);
                 job.setAddedToQueueAt(clock.now());
+                wakeUp();
+                return future;
             } else {
                 LOGGER.warn("Already queued job: {}", id);
+                return null;
             }
         }
     }
 
+    // Runs executeNextJob on the scheduler thread straight away instead of on the next tick
+    private void wakeUp() {
+        synchronized (jobLock) {
+            if (started && scheduler != null) {
+                scheduler.execute(this::executeNextJob);
+            }
+        }
+    }
+
+    /**
+     * Starts the next queued job.
+     *
+     * @return the future of the started job or, if a job is already executing (e.g. because the dispatcher was woken
+     * up by {@link #enqueue}), the future of that job. A future of {@code null} if no job is queued or executing.
+     * To wait for a particular job, use the future returned by {@link #submit} instead.
+     */
     public CompletableFuture<Boolean> executeNextJob() {
         String currentJobId;
+        Job job;
 
         synchronized (jobLock) {
             LOGGER.debug("Checking for jobs");
+            if (isExecutingJob()) {
+                LOGGER.debug("Job already running: {}", currentJob.getId());
+                return currentJobFuture;
+            }
             if (jobQueue.isEmpty()) {
                 LOGGER.debug("No jobs to run");
                 return CompletableFuture.completedFuture(null);
             }
-            if (isExecutingJob()) {
-                LOGGER.warn("Job already running: {}", currentJob.getId());
-                return CompletableFuture.completedFuture(null);
-            }
 
             currentJob = jobQueue.poll();
             assert currentJob != null;
+            job = currentJob;
             currentJobId = currentJob.getId();
-            currentJob.setStartedExecutingAt(clock.now());
+            Instant startedAt = clock.now();
+            currentJob.setStartedExecutingAt(startedAt);
+            if (job.getAddedToQueueAt() != null && startedAt != null) {
+                queueLatency.record(Duration.between(job.getAddedToQueueAt(), startedAt));
+            }
             LOGGER.info("Executing job: {} ({} jobs remaining in queue)", currentJobId, jobQueue.size());
+            currentJobFuture = execute(job);
+            return currentJobFuture;
         }
+    }
 
+    private CompletableFuture<Boolean> execute(Job job) {
+        String currentJobId = job.getId();
         return CompletableFuture.supplyAsync(() -> {
             boolean success = false;
 
             for (int retryCount = 1; retryCount <= maxRetries; retryCount++) {
                 try {
                     long before = System.currentTimeMillis();
-                    currentJob.execute();
+                    job.execute();
                     success = true;
                     long after = System.currentTimeMillis();
                     long durationMs = after - before;
@@ -129,15 +208,29 @@ public class JobDispatcher {
                     if (retryCount < maxRetries) {
                         LOGGER.error(
                                 String.format("Found error, retrying job: %s (%d/%d attempts)",
-                                        currentJob.getId(), retryCount, maxRetries), t);
+                                        currentJobId, retryCount, maxRetries), t);
                     } else {
                         LOGGER.error(String.format("Found error, but reached max retries for job: %s", currentJobId), t);
                     }
                 }
             }
 
+            CompletableFuture<Boolean> jobFuture;
             synchronized (jobLock) {
                 currentJob = null;
+                currentJobFuture = null;
+                jobFuture = jobFutures.remove(job);
+                finishedJobs.remove(currentJobId);
+                finishedJobs.put(currentJobId, JobInfo.finished(job, success));
+                if (finishedJobs.size() > MAX_FINISHED_JOBS) {
+                    finishedJobs.remove(finishedJobs.keySet().iterator().next());
+                }
+                if (!jobQueue.isEmpty()) {
+                    wakeUp();
+                }
+            }
+            if (jobFuture != null) {
+                jobFuture.complete(success);
             }
 
             return success;
@@ -164,6 +257,22 @@ public class JobDispatcher {
         }
     }
 
+    /**
+     * @return the executing or queued job with the id, else the last finished one, or {@code null} if there is none
+     */
+    public JobInfo getJobInfo(String jobId) {
+        synchronized (jobLock) {
+            if (currentJob != null && currentJob.getId().equals(jobId)) {
+                return new JobInfo(currentJob, true);
+            }
+            return jobQueue.stream()
+                    .filter(job -> job.getId().equals(jobId))
+                    .findFirst()
+                    .map(job -> new JobInfo(job, false))
+                    .orElse(finishedJobs.get(jobId));
+        }
+    }
+
     public long getExecutionDuration() {
         synchronized (jobLock) {
             return currentJob == null ? 0 : ChronoUnit.MILLIS.between(currentJob.getStartedExecutingAt(), clock.now());
@@ -7,6 +7,8 @@ import com.uid2.admin.store.*;
 import com.uid2.admin.store.factory.*;
 import com.uid2.admin.store.version.EpochVersionGenerator;
 import com.uid2.admin.store.version.VersionGenerator;
+import com.uid2.admin.store.writer.SaltCsvCache;
+import com.uid2.admin.util.PublicSiteUtil;
 import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.Const;
@@ -14,7 +16,6 @@ import com.uid2.shared.auth.EncryptionKeyAcl;
 import com.uid2.shared.auth.Keyset;
 import com.uid2.shared.auth.OperatorKey;
 import com.uid2.shared.auth.RotatingOperatorKeyProvider;
-import com.uid2.shared.cloud.CloudUtils;
 import com.uid2.shared.cloud.TaggableCloudStorage;
 import com.uid2.shared.model.ClientSideKeypair;
 import com.uid2.shared.model.EncryptionKey;
@@ -35,29 +36,82 @@ public class EncryptedFilesSyncJob extends Job {
     private final JsonObject config;
     private final WriteLock writeLock;
     private final RotatingCloudEncryptionKeyProvider rotatingCloudEncryptionKeyProvider;
+    // the tagger of the admin service's salt writer, shared by the encrypted salt writers of every site and run
+    private final ObjectTagger saltTagger;
+    // null re-encrypts every site
+    private final Set<Integer> targetSiteIds;
+    // data types as in the store metadata, null syncs every data type
+    private final Set<String> dataTypes;
+    // the stores kept loaded by the admin service, null loads a copy of every store for the run
+    private final GlobalStores globalStores;
 
-    public EncryptedFilesSyncJob(JsonObject config, WriteLock writeLock, RotatingCloudEncryptionKeyProvider RotatingCloudEncryptionKeyProvider) {
+    public EncryptedFilesSyncJob(JsonObject config, WriteLock writeLock, RotatingCloudEncryptionKeyProvider RotatingCloudEncryptionKeyProvider,
+                                 ObjectTagger saltTagger) {
         this.config = config;
         this.writeLock = writeLock;
         this.rotatingCloudEncryptionKeyProvider = RotatingCloudEncryptionKeyProvider;
+        this.saltTagger = saltTagger;
+        this.targetSiteIds = null;
+        this.dataTypes = null;
+        this.globalStores = null;
+    }
+
+    /**
+     * Only writes the encrypted files of {@code targetSiteIds}, encrypting the data of {@code globalStores} instead of
+     * loading a copy of every store. See {@link GlobalStores}.
+     */
+    public EncryptedFilesSyncJob(JsonObject config, WriteLock writeLock, RotatingCloudEncryptionKeyProvider RotatingCloudEncryptionKeyProvider,
+                                 ObjectTagger saltTagger, GlobalStores globalStores, Set<Integer> targetSiteIds) {
+        this.config = config;
+        this.writeLock = writeLock;
+        this.rotatingCloudEncryptionKeyProvider = RotatingCloudEncryptionKeyProvider;
+        this.saltTagger = saltTagger;
+        this.targetSiteIds = Set.copyOf(targetSiteIds);
+        this.dataTypes = null;
+        this.globalStores = globalStores;
+    }
+
+    /**
+     * Only syncs the encrypted files of {@code dataTypes}, e.g. after a change to those stores. If {@code changedSiteIds}
+     * is not {@code null}, only the private sites in it and the public sites are written, as the public sites receive
+     * the data of every site.
+     */
+    public EncryptedFilesSyncJob(JsonObject config, WriteLock writeLock, RotatingCloudEncryptionKeyProvider RotatingCloudEncryptionKeyProvider,
+                                 ObjectTagger saltTagger, Set<Integer> changedSiteIds, Set<String> dataTypes) {
+        this.config = config;
+        this.writeLock = writeLock;
+        this.rotatingCloudEncryptionKeyProvider = RotatingCloudEncryptionKeyProvider;
+        this.saltTagger = saltTagger;
+        this.targetSiteIds = changedSiteIds == null ? null : Set.copyOf(changedSiteIds);
+        this.dataTypes = Set.copyOf(dataTypes);
+        this.globalStores = null;
     }
 
     @Override
     public String getId() {
-        return "encrypted-files-sync-job";
+        if (dataTypes != null) {
+            return "encrypted-files-scoped-sync-job";
+        }
+        return targetSiteIds == null ? "encrypted-files-sync-job" : "encrypted-files-targeted-sync-job";
+    }
+
+    public Set<String> getDataTypes() {
+        return dataTypes;
+    }
+
+    private boolean syncs(String dataType) {
+        return dataTypes == null || dataTypes.contains(dataType);
     }
 
     @Override
     public void execute() throws Exception {
-        TaggableCloudStorage cloudStorage = CloudUtils.createStorage(config.getString(Const.Config.CoreS3BucketProp), config);
+        TaggableCloudStorage cloudStorage = new ContentDecodingCloudStorage(CloudStorageFactory.create(config));
         FileStorage fileStorage = new TmpFileStorage();
         ObjectWriter jsonWriter = JsonUtil.createJsonWriter();
         Clock clock = new InstantClock();
         VersionGenerator versionGenerator = new EpochVersionGenerator(clock);
         FileManager fileManager = new FileManager(cloudStorage, fileStorage);
 
-        RotatingSaltProvider saltProvider = new RotatingSaltProvider(cloudStorage, config.getString(Const.Config.SaltsMetadataPathProp));
-
         SiteStoreFactory siteStoreFactory = new SiteStoreFactory(
                 cloudStorage,
                 new CloudPath(config.getString(Const.Config.SitesMetadataPathProp)),
@@ -112,13 +166,16 @@ public class EncryptedFilesSyncJob extends Job {
                 rotatingCloudEncryptionKeyProvider,
                 config.getBoolean(enableKeysetConfigProp));
 
+        SaltCsvCache saltCsvCache = new SaltCsvCache();
         SaltStoreFactory saltStoreFactory = new SaltStoreFactory(
                 config,
                 new CloudPath(config.getString(Const.Config.SaltsMetadataPathProp)),
                 fileManager,
                 cloudStorage,
                 versionGenerator,
-                rotatingCloudEncryptionKeyProvider
+                rotatingCloudEncryptionKeyProvider,
+                saltTagger,
+                saltCsvCache
         );
 
         ClientSideKeypairStoreFactory clientSideKeypairStoreFactory = new ClientSideKeypairStoreFactory(
@@ -130,60 +187,85 @@ public class EncryptedFilesSyncJob extends Job {
                 fileManager
         );
 
-        CloudPath operatorMetadataPath = new CloudPath(config.getString(Const.Config.OperatorsMetadataPathProp));
-        GlobalScope operatorScope = new GlobalScope(operatorMetadataPath);
-        RotatingOperatorKeyProvider operatorKeyProvider = new RotatingOperatorKeyProvider(cloudStorage, cloudStorage, operatorScope);
-
+        GlobalStores stores = globalStores;
         synchronized (writeLock) {
             rotatingCloudEncryptionKeyProvider.loadContent();
-            operatorKeyProvider.loadContent(operatorKeyProvider.getMetadata());
-            siteStoreFactory.getGlobalReader().loadContent(siteStoreFactory.getGlobalReader().getMetadata());
-            clientKeyStoreFactory.getGlobalReader().loadContent();
-            encryptionKeyStoreFactory.getGlobalReader().loadContent();
-            keyAclStoreFactory.getGlobalReader().loadContent();
-            if(config.getBoolean(enableKeysetConfigProp)) {
-                keysetStoreFactory.getGlobalReader().loadContent();
-                keysetKeyStoreFactory.getGlobalReader().loadContent();
+            if (stores != null) {
+                stores.reload(config.getBoolean(enableKeysetConfigProp));
+            } else {
+                CloudPath operatorMetadataPath = new CloudPath(config.getString(Const.Config.OperatorsMetadataPathProp));
+                GlobalScope operatorScope = new GlobalScope(operatorMetadataPath);
+                stores = new GlobalStores(
+                        new RotatingOperatorKeyProvider(cloudStorage, cloudStorage, operatorScope),
+                        siteStoreFactory.getGlobalReader(),
+                        clientKeyStoreFactory.getGlobalReader(),
+                        encryptionKeyStoreFactory.getGlobalReader(),
+                        keyAclStoreFactory.getGlobalReader(),
+                        keysetStoreFactory.getGlobalReader(),
+                        keysetKeyStoreFactory.getGlobalReader(),
+                        new RotatingSaltProvider(cloudStorage, config.getString(Const.Config.SaltsMetadataPathProp)),
+                        clientSideKeypairStoreFactory.getGlobalReader());
+                stores.getOperators().loadContent(stores.getOperators().getMetadata());
+                stores.getSites().loadContent(stores.getSites().getMetadata());
+                stores.getClientKeys().loadContent();
+                stores.getKeys().loadContent();
+                stores.getKeyAcls().loadContent();
+                if(config.getBoolean(enableKeysetConfigProp)) {
+                    stores.getKeysets().loadContent();
+                    stores.getKeysetKeys().loadContent();
+                }
+                stores.getSalts().loadContent();
+                stores.getClientSideKeypairs().loadContent();
             }
-            saltProvider.loadContent();
-            clientSideKeypairStoreFactory.getGlobalReader().loadContent();
         }
 
-        Collection<OperatorKey> globalOperators = operatorKeyProvider.getAll();
-        Collection<Site> globalSites = siteStoreFactory.getGlobalReader().getAllSites();
-        Collection<LegacyClientKey> globalClients = clientKeyStoreFactory.getGlobalReader().getAll();
-        Collection<EncryptionKey> globalEncryptionKeys = encryptionKeyStoreFactory.getGlobalReader().getSnapshot().getActiveKeySet();
-        Integer globalMaxKeyId = encryptionKeyStoreFactory.getGlobalReader().getMetadata().getInteger("max_key_id");
-        Map<Integer, EncryptionKeyAcl> globalKeyAcls = keyAclStoreFactory.getGlobalReader().getSnapshot().getAllAcls();
-        Collection<ClientSideKeypair> globalClientSideKeypair = clientSideKeypairStoreFactory.getGlobalReader().getAll();
+        Collection<OperatorKey> globalOperators = stores.getOperators().getAll();
+        Collection<Site> globalSites = stores.getSites().getAllSites();
+        Collection<LegacyClientKey> globalClients = stores.getClientKeys().getAll();
+        Collection<EncryptionKey> globalEncryptionKeys = stores.getKeys().getSnapshot().getActiveKeySet();
+        Integer globalMaxKeyId = stores.getKeys().getMetadata().getInteger("max_key_id");
+        Map<Integer, EncryptionKeyAcl> globalKeyAcls = stores.getKeyAcls().getSnapshot().getAllAcls();
+        Collection<ClientSideKeypair> globalClientSideKeypair = stores.getClientSideKeypairs().getAll();
+
+        Set<Integer> encryptionTargets = targetSiteIds;
+        if (dataTypes != null && targetSiteIds != null) {
+            encryptionTargets = new HashSet<>(targetSiteIds);
+            encryptionTargets.addAll(PublicSiteUtil.getPublicSaltSites(globalOperators));
+        }
 
         MultiScopeStoreWriter<Collection<Site>> siteWriter = new MultiScopeStoreWriter<>(
                 fileManager,
                 siteStoreFactory,
-                MultiScopeStoreWriter::areCollectionsEqual);
+                MultiScopeStoreWriter::areCollectionsEqual,
+                encryptionTargets);
         MultiScopeStoreWriter<Collection<LegacyClientKey>> clientWriter = new MultiScopeStoreWriter<>(
                 fileManager,
                 clientKeyStoreFactory,
-                MultiScopeStoreWriter::areCollectionsEqual);
+                MultiScopeStoreWriter::areCollectionsEqual,
+                encryptionTargets);
         MultiScopeStoreWriter<Collection<EncryptionKey>> encryptionKeyWriter = new MultiScopeStoreWriter<>(
                 fileManager,
                 encryptionKeyStoreFactory,
-                MultiScopeStoreWriter::areCollectionsEqual);
+                MultiScopeStoreWriter::areCollectionsEqual,
+                encryptionTargets);
         MultiScopeStoreWriter<Map<Integer, EncryptionKeyAcl>> keyAclWriter = new MultiScopeStoreWriter<>(
                 fileManager,
                 keyAclStoreFactory,
-                MultiScopeStoreWriter::areMapsEqual);
+                MultiScopeStoreWriter::areMapsEqual,
+                encryptionTargets);
         MultiScopeStoreWriter<Collection<RotatingSaltProvider.SaltSnapshot>> saltWriter = new MultiScopeStoreWriter<>(
                 fileManager,
                 saltStoreFactory,
-                MultiScopeStoreWriter::areCollectionsEqual);
+                MultiScopeStoreWriter::areCollectionsEqual,
+                encryptionTargets);
         MultiScopeStoreWriter<Collection<ClientSideKeypair>> clientSideKeypairWriter = new MultiScopeStoreWriter<>(
                 fileManager,
                 clientSideKeypairStoreFactory,
-                MultiScopeStoreWriter::areCollectionsEqual);
+                MultiScopeStoreWriter::areCollectionsEqual,
+                encryptionTargets);
 
-        SiteEncryptionJob siteEncryptionSyncJob = new SiteEncryptionJob(siteWriter, globalSites, globalOperators, siteStoreFactory.getGlobalReader().getMetadata().getLong("version"));
-        ClientKeyEncryptionJob clientEncryptionSyncJob = new ClientKeyEncryptionJob(clientWriter, globalClients, globalOperators, clientKeyStoreFactory.getGlobalReader().getMetadata().getLong("version"));
+        SiteEncryptionJob siteEncryptionSyncJob = new SiteEncryptionJob(siteWriter, globalSites, globalOperators, stores.getSites().getMetadata().getLong("version"));
+        ClientKeyEncryptionJob clientEncryptionSyncJob = new ClientKeyEncryptionJob(clientWriter, globalClients, globalOperators, stores.getClientKeys().getMetadata().getLong("version"));
         EncryptionKeyEncryptionJob encryptionKeyEncryptionSyncJob = new EncryptionKeyEncryptionJob(
                 globalEncryptionKeys,
                 globalClients,
@@ -191,35 +273,37 @@ public class EncryptedFilesSyncJob extends Job {
                 globalKeyAcls,
                 globalMaxKeyId,
                 encryptionKeyWriter,
-                encryptionKeyStoreFactory.getGlobalReader().getMetadata().getLong("version")
+                stores.getKeys().getMetadata().getLong("version")
         );
-        KeyAclEncryptionJob keyAclEncryptionSyncJob = new KeyAclEncryptionJob(keyAclWriter, globalOperators, globalKeyAcls, keyAclStoreFactory.getGlobalReader().getMetadata().getLong("version"));
-        SaltEncryptionJob saltEncryptionJob = new SaltEncryptionJob(globalOperators, saltProvider, saltWriter);
-        ClientSideKeypairEncryptionJob clientSideKeypairEncryptionJob = new ClientSideKeypairEncryptionJob(globalOperators, globalClientSideKeypair, clientSideKeypairWriter, clientSideKeypairStoreFactory.getGlobalReader().getMetadata().getLong("version"));
-
-        siteEncryptionSyncJob.execute();
-        clientEncryptionSyncJob.execute();
-        encryptionKeyEncryptionSyncJob.execute();
-        keyAclEncryptionSyncJob.execute();
-        clientSideKeypairEncryptionJob.execute();
-        saltEncryptionJob.execute();
-
-        if(config.getBoolean(enableKeysetConfigProp)) {
-            Map<Integer, Keyset> globalKeysets = keysetStoreFactory.getGlobalReader().getSnapshot().getAllKeysets();
-            Collection<KeysetKey> globalKeysetKeys = keysetKeyStoreFactory.getGlobalReader().getSnapshot().getAllKeysetKeys();
-            Integer globalMaxKeysetKeyId = keysetKeyStoreFactory.getGlobalReader().getMetadata().getInteger("max_key_id");
+        KeyAclEncryptionJob keyAclEncryptionSyncJob = new KeyAclEncryptionJob(keyAclWriter, globalOperators, globalKeyAcls, stores.getKeyAcls().getMetadata().getLong("version"));
+        SaltEncryptionJob saltEncryptionJob = new SaltEncryptionJob(globalOperators, stores.getSalts(), saltWriter, saltCsvCache);
+        ClientSideKeypairEncryptionJob clientSideKeypairEncryptionJob = new ClientSideKeypairEncryptionJob(globalOperators, globalClientSideKeypair, clientSideKeypairWriter, stores.getClientSideKeypairs().getMetadata().getLong("version"));
+
+        if (syncs("sites")) siteEncryptionSyncJob.execute();
+        if (syncs("client_keys")) clientEncryptionSyncJob.execute();
+        if (syncs("keys")) encryptionKeyEncryptionSyncJob.execute();
+        if (syncs("keys_acl")) keyAclEncryptionSyncJob.execute();
+        if (syncs("client_side_keypairs")) clientSideKeypairEncryptionJob.execute();
+        if (syncs("salts")) saltEncryptionJob.execute();
+
+        if(config.getBoolean(enableKeysetConfigProp) && (syncs("keysets") || syncs("keyset_keys"))) {
+            Map<Integer, Keyset> globalKeysets = stores.getKeysets().getSnapshot().getAllKeysets();
+            Collection<KeysetKey> globalKeysetKeys = stores.getKeysetKeys().getSnapshot().getAllKeysetKeys();
+            Integer globalMaxKeysetKeyId = stores.getKeysetKeys().getMetadata().getInteger("max_key_id");
             MultiScopeStoreWriter<Map<Integer, Keyset>> keysetWriter = new MultiScopeStoreWriter<>(
                     fileManager,
                     keysetStoreFactory,
-                    MultiScopeStoreWriter::areMapsEqual);
+                    MultiScopeStoreWriter::areMapsEqual,
+                    encryptionTargets);
             MultiScopeStoreWriter<Collection<KeysetKey>> keysetKeyWriter = new MultiScopeStoreWriter<>(
                     fileManager,
                     keysetKeyStoreFactory,
-                    MultiScopeStoreWriter::areCollectionsEqual);
-            SiteKeysetEncryptionJob keysetEncryptionSyncJob = new SiteKeysetEncryptionJob(keysetWriter, globalOperators, globalKeysets, keysetStoreFactory.getGlobalReader().getMetadata().getLong("version"));
-            KeysetKeyEncryptionJob keysetKeyEncryptionSyncJob = new KeysetKeyEncryptionJob(globalOperators, globalKeysetKeys, globalKeysets, globalMaxKeysetKeyId, keysetKeyWriter, keysetKeyStoreFactory.getGlobalReader().getMetadata().getLong("version"));
-            keysetEncryptionSyncJob.execute();
-            keysetKeyEncryptionSyncJob.execute();
+                    MultiScopeStoreWriter::areCollectionsEqual,
+                    encryptionTargets);
+            SiteKeysetEncryptionJob keysetEncryptionSyncJob = new SiteKeysetEncryptionJob(keysetWriter, globalOperators, globalKeysets, stores.getKeysets().getMetadata().getLong("version"));
+            KeysetKeyEncryptionJob keysetKeyEncryptionSyncJob = new KeysetKeyEncryptionJob(globalOperators, globalKeysetKeys, globalKeysets, globalMaxKeysetKeyId, keysetKeyWriter, stores.getKeysetKeys().getMetadata().getLong("version"));
+            if (syncs("keysets")) keysetEncryptionSyncJob.execute();
+            if (syncs("keyset_keys")) keysetKeyEncryptionSyncJob.execute();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.uid2.admin.job.jobsync;
+
+import com.uid2.admin.legacy.RotatingLegacyClientKeyProvider;
+import com.uid2.admin.store.StoreReloader;
+import com.uid2.shared.auth.RotatingOperatorKeyProvider;
+import com.uid2.shared.store.reader.RotatingClientSideKeypairStore;
+import com.uid2.shared.store.reader.RotatingKeyAclProvider;
+import com.uid2.shared.store.reader.RotatingKeyStore;
+import com.uid2.shared.store.reader.RotatingKeysetKeyStore;
+import com.uid2.shared.store.reader.RotatingKeysetProvider;
+import com.uid2.shared.store.reader.RotatingSiteStore;
+import com.uid2.shared.store.salt.RotatingSaltProvider;
+
+/**
+ * The global stores whose data an encrypted files sync encrypts for each site.
+ * <p>
+ * The admin service keeps these loaded for its endpoints. A sync given them reloads each one through its
+ * {@link StoreReloader}, which only downloads the data of a store whose metadata version changed, and encrypts the
+ * plaintext already in memory instead of loading every store again.
+ * </p>
+ */
+public class GlobalStores {
+    private final RotatingOperatorKeyProvider operators;
+    private final RotatingSiteStore sites;
+    private final RotatingLegacyClientKeyProvider clientKeys;
+    private final RotatingKeyStore keys;
+    private final RotatingKeyAclProvider keyAcls;
+    private final RotatingKeysetProvider keysets;
+    private final RotatingKeysetKeyStore keysetKeys;
+    private final RotatingSaltProvider salts;
+    private final RotatingClientSideKeypairStore clientSideKeypairs;
+
+    public GlobalStores(
+            RotatingOperatorKeyProvider operators,
+            RotatingSiteStore sites,
+            RotatingLegacyClientKeyProvider clientKeys,
+            RotatingKeyStore keys,
+            RotatingKeyAclProvider keyAcls,
+            RotatingKeysetProvider keysets,
+            RotatingKeysetKeyStore keysetKeys,
+            RotatingSaltProvider salts,
+            RotatingClientSideKeypairStore clientSideKeypairs) {
+        this.operators = operators;
+        this.sites = sites;
+        this.clientKeys = clientKeys;
+        this.keys = keys;
+        this.keyAcls = keyAcls;
+        this.keysets = keysets;
+        this.keysetKeys = keysetKeys;
+        this.salts = salts;
+        this.clientSideKeypairs = clientSideKeypairs;
+    }
+
+    /**
+     * Brings every store up to date with storage. Call it holding the write lock, so that no endpoint changes a store
+     * while the sync reads them.
+     */
+    public void reload(boolean enableKeysets) throws Exception {
+        StoreReloader.of("operators", operators).reload();
+        StoreReloader.of("sites", sites).reload();
+        StoreReloader.of("client_keys", clientKeys).reload();
+        StoreReloader.of("keys", keys).reload();
+        StoreReloader.of("keys_acl", keyAcls).reload();
+        if (enableKeysets) {
+            StoreReloader.of("keysets", keysets).reload();
+            StoreReloader.of("keyset_keys", keysetKeys).reload();
+        }
+        StoreReloader.of("salts", salts).reload();
+        StoreReloader.of("client_side_keypairs", clientSideKeypairs).reload();
+    }
+
+    public RotatingOperatorKeyProvider getOperators() {
+        return operators;
+    }
+
+    public RotatingSiteStore getSites() {
+        return sites;
+    }
+
+    public RotatingLegacyClientKeyProvider getClientKeys() {
+        return clientKeys;
+    }
+
+    public RotatingKeyStore getKeys() {
+        return keys;
+    }
+
+    public RotatingKeyAclProvider getKeyAcls() {
+        return keyAcls;
+    }
+
+    public RotatingKeysetProvider getKeysets() {
+        return keysets;
+    }
+
+    public RotatingKeysetKeyStore getKeysetKeys() {
+        return keysetKeys;
+    }
+
+    public RotatingSaltProvider getSalts() {
+        return salts;
+    }
+
+    public RotatingClientSideKeypairStore getClientSideKeypairs() {
+        return clientSideKeypairs;
+    }
+}
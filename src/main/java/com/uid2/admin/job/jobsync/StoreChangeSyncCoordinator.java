@@ -0,0 +1,120 @@
+package com.uid2.admin.job.jobsync;
+
+import com.uid2.admin.job.JobDispatcher;
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.store.StoreChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Turns {@link StoreChangeEvent}s into narrow encrypted files sync jobs.
+ * <p>
+ * Events are collected for {@code debounceMs} after the first one, then a single job is enqueued for the union of the
+ * changed data types. The job is narrowed down to the changed sites only if every changed data type is distributed to
+ * the site owning the entry and the public sites, i.e. client keys; other data types, such as keys shared through
+ * ACLs, are synced for every site. If a scoped sync is still queued or running, the changes are kept and retried after
+ * the next debounce window.
+ * </p>
+ * The periodic full syncs are not affected and still catch anything this misses.
+ */
+public class StoreChangeSyncCoordinator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreChangeSyncCoordinator.class);
+    private static final Set<String> SITE_SCOPED_DATA_TYPES = Set.of("client_keys");
+
+    @FunctionalInterface
+    public interface SyncJobFactory {
+        // changedSiteIds is null if every site is affected
+        Job create(Set<Integer> changedSiteIds, Set<String> dataTypes);
+    }
+
+    private final Vertx vertx;
+    private final JobDispatcher jobDispatcher;
+    private final SyncJobFactory jobFactory;
+    private final long debounceMs;
+    private final Counter enqueuedJobs;
+
+    // data type -> changed site ids, or null if every site is affected; only accessed on the event loop
+    private final Map<String, Set<Integer>> pending = new HashMap<>();
+    private boolean flushScheduled = false;
+
+    public StoreChangeSyncCoordinator(Vertx vertx, JobDispatcher jobDispatcher, SyncJobFactory jobFactory, long debounceMs) {
+        this.vertx = vertx;
+        this.jobDispatcher = jobDispatcher;
+        this.jobFactory = jobFactory;
+        this.debounceMs = debounceMs;
+        this.enqueuedJobs = Counter.builder("uid2_admin_store_change_sync_jobs_total")
+                .description("scoped sync jobs enqueued for store changes")
+                .register(Metrics.globalRegistry);
+    }
+
+    public void start() {
+        vertx.eventBus().<JsonObject>consumer(StoreChangeEvent.ADDRESS, message -> onChange(StoreChangeEvent.fromJson(message.body())));
+        LOGGER.info("Syncing encrypted files on store changes, debounced by {}ms", debounceMs);
+    }
+
+    void onChange(StoreChangeEvent event) {
+        Counter.builder("uid2_admin_store_change_events_total")
+                .tag("data_type", event.dataType())
+                .description("store change events received")
+                .register(Metrics.globalRegistry)
+                .increment();
+
+        Set<Integer> siteIds = SITE_SCOPED_DATA_TYPES.contains(event.dataType()) ? event.siteIds() : null;
+        if (pending.containsKey(event.dataType())) {
+            Set<Integer> pendingSiteIds = pending.get(event.dataType());
+            if (pendingSiteIds != null) {
+                if (siteIds == null) {
+                    pending.put(event.dataType(), null);
+                } else {
+                    pendingSiteIds.addAll(siteIds);
+                }
+            }
+        } else {
+            pending.put(event.dataType(), siteIds == null ? null : new HashSet<>(siteIds));
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            vertx.setTimer(debounceMs, id -> flush());
+        }
+    }
+
+    void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> changedSiteIds = new HashSet<>();
+        for (Set<Integer> siteIds : pending.values()) {
+            if (siteIds == null) {
+                changedSiteIds = null;
+                break;
+            }
+            changedSiteIds.addAll(siteIds);
+        }
+        if (changedSiteIds != null && changedSiteIds.isEmpty()) {
+            // nothing that is sent to a site changed
+            pending.clear();
+            return;
+        }
+
+        Set<String> dataTypes = Set.copyOf(pending.keySet());
+        if (jobDispatcher.enqueue(jobFactory.create(changedSiteIds, dataTypes))) {
+            LOGGER.info("Enqueued sync of {} for sites {}", dataTypes, changedSiteIds == null ? "all" : changedSiteIds);
+            enqueuedJobs.increment();
+            pending.clear();
+        } else {
+            scheduleFlush();
+        }
+    }
+}
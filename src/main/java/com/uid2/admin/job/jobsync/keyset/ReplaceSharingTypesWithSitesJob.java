@@ -17,7 +17,6 @@ import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.Const;
 import com.uid2.shared.auth.Keyset;
-import com.uid2.shared.cloud.CloudUtils;
 import com.uid2.shared.cloud.ICloudStorage;
 import com.uid2.shared.model.ClientType;
 import com.uid2.shared.model.Site;
@@ -47,7 +46,7 @@ public class ReplaceSharingTypesWithSitesJob extends Job {
         this.writeLock = writeLock;
         this.enableKeysets = config.getBoolean(AdminConst.enableKeysetConfigProp);
 
-        ICloudStorage cloudStorage = CloudUtils.createStorage(config.getString(Const.Config.CoreS3BucketProp), config);
+        ICloudStorage cloudStorage = new ContentDecodingCloudStorage(CloudStorageFactory.create(config));
         FileStorage fileStorage = new TmpFileStorage();
         ObjectWriter jsonWriter = JsonUtil.createJsonWriter();
         Clock clock = new InstantClock();
@@ -22,6 +22,11 @@ public abstract class Job {
         this.startedExecutingAt = startedExecutingAt;
     }
 
+    // Jobs that report progress while executing override this
+    public JobProgress getProgress() {
+        return null;
+    }
+
     abstract public String getId();
     abstract public void execute() throws Exception;
 }
@@ -8,12 +8,24 @@ public class JobInfo {
     private final boolean executing;
     private final Instant addedToQueueAt;
     private final Instant startedExecutingAt;
+    private final Boolean succeeded;
+    private final JobProgress progress;
 
     public JobInfo(Job job, boolean executing) {
+        this(job, executing, null);
+    }
+
+    private JobInfo(Job job, boolean executing, Boolean succeeded) {
         this.id = job.getId();
         this.executing = executing;
         this.addedToQueueAt = job.getAddedToQueueAt();
         this.startedExecutingAt = job.getStartedExecutingAt();
+        this.succeeded = succeeded;
+        this.progress = job.getProgress();
+    }
+
+    public static JobInfo finished(Job job, boolean succeeded) {
+        return new JobInfo(job, false, succeeded);
     }
 
     public String getId() {
@@ -32,6 +44,15 @@ public class JobInfo {
         return startedExecutingAt;
     }
 
+    // null while the job is queued or executing
+    public Boolean getSucceeded() {
+        return succeeded;
+    }
+
+    public JobProgress getProgress() {
+        return progress;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -46,11 +67,12 @@ public class JobInfo {
         return executing == jobInfo.executing
                 && id.equals(jobInfo.id)
                 && Objects.equals(addedToQueueAt, jobInfo.addedToQueueAt)
-                && Objects.equals(startedExecutingAt, jobInfo.startedExecutingAt);
+                && Objects.equals(startedExecutingAt, jobInfo.startedExecutingAt)
+                && Objects.equals(succeeded, jobInfo.succeeded);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, executing, addedToQueueAt, startedExecutingAt);
+        return Objects.hash(id, executing, addedToQueueAt, startedExecutingAt, succeeded);
     }
 }
@@ -0,0 +1,75 @@
+package com.uid2.admin.job.model;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of a long-running job, updated by the job while it executes and read concurrently through
+ * {@link JobInfo}.
+ */
+public class JobProgress {
+    private String phase = null;
+    private long phaseStartedAtNanos = 0;
+    private final Map<String, Long> phaseDurationsMs = new LinkedHashMap<>();
+    private long bucketsProcessed = 0;
+    private long bytesUploaded = 0;
+    private String result = null;
+
+    /**
+     * Ends the current phase, if any, and starts the next one.
+     *
+     * @return the duration of the phase that ended, or {@code null} if none was running
+     */
+    public synchronized Duration startPhase(String phase) {
+        Duration ended = endPhase();
+        this.phase = phase;
+        this.phaseStartedAtNanos = System.nanoTime();
+        return ended;
+    }
+
+    /**
+     * @return the duration of the phase that ended, or {@code null} if none was running
+     */
+    public synchronized Duration endPhase() {
+        if (phase == null) {
+            return null;
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - phaseStartedAtNanos);
+        phaseDurationsMs.merge(phase, duration.toMillis(), Long::sum);
+        phase = null;
+        return duration;
+    }
+
+    public synchronized void setBucketsProcessed(long bucketsProcessed) {
+        this.bucketsProcessed = bucketsProcessed;
+    }
+
+    public synchronized void addBytesUploaded(long bytes) {
+        this.bytesUploaded += bytes;
+    }
+
+    public synchronized void setResult(String result) {
+        this.result = result;
+    }
+
+    public synchronized String getPhase() {
+        return phase;
+    }
+
+    public synchronized Map<String, Long> getPhaseDurationsMs() {
+        return new LinkedHashMap<>(phaseDurationsMs);
+    }
+
+    public synchronized long getBucketsProcessed() {
+        return bucketsProcessed;
+    }
+
+    public synchronized long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    public synchronized String getResult() {
+        return result;
+    }
+}
@@ -6,26 +6,45 @@ import com.uid2.admin.legacy.RotatingLegacyClientKeyProvider;
 import com.uid2.admin.store.Clock;
 import com.uid2.admin.store.FileManager;
 import com.uid2.admin.store.FileName;
+import com.uid2.admin.store.StoreChangeEvent;
+import com.uid2.admin.store.StoreChangePublisher;
 import com.uid2.admin.store.version.VersionGenerator;
+import com.uid2.admin.store.writer.DeltaLogStoreWriter;
 import com.uid2.admin.store.writer.EncryptedScopedStoreWriter;
 import com.uid2.admin.store.writer.ScopedStoreWriter;
 import com.uid2.admin.store.writer.StoreWriter;
 import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
 import com.uid2.shared.store.scope.EncryptedScope;
 import com.uid2.shared.store.scope.StoreScope;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public class LegacyClientKeyStoreWriter implements StoreWriter<Collection<LegacyClientKey>> {
     private final ScopedStoreWriter writer;
+    private final DeltaLogStoreWriter deltaLogWriter;
     private final ObjectWriter jsonWriter;
+    private StoreChangePublisher changePublisher = StoreChangePublisher.NONE;
+    // JSON of each client key as last uploaded, with its site id. The handlers change the provider's client keys in
+    // place before uploading them, so the provider cannot tell what changed.
+    private Map<String, Integer> uploadedClientKeys = null;
 
     public LegacyClientKeyStoreWriter(RotatingLegacyClientKeyProvider provider, FileManager fileManager, ObjectWriter jsonWriter, VersionGenerator versionGenerator, Clock clock, StoreScope scope) {
+        this(provider, fileManager, jsonWriter, versionGenerator, clock, scope, 0);
+    }
+
+    // deltaCompactionInterval > 0 enables delta-log mode, writing a full snapshot after that many deltas
+    public LegacyClientKeyStoreWriter(RotatingLegacyClientKeyProvider provider, FileManager fileManager, ObjectWriter jsonWriter, VersionGenerator versionGenerator, Clock clock, StoreScope scope, int deltaCompactionInterval) {
         this.jsonWriter = jsonWriter;
         FileName dataFile = new FileName("clients", ".json");
         String dataType = "client_keys";
         writer = new ScopedStoreWriter(provider, fileManager, versionGenerator, clock, scope, dataFile, dataType);
+        deltaLogWriter = deltaCompactionInterval > 0
+                ? new DeltaLogStoreWriter(provider, fileManager, versionGenerator, clock, scope, dataFile, dataType, LegacyClientKeyStoreWriter::keyOf, deltaCompactionInterval)
+                : null;
     }
     public LegacyClientKeyStoreWriter(RotatingLegacyClientKeyProvider provider,
                                       FileManager fileManager,
@@ -38,11 +57,43 @@ public class LegacyClientKeyStoreWriter implements StoreWriter<Collection<Legacy
         FileName dataFile = new FileName("clients", ".json");
         String dataType = "client_keys";
         this.writer = new EncryptedScopedStoreWriter(provider, fileManager, versionGenerator, clock, scope, dataFile, dataType, cloudEncryptionKeyProvider, scope.getId());
+        this.deltaLogWriter = null;
+    }
+
+    static String keyOf(JsonObject clientKey) {
+        return clientKey.getString("key_hash");
+    }
+
+    // Publishes a change event with the sites of the client keys changed since the previous upload after each upload,
+    // or with every site after the first one
+    public void setChangePublisher(StoreChangePublisher changePublisher) {
+        this.changePublisher = changePublisher;
     }
 
     @Override
     public void upload(Collection<LegacyClientKey> data, JsonObject extraMeta) throws Exception {
-        writer.upload(jsonWriter.writeValueAsString(data), extraMeta);
+        final Map<String, Integer> clientKeys = changePublisher == StoreChangePublisher.NONE ? null : serialize(data);
+        final Long version;
+        if (deltaLogWriter != null) {
+            deltaLogWriter.upload(new JsonArray(jsonWriter.writeValueAsString(data)), extraMeta);
+            version = deltaLogWriter.getCommittedVersion();
+        } else {
+            writer.upload(jsonWriter.writeValueAsString(data), extraMeta);
+            version = writer.getLastCommittedVersion();
+        }
+        if (clientKeys != null) {
+            changePublisher.publish(new StoreChangeEvent("client_keys", version,
+                    uploadedClientKeys == null ? null : StoreChangeEvent.changedSiteIds(uploadedClientKeys, clientKeys)));
+            uploadedClientKeys = clientKeys;
+        }
+    }
+
+    private Map<String, Integer> serialize(Collection<LegacyClientKey> clientKeys) throws Exception {
+        final Map<String, Integer> serialized = new HashMap<>(clientKeys.size() * 2);
+        for (LegacyClientKey clientKey : clientKeys) {
+            serialized.put(jsonWriter.writeValueAsString(clientKey), clientKey.getSiteId());
+        }
+        return serialized;
     }
 
     @Override
@@ -1,5 +1,7 @@
 package com.uid2.admin.legacy;
 
+import com.uid2.admin.store.DeltaLog;
+import com.uid2.admin.store.reader.DeltaLogReader;
 import com.uid2.shared.auth.AuthorizableStore;
 import com.uid2.shared.auth.IAuthorizable;
 import com.uid2.shared.cloud.DownloadCloudStorage;
@@ -12,6 +14,8 @@ import com.uid2.shared.store.scope.EncryptedScope;
 import com.uid2.shared.store.scope.StoreScope;
 import io.vertx.core.json.JsonObject;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Comparator;
 
@@ -38,19 +42,25 @@ import java.util.Comparator;
         },
         ...
       ]
+
+  3. in delta-log mode "client_keys" additionally holds "base_version" and "deltas", see DeltaLog
 */
 public class RotatingLegacyClientKeyProvider implements ILegacyClientKeyProvider, StoreReader<Collection<LegacyClientKey>> {
     private final ScopedStoreReader<Collection<LegacyClientKey>> reader;
     private final AuthorizableStore<LegacyClientKey> authorizableStore;
+    private final DeltaLogReader deltaLogReader;
+    private volatile Collection<LegacyClientKey> deltaLogSnapshot = null;
 
     public RotatingLegacyClientKeyProvider(DownloadCloudStorage fileStreamProvider, StoreScope scope) {
         this.reader = new ScopedStoreReader<>(fileStreamProvider, scope, new LegacyClientParser(), "auth keys");
         this.authorizableStore = new AuthorizableStore<>(LegacyClientKey.class);
+        this.deltaLogReader = new DeltaLogReader(fileStreamProvider, "client_keys", LegacyClientKeyStoreWriter::keyOf);
     }
 
     public RotatingLegacyClientKeyProvider(DownloadCloudStorage fileStreamProvider, EncryptedScope scope, RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider) {
         this.reader = new EncryptedScopedStoreReader<>(fileStreamProvider, scope, new LegacyClientParser(), "auth keys", cloudEncryptionKeyProvider);
         this.authorizableStore = new AuthorizableStore<>(LegacyClientKey.class);
+        this.deltaLogReader = null;
     }
 
     @Override
@@ -65,7 +75,21 @@ public class RotatingLegacyClientKeyProvider implements ILegacyClientKeyProvider
 
     @Override
     public long loadContent(JsonObject metadata) throws Exception {
+        if (deltaLogReader != null && DeltaLog.hasDeltas(metadata, "client_keys")) {
+            String content = deltaLogReader.load(metadata).encode();
+            Collection<LegacyClientKey> keys = new LegacyClientParser()
+                    .deserialize(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)))
+                    .getData();
+            deltaLogSnapshot = keys;
+            authorizableStore.refresh(keys);
+            return keys.size();
+        }
+
+        if (deltaLogReader != null) {
+            deltaLogReader.reset();
+        }
         long version = reader.loadContent(metadata, "client_keys");
+        deltaLogSnapshot = null;
         authorizableStore.refresh(getAll());
         return version;
     }
@@ -82,7 +106,8 @@ public class RotatingLegacyClientKeyProvider implements ILegacyClientKeyProvider
 
     @Override
     public Collection<LegacyClientKey> getAll() {
-        return reader.getSnapshot();
+        Collection<LegacyClientKey> deltaLogKeys = deltaLogSnapshot;
+        return deltaLogKeys != null ? deltaLogKeys : reader.getSnapshot();
     }
 
     @Override
@@ -102,7 +127,7 @@ public class RotatingLegacyClientKeyProvider implements ILegacyClientKeyProvider
 
     @Override
     public LegacyClientKey getOldestClientKey(int siteId) {
-        return this.reader.getSnapshot().stream()
+        return this.getAll().stream()
                 .filter(k -> k.getSiteId() == siteId) // filter by site id
                 .sorted(Comparator.comparing(LegacyClientKey::getCreated)) // sort by key creation timestamp ascending
                 .findFirst() // return the oldest key
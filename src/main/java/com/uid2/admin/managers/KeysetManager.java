@@ -3,6 +3,7 @@ package com.uid2.admin.managers;
 import com.uid2.admin.secret.IKeysetKeyManager;
 import com.uid2.admin.store.reader.RotatingAdminKeysetStore;
 import com.uid2.admin.store.writer.AdminKeysetWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.shared.Const;
 import com.uid2.shared.auth.ClientKey;
 import com.uid2.shared.auth.Keyset;
@@ -137,34 +138,50 @@ public class KeysetManager {
         if(!enableKeysets) return null;
 
         this.keysetProvider.loadContent();
-        int newKeysetId = getNextKeysetId();
-        AdminKeyset newKeyset = KeysetManager.createDefaultKeyset(siteId, newKeysetId);
-        addOrReplaceKeyset(newKeyset);
+        // the id is allocated again from the reloaded keysets if the commit conflicts
+        AdminKeyset newKeyset = StoreCommitRetry.run(() -> {
+            AdminKeyset keyset = KeysetManager.createDefaultKeyset(siteId, getNextKeysetId());
+            uploadKeyset(keyset);
+            return keyset;
+        });
+        this.keysetKeyManager.addKeysetKey(newKeyset.getKeysetId());
         return newKeyset;
     }
 
     public void addOrReplaceKeyset(AdminKeyset keyset) throws Exception{
         if(!enableKeysets) return;
 
+        StoreCommitRetry.run(() -> uploadKeyset(keyset));
+        this.keysetKeyManager.addKeysetKey(keyset.getKeysetId());
+    }
+
+    private void uploadKeyset(AdminKeyset keyset) throws Exception {
         Map<Integer, AdminKeyset> collection = this.keysetProvider.getSnapshot().getAllKeysets();
 
         collection.put(keyset.getKeysetId(), keyset);
         keysetStoreWriter.upload(collection, null);
-        this.keysetKeyManager.addKeysetKey(keyset.getKeysetId());
     }
 
     public void createAdminKeysets(Map<Integer, Keyset> keysets) throws  Exception{
         this.keysetProvider.loadContent();
 
-        Map<Integer, AdminKeyset> collection = this.keysetProvider.getSnapshot().getAllKeysets();
+        final List<Integer> addedKeysetIds = StoreCommitRetry.run(() -> {
+            Map<Integer, AdminKeyset> collection = this.keysetProvider.getSnapshot().getAllKeysets();
 
-        for (Keyset keyset: keysets.values()) {
-            if(!collection.keySet().contains(keyset.getKeysetId())) {
-                collection.put(keyset.getKeysetId(),  new AdminKeyset(keyset));
-                this.keysetKeyManager.addKeysetKey(keyset.getKeysetId());
+            List<Integer> added = new ArrayList<>();
+            for (Keyset keyset: keysets.values()) {
+                if(!collection.keySet().contains(keyset.getKeysetId())) {
+                    collection.put(keyset.getKeysetId(),  new AdminKeyset(keyset));
+                    added.add(keyset.getKeysetId());
+                }
             }
-        }
 
-        keysetStoreWriter.upload(collection, null);
+            keysetStoreWriter.upload(collection, null);
+            return added;
+        });
+
+        for (int keysetId : addedKeysetIds) {
+            this.keysetKeyManager.addKeysetKey(keysetId);
+        }
     }
 }
@@ -1,6 +1,7 @@
 package com.uid2.admin.salt;
 
 import com.uid2.admin.AdminConst;
+import com.uid2.admin.secret.IBatchKeyGenerator;
 import com.uid2.shared.model.SaltEntry;
 import com.uid2.shared.secret.IKeyGenerator;
 
@@ -17,16 +18,32 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class SaltRotation {
+    public static final Duration[] DEFAULT_AGE_THRESHOLDS = new Duration[]{
+            Duration.ofDays(30),
+            Duration.ofDays(60),
+            Duration.ofDays(90),
+            Duration.ofDays(120),
+            Duration.ofDays(150),
+            Duration.ofDays(180),
+            Duration.ofDays(210),
+            Duration.ofDays(240),
+            Duration.ofDays(270),
+            Duration.ofDays(300),
+            Duration.ofDays(330),
+            Duration.ofDays(360),
+            Duration.ofDays(390)
+    };
+
     private static final long THIRTY_DAYS_IN_MS = Duration.ofDays(30).toMillis();
-    private static final double MAX_SALT_PERCENTAGE = 0.8;
+    static final double MAX_SALT_PERCENTAGE = 0.8;
     private final boolean enableV4RawUid;
 
-    private final IKeyGenerator keyGenerator;
+    private final IBatchKeyGenerator keyGenerator;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SaltRotation.class);
 
     public SaltRotation(IKeyGenerator keyGenerator, JsonObject config) {
-        this.keyGenerator = keyGenerator;
+        this.keyGenerator = IBatchKeyGenerator.of(keyGenerator);
         this.enableV4RawUid = config.getBoolean(AdminConst.ENABLE_V4_RAW_UID, false);
     }
 
@@ -61,8 +78,9 @@ public class SaltRotation {
         LOGGER.info("Salt rotation complete target_date={}", targetDate);
         logSaltAges("refreshable-salts", targetDate, refreshableSalts);
         logSaltAges("rotated-salts", targetDate, saltsToRotate);
-        logSaltAges("total-salts", targetDate, Arrays.asList(postRotationSalts));
-        logBucketFormatCount(targetDate, postRotationSalts);
+        var postRotationStats = SaltSnapshotStats.compute(postRotationSalts, targetDate);
+        logSaltAges("total-salts", targetDate, postRotationStats.getAgeInDaysCounts());
+        logBucketFormatCount(targetDate, postRotationStats);
 
         var nextSnapshot = new SaltSnapshot(
                 nextEffective,
@@ -93,7 +111,11 @@ public class SaltRotation {
     }
 
     private static int getNumSaltsToRotate(SaltEntry[] preRotationSalts, double fraction) {
-        return (int) Math.ceil(preRotationSalts.length * fraction);
+        return getNumSaltsToRotate(preRotationSalts.length, fraction);
+    }
+
+    static int getNumSaltsToRotate(int bucketCount, double fraction) {
+        return (int) Math.ceil(bucketCount * fraction);
     }
 
     private Set<SaltEntry> findRefreshableSalts(SaltEntry[] preRotationSalts, TargetDate targetDate) {
@@ -107,21 +129,41 @@ public class SaltRotation {
     private SaltEntry[] rotateSalts(SaltEntry[] oldSalts, List<SaltEntry> saltsToRotate, TargetDate targetDate) throws Exception {
         var keyIdGenerator = new KeyIdGenerator(oldSalts);
         var saltIdsToRotate = saltsToRotate.stream().map(SaltEntry::id).collect(Collectors.toSet());
+        var keyMaterial = new RotationKeyMaterial(saltIdsToRotate.size());
 
         var updatedSalts = new SaltEntry[oldSalts.length];
         for (int i = 0; i < oldSalts.length; i++) {
             var shouldRotate = saltIdsToRotate.contains(oldSalts[i].id());
-            updatedSalts[i] = updateSalt(oldSalts[i], targetDate, shouldRotate, keyIdGenerator);
+            updatedSalts[i] = updateSalt(oldSalts[i], targetDate, shouldRotate, keyIdGenerator, keyMaterial);
         }
         return updatedSalts;
     }
 
-    private SaltEntry updateSalt(SaltEntry oldBucket, TargetDate targetDate, boolean shouldRotate, KeyIdGenerator keyIdGenerator) throws Exception {
+    // Random strings for all buckets rotated into a snapshot, generated up front in one batch per kind
+    private final class RotationKeyMaterial {
+        private final Iterator<String> salts;
+        private final Iterator<String> keys;
+        private final Iterator<String> keySalts;
+
+        private RotationKeyMaterial(int rotatedCount) throws Exception {
+            if (enableV4RawUid) {
+                this.salts = Collections.emptyIterator();
+                this.keys = Arrays.asList(keyGenerator.generateRandomKeyStrings(rotatedCount, 24)).iterator();
+                this.keySalts = Arrays.asList(keyGenerator.generateRandomKeyStrings(rotatedCount, 32)).iterator();
+            } else {
+                this.salts = Arrays.asList(keyGenerator.generateRandomKeyStrings(rotatedCount, 32)).iterator();
+                this.keys = Collections.emptyIterator();
+                this.keySalts = Collections.emptyIterator();
+            }
+        }
+    }
+
+    private SaltEntry updateSalt(SaltEntry oldBucket, TargetDate targetDate, boolean shouldRotate, KeyIdGenerator keyIdGenerator, RotationKeyMaterial keyMaterial) throws Exception {
         var lastUpdated = shouldRotate ? targetDate.asEpochMs() : oldBucket.lastUpdated();
         var refreshFrom = calculateRefreshFrom(oldBucket, targetDate);
-        var currentSalt = calculateCurrentSalt(oldBucket, shouldRotate);
+        var currentSalt = calculateCurrentSalt(oldBucket, shouldRotate, keyMaterial);
         var previousSalt = calculatePreviousSalt(oldBucket, shouldRotate, targetDate);
-        var currentKeySalt = calculateCurrentKeySalt(oldBucket, shouldRotate, keyIdGenerator);
+        var currentKeySalt = calculateCurrentKeySalt(oldBucket, shouldRotate, keyIdGenerator, keyMaterial);
         var previousKeySalt = calculatePreviousKeySalt(oldBucket,shouldRotate, targetDate);
 
         return new SaltEntry(
@@ -137,16 +179,20 @@ public class SaltRotation {
     }
 
     private long calculateRefreshFrom(SaltEntry bucket, TargetDate targetDate) {
-        long multiplier = targetDate.saltAgeInDays(bucket) / 30 + 1;
-        return Instant.ofEpochMilli(bucket.lastUpdated()).truncatedTo(ChronoUnit.DAYS).toEpochMilli() + (multiplier * THIRTY_DAYS_IN_MS);
+        return calculateRefreshFrom(bucket.lastUpdated(), targetDate.saltAgeInDays(bucket));
+    }
+
+    static long calculateRefreshFrom(long lastUpdated, long ageInDays) {
+        long multiplier = ageInDays / 30 + 1;
+        return Instant.ofEpochMilli(lastUpdated).truncatedTo(ChronoUnit.DAYS).toEpochMilli() + (multiplier * THIRTY_DAYS_IN_MS);
     }
 
-    private String calculateCurrentSalt(SaltEntry bucket, boolean shouldRotate) throws Exception {
+    private String calculateCurrentSalt(SaltEntry bucket, boolean shouldRotate, RotationKeyMaterial keyMaterial) {
         if (shouldRotate) {
             if (enableV4RawUid) {
                 return null;
             } else {
-                return this.keyGenerator.generateRandomKeyString(32);
+                return keyMaterial.salts.next();
             }
         }
         return bucket.currentSalt();
@@ -162,13 +208,13 @@ public class SaltRotation {
         return null;
     }
 
-    private SaltEntry.KeyMaterial calculateCurrentKeySalt(SaltEntry bucket, boolean shouldRotate, KeyIdGenerator keyIdGenerator) throws Exception {
+    private SaltEntry.KeyMaterial calculateCurrentKeySalt(SaltEntry bucket, boolean shouldRotate, KeyIdGenerator keyIdGenerator, RotationKeyMaterial keyMaterial) throws Exception {
         if (shouldRotate) {
             if (enableV4RawUid) {
                 return new SaltEntry.KeyMaterial(
                         keyIdGenerator.getNextKeyId(),
-                        this.keyGenerator.generateRandomKeyString(24),
-                        this.keyGenerator.generateRandomKeyString(32)
+                        keyMaterial.keys.next(),
+                        keyMaterial.keySalts.next()
                 );
             } else {
                 return null;
@@ -241,7 +287,10 @@ public class SaltRotation {
             long ageInDays = targetDate.saltAgeInDays(salt);
             ages.put(ageInDays, ages.getOrDefault(ageInDays, 0L) + 1);
         }
+        logSaltAges(saltCountType, targetDate, ages);
+    }
 
+    private void logSaltAges(String saltCountType, TargetDate targetDate, Map<Long, Long> ages) {
         for (var entry : ages.entrySet()) {
             LOGGER.info("salt_count_type={} target_date={} age={} salt_count={}",
                     saltCountType,
@@ -253,20 +302,11 @@ public class SaltRotation {
     }
 
     /** Logging to monitor migration of buckets from salts (old format - v2/v3) to encryption keys (new format - v4) **/
-    private void logBucketFormatCount(TargetDate targetDate, SaltEntry[] postRotationBuckets) {
-        int totalKeys = 0, totalSalts = 0, totalPreviousKeys = 0, totalPreviousSalts = 0;
-
-        for (SaltEntry bucket : postRotationBuckets) {
-            if (bucket.currentKeySalt() != null) totalKeys++;
-            if (bucket.currentSalt() != null) totalSalts++;
-            if (bucket.previousKeySalt() != null) totalPreviousKeys++;
-            if (bucket.previousSalt() != null) totalPreviousSalts++;
-        }
-
-        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-current-key-buckets", totalKeys);
-        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-current-salt-buckets", totalSalts);
-        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-previous-key-buckets", totalPreviousKeys);
-        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-previous-salt-buckets", totalPreviousSalts);
+    private void logBucketFormatCount(TargetDate targetDate, SaltSnapshotStats postRotationStats) {
+        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-current-key-buckets", postRotationStats.getCurrentKeyBuckets());
+        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-current-salt-buckets", postRotationStats.getCurrentSaltBuckets());
+        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-previous-key-buckets", postRotationStats.getPreviousKeyBuckets());
+        LOGGER.info("UID bucket format: target_date={} bucket_format={} bucket_count={}", targetDate, "total-previous-salt-buckets", postRotationStats.getPreviousSaltBuckets());
     }
 
     @Getter
@@ -0,0 +1,137 @@
+package com.uid2.admin.salt;
+
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.job.model.JobProgress;
+import com.uid2.admin.store.writer.SaltStoreWriter;
+import com.uid2.shared.store.salt.RotatingSaltProvider;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Rotates (or rebuilds) the salts in the background on the {@link com.uid2.admin.job.JobDispatcher}.
+ * <p>
+ * Salt files are only written by this job and the dispatcher runs one job at a time, so the job does not take the
+ * service write lock and other writes are not blocked while the buckets are rotated and uploaded. Progress is
+ * reported through {@link #getProgress()}, and the duration of each phase is recorded as
+ * {@code uid2_admin_salt_rotation_phase_duration}.
+ * </p>
+ */
+public class SaltRotationJob extends Job {
+    // every job gets its own id, so that the job_id returned to the caller identifies that job's progress and outcome
+    public static final String JOB_ID_PREFIX = "salt-rotation-";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaltRotationJob.class);
+
+    public enum Operation {
+        ROTATE, REBUILD
+    }
+
+    private final String id = JOB_ID_PREFIX + UUID.randomUUID();
+    private final Operation operation;
+    private final RotatingSaltProvider saltProvider;
+    private final SaltStoreWriter storageManager;
+    private final SaltRotation saltRotation;
+    private final Duration[] ageThresholds;
+    private final double fraction;
+    private final TargetDate targetDate;
+    private final JobProgress progress = new JobProgress();
+    private String currentPhase = null;
+
+    private SaltRotationJob(Operation operation, RotatingSaltProvider saltProvider, SaltStoreWriter storageManager, SaltRotation saltRotation,
+                            Duration[] ageThresholds, double fraction, TargetDate targetDate) {
+        this.operation = operation;
+        this.saltProvider = saltProvider;
+        this.storageManager = storageManager;
+        this.saltRotation = saltRotation;
+        this.ageThresholds = ageThresholds;
+        this.fraction = fraction;
+        this.targetDate = targetDate;
+    }
+
+    public static SaltRotationJob rotate(RotatingSaltProvider saltProvider, SaltStoreWriter storageManager, SaltRotation saltRotation,
+                                         Duration[] ageThresholds, double fraction, TargetDate targetDate) {
+        return new SaltRotationJob(Operation.ROTATE, saltProvider, storageManager, saltRotation, ageThresholds, fraction, targetDate);
+    }
+
+    public static SaltRotationJob rebuild(RotatingSaltProvider saltProvider, SaltStoreWriter storageManager, SaltRotation saltRotation) {
+        return new SaltRotationJob(Operation.REBUILD, saltProvider, storageManager, saltRotation, null, 0, null);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    public static boolean isSaltRotationJob(String jobId) {
+        return jobId.startsWith(JOB_ID_PREFIX);
+    }
+
+    @Override
+    public JobProgress getProgress() {
+        return progress;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        try {
+            startPhase("load");
+            // force refresh
+            saltProvider.loadContent();
+
+            startPhase("archive");
+            // mark all the referenced files as ready to archive
+            storageManager.archiveSaltLocations();
+
+            startPhase("rotate");
+            final SaltRotation.Result result;
+            if (operation == Operation.REBUILD) {
+                Instant now = Instant.now();
+                // Unlike in regular salt rotation, this should be based on the currently effective snapshot.
+                // The latest snapshot may be in the future, and we may have changes that shouldn't be activated yet.
+                RotatingSaltProvider.SaltSnapshot effectiveSnapshot = saltProvider.getSnapshot(now);
+                result = saltRotation.rotateSaltsZero(effectiveSnapshot, TargetDate.now(), now);
+            } else {
+                RotatingSaltProvider.SaltSnapshot lastSnapshot = saltProvider.getSnapshots().getLast();
+                result = saltRotation.rotateSalts(lastSnapshot, ageThresholds, fraction, targetDate);
+            }
+            if (!result.hasSnapshot()) {
+                LOGGER.info("Salt {} produced no snapshot: {}", operation, result.getReason());
+                progress.setResult(result.getReason());
+                return;
+            }
+            progress.setBucketsProcessed(result.getSnapshot().getAllRotatingSalts().length);
+
+            startPhase("upload");
+            long uploadedBefore = storageManager.getUploadedBytes();
+            storageManager.upload(result.getSnapshot());
+            progress.addBytesUploaded(storageManager.getUploadedBytes() - uploadedBefore);
+            progress.setResult("snapshot effective " + result.getSnapshot().getEffective());
+        } finally {
+            recordPhase(currentPhase, progress.endPhase());
+            currentPhase = null;
+        }
+    }
+
+    private void startPhase(String phase) {
+        recordPhase(currentPhase, progress.startPhase(phase));
+        currentPhase = phase;
+    }
+
+    private void recordPhase(String phase, Duration duration) {
+        if (phase == null || duration == null) {
+            return;
+        }
+        Timer.builder("uid2_admin_salt_rotation_phase_duration")
+                .tag("operation", operation.name().toLowerCase())
+                .tag("phase", phase)
+                .description("duration of each phase of a salt rotation job")
+                .register(Metrics.globalRegistry)
+                .record(duration);
+    }
+}
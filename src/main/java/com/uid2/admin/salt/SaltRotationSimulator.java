@@ -0,0 +1,214 @@
+package com.uid2.admin.salt;
+
+import com.uid2.shared.model.SaltEntry;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Replays daily {@link SaltRotation#rotateSalts} runs to forecast how a rotation {@code fraction} and set of age
+ * thresholds shape the bucket age distribution over time.
+ * <p>
+ * Only the fields that drive bucket selection are simulated: each bucket is a {@code lastUpdated} and
+ * {@code refreshFrom} timestamp in primitive arrays, and no salts or keys are generated. Selection follows
+ * {@link SaltRotation}: buckets whose refreshFrom is the target date are candidates, picked oldest age window first,
+ * at most 80% of the day's quota from a single window, at random within a window.
+ * </p>
+ * Run from the command line with {@code fraction days [bucket_count]}, e.g. {@code 0.002740 365 1000000}.
+ */
+public class SaltRotationSimulator {
+    public static final long OVER_AGE_DAYS = 390;
+    private static final long DAY_IN_MS = Duration.ofDays(1).toMillis();
+    private static final int HISTOGRAM_BAND_DAYS = 30;
+
+    private final double fraction;
+    private final long[] thresholdDays;
+    private final Random random;
+
+    public SaltRotationSimulator(double fraction, Duration[] ageThresholds, long seed) {
+        this.fraction = fraction;
+        this.thresholdDays = Arrays.stream(ageThresholds).mapToLong(Duration::toDays).sorted().toArray();
+        this.random = new Random(seed);
+    }
+
+    public static final class Buckets {
+        private final long[] lastUpdated;
+        private final long[] refreshFrom;
+
+        public Buckets(long[] lastUpdated, long[] refreshFrom) {
+            this.lastUpdated = lastUpdated;
+            this.refreshFrom = refreshFrom;
+        }
+
+        public static Buckets of(SaltEntry[] salts) {
+            long[] lastUpdated = new long[salts.length];
+            long[] refreshFrom = new long[salts.length];
+            for (int i = 0; i < salts.length; i++) {
+                lastUpdated[i] = salts[i].lastUpdated();
+                refreshFrom[i] = salts[i].refreshFrom() == null ? Long.MIN_VALUE : salts[i].refreshFrom();
+            }
+            return new Buckets(lastUpdated, refreshFrom);
+        }
+
+        /**
+         * Buckets last updated evenly across the {@code maxAgeDays} days before {@code start}, with refreshFrom as
+         * a rotation on {@code start} would set it.
+         */
+        public static Buckets synthetic(int count, TargetDate start, int maxAgeDays) {
+            long[] lastUpdated = new long[count];
+            long[] refreshFrom = new long[count];
+            for (int i = 0; i < count; i++) {
+                long ageInDays = 1 + (long) i * maxAgeDays / Math.max(count, 1);
+                lastUpdated[i] = start.asEpochMs() - ageInDays * DAY_IN_MS;
+                refreshFrom[i] = SaltRotation.calculateRefreshFrom(lastUpdated[i], ageInDays);
+            }
+            return new Buckets(lastUpdated, refreshFrom);
+        }
+
+        public int size() {
+            return lastUpdated.length;
+        }
+    }
+
+    public record DayResult(LocalDate date, int rotated, long overAgeCount, long maxAgeInDays, long[] ageBandCounts) {
+        public JsonObject toJson() {
+            return new JsonObject()
+                    .put("date", date.toString())
+                    .put("rotated", rotated)
+                    .put("over_" + OVER_AGE_DAYS + "_days", overAgeCount)
+                    .put("max_age_in_days", maxAgeInDays)
+                    .put("age_band_counts", new JsonArray(Arrays.stream(ageBandCounts).boxed().toList()));
+        }
+    }
+
+    public record Result(int bucketCount, DayResult[] days) {
+        public JsonObject toJson() {
+            JsonArray jsonDays = new JsonArray();
+            for (DayResult day : days) {
+                jsonDays.add(day.toJson());
+            }
+            return new JsonObject()
+                    .put("bucket_count", bucketCount)
+                    .put("age_band_days", HISTOGRAM_BAND_DAYS)
+                    .put("days", jsonDays);
+        }
+    }
+
+    /**
+     * Rotates the buckets once a day for {@code days} days, starting on {@code start}. The buckets are modified.
+     */
+    public Result simulate(Buckets buckets, TargetDate start, int days) {
+        DayResult[] results = new DayResult[days];
+        int[] refreshable = new int[buckets.size()];
+        boolean[] rotate = new boolean[buckets.size()];
+        TargetDate targetDate = start;
+        for (int day = 0; day < days; day++) {
+            int rotated = rotateOnce(buckets, targetDate, refreshable, rotate);
+            results[day] = summarize(buckets, targetDate, rotated);
+            targetDate = targetDate.plusDays(1);
+        }
+        return new Result(buckets.size(), results);
+    }
+
+    private int rotateOnce(Buckets buckets, TargetDate targetDate, int[] refreshable, boolean[] rotate) {
+        long target = targetDate.asEpochMs();
+        int refreshableCount = 0;
+        for (int i = 0; i < buckets.size(); i++) {
+            if (Math.floorDiv(buckets.refreshFrom[i], DAY_IN_MS) * DAY_IN_MS == target) {
+                refreshable[refreshableCount++] = i;
+            }
+        }
+
+        int quota = SaltRotation.getNumSaltsToRotate(buckets.size(), fraction);
+        int maxPerWindow = (int) (quota * SaltRotation.MAX_SALT_PERCENTAGE);
+        int picked = 0;
+        Arrays.fill(rotate, false);
+        long minLastUpdated = 0;
+        // oldest window first, as thresholds further in the past come first
+        for (int t = thresholdDays.length - 1; t >= 0 && picked < quota; t--) {
+            long maxLastUpdated = target - thresholdDays[t] * DAY_IN_MS;
+            picked += pickInWindow(buckets, refreshable, refreshableCount, Math.min(quota - picked, maxPerWindow), minLastUpdated, maxLastUpdated, rotate);
+            minLastUpdated = maxLastUpdated;
+        }
+        if (picked == 0) {
+            // no snapshot is produced, so nothing changes
+            return 0;
+        }
+
+        for (int i = 0; i < buckets.size(); i++) {
+            long ageInDays = ageInDays(buckets.lastUpdated[i], target);
+            buckets.refreshFrom[i] = SaltRotation.calculateRefreshFrom(buckets.lastUpdated[i], ageInDays);
+            if (rotate[i]) {
+                buckets.lastUpdated[i] = target;
+            }
+        }
+        return picked;
+    }
+
+    private int pickInWindow(Buckets buckets, int[] refreshable, int refreshableCount, int max,
+                             long minLastUpdated, long maxLastUpdated, boolean[] rotate) {
+        int[] candidates = new int[refreshableCount];
+        int count = 0;
+        for (int i = 0; i < refreshableCount; i++) {
+            long lastUpdated = buckets.lastUpdated[refreshable[i]];
+            if (minLastUpdated <= lastUpdated && lastUpdated < maxLastUpdated) {
+                candidates[count++] = refreshable[i];
+            }
+        }
+        int picked = Math.min(count, max);
+        for (int i = 0; i < picked; i++) {
+            // partial Fisher-Yates shuffle, same distribution as shuffling and taking the first max
+            int j = i + random.nextInt(count - i);
+            int candidate = candidates[j];
+            candidates[j] = candidates[i];
+            rotate[candidate] = true;
+        }
+        return picked;
+    }
+
+    private static DayResult summarize(Buckets buckets, TargetDate targetDate, int rotated) {
+        long target = targetDate.asEpochMs();
+        long overAge = 0;
+        long maxAge = 0;
+        long[] bands = new long[(int) (OVER_AGE_DAYS / HISTOGRAM_BAND_DAYS) + 1];
+        for (int i = 0; i < buckets.size(); i++) {
+            long age = ageInDays(buckets.lastUpdated[i], target);
+            if (age > OVER_AGE_DAYS) overAge++;
+            if (age > maxAge) maxAge = age;
+            bands[(int) Math.min(Math.max(age, 0) / HISTOGRAM_BAND_DAYS, bands.length - 1)]++;
+        }
+        return new DayResult(LocalDate.ofInstant(targetDate.asInstant(), ZoneOffset.UTC), rotated, overAge, maxAge, bands);
+    }
+
+    // same as TargetDate.saltAgeInDays
+    private static long ageInDays(long lastUpdated, long target) {
+        return (target - Math.floorDiv(lastUpdated, DAY_IN_MS) * DAY_IN_MS) / DAY_IN_MS;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: SaltRotationSimulator <fraction> <days> [bucket_count]");
+            System.exit(1);
+        }
+        double fraction = Double.parseDouble(args[0]);
+        int days = Integer.parseInt(args[1]);
+        int bucketCount = args.length > 2 ? Integer.parseInt(args[2]) : 1_048_576;
+
+        TargetDate start = TargetDate.now().plusDays(1);
+        long began = System.nanoTime();
+        Result result = new SaltRotationSimulator(fraction, SaltRotation.DEFAULT_AGE_THRESHOLDS, 0)
+                .simulate(Buckets.synthetic(bucketCount, start, (int) OVER_AGE_DAYS), start, days);
+        long elapsedMs = (System.nanoTime() - began) / 1_000_000;
+
+        System.out.printf("%-12s %8s %12s %8s  age bands of %d days%n", "date", "rotated", "over " + OVER_AGE_DAYS + "d", "max age", HISTOGRAM_BAND_DAYS);
+        for (DayResult day : result.days()) {
+            System.out.printf("%-12s %8d %12d %8d  %s%n", day.date(), day.rotated(), day.overAgeCount(), day.maxAgeInDays(), Arrays.toString(day.ageBandCounts()));
+        }
+        System.out.printf("simulated %d buckets over %d days in %d ms%n", bucketCount, days, elapsedMs);
+    }
+}
@@ -0,0 +1,132 @@
+package com.uid2.admin.salt;
+
+import com.uid2.shared.model.SaltEntry;
+import io.vertx.core.json.JsonObject;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Summary of the buckets of a salt snapshot, computed in a single pass.
+ */
+public final class SaltSnapshotStats {
+    private static final long DAY_IN_MS = Duration.ofDays(1).toMillis();
+
+    private final int bucketCount;
+    private final Long minLastUpdated;
+    private final Long maxLastUpdated;
+    private final SortedMap<Long, Long> ageInDaysCounts;
+    private final int currentKeyBuckets;
+    private final int currentSaltBuckets;
+    private final int previousKeyBuckets;
+    private final int previousSaltBuckets;
+    private final SortedMap<String, Long> refreshableByDateCounts;
+
+    private SaltSnapshotStats(int bucketCount, Long minLastUpdated, Long maxLastUpdated, SortedMap<Long, Long> ageInDaysCounts,
+                              int currentKeyBuckets, int currentSaltBuckets, int previousKeyBuckets, int previousSaltBuckets,
+                              SortedMap<String, Long> refreshableByDateCounts) {
+        this.bucketCount = bucketCount;
+        this.minLastUpdated = minLastUpdated;
+        this.maxLastUpdated = maxLastUpdated;
+        this.ageInDaysCounts = Collections.unmodifiableSortedMap(ageInDaysCounts);
+        this.currentKeyBuckets = currentKeyBuckets;
+        this.currentSaltBuckets = currentSaltBuckets;
+        this.previousKeyBuckets = previousKeyBuckets;
+        this.previousSaltBuckets = previousSaltBuckets;
+        this.refreshableByDateCounts = Collections.unmodifiableSortedMap(refreshableByDateCounts);
+    }
+
+    /**
+     * @param ageReference date the salt ages are relative to, see {@link TargetDate#saltAgeInDays}
+     */
+    public static SaltSnapshotStats compute(SaltEntry[] buckets, TargetDate ageReference) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int currentKeys = 0, currentSalts = 0, previousKeys = 0, previousSalts = 0;
+        Map<Long, Long> ages = new HashMap<>();
+        Map<Long, Long> refreshableByDay = new HashMap<>();
+
+        for (SaltEntry bucket : buckets) {
+            long lastUpdated = bucket.lastUpdated();
+            if (lastUpdated < min) min = lastUpdated;
+            if (lastUpdated > max) max = lastUpdated;
+
+            ages.merge(ageReference.saltAgeInDays(bucket), 1L, Long::sum);
+            if (bucket.refreshFrom() != null) {
+                refreshableByDay.merge(Math.floorDiv(bucket.refreshFrom(), DAY_IN_MS), 1L, Long::sum);
+            }
+
+            if (bucket.currentKeySalt() != null) currentKeys++;
+            if (bucket.currentSalt() != null) currentSalts++;
+            if (bucket.previousKeySalt() != null) previousKeys++;
+            if (bucket.previousSalt() != null) previousSalts++;
+        }
+
+        SortedMap<String, Long> refreshableByDate = new TreeMap<>();
+        refreshableByDay.forEach((day, count) ->
+                refreshableByDate.put(Instant.ofEpochMilli(day * DAY_IN_MS).atZone(ZoneOffset.UTC).toLocalDate().toString(), count));
+
+        boolean empty = buckets.length == 0;
+        return new SaltSnapshotStats(buckets.length, empty ? null : min, empty ? null : max, new TreeMap<>(ages),
+                currentKeys, currentSalts, previousKeys, previousSalts, refreshableByDate);
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public Long getMinLastUpdated() {
+        return minLastUpdated;
+    }
+
+    public Long getMaxLastUpdated() {
+        return maxLastUpdated;
+    }
+
+    // salt age in days to number of buckets
+    public SortedMap<Long, Long> getAgeInDaysCounts() {
+        return ageInDaysCounts;
+    }
+
+    public int getCurrentKeyBuckets() {
+        return currentKeyBuckets;
+    }
+
+    public int getCurrentSaltBuckets() {
+        return currentSaltBuckets;
+    }
+
+    public int getPreviousKeyBuckets() {
+        return previousKeyBuckets;
+    }
+
+    public int getPreviousSaltBuckets() {
+        return previousSaltBuckets;
+    }
+
+    // refreshFrom date (yyyy-MM-dd) to number of buckets
+    public SortedMap<String, Long> getRefreshableByDateCounts() {
+        return refreshableByDateCounts;
+    }
+
+    public JsonObject toJson() {
+        JsonObject ages = new JsonObject();
+        ageInDaysCounts.forEach((age, count) -> ages.put(age.toString(), count));
+        JsonObject refreshable = new JsonObject();
+        refreshableByDateCounts.forEach(refreshable::put);
+        return new JsonObject()
+                .put("age_in_days_counts", ages)
+                .put("bucket_formats", new JsonObject()
+                        .put("current_key", currentKeyBuckets)
+                        .put("current_salt", currentSaltBuckets)
+                        .put("previous_key", previousKeyBuckets)
+                        .put("previous_salt", previousSaltBuckets))
+                .put("refreshable_by_date_counts", refreshable);
+    }
+}
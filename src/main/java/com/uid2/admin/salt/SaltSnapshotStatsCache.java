@@ -0,0 +1,86 @@
+package com.uid2.admin.salt;
+
+import com.uid2.shared.store.salt.RotatingSaltProvider.SaltSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * {@link SaltSnapshotStats} of the current salt snapshots, computed once per snapshot.
+ * <p>
+ * Snapshots are immutable once published, so stats are cached by effective timestamp. Ages are relative to the
+ * snapshot's effective date, which keeps the cached values stable. The stats of the currently effective snapshot are
+ * exported as {@code uid2_admin_salt_snapshot_*} gauges.
+ * </p>
+ * The gauges read the snapshots from the given source, e.g. the salt provider, whenever they are collected, so they
+ * follow every load or rotation of the snapshots and a snapshot becoming effective without anything calling into
+ * the cache. The stats of a new snapshot are computed on the first collection that sees it.
+ */
+public class SaltSnapshotStatsCache {
+    private final Map<Long, SaltSnapshotStats> statsByEffective = new ConcurrentHashMap<>();
+    private final Supplier<List<SaltSnapshot>> snapshotSource;
+    // the snapshot list the cache was last pruned for
+    private List<SaltSnapshot> prunedFor = null;
+
+    public SaltSnapshotStatsCache(Supplier<List<SaltSnapshot>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+        registerGauge("uid2_admin_salt_snapshot_buckets", "format", "current_key", SaltSnapshotStats::getCurrentKeyBuckets);
+        registerGauge("uid2_admin_salt_snapshot_buckets", "format", "current_salt", SaltSnapshotStats::getCurrentSaltBuckets);
+        registerGauge("uid2_admin_salt_snapshot_buckets", "format", "previous_key", SaltSnapshotStats::getPreviousKeyBuckets);
+        registerGauge("uid2_admin_salt_snapshot_buckets", "format", "previous_salt", SaltSnapshotStats::getPreviousSaltBuckets);
+        registerGauge("uid2_admin_salt_snapshot_last_updated_ms", "bound", "min", s -> s.getMinLastUpdated() == null ? Double.NaN : s.getMinLastUpdated());
+        registerGauge("uid2_admin_salt_snapshot_last_updated_ms", "bound", "max", s -> s.getMaxLastUpdated() == null ? Double.NaN : s.getMaxLastUpdated());
+    }
+
+    public SaltSnapshotStats get(SaltSnapshot snapshot) {
+        return statsByEffective.computeIfAbsent(snapshot.getEffective().toEpochMilli(), effective ->
+                SaltSnapshotStats.compute(snapshot.getAllRotatingSalts(), new TargetDate(LocalDate.ofInstant(snapshot.getEffective(), ZoneOffset.UTC))));
+    }
+
+    /**
+     * Drops the stats of snapshots the source no longer lists, e.g. after a reload.
+     *
+     * @return the stats of the snapshot effective at {@code now}, or {@code null} if no snapshot is effective yet
+     */
+    public SaltSnapshotStats getEffective(Instant now) {
+        List<SaltSnapshot> snapshots = snapshotSource.get();
+        if (snapshots == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (snapshots != prunedFor) {
+                Set<Long> current = snapshots.stream().map(s -> s.getEffective().toEpochMilli()).collect(Collectors.toSet());
+                statsByEffective.keySet().retainAll(current);
+                prunedFor = snapshots;
+            }
+        }
+
+        SaltSnapshot effective = null;
+        for (SaltSnapshot snapshot : snapshots) {
+            if (!snapshot.getEffective().isAfter(now) && (effective == null || snapshot.getEffective().isAfter(effective.getEffective()))) {
+                effective = snapshot;
+            }
+        }
+        return effective == null ? null : get(effective);
+    }
+
+    private void registerGauge(String name, String tagKey, String tagValue, ToDoubleFunction<SaltSnapshotStats> value) {
+        Gauge.builder(name, () -> {
+                    SaltSnapshotStats stats = getEffective(Instant.now());
+                    return stats == null ? Double.NaN : value.applyAsDouble(stats);
+                })
+                .tag(tagKey, tagValue)
+                .description("stats of the currently effective salt snapshot")
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -0,0 +1,98 @@
+package com.uid2.admin.secret;
+
+import com.uid2.shared.secret.SecureKeyGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.Supplier;
+
+/**
+ * {@link SecureKeyGenerator} that generates key material in bulk.
+ * <p>
+ * Each thread gets its own DRBG instance, seeded from the system entropy source when the thread first uses it, so
+ * concurrent callers never contend on a shared {@link SecureRandom}. A batch of keys is drawn with a single
+ * {@code nextBytes} call into one preallocated buffer, and each key is Base64 encoded through one reused key and
+ * output buffer. The buffers are zeroed before returning.
+ * </p>
+ */
+public class BatchKeyGenerator extends SecureKeyGenerator implements IBatchKeyGenerator {
+    private static final int DRBG_STRENGTH = 256;
+
+    private final ThreadLocal<SecureRandom> random;
+
+    public BatchKeyGenerator() {
+        this(BatchKeyGenerator::newDrbg);
+    }
+
+    // For tests, to draw from a seeded generator
+    BatchKeyGenerator(Supplier<SecureRandom> randomFactory) {
+        this.random = ThreadLocal.withInitial(randomFactory);
+    }
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(DRBG_STRENGTH, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG is not available", e);
+        }
+    }
+
+    @Override
+    public byte[] generateRandomKey(int keyLen) {
+        final byte[] key = new byte[keyLen];
+        random.get().nextBytes(key);
+        return key;
+    }
+
+    @Override
+    public String generateRandomKeyString(int keyLen) {
+        return generateRandomKeyStrings(1, keyLen)[0];
+    }
+
+    @Override
+    public byte[][] generateRandomKeys(int count, int keyLen) {
+        final byte[] material = nextMaterial(count, keyLen);
+        final byte[][] keys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = Arrays.copyOfRange(material, i * keyLen, (i + 1) * keyLen);
+        }
+        Arrays.fill(material, (byte) 0);
+        return keys;
+    }
+
+    @Override
+    public String[] generateRandomKeyStrings(int count, int keyLen) {
+        final byte[] material = nextMaterial(count, keyLen);
+        final Base64.Encoder encoder = Base64.getEncoder();
+        final byte[] key = new byte[keyLen];
+        final byte[] encoded = new byte[encodedLength(keyLen)];
+        final String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(material, i * keyLen, key, 0, keyLen);
+            encoder.encode(key, encoded);
+            keys[i] = new String(encoded, StandardCharsets.ISO_8859_1);
+        }
+        Arrays.fill(material, (byte) 0);
+        Arrays.fill(key, (byte) 0);
+        Arrays.fill(encoded, (byte) 0);
+        return keys;
+    }
+
+    private byte[] nextMaterial(int count, int keyLen) {
+        if (count < 0 || keyLen < 0) {
+            throw new IllegalArgumentException("count and keyLen must not be negative");
+        }
+        final byte[] material = new byte[Math.multiplyExact(count, keyLen)];
+        random.get().nextBytes(material);
+        return material;
+    }
+
+    static int encodedLength(int len) {
+        return (len + 2) / 3 * 4;
+    }
+}
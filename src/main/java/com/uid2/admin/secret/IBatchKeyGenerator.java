@@ -0,0 +1,38 @@
+package com.uid2.admin.secret;
+
+import com.uid2.shared.secret.IKeyGenerator;
+
+public interface IBatchKeyGenerator {
+    byte[][] generateRandomKeys(int count, int keyLen) throws Exception;
+
+    // Base64 encoded, same format as IKeyGenerator.generateRandomKeyString
+    String[] generateRandomKeyStrings(int count, int keyLen) throws Exception;
+
+    /**
+     * @return the generator itself if it supports batches, otherwise an adapter requesting one key at a time
+     */
+    static IBatchKeyGenerator of(IKeyGenerator keyGenerator) {
+        if (keyGenerator instanceof IBatchKeyGenerator batchKeyGenerator) {
+            return batchKeyGenerator;
+        }
+        return new IBatchKeyGenerator() {
+            @Override
+            public byte[][] generateRandomKeys(int count, int keyLen) throws Exception {
+                final byte[][] keys = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    keys[i] = keyGenerator.generateRandomKey(keyLen);
+                }
+                return keys;
+            }
+
+            @Override
+            public String[] generateRandomKeyStrings(int count, int keyLen) throws Exception {
+                final String[] keys = new String[count];
+                for (int i = 0; i < count; i++) {
+                    keys[i] = keyGenerator.generateRandomKeyString(keyLen);
+                }
+                return keys;
+            }
+        };
+    }
+}
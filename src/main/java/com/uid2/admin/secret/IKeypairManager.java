@@ -2,7 +2,11 @@ package com.uid2.admin.secret;
 
 import com.uid2.shared.model.ClientSideKeypair;
 
+import java.util.List;
+
 public interface IKeypairManager {
     ClientSideKeypair createAndSaveSiteKeypair(int siteId, String contact, boolean disabled, String name) throws Exception;
+    // Creates all keypairs and persists them with a single store upload
+    List<ClientSideKeypair> createAndSaveSiteKeypairs(int siteId, String contact, boolean disabled, String name, int count) throws Exception;
     Iterable<ClientSideKeypair> getKeypairsBySite(int siteId);
 }
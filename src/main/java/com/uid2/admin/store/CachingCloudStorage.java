@@ -0,0 +1,191 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Cloud storage that serves unchanged store data files from a {@link StoreFileCache} instead of downloading them.
+ * <p>
+ * Metadata files are always downloaded. Their {@code version} is remembered for every data file location they
+ * reference, and a later download of one of those locations is served from the cache when a copy of that version is
+ * present, or downloaded once and cached otherwise. Files not referenced by any metadata seen so far are passed
+ * through. Uploads and deletes drop the cached copies of the file.
+ * </p>
+ * The cache is plaintext on disk and survives restarts, so only stores without secrets are cached, see
+ * {@link #metadataPathsToCache}.
+ */
+public class CachingCloudStorage implements TaggableCloudStorage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingCloudStorage.class);
+
+    private final TaggableCloudStorage delegate;
+    private final StoreFileCache cache;
+    private final Set<String> metadataPaths;
+    private final Map<String, Long> locationVersions = new ConcurrentHashMap<>();
+
+    // stores holding keys, salts, client or operator secrets or partner credentials are always downloaded
+    private static final Set<String> CACHEABLE_METADATA_PATH_PROPS = Set.of(
+            "sites_metadata_path",
+            "services_metadata_path",
+            "service_links_metadata_path",
+            "enclaves_metadata_path",
+            "keys_acl_metadata_path");
+
+    public CachingCloudStorage(TaggableCloudStorage delegate, StoreFileCache cache, Set<String> metadataPaths) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.metadataPaths = metadataPaths;
+    }
+
+    /**
+     * @return the metadata paths of the stores without secrets, from their {@code <data type>_metadata_path} config
+     */
+    public static Set<String> metadataPathsToCache(JsonObject config) {
+        return CACHEABLE_METADATA_PATH_PROPS.stream()
+                .map(config::getString)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public InputStream download(String cloudPath) throws CloudStorageException {
+        if (metadataPaths.contains(cloudPath)) {
+            return downloadMetadata(cloudPath);
+        }
+        Long version = locationVersions.get(cloudPath);
+        if (version == null) {
+            return delegate.download(cloudPath);
+        }
+
+        try {
+            InputStream cached = cache.get(cloudPath, version);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached copy of {}", delegate.mask(cloudPath), e);
+        }
+        try (InputStream in = delegate.download(cloudPath)) {
+            return cache.put(cloudPath, version, in);
+        } catch (IOException e) {
+            throw new CloudStorageException("Could not cache " + delegate.mask(cloudPath), e);
+        }
+    }
+
+    private InputStream downloadMetadata(String cloudPath) throws CloudStorageException {
+        byte[] content;
+        try (InputStream in = ContentEncoding.decode(delegate.download(cloudPath))) {
+            content = in.readAllBytes();
+        } catch (IOException e) {
+            throw new CloudStorageException("Could not read " + delegate.mask(cloudPath), e);
+        }
+        try {
+            recordLocations(new JsonObject(new String(content, StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not index locations of metadata {}", delegate.mask(cloudPath), e);
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    private void recordLocations(JsonObject metadata) {
+        Long version = metadata.getLong("version");
+        if (version == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> field : metadata) {
+            if (field.getValue() instanceof JsonObject entry) {
+                recordLocation(entry, version);
+            } else if (field.getValue() instanceof JsonArray entries) {
+                // e.g. the salt snapshots
+                for (Object element : entries) {
+                    if (element instanceof JsonObject entry) {
+                        recordLocation(entry, version);
+                    }
+                }
+            }
+        }
+    }
+
+    private void recordLocation(JsonObject entry, long version) {
+        if (entry.getValue("location") instanceof String location) {
+            locationVersions.put(location, version);
+        }
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath) throws CloudStorageException {
+        invalidate(cloudPath);
+        delegate.upload(localPath, cloudPath);
+    }
+
+    @Override
+    public void upload(InputStream input, String cloudPath) throws CloudStorageException {
+        invalidate(cloudPath);
+        delegate.upload(input, cloudPath);
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        invalidate(cloudPath);
+        delegate.upload(localPath, cloudPath, tags);
+    }
+
+    @Override
+    public void setTags(String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        delegate.setTags(cloudPath, tags);
+    }
+
+    @Override
+    public void delete(String cloudPath) throws CloudStorageException {
+        invalidate(cloudPath);
+        delegate.delete(cloudPath);
+    }
+
+    @Override
+    public void delete(Collection<String> cloudPaths) throws CloudStorageException {
+        cloudPaths.forEach(this::invalidate);
+        delegate.delete(cloudPaths);
+    }
+
+    @Override
+    public List<String> list(String prefix) throws CloudStorageException {
+        return delegate.list(prefix);
+    }
+
+    @Override
+    public URL preSignUrl(String cloudPath) throws CloudStorageException {
+        return delegate.preSignUrl(cloudPath);
+    }
+
+    @Override
+    public void setPreSignedUrlExpiry(long expiry) {
+        delegate.setPreSignedUrlExpiry(expiry);
+    }
+
+    @Override
+    public String mask(String cloudPath) {
+        return delegate.mask(cloudPath);
+    }
+
+    // the remembered version of a rewritten location is stale until the metadata referencing it is read again
+    private void invalidate(String cloudPath) {
+        locationVersions.remove(cloudPath);
+        cache.invalidate(cloudPath);
+    }
+}
@@ -0,0 +1,107 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.model.ClientSideKeypair;
+import com.uid2.shared.store.ClientSideKeypairStoreSnapshot;
+import com.uid2.shared.store.reader.RotatingClientSideKeypairStore;
+import io.vertx.core.json.JsonObject;
+
+import java.util.*;
+
+import static com.uid2.admin.store.writer.ClientSideKeypairStoreWriter.toJsonWithoutPrivateKey;
+
+/**
+ * Copy-on-write index over a {@link RotatingClientSideKeypairStore}.
+ * <p>
+ * Every time the store publishes a new snapshot, a new immutable {@link View} is built holding the subscription id
+ * and site id indexes and the pre-encoded public (no private key) JSON of each keypair, which is read-only and shared
+ * by all readers. Readers never lock and never re-encode or copy keys; a view is only rebuilt once per snapshot.
+ * </p>
+ */
+public class ClientSideKeypairRegistry {
+    private final RotatingClientSideKeypairStore keypairStore;
+    private volatile View view = new View(null);
+
+    public ClientSideKeypairRegistry(RotatingClientSideKeypairStore keypairStore) {
+        this.keypairStore = keypairStore;
+    }
+
+    public View current() {
+        ClientSideKeypairStoreSnapshot snapshot = keypairStore.getSnapshot();
+        View current = view;
+        if (current.snapshot != snapshot) {
+            current = new View(snapshot);
+            view = current;
+        }
+        return current;
+    }
+
+    public static final class View {
+        private final ClientSideKeypairStoreSnapshot snapshot;
+        private final List<ClientSideKeypair> all;
+        private final Map<String, ClientSideKeypair> bySubscriptionId;
+        private final Map<Integer, List<ClientSideKeypair>> bySiteId;
+        private final Map<String, JsonObject> publicJson;
+
+        private View(ClientSideKeypairStoreSnapshot snapshot) {
+            this.snapshot = snapshot;
+
+            List<ClientSideKeypair> all = new ArrayList<>();
+            Map<String, ClientSideKeypair> bySubscriptionId = new HashMap<>();
+            Map<Integer, List<ClientSideKeypair>> bySiteId = new HashMap<>();
+            Map<String, JsonObject> publicJson = new HashMap<>();
+            if (snapshot != null) {
+                for (ClientSideKeypair keypair : snapshot.getAll()) {
+                    all.add(keypair);
+                    bySubscriptionId.put(keypair.getSubscriptionId(), keypair);
+                    bySiteId.computeIfAbsent(keypair.getSiteId(), id -> new ArrayList<>()).add(keypair);
+                    publicJson.put(keypair.getSubscriptionId(), readOnly(toJsonWithoutPrivateKey(keypair)));
+                }
+            }
+            bySiteId.replaceAll((siteId, keypairs) -> Collections.unmodifiableList(keypairs));
+
+            this.all = Collections.unmodifiableList(all);
+            this.bySubscriptionId = bySubscriptionId;
+            this.bySiteId = bySiteId;
+            this.publicJson = publicJson;
+        }
+
+        public List<ClientSideKeypair> getAll() {
+            return all;
+        }
+
+        public ClientSideKeypair getKeypair(String subscriptionId) {
+            return bySubscriptionId.get(subscriptionId);
+        }
+
+        public boolean containsSubscriptionId(String subscriptionId) {
+            return bySubscriptionId.containsKey(subscriptionId);
+        }
+
+        // the sites that have at least one keypair
+        public Set<Integer> getSiteIds() {
+            return Collections.unmodifiableSet(bySiteId.keySet());
+        }
+
+        /**
+         * @return the keypairs of the site, or {@code null} if the site has none. The returned list is the same
+         * instance for as long as this view is current, so callers may cache work derived from it by identity.
+         */
+        public List<ClientSideKeypair> getSiteKeypairs(int siteId) {
+            return bySiteId.get(siteId);
+        }
+
+        /**
+         * @return the cached public JSON for the keypair, which throws on modification; the same instance for as long
+         * as this view is current.
+         */
+        public JsonObject getPublicJson(ClientSideKeypair keypair) {
+            JsonObject json = publicJson.get(keypair.getSubscriptionId());
+            return json != null ? json : readOnly(toJsonWithoutPrivateKey(keypair));
+        }
+
+        // the public JSON of a keypair holds only scalar values, so a read-only map makes it immutable
+        private static JsonObject readOnly(JsonObject json) {
+            return new JsonObject(Collections.unmodifiableMap(json.getMap()));
+        }
+    }
+}
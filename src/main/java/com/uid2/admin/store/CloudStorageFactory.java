@@ -0,0 +1,20 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.Const;
+import com.uid2.shared.cloud.CloudUtils;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Creates the storage of the core bucket with the decorators every caller shares: hedged and retried reads over
+ * instrumented calls, so that each attempt is measured separately.
+ */
+public final class CloudStorageFactory {
+    private CloudStorageFactory() {
+    }
+
+    public static TaggableCloudStorage create(JsonObject config) {
+        TaggableCloudStorage storage = CloudUtils.createStorage(config.getString(Const.Config.CoreS3BucketProp), config);
+        return ResilientCloudStorage.wrap(InstrumentedCloudStorage.wrap(storage, config), config);
+    }
+}
@@ -0,0 +1,83 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cloud storage that transparently decodes {@link ContentEncoding#GZIP} data files on download, so that the store
+ * readers, which parse the raw stream, can read both encoded and plain files. Everything else is passed through.
+ */
+public class ContentDecodingCloudStorage implements TaggableCloudStorage {
+    private final TaggableCloudStorage delegate;
+
+    public ContentDecodingCloudStorage(TaggableCloudStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public InputStream download(String cloudPath) throws CloudStorageException {
+        InputStream stream = delegate.download(cloudPath);
+        try {
+            return ContentEncoding.decode(stream);
+        } catch (IOException e) {
+            throw new CloudStorageException("Could not decode " + delegate.mask(cloudPath), e);
+        }
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath) throws CloudStorageException {
+        delegate.upload(localPath, cloudPath);
+    }
+
+    @Override
+    public void upload(InputStream input, String cloudPath) throws CloudStorageException {
+        delegate.upload(input, cloudPath);
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        delegate.upload(localPath, cloudPath, tags);
+    }
+
+    @Override
+    public void setTags(String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        delegate.setTags(cloudPath, tags);
+    }
+
+    @Override
+    public void delete(String cloudPath) throws CloudStorageException {
+        delegate.delete(cloudPath);
+    }
+
+    @Override
+    public void delete(Collection<String> cloudPaths) throws CloudStorageException {
+        delegate.delete(cloudPaths);
+    }
+
+    @Override
+    public List<String> list(String prefix) throws CloudStorageException {
+        return delegate.list(prefix);
+    }
+
+    @Override
+    public URL preSignUrl(String cloudPath) throws CloudStorageException {
+        return delegate.preSignUrl(cloudPath);
+    }
+
+    @Override
+    public void setPreSignedUrlExpiry(long expiry) {
+        delegate.setPreSignedUrlExpiry(expiry);
+    }
+
+    @Override
+    public String mask(String cloudPath) {
+        return delegate.mask(cloudPath);
+    }
+}
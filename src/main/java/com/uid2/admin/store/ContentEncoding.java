@@ -0,0 +1,83 @@
+package com.uid2.admin.store;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.uid2.admin.AdminConst.STORE_CONTENT_ENCODINGS;
+
+/**
+ * Encoding applied to a plaintext store data file before it is uploaded. The encoding is recorded as
+ * {@code content_encoding} next to {@code location} in the metadata; data files without it are {@link #IDENTITY}.
+ */
+public enum ContentEncoding {
+    IDENTITY("identity"),
+    GZIP("gzip");
+
+    public static final String METADATA_KEY = "content_encoding";
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+    private final String name;
+
+    ContentEncoding(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ContentEncoding fromName(String name) {
+        return Arrays.stream(values())
+                .filter(encoding -> encoding.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown content encoding: " + name));
+    }
+
+    // Reads the store_content_encodings config object, e.g. {"salts": "gzip", "client_keys": "gzip"}
+    public static Map<String, ContentEncoding> fromConfig(JsonObject config) {
+        JsonObject configured = config.getJsonObject(STORE_CONTENT_ENCODINGS, new JsonObject());
+        Map<String, ContentEncoding> encodings = new HashMap<>();
+        configured.forEach(entry -> encodings.put(entry.getKey(), fromName((String) entry.getValue())));
+        return encodings;
+    }
+
+    public byte[] encode(String content) throws IOException {
+        if (this == IDENTITY) {
+            return content.getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length() / 4);
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(out, 64 * 1024), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    // Wraps the stream so that writing to it encodes. Closing the returned stream closes out.
+    public OutputStream wrap(OutputStream out) throws IOException {
+        return this == IDENTITY ? out : new GZIPOutputStream(out, 64 * 1024);
+    }
+
+    /**
+     * Decodes a downloaded data file. The encoding is detected from the gzip magic bytes rather than the metadata,
+     * so this works for every reader regardless of whether it looks at {@code content_encoding}.
+     */
+    public static InputStream decode(InputStream in) throws IOException {
+        BufferedInputStream buffered = in instanceof BufferedInputStream b ? b : new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == GZIP_MAGIC_FIRST && second == GZIP_MAGIC_SECOND) {
+            return new GZIPInputStream(buffered, 64 * 1024);
+        }
+        return buffered;
+    }
+}
@@ -0,0 +1,83 @@
+package com.uid2.admin.store;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Format of the optional delta-log persistence mode for JSON array stores.
+ * <p>
+ * In delta-log mode the metadata location entry of a data type points at a full snapshot and, optionally, at a list
+ * of patch files that have to be applied to it in order:
+ * <pre>
+ *   "client_keys": {
+ *     "location": "clients/clients.json",
+ *     "base_version": 1700000000000,
+ *     "deltas": [ { "location": "clients/clients.delta.1700000005000.json", "version": 1700000005000 }, ... ]
+ *   }
+ * </pre>
+ * A patch file is <code>{"upserts": [ entry, ... ], "deletes": [ key, ... ]}</code> where entries are identified by
+ * a store specific key. Metadata without a {@code deltas} list is a plain full snapshot.
+ * </p>
+ */
+public final class DeltaLog {
+    public static final String DELTAS = "deltas";
+    public static final String BASE_VERSION = "base_version";
+    public static final String UPSERTS = "upserts";
+    public static final String DELETES = "deletes";
+
+    private DeltaLog() {
+    }
+
+    public static boolean hasDeltas(JsonObject metadata, String dataType) {
+        JsonObject container = metadata.getJsonObject(dataType);
+        return container != null && container.containsKey(DELTAS);
+    }
+
+    public static LinkedHashMap<String, JsonObject> index(JsonArray entries, Function<JsonObject, String> keyOf) {
+        LinkedHashMap<String, JsonObject> indexed = new LinkedHashMap<>(entries.size() * 2);
+        for (int i = 0; i < entries.size(); i++) {
+            JsonObject entry = entries.getJsonObject(i);
+            indexed.put(keyOf.apply(entry), entry);
+        }
+        return indexed;
+    }
+
+    public static JsonObject diff(Map<String, JsonObject> from, Map<String, JsonObject> to) {
+        JsonArray upserts = new JsonArray();
+        JsonArray deletes = new JsonArray();
+        for (Map.Entry<String, JsonObject> entry : to.entrySet()) {
+            if (!entry.getValue().equals(from.get(entry.getKey()))) {
+                upserts.add(entry.getValue());
+            }
+        }
+        for (String key : from.keySet()) {
+            if (!to.containsKey(key)) {
+                deletes.add(key);
+            }
+        }
+        return new JsonObject().put(UPSERTS, upserts).put(DELETES, deletes);
+    }
+
+    public static boolean isEmpty(JsonObject patch) {
+        return patch.getJsonArray(UPSERTS).isEmpty() && patch.getJsonArray(DELETES).isEmpty();
+    }
+
+    public static void apply(Map<String, JsonObject> state, JsonObject patch, Function<JsonObject, String> keyOf) {
+        JsonArray deletes = patch.getJsonArray(DELETES, new JsonArray());
+        for (int i = 0; i < deletes.size(); i++) {
+            state.remove(deletes.getString(i));
+        }
+        JsonArray upserts = patch.getJsonArray(UPSERTS, new JsonArray());
+        for (int i = 0; i < upserts.size(); i++) {
+            JsonObject entry = upserts.getJsonObject(i);
+            state.put(keyOf.apply(entry), entry);
+        }
+    }
+
+    public static JsonArray toArray(Map<String, JsonObject> state) {
+        return new JsonArray(new ArrayList<>(state.values()));
+    }
+}
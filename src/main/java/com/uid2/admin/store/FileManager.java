@@ -1,5 +1,7 @@
 package com.uid2.admin.store;
 
+import com.uid2.admin.store.writer.StoreCommitConflictException;
+import com.uid2.shared.Utils;
 import com.uid2.shared.cloud.CloudStorageException;
 import com.uid2.shared.cloud.ICloudStorage;
 import com.uid2.shared.store.CloudPath;
@@ -7,15 +9,41 @@ import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class FileManager {
     private final ICloudStorage cloudStorage;
     private final FileStorage fileStorage;
+    private final boolean versionedDataFiles;
+    private final Map<String, ContentEncoding> contentEncodings;
 
     public FileManager(ICloudStorage cloudStorage, FileStorage fileStorage) {
+        this(cloudStorage, fileStorage, false);
+    }
+
+    public FileManager(ICloudStorage cloudStorage, FileStorage fileStorage, boolean versionedDataFiles) {
+        this(cloudStorage, fileStorage, versionedDataFiles, Map.of());
+    }
+
+    public FileManager(ICloudStorage cloudStorage, FileStorage fileStorage, boolean versionedDataFiles, Map<String, ContentEncoding> contentEncodings) {
         this.cloudStorage = cloudStorage;
         this.fileStorage = fileStorage;
+        this.versionedDataFiles = versionedDataFiles;
+        this.contentEncodings = Map.copyOf(contentEncodings);
+    }
+
+    // When true, each commit writes its data file to a new, version-suffixed location instead of overwriting
+    public boolean isVersionedDataFiles() {
+        return versionedDataFiles;
+    }
+
+    // Encoding applied to plaintext data files of the data type; metadata files are never encoded
+    public ContentEncoding getContentEncoding(String dataType) {
+        return contentEncodings.getOrDefault(dataType, ContentEncoding.IDENTITY);
     }
 
     public void uploadFile(CloudPath location, FileName fileName, String content) throws IOException, CloudStorageException {
@@ -23,12 +51,50 @@ public class FileManager {
         cloudStorage.upload(newFile, location.toString());
     }
 
+    public void uploadFile(CloudPath location, FileName fileName, byte[] content) throws IOException, CloudStorageException {
+        String newFile = fileStorage.create(fileName, content);
+        cloudStorage.upload(newFile, location.toString());
+    }
+
     public void uploadMetadata(JsonObject metadata, String name, CloudPath location) throws Exception {
         FileName fileName = new FileName(name + "-metadata", ".json");
         String content = Json.encodePrettily(metadata);
         uploadFile(location, fileName, content);
     }
 
+    /**
+     * Uploads the metadata only if the version currently stored at {@code location} is {@code expectedVersion}
+     * ({@code null} meaning no metadata exists yet).
+     * <p>
+     * The cloud storage API has no conditional put, so the precondition is checked with a read immediately before
+     * the write. This narrows the race window to a single round trip rather than the whole read-modify-write cycle.
+     * </p>
+     */
+    public void uploadMetadata(JsonObject metadata, String name, CloudPath location, Long expectedVersion) throws Exception {
+        Long currentVersion = getMetadataVersion(location);
+        if (!Objects.equals(currentVersion, expectedVersion)) {
+            throw new StoreCommitConflictException(location, expectedVersion, currentVersion);
+        }
+        uploadMetadata(metadata, name, location);
+    }
+
+    public Long getMetadataVersion(CloudPath location) throws Exception {
+        if (!isPresent(location)) {
+            return null;
+        }
+        try (InputStream stream = cloudStorage.download(location.toString())) {
+            return Utils.toJsonObject(stream).getLong("version");
+        }
+    }
+
+    public List<String> listFiles(CloudPath prefix) throws CloudStorageException {
+        return cloudStorage.list(prefix.toString());
+    }
+
+    public void deleteFiles(Collection<String> files) throws CloudStorageException {
+        cloudStorage.delete(files);
+    }
+
     public boolean isPresent(CloudPath path) throws CloudStorageException {
         List<String> files = cloudStorage.list(path.toString());
         return !files.isEmpty();
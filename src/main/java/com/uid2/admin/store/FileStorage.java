@@ -1,5 +1,6 @@
 package com.uid2.admin.store;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -7,4 +8,8 @@ public interface FileStorage {
     String create(FileName fileName, String content) throws IOException;
 
     String create(FileName fileName, InputStream content) throws IOException;
+
+    default String create(FileName fileName, byte[] content) throws IOException {
+        return create(fileName, new ByteArrayInputStream(content));
+    }
 }
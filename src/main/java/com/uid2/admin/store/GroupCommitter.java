@@ -0,0 +1,184 @@
+package com.uid2.admin.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import com.uid2.admin.store.writer.StoreCommitRetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalesces mutations of a single store into group commits.
+ * <p>
+ * Mutations submitted within {@code windowMs} of the first queued one are applied, in submission order, to a single
+ * freshly loaded working state and persisted with one upload. The returned future completes only after that shared
+ * upload has succeeded, or exceptionally if the mutation itself or the commit failed. The whole load-apply-upload
+ * cycle runs under the service write lock, so it is serialized with handlers that still mutate the store directly.
+ * </p>
+ * A mutation must validate before it changes anything: a mutation that throws is reported to its caller only, and
+ * the remaining mutations of the batch are still committed.
+ *
+ * @param <S> the mutable working state, e.g. the list of all client keys
+ */
+public class GroupCommitter<S> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitter.class);
+
+    @FunctionalInterface
+    public interface StateLoader<S> {
+        // Reloads the store and returns a mutable copy of its content
+        S load() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface StateCommitter<S> {
+        void commit(S state) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Mutation<S, R> {
+        R apply(S state) throws Exception;
+    }
+
+    private record Pending<S, R>(Mutation<S, R> mutation, CompletableFuture<R> future) {
+        @SuppressWarnings("unchecked")
+        void complete(Object result) {
+            future.complete((R) result);
+        }
+    }
+
+    // result and failure of each mutation of a batch, by position
+    private record Outcome(List<Object> results, List<Exception> failures) {
+        long failureCount() {
+            return failures.stream().filter(Objects::nonNull).count();
+        }
+    }
+
+    private final String storeName;
+    private final Object writeLock;
+    private final StateLoader<S> loader;
+    private final StateCommitter<S> committer;
+    private final long windowMs;
+    private final ScheduledExecutorService scheduler;
+    private final DistributionSummary batchSize;
+    private final Counter commits;
+
+    private final List<Pending<S, ?>> queue = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    public GroupCommitter(String storeName, Object writeLock, StateLoader<S> loader, StateCommitter<S> committer, long windowMs) {
+        this.storeName = storeName;
+        this.writeLock = writeLock;
+        this.loader = loader;
+        this.committer = committer;
+        this.windowMs = windowMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "group-commit-" + storeName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = DistributionSummary.builder("uid2_admin_group_commit_batch_size")
+                .tag("store", storeName)
+                .description("number of mutations persisted by one group commit")
+                .register(Metrics.globalRegistry);
+        this.commits = Counter.builder("uid2_admin_group_commits_total")
+                .tag("store", storeName)
+                .description("number of group commits uploaded")
+                .register(Metrics.globalRegistry);
+    }
+
+    public <R> CompletableFuture<R> submit(Mutation<S, R> mutation) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        synchronized (queue) {
+            queue.add(new Pending<>(mutation, future));
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    private void flush() {
+        List<Pending<S, ?>> batch;
+        synchronized (queue) {
+            batch = new ArrayList<>(queue);
+            queue.clear();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            // outcome of the latest attempt; on a commit conflict the batch is applied again, to the state reloaded
+            // from the other writer's commit
+            AtomicReference<Outcome> attempt = new AtomicReference<>();
+            Exception commitFailure = null;
+            try {
+                StoreCommitRetry.run(() -> applyAndCommit(batch, attempt));
+            } catch (Exception e) {
+                commitFailure = e;
+            }
+
+            Outcome outcome = attempt.get();
+            if (outcome == null) {
+                LOGGER.error("Could not load store={} for group commit", storeName, commitFailure);
+                for (Pending<S, ?> pending : batch) {
+                    pending.future().completeExceptionally(commitFailure);
+                }
+                return;
+            }
+            int applied = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Exception failure = outcome.failures().get(i);
+                if (failure != null) {
+                    batch.get(i).future().completeExceptionally(failure);
+                } else if (commitFailure != null) {
+                    batch.get(i).future().completeExceptionally(commitFailure);
+                } else {
+                    batch.get(i).complete(outcome.results().get(i));
+                    applied++;
+                }
+            }
+            if (commitFailure != null) {
+                LOGGER.error("Group commit of {} mutations failed for store={}", batch.size() - outcome.failureCount(), storeName, commitFailure);
+                return;
+            }
+            if (applied > 0) {
+                commits.increment();
+                batchSize.record(applied);
+            }
+        }
+    }
+
+    private void applyAndCommit(List<Pending<S, ?>> batch, AtomicReference<Outcome> attempt) throws Exception {
+        attempt.set(null);
+        S state = loader.load();
+        List<Object> results = new ArrayList<>(batch.size());
+        List<Exception> failures = new ArrayList<>(batch.size());
+        boolean anyApplied = false;
+        for (Pending<S, ?> pending : batch) {
+            try {
+                results.add(pending.mutation().apply(state));
+                failures.add(null);
+                anyApplied = true;
+            } catch (Exception e) {
+                results.add(null);
+                failures.add(e);
+            }
+        }
+        attempt.set(new Outcome(results, failures));
+        if (anyApplied) {
+            committer.commit(state);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.uid2.admin.store;
+
+import com.uid2.admin.AdminConst;
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.json.JsonObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cloud storage that records the latency, outcome and transferred bytes of every call to the wrapped storage.
+ * <p>
+ * Calls are timed in {@code uid2_admin_cloud_storage_duration} and bytes counted in
+ * {@code uid2_admin_cloud_storage_bytes_total}, tagged by operation and by data type, the first segment of the path.
+ * A download is timed there until its stream is returned, and again in
+ * {@code uid2_admin_cloud_storage_download_transfer_duration} from the call until the caller closes the stream, which
+ * includes reading the body; its bytes are counted as the caller reads the stream. Wrap the raw storage, below any
+ * caching or decoding decorator, so that the metrics reflect the traffic to the bucket.
+ * </p>
+ */
+public class InstrumentedCloudStorage implements TaggableCloudStorage {
+    private final TaggableCloudStorage delegate;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> transferTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> byteCounters = new ConcurrentHashMap<>();
+
+    public InstrumentedCloudStorage(TaggableCloudStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the storage wrapped in an {@code InstrumentedCloudStorage}, or the storage itself if
+     * {@link AdminConst#CLOUD_STORAGE_METRICS} is disabled
+     */
+    public static TaggableCloudStorage wrap(TaggableCloudStorage storage, JsonObject config) {
+        return config.getBoolean(AdminConst.CLOUD_STORAGE_METRICS, true) ? new InstrumentedCloudStorage(storage) : storage;
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws CloudStorageException;
+    }
+
+    @FunctionalInterface
+    private interface VoidCall {
+        void call() throws CloudStorageException;
+    }
+
+    private <T> T timed(String operation, String cloudPath, Call<T> call) throws CloudStorageException {
+        String dataType = dataType(cloudPath);
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } finally {
+            timer(operation, dataType, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void timed(String operation, String cloudPath, VoidCall call) throws CloudStorageException {
+        timed(operation, cloudPath, () -> {
+            call.call();
+            return null;
+        });
+    }
+
+    @Override
+    public InputStream download(String cloudPath) throws CloudStorageException {
+        long start = System.nanoTime();
+        InputStream stream = timed("download", cloudPath, () -> delegate.download(cloudPath));
+        return new DownloadStream(stream, dataType(cloudPath), start);
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath) throws CloudStorageException {
+        timed("upload", cloudPath, () -> delegate.upload(localPath, cloudPath));
+        countFile("upload", cloudPath, localPath);
+    }
+
+    @Override
+    public void upload(InputStream input, String cloudPath) throws CloudStorageException {
+        CountingInputStream counting = new CountingInputStream(input, bytes("upload", dataType(cloudPath)));
+        try {
+            timed("upload", cloudPath, () -> delegate.upload(counting, cloudPath));
+        } finally {
+            counting.flushCount();
+        }
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        timed("upload", cloudPath, () -> delegate.upload(localPath, cloudPath, tags));
+        countFile("upload", cloudPath, localPath);
+    }
+
+    @Override
+    public void setTags(String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        timed("set_tags", cloudPath, () -> delegate.setTags(cloudPath, tags));
+    }
+
+    @Override
+    public void delete(String cloudPath) throws CloudStorageException {
+        timed("delete", cloudPath, () -> delegate.delete(cloudPath));
+    }
+
+    @Override
+    public void delete(Collection<String> cloudPaths) throws CloudStorageException {
+        String first = cloudPaths.isEmpty() ? "" : cloudPaths.iterator().next();
+        timed("delete", first, () -> delegate.delete(cloudPaths));
+    }
+
+    @Override
+    public List<String> list(String prefix) throws CloudStorageException {
+        return timed("list", prefix, () -> delegate.list(prefix));
+    }
+
+    @Override
+    public URL preSignUrl(String cloudPath) throws CloudStorageException {
+        return delegate.preSignUrl(cloudPath);
+    }
+
+    @Override
+    public void setPreSignedUrlExpiry(long expiry) {
+        delegate.setPreSignedUrlExpiry(expiry);
+    }
+
+    @Override
+    public String mask(String cloudPath) {
+        return delegate.mask(cloudPath);
+    }
+
+    private void countFile(String operation, String cloudPath, String localPath) {
+        try {
+            bytes(operation, dataType(cloudPath)).increment(Files.size(Path.of(localPath)));
+        } catch (IOException | RuntimeException e) {
+            // the upload succeeded; a file removed or renamed since only loses its byte count
+        }
+    }
+
+    private Timer timer(String operation, String dataType, String outcome) {
+        return timers.computeIfAbsent(operation + '|' + dataType + '|' + outcome, key -> Timer.builder("uid2_admin_cloud_storage_duration")
+                .tag("operation", operation)
+                .tag("data_type", dataType)
+                .tag("outcome", outcome)
+                .description("latency of cloud storage calls")
+                .register(Metrics.globalRegistry));
+    }
+
+    private Timer transferTimer(String dataType, String outcome) {
+        return transferTimers.computeIfAbsent(dataType + '|' + outcome, key -> Timer.builder("uid2_admin_cloud_storage_download_transfer_duration")
+                .tag("data_type", dataType)
+                .tag("outcome", outcome)
+                .description("latency of cloud storage downloads until the stream is closed, including reading the body")
+                .register(Metrics.globalRegistry));
+    }
+
+    private Counter bytes(String operation, String dataType) {
+        return byteCounters.computeIfAbsent(operation + '|' + dataType, key -> Counter.builder("uid2_admin_cloud_storage_bytes_total")
+                .tag("operation", operation)
+                .tag("data_type", dataType)
+                .description("bytes transferred to and from cloud storage")
+                .register(Metrics.globalRegistry));
+    }
+
+    // e.g. "sites" for "sites/site/123/sites.json"
+    static String dataType(String cloudPath) {
+        if (cloudPath == null) {
+            return "unknown";
+        }
+        int start = cloudPath.startsWith("/") ? 1 : 0;
+        int end = cloudPath.indexOf('/', start);
+        return end > start ? cloudPath.substring(start, end) : "root";
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final Counter counter;
+        private long count = 0;
+
+        CountingInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        // reset would count re-read bytes twice
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                flushCount();
+            }
+        }
+
+        void flushCount() {
+            if (count > 0) {
+                counter.increment(count);
+                count = 0;
+            }
+        }
+    }
+
+    // Records the transfer time of a download once the caller closes its stream
+    private final class DownloadStream extends CountingInputStream {
+        private final String dataType;
+        private final long start;
+        private boolean failed = false;
+        private boolean closed = false;
+
+        DownloadStream(InputStream in, String dataType, long start) {
+            super(in, bytes("download", dataType));
+            this.dataType = dataType;
+            this.start = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    transferTimer(dataType, failed ? "error" : "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
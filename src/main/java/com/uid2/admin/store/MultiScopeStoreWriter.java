@@ -15,10 +15,18 @@ public class MultiScopeStoreWriter<T> {
     private final FileManager fileManager;
     private final StoreFactory<T> factory;
     private final BiFunction<T, T, Boolean> areEqual;
+    // when set, the encrypted uploads only write these sites
+    private final Set<Integer> encryptedSiteIds;
+
     public MultiScopeStoreWriter(FileManager fileManager, StoreFactory<T> factory, BiFunction<T, T, Boolean> areEqual) {
+        this(fileManager, factory, areEqual, null);
+    }
+
+    public MultiScopeStoreWriter(FileManager fileManager, StoreFactory<T> factory, BiFunction<T, T, Boolean> areEqual, Set<Integer> encryptedSiteIds) {
         this.fileManager = fileManager;
         this.factory = factory;
         this.areEqual = areEqual;
+        this.encryptedSiteIds = encryptedSiteIds;
     }
 
     public void uploadIfChanged(Map<Integer, T> desiredState, JsonObject extraMeta) throws Exception {
@@ -61,6 +69,9 @@ public class MultiScopeStoreWriter<T> {
         EncryptedStoreFactory<T> encryptedFactory = (EncryptedStoreFactory<T>) factory;
         for (Map.Entry<Integer, T> entry : desiredState.entrySet()) {
             Integer siteId = entry.getKey();
+            if (!isEncryptionTarget(siteId)) {
+                continue;
+            }
             encryptedFactory.getEncryptedWriter(siteId,false).upload(desiredState.get(siteId), extraMeta);
         }
     }
@@ -69,6 +80,9 @@ public class MultiScopeStoreWriter<T> {
     public void uploadPrivateWithEncryption(List<Integer> siteIds, T desiredState, JsonObject extraMeta) throws Exception {
         EncryptedStoreFactory<T> encryptedFactory = (EncryptedStoreFactory<T>) factory;
         for (Integer siteId : siteIds) {
+            if (!isEncryptionTarget(siteId)) {
+                continue;
+            }
             encryptedFactory.getEncryptedWriter(siteId,false).upload(desiredState, extraMeta);
         }
     }
@@ -77,6 +91,9 @@ public class MultiScopeStoreWriter<T> {
         EncryptedStoreFactory<T> encryptedFactory = (EncryptedStoreFactory<T>) factory;
         for (Map.Entry<Integer, T> entry : desiredPublicState.entrySet()) {
             Integer siteId = entry.getKey();
+            if (!isEncryptionTarget(siteId)) {
+                continue;
+            }
             encryptedFactory.getEncryptedWriter(siteId,true).upload(desiredPublicState.get(siteId), extraMeta);
         }
     }
@@ -85,10 +102,17 @@ public class MultiScopeStoreWriter<T> {
     public void uploadPublicWithEncryption(List<Integer> siteIds, T desiredState, JsonObject extraMeta) throws Exception {
         EncryptedStoreFactory<T> encryptedFactory = (EncryptedStoreFactory<T>) factory;
         for (Integer siteId : siteIds) {
+            if (!isEncryptionTarget(siteId)) {
+                continue;
+            }
             encryptedFactory.getEncryptedWriter(siteId,true).upload(desiredState, extraMeta);
         }
     }
 
+    private boolean isEncryptionTarget(Integer siteId) {
+        return encryptedSiteIds == null || encryptedSiteIds.contains(siteId);
+    }
+
     public static <K, V> boolean areMapsEqual(Map<K, V> a, Map<K, V> b) {
         return a.size() == b.size() && a.entrySet().stream().allMatch(b.entrySet()::contains);
     }
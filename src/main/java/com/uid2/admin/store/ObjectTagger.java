@@ -0,0 +1,119 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sets tags on cloud objects with bounded parallelism.
+ * <p>
+ * Tagging is one round trip per object, so tagging many objects one after the other is dominated by latency. Batches
+ * passed to {@link #tagAll} are tagged concurrently on the tagger's own pool of {@code parallelism} threads, so at
+ * most that many requests are in flight. Idle threads exit after a while, so a tagger that is not closed holds no
+ * threads between batches.
+ * </p>
+ * The storage cannot read tags back, so the tags last set on each location through this tagger stand in for the
+ * stored tags, and setting the same tags again is skipped. Callers that write an object with tags must report it
+ * through {@link #recordTags}, and must not tag an object with tags they are about to replace, for the skip to hold.
+ */
+public class ObjectTagger implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectTagger.class);
+    private static final int MAX_KNOWN_LOCATIONS = 100_000;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+    private final TaggableCloudStorage cloudStorage;
+    private final ThreadPoolExecutor executor;
+    private final Timer latency;
+    private final Counter errors;
+    private final Counter skipped;
+    // tags last set on each location through this tagger, least recently used first
+    private final Map<String, Map<String, String>> knownTags = Collections.synchronizedMap(
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+                    return size() > MAX_KNOWN_LOCATIONS;
+                }
+            });
+
+    public ObjectTagger(TaggableCloudStorage cloudStorage, int parallelism) {
+        this.cloudStorage = cloudStorage;
+        int threads = Math.max(1, parallelism);
+        this.executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "object-tagger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.latency = Timer.builder("uid2_admin_object_tagging_duration")
+                .description("latency of setting tags on a cloud object")
+                .register(Metrics.globalRegistry);
+        this.errors = Counter.builder("uid2_admin_object_tagging_errors_total")
+                .description("number of failed attempts to set tags on a cloud object")
+                .register(Metrics.globalRegistry);
+        this.skipped = Counter.builder("uid2_admin_object_tagging_skipped_total")
+                .description("number of tag updates skipped because the object already had the tags")
+                .register(Metrics.globalRegistry);
+    }
+
+    public void tag(String location, Map<String, String> tags) throws CloudStorageException {
+        if (tags.equals(knownTags.get(location))) {
+            skipped.increment();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            cloudStorage.setTags(location, tags);
+        } catch (CloudStorageException e) {
+            errors.increment();
+            knownTags.remove(location);
+            throw e;
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        knownTags.put(location, tags);
+    }
+
+    /**
+     * Tags all the locations and waits for all of them. A failure to tag one location does not stop the others.
+     *
+     * @return the locations that could not be tagged
+     */
+    public List<String> tagAll(Collection<String> locations, Map<String, String> tags) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(locations.size());
+        List<String> submitted = new ArrayList<>(locations.size());
+        for (String location : new LinkedHashSet<>(locations)) {
+            futures.add(executor.submit(() -> {
+                tag(location, tags);
+                return null;
+            }));
+            submitted.add(location);
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Error setting tags {} on {}", tags, cloudStorage.mask(submitted.get(i)), e.getCause());
+                failed.add(submitted.get(i));
+            }
+        }
+        return failed;
+    }
+
+    // Records tags set by an upload, so that tagging the object with the same tags is skipped
+    public void recordTags(String location, Map<String, String> tags) {
+        knownTags.put(location, tags);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
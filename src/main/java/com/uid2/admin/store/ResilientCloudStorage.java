@@ -0,0 +1,357 @@
+package com.uid2.admin.store;
+
+import com.uid2.admin.AdminConst;
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.json.JsonObject;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cloud storage whose reads, {@code download} and {@code list}, are hedged, bounded by a deadline and retried.
+ * <p>
+ * Each read attempt is given {@code deadlineMs}. If the first request has not answered within the p95 latency of
+ * recent successful reads of the same operation and data type, a second identical request is sent and whichever
+ * answers first wins; the other request is cancelled, or its answer discarded if it already arrived. A timed out
+ * attempt is cancelled too. A failed or timed out attempt is retried, after a jittered exponential backoff, up to
+ * {@code maxAttempts} times in total, unless the storage answered with a status that does not change on retry, e.g. a
+ * missing key. Writes are passed through.
+ * </p>
+ * Requests run on a pool of at most {@value #MAX_READ_THREADS} threads shared by all instances; a request waiting for
+ * a thread counts against its deadline. Cancelling a request interrupts its thread, which aborts a blocking call of
+ * the storage client. For a download, the deadline covers the request until the stream is returned, not reading the
+ * stream.
+ */
+public class ResilientCloudStorage implements TaggableCloudStorage {
+    static final int MAX_READ_THREADS = 64;
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+    private static final Counter HEDGES_FIRED = Counter.builder("uid2_admin_cloud_read_hedges_total")
+            .tag("outcome", "fired")
+            .description("hedged cloud read requests")
+            .register(Metrics.globalRegistry);
+    private static final Counter HEDGES_WON = Counter.builder("uid2_admin_cloud_read_hedges_total")
+            .tag("outcome", "won")
+            .description("hedged cloud read requests")
+            .register(Metrics.globalRegistry);
+    private static final Counter RETRIES = Counter.builder("uid2_admin_cloud_read_retries_total")
+            .description("cloud read attempts retried after a transient error or timeout")
+            .register(Metrics.globalRegistry);
+    private static final Counter TIMEOUTS = Counter.builder("uid2_admin_cloud_read_timeouts_total")
+            .description("cloud read attempts that exceeded their deadline")
+            .register(Metrics.globalRegistry);
+
+    private static final List<String> HTTP_STATUS_ACCESSORS = List.of("statusCode", "getStatusCode", "getCode");
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final long MIN_HEDGE_DELAY_MS = 10;
+    private static final long BACKOFF_BASE_MS = 100;
+    private static final long BACKOFF_MAX_MS = 2000;
+
+    private final TaggableCloudStorage delegate;
+    private final long deadlineMs;
+    private final int maxAttempts;
+    private final boolean hedging;
+    // operation and data type -> latency of its recent successful reads
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    public ResilientCloudStorage(TaggableCloudStorage delegate, long deadlineMs, int maxAttempts, boolean hedging) {
+        this.delegate = delegate;
+        this.deadlineMs = deadlineMs;
+        this.maxAttempts = maxAttempts;
+        this.hedging = hedging;
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_READ_THREADS, MAX_READ_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "cloud-read");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static TaggableCloudStorage wrap(TaggableCloudStorage storage, JsonObject config) {
+        int maxAttempts = config.getInteger(AdminConst.CLOUD_READ_MAX_ATTEMPTS, 3);
+        boolean hedging = config.getBoolean(AdminConst.CLOUD_READ_HEDGING, true);
+        if (maxAttempts <= 1 && !hedging) {
+            return storage;
+        }
+        return new ResilientCloudStorage(storage, config.getLong(AdminConst.CLOUD_READ_DEADLINE_MS, 30_000L), maxAttempts, hedging);
+    }
+
+    @FunctionalInterface
+    private interface Read<T> {
+        T read() throws CloudStorageException;
+    }
+
+    @FunctionalInterface
+    private interface Discarder<T> {
+        void discard(T result) throws IOException;
+    }
+
+    @Override
+    public InputStream download(String cloudPath) throws CloudStorageException {
+        return read(() -> delegate.download(cloudPath), Closeable::close, latency("download", cloudPath), cloudPath);
+    }
+
+    @Override
+    public List<String> list(String prefix) throws CloudStorageException {
+        return read(() -> delegate.list(prefix), result -> {}, latency("list", prefix), prefix);
+    }
+
+    // Reads of different data types differ in size, and so in latency, e.g. a salt file and a site list
+    private LatencyWindow latency(String operation, String cloudPath) {
+        return latencies.computeIfAbsent(operation + '|' + InstrumentedCloudStorage.dataType(cloudPath), key -> new LatencyWindow());
+    }
+
+    private <T> T read(Read<T> read, Discarder<T> discarder, LatencyWindow latency, String cloudPath) throws CloudStorageException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return hedged(read, discarder, latency, cloudPath);
+            } catch (CloudStorageException e) {
+                if (attempt >= maxAttempts || !isTransient(e)) {
+                    throw e;
+                }
+            }
+            RETRIES.increment();
+            backoff(attempt, cloudPath);
+        }
+    }
+
+    private <T> T hedged(Read<T> read, Discarder<T> discarder, LatencyWindow latency, String cloudPath) throws CloudStorageException {
+        long start = System.nanoTime();
+        Race<T> race = new Race<>(read, discarder, latency);
+        race.launch(false);
+        try {
+            long hedgeDelayMs = latency.hedgeDelayMs(deadlineMs);
+            if (hedging && hedgeDelayMs < deadlineMs) {
+                try {
+                    return race.result.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (race.launch(true)) {
+                        HEDGES_FIRED.increment();
+                    }
+                }
+            }
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs) - (System.nanoTime() - start);
+            T answer = race.result.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+            race.cancel();
+            return answer;
+        } catch (TimeoutException e) {
+            TIMEOUTS.increment();
+            DeadlineExceededException timeout = new DeadlineExceededException("Read of " + delegate.mask(cloudPath) + " exceeded " + deadlineMs + "ms");
+            // an answer arriving from now on is discarded
+            race.result.completeExceptionally(timeout);
+            race.cancel();
+            throw timeout;
+        } catch (ExecutionException e) {
+            race.cancel();
+            if (e.getCause() instanceof CloudStorageException cloudStorageException) {
+                throw cloudStorageException;
+            }
+            throw new CloudStorageException("Read of " + delegate.mask(cloudPath) + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            race.result.completeExceptionally(e);
+            race.cancel();
+            throw new CloudStorageException("Interrupted reading " + delegate.mask(cloudPath), e);
+        }
+    }
+
+    private static final class Race<T> {
+        private final Read<T> read;
+        private final Discarder<T> discarder;
+        private final LatencyWindow latency;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final List<Future<?>> requests = new CopyOnWriteArrayList<>();
+
+        private Race(Read<T> read, Discarder<T> discarder, LatencyWindow latency) {
+            this.read = read;
+            this.discarder = discarder;
+            this.latency = latency;
+        }
+
+        // returns false if the race was already decided
+        private boolean launch(boolean hedge) {
+            pending.incrementAndGet();
+            if (result.isDone()) {
+                return false;
+            }
+            requests.add(EXECUTOR.submit(() -> {
+                long start = System.nanoTime();
+                T answer;
+                try {
+                    answer = read.read();
+                } catch (Throwable t) {
+                    // the race fails only once every request sent has failed
+                    if (pending.decrementAndGet() == 0) {
+                        result.completeExceptionally(t);
+                    }
+                    return;
+                }
+                latency.record(System.nanoTime() - start);
+                if (result.complete(answer)) {
+                    if (hedge) {
+                        HEDGES_WON.increment();
+                    }
+                } else {
+                    try {
+                        discarder.discard(answer);
+                    } catch (IOException ignored) {
+                        // nothing to clean up beyond what close already attempted
+                    }
+                }
+            }));
+            return true;
+        }
+
+        // Once the race is decided, drops the requests still waiting for a thread and interrupts those in flight
+        private void cancel() {
+            for (Future<?> request : requests) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    private static final class LatencyWindow {
+        private final long[] samples = new long[LATENCY_WINDOW];
+        private int count = 0;
+        private int next = 0;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        // p95 of the recent successful reads, or the deadline, i.e. no hedging, until there are enough samples
+        synchronized long hedgeDelayMs(long deadlineMs) {
+            if (count < MIN_LATENCY_SAMPLES) {
+                return deadlineMs;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            long p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            return Math.max(TimeUnit.NANOSECONDS.toMillis(p95), MIN_HEDGE_DELAY_MS);
+        }
+    }
+
+    static final class DeadlineExceededException extends CloudStorageException {
+        DeadlineExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A request the storage rejected with a client error, e.g. a missing key (404) or a denied request (403), fails the
+     * same way however often it is retried, except for a timeout (408), a conflict (409) or throttling (429). So does a
+     * missing local file. Server errors, and errors without an answer from the storage, e.g. a connection reset, are
+     * transient.
+     */
+    static boolean isTransient(CloudStorageException e) {
+        if (e instanceof DeadlineExceededException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause instanceof FileNotFoundException || cause instanceof NoSuchFileException) {
+                return false;
+            }
+            Integer status = httpStatus(cause);
+            if (status != null) {
+                return status >= 500 || status == 408 || status == 409 || status == 429;
+            }
+        }
+        return true;
+    }
+
+    // The storage clients come with the configured cloud and are not a dependency of this module, so the HTTP status of
+    // their service exceptions is read through the accessor each SDK declares: statusCode() in the AWS SDK 2,
+    // getStatusCode() in the AWS SDK 1 and getCode() in the Google Cloud SDK
+    private static Integer httpStatus(Throwable cause) {
+        for (String accessor : HTTP_STATUS_ACCESSORS) {
+            try {
+                Method method = cause.getClass().getMethod(accessor);
+                if (method.getReturnType() == int.class) {
+                    int status = (int) method.invoke(cause);
+                    if (status >= 100 && status < 600) {
+                        return status;
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // not an accessor of this exception
+            }
+        }
+        return null;
+    }
+
+    private void backoff(int attempt, String cloudPath) throws CloudStorageException {
+        long capMs = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt - 1, 10));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(capMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CloudStorageException("Interrupted retrying " + delegate.mask(cloudPath), e);
+        }
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath) throws CloudStorageException {
+        delegate.upload(localPath, cloudPath);
+    }
+
+    @Override
+    public void upload(InputStream input, String cloudPath) throws CloudStorageException {
+        delegate.upload(input, cloudPath);
+    }
+
+    @Override
+    public void upload(String localPath, String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        delegate.upload(localPath, cloudPath, tags);
+    }
+
+    @Override
+    public void setTags(String cloudPath, Map<String, String> tags) throws CloudStorageException {
+        delegate.setTags(cloudPath, tags);
+    }
+
+    @Override
+    public void delete(String cloudPath) throws CloudStorageException {
+        delegate.delete(cloudPath);
+    }
+
+    @Override
+    public void delete(Collection<String> cloudPaths) throws CloudStorageException {
+        delegate.delete(cloudPaths);
+    }
+
+    @Override
+    public URL preSignUrl(String cloudPath) throws CloudStorageException {
+        return delegate.preSignUrl(cloudPath);
+    }
+
+    @Override
+    public void setPreSignedUrlExpiry(long expiry) {
+        delegate.setPreSignedUrlExpiry(expiry);
+    }
+
+    @Override
+    public String mask(String cloudPath) {
+        return delegate.mask(cloudPath);
+    }
+}
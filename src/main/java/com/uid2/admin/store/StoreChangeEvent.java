@@ -0,0 +1,59 @@
+package com.uid2.admin.store;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.*;
+
+/**
+ * Published on {@link #ADDRESS} after a global store commit.
+ *
+ * @param dataType data type of the store, as in its metadata, e.g. {@code client_keys}
+ * @param version  metadata version of the commit, or {@code null} if unknown
+ * @param siteIds  sites whose entries were added, removed or changed, or {@code null} if every site may be affected
+ */
+public record StoreChangeEvent(String dataType, Long version, Set<Integer> siteIds) {
+    public static final String ADDRESS = "uid2.admin.store-changed";
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject()
+                .put("data_type", dataType)
+                .put("version", version);
+        if (siteIds != null) {
+            json.put("site_ids", new JsonArray(new ArrayList<>(siteIds)));
+        }
+        return json;
+    }
+
+    public static StoreChangeEvent fromJson(JsonObject json) {
+        JsonArray siteIds = json.getJsonArray("site_ids");
+        Set<Integer> sites = null;
+        if (siteIds != null) {
+            sites = new HashSet<>();
+            for (int i = 0; i < siteIds.size(); i++) {
+                sites.add(siteIds.getInteger(i));
+            }
+        }
+        return new StoreChangeEvent(json.getString("data_type"), json.getLong("version"), sites);
+    }
+
+    /**
+     * @param before entries serialized by value, e.g. as JSON, mapped to their site id
+     * @param after  entries serialized the same way
+     * @return the site ids of the entries only in one of {@code before} and {@code after}
+     */
+    public static Set<Integer> changedSiteIds(Map<String, Integer> before, Map<String, Integer> after) {
+        Set<Integer> changed = new HashSet<>();
+        before.forEach((entry, siteId) -> {
+            if (!after.containsKey(entry)) {
+                changed.add(siteId);
+            }
+        });
+        after.forEach((entry, siteId) -> {
+            if (!before.containsKey(entry)) {
+                changed.add(siteId);
+            }
+        });
+        return changed;
+    }
+}
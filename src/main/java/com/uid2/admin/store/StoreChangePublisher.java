@@ -0,0 +1,14 @@
+package com.uid2.admin.store;
+
+import io.vertx.core.eventbus.EventBus;
+
+@FunctionalInterface
+public interface StoreChangePublisher {
+    StoreChangePublisher NONE = event -> {};
+
+    void publish(StoreChangeEvent event);
+
+    static StoreChangePublisher eventBus(EventBus eventBus) {
+        return event -> eventBus.publish(StoreChangeEvent.ADDRESS, event.toJson());
+    }
+}
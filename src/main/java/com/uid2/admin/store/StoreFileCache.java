@@ -0,0 +1,279 @@
+package com.uid2.admin.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded local disk cache of store data files, keyed by cloud path and metadata version.
+ * <p>
+ * Each entry is a content file plus a small {@code .meta} JSON file holding its path, version, size and SHA-256, so
+ * the cache survives restarts: the directory is re-indexed on construction. Every hit is verified against the stored
+ * checksum and a corrupt entry is dropped and reported as a miss. The least recently used entries are evicted once
+ * the total content size exceeds {@code maxBytes}. The directory is made accessible to the owner only.
+ * </p>
+ */
+public class StoreFileCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreFileCache.class);
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private record Entry(String cloudPath, long version, Path file, long size, String sha256) {
+        JsonObject toJson() {
+            return new JsonObject()
+                    .put("path", cloudPath)
+                    .put("version", version)
+                    .put("size", size)
+                    .put("sha256", sha256);
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    // access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter corruptions;
+
+    public StoreFileCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("uid2_admin_store_file_cache_hits_total")
+                .description("store data file downloads served from the local cache")
+                .register(Metrics.globalRegistry);
+        this.misses = Counter.builder("uid2_admin_store_file_cache_misses_total")
+                .description("store data file downloads not found in the local cache")
+                .register(Metrics.globalRegistry);
+        this.evictions = Counter.builder("uid2_admin_store_file_cache_evictions_total")
+                .description("local cache entries evicted to stay within the size bound")
+                .register(Metrics.globalRegistry);
+        this.corruptions = Counter.builder("uid2_admin_store_file_cache_corruptions_total")
+                .description("local cache entries dropped because their checksum did not match")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("uid2_admin_store_file_cache_bytes", this, StoreFileCache::getTotalBytes)
+                .description("total size of the local store file cache")
+                .register(Metrics.globalRegistry);
+
+        Files.createDirectories(directory);
+        if (Files.getFileAttributeView(directory, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+        }
+        loadIndex();
+    }
+
+    /**
+     * @return the cached content of the file at the given version, or {@code null} if it is not cached or the
+     * cached copy failed checksum verification.
+     */
+    public InputStream get(String cloudPath, long version) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key(cloudPath, version));
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        String sha256;
+        try (InputStream in = Files.newInputStream(entry.file())) {
+            sha256 = digest(in);
+        } catch (IOException e) {
+            sha256 = null;
+        }
+        if (!entry.sha256().equals(sha256)) {
+            LOGGER.warn("Dropping cached copy of {} at version {}: checksum mismatch", cloudPath, version);
+            corruptions.increment();
+            remove(entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return Files.newInputStream(entry.file());
+    }
+
+    /**
+     * Stores the content, read to the end, as the file at the given version and returns a stream over the cached copy.
+     */
+    public InputStream put(String cloudPath, long version, InputStream content) throws IOException {
+        String name = fileName(cloudPath, version);
+        Path temp = Files.createTempFile(directory, name, TEMP_SUFFIX);
+        Entry entry;
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(content, digest); OutputStream out = Files.newOutputStream(temp)) {
+                in.transferTo(out);
+            }
+            Path file = directory.resolve(name);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry = new Entry(cloudPath, version, file, Files.size(file), HexFormat.of().formatHex(digest.digest()));
+            Files.writeString(metaFile(file), entry.toJson().encode(), StandardCharsets.UTF_8);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        // opened before evicting, so the caller can still read a file too large to be kept
+        InputStream cached = Files.newInputStream(entry.file());
+        synchronized (this) {
+            Entry previous = entries.put(key(cloudPath, version), entry);
+            if (previous != null) {
+                totalBytes -= previous.size();
+            }
+            totalBytes += entry.size();
+            evict();
+        }
+        return cached;
+    }
+
+    /**
+     * Drops every cached version of the file, e.g. because it is being overwritten or deleted.
+     */
+    public void invalidate(String cloudPath) {
+        List<Entry> stale;
+        synchronized (this) {
+            stale = entries.values().stream().filter(e -> e.cloudPath().equals(cloudPath)).toList();
+        }
+        stale.forEach(this::remove);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.size();
+            deleteFiles(eldest);
+            evictions.increment();
+        }
+    }
+
+    private void remove(Entry entry) {
+        synchronized (this) {
+            if (entries.remove(key(entry.cloudPath(), entry.version()), entry)) {
+                totalBytes -= entry.size();
+            }
+        }
+        deleteFiles(entry);
+    }
+
+    private void loadIndex() throws IOException {
+        List<Entry> found = new ArrayList<>();
+        List<Path> contentFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (fileName.endsWith(META_SUFFIX)) {
+                    Entry entry = readMeta(file);
+                    if (entry == null) {
+                        Files.deleteIfExists(file);
+                    } else {
+                        found.add(entry);
+                    }
+                } else {
+                    contentFiles.add(file);
+                }
+            }
+        }
+        // content left without metadata by an interrupted write
+        Set<Path> indexed = new HashSet<>();
+        found.forEach(e -> indexed.add(e.file()));
+        for (Path file : contentFiles) {
+            if (!indexed.contains(file)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        // oldest first, so that the most recently written entries are the last to be evicted
+        found.sort(Comparator.comparing(e -> e.file().toFile().lastModified()));
+        for (Entry entry : found) {
+            entries.put(key(entry.cloudPath(), entry.version()), entry);
+            totalBytes += entry.size();
+        }
+        evict();
+        LOGGER.info("Store file cache at {} holds {} files, {} bytes", directory, entries.size(), totalBytes);
+    }
+
+    private Entry readMeta(Path metaFile) {
+        try {
+            JsonObject json = new JsonObject(Files.readString(metaFile, StandardCharsets.UTF_8));
+            String metaName = metaFile.getFileName().toString();
+            Path file = metaFile.resolveSibling(metaName.substring(0, metaName.length() - META_SUFFIX.length()));
+            if (!Files.exists(file) || Files.size(file) != json.getLong("size")) {
+                return null;
+            }
+            return new Entry(json.getString("path"), json.getLong("version"), file, json.getLong("size"), json.getString("sha256"));
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring unreadable cache entry {}", metaFile, e);
+            return null;
+        }
+    }
+
+    private static void deleteFiles(Entry entry) {
+        try {
+            Files.deleteIfExists(metaFile(entry.file()));
+            Files.deleteIfExists(entry.file());
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete cache entry {}", entry.file(), e);
+        }
+    }
+
+    private static Path metaFile(Path file) {
+        return file.resolveSibling(file.getFileName() + META_SUFFIX);
+    }
+
+    private static String key(String cloudPath, long version) {
+        return cloudPath + "@" + version;
+    }
+
+    private static String fileName(String cloudPath, long version) {
+        byte[] pathHash = sha256().digest(cloudPath.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(pathHash, 0, 16) + "." + version;
+    }
+
+    private static String digest(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream digesting = new DigestInputStream(in, digest)) {
+            digesting.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
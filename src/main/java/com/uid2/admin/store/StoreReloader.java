@@ -0,0 +1,167 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.store.reader.IMetadataVersionedStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.json.JsonObject;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight reloads of a store.
+ * <p>
+ * At most one reload of the store runs at a time. A caller arriving while one is running does not share it, since
+ * that reload may have read the metadata before the caller's own write; instead all such callers share the next
+ * reload, which starts as soon as the running one completes. Every caller therefore observes a reload that started
+ * after its call, and any number of concurrent callers cost at most two fetches.
+ * </p>
+ * <p>
+ * A reload always downloads the metadata, but only loads the data when the metadata version differs from the one
+ * this reloader last loaded. Loads made outside the reloader, e.g. by a store writer after its upload or by a sync
+ * job, are not seen, so the next reload after one of them loads the data again even if the version did not change
+ * since. This costs a redundant load but never skips a needed one: a version this reloader did not load never
+ * matches. Recording outside loads is deliberately avoided, as such a load can finish before an older load still in
+ * flight here, and the version recorded would then no longer describe the loaded data.
+ * </p>
+ * {@link #reload()} may wait for a running reload, so call it from a worker thread, never from an event loop.
+ */
+public class StoreReloader {
+    private static final Map<IMetadataVersionedStore, StoreReloader> RELOADERS = new IdentityHashMap<>();
+
+    private final IMetadataVersionedStore store;
+    private final Object lock = new Object();
+    private CompletableFuture<Long> running = null;
+    private CompletableFuture<Long> next = null;
+    // version of the last load made by this reloader, see the class comment for loads made by others
+    private volatile Long loadedVersion = null;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong fetchCount = new AtomicLong();
+    private final Counter requests;
+    private final Counter fetches;
+    private final Counter loads;
+    private final Counter unchanged;
+
+    StoreReloader(String storeName, IMetadataVersionedStore store) {
+        this.store = store;
+        this.requests = Counter.builder("uid2_admin_store_reload_requests_total")
+                .tag("store", storeName)
+                .description("store reloads requested by callers")
+                .register(Metrics.globalRegistry);
+        this.fetches = Counter.builder("uid2_admin_store_reload_fetches_total")
+                .tag("store", storeName)
+                .description("store reloads actually performed, each serving one or more requests")
+                .register(Metrics.globalRegistry);
+        this.loads = Counter.builder("uid2_admin_store_reload_loads_total")
+                .tag("store", storeName)
+                .tag("outcome", "changed")
+                .description("store reloads by whether the data had to be loaded")
+                .register(Metrics.globalRegistry);
+        this.unchanged = Counter.builder("uid2_admin_store_reload_loads_total")
+                .tag("store", storeName)
+                .tag("outcome", "unchanged")
+                .description("store reloads by whether the data had to be loaded")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("uid2_admin_store_reload_coalescing_ratio", this, StoreReloader::getCoalescingRatio)
+                .tag("store", storeName)
+                .description("reload requests per reload performed")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * @return the reloader shared by every caller reloading this store instance
+     */
+    public static StoreReloader of(String storeName, IMetadataVersionedStore store) {
+        synchronized (RELOADERS) {
+            return RELOADERS.computeIfAbsent(store, s -> new StoreReloader(storeName, s));
+        }
+    }
+
+    /**
+     * Reloads the store, or waits for a reload that started after this call.
+     *
+     * @return the metadata version the store is loaded at
+     */
+    public long reload() throws Exception {
+        requestCount.incrementAndGet();
+        requests.increment();
+
+        CompletableFuture<Long> previous = null;
+        CompletableFuture<Long> flight;
+        boolean lead = false;
+        synchronized (lock) {
+            if (running == null && next == null) {
+                running = new CompletableFuture<>();
+                flight = running;
+                lead = true;
+            } else if (next == null) {
+                next = new CompletableFuture<>();
+                flight = next;
+                previous = running;
+                lead = true;
+            } else {
+                flight = next;
+            }
+        }
+
+        if (lead) {
+            if (previous != null) {
+                // the outcome of the running reload does not matter, only that it is done
+                previous.handle((version, e) -> null).join();
+                synchronized (lock) {
+                    running = flight;
+                    next = null;
+                }
+            }
+            fetch(flight);
+        }
+        return await(flight);
+    }
+
+    private void fetch(CompletableFuture<Long> flight) {
+        try {
+            fetchCount.incrementAndGet();
+            fetches.increment();
+            JsonObject metadata = store.getMetadata();
+            long version = store.getVersion(metadata);
+            Long loaded = loadedVersion;
+            if (loaded != null && loaded == version) {
+                unchanged.increment();
+            } else {
+                store.loadContent(metadata);
+                loadedVersion = version;
+                loads.increment();
+            }
+            flight.complete(version);
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+        } finally {
+            synchronized (lock) {
+                if (running == flight) {
+                    running = null;
+                }
+            }
+        }
+    }
+
+    private static long await(CompletableFuture<Long> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    public double getCoalescingRatio() {
+        long performed = fetchCount.get();
+        return performed == 0 ? 0 : (double) requestCount.get() / performed;
+    }
+}
@@ -17,6 +17,13 @@ public class TmpFileStorage implements FileStorage {
         return newFile.toString();
     }
 
+    @Override
+    public String create(FileName fileName, byte[] content) throws IOException {
+        Path newFile = Files.createTempFile(fileName.getPrefix(), fileName.getSuffix());
+        Files.write(newFile, content, StandardOpenOption.CREATE);
+        return newFile.toString();
+    }
+
     @Override
     public String create(FileName fileName, InputStream content) throws IOException {
         Path newFile = Files.createTempFile(fileName.getPrefix(), fileName.getSuffix());
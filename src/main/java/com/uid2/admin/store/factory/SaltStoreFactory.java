@@ -1,8 +1,10 @@
 package com.uid2.admin.store.factory;
 
 import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.ObjectTagger;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.admin.store.writer.EncryptedSaltStoreWriter;
+import com.uid2.admin.store.writer.SaltCsvCache;
 import com.uid2.admin.store.writer.StoreWriter;
 import com.uid2.shared.cloud.TaggableCloudStorage;
 import com.uid2.shared.store.CloudPath;
@@ -26,23 +28,34 @@ public class SaltStoreFactory implements EncryptedStoreFactory<Collection<Rotati
     TaggableCloudStorage taggableCloudStorage;
     VersionGenerator versionGenerator;
     RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider;
+    // shared by the writers of every site, see SaltStoreWriter
+    ObjectTagger tagger;
+    SaltCsvCache csvCache;
 
     public SaltStoreFactory(JsonObject config, CloudPath rootMetadataPath, FileManager fileManager,
                             TaggableCloudStorage taggableCloudStorage, VersionGenerator versionGenerator,
-                            RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider) {
+                            RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider, ObjectTagger tagger) {
+        this(config, rootMetadataPath, fileManager, taggableCloudStorage, versionGenerator, cloudEncryptionKeyProvider, tagger, null);
+    }
+
+    public SaltStoreFactory(JsonObject config, CloudPath rootMetadataPath, FileManager fileManager,
+                            TaggableCloudStorage taggableCloudStorage, VersionGenerator versionGenerator,
+                            RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider, ObjectTagger tagger, SaltCsvCache csvCache) {
         this.config = config;
         this.rootMetadatapath = rootMetadataPath;
         this.fileManager = fileManager;
         this.taggableCloudStorage = taggableCloudStorage;
         this.versionGenerator = versionGenerator;
         this.cloudEncryptionKeyProvider = cloudEncryptionKeyProvider;
+        this.tagger = tagger;
+        this.csvCache = csvCache;
     }
 
     @Override
     public StoreWriter<Collection<RotatingSaltProvider.SaltSnapshot>> getEncryptedWriter(Integer siteId, boolean isPublic) {
         EncryptedScope scope = new EncryptedScope(rootMetadatapath, siteId, isPublic);
         EncryptedRotatingSaltProvider saltProvider = new EncryptedRotatingSaltProvider(taggableCloudStorage, cloudEncryptionKeyProvider, scope);
-        return new EncryptedSaltStoreWriter(config, saltProvider, fileManager, taggableCloudStorage, versionGenerator, scope, cloudEncryptionKeyProvider, siteId);
+        return new EncryptedSaltStoreWriter(config, saltProvider, fileManager, taggableCloudStorage, versionGenerator, scope, cloudEncryptionKeyProvider, siteId, tagger, csvCache);
     }
 
     @Override
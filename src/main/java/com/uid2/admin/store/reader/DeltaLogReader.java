@@ -0,0 +1,88 @@
+package com.uid2.admin.store.reader;
+
+import com.uid2.admin.store.DeltaLog;
+import com.uid2.shared.Utils;
+import com.uid2.shared.cloud.DownloadCloudStorage;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Reads a JSON array store written in delta-log mode (see {@link DeltaLog}).
+ * <p>
+ * The reader remembers which snapshot and patches it has already applied, so a reload after an append only
+ * downloads the new patch files. A new base snapshot, or a delta list that no longer extends the one already applied,
+ * causes a full reload.
+ * </p>
+ */
+public class DeltaLogReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeltaLogReader.class);
+
+    private final DownloadCloudStorage storage;
+    private final String dataType;
+    private final Function<JsonObject, String> keyOf;
+
+    private Long baseVersion = null;
+    private final List<String> appliedDeltas = new ArrayList<>();
+    private LinkedHashMap<String, JsonObject> state = new LinkedHashMap<>();
+
+    public DeltaLogReader(DownloadCloudStorage storage, String dataType, Function<JsonObject, String> keyOf) {
+        this.storage = storage;
+        this.dataType = dataType;
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * @return the current content of the store as a JSON array, in the same format as a full snapshot file
+     */
+    public synchronized JsonArray load(JsonObject metadata) throws Exception {
+        JsonObject container = metadata.getJsonObject(dataType);
+        Long metadataBaseVersion = container.getLong(DeltaLog.BASE_VERSION);
+        JsonArray deltas = container.getJsonArray(DeltaLog.DELTAS, new JsonArray());
+
+        if (!isContinuation(metadataBaseVersion, deltas)) {
+            try (InputStream stream = storage.download(container.getString("location"))) {
+                state = DeltaLog.index(Utils.toJsonArray(stream), keyOf);
+            }
+            baseVersion = metadataBaseVersion;
+            appliedDeltas.clear();
+            LOGGER.info("Loaded base snapshot for store={} entries={}", dataType, state.size());
+        }
+
+        for (int i = appliedDeltas.size(); i < deltas.size(); i++) {
+            String location = deltas.getJsonObject(i).getString("location");
+            try (InputStream stream = storage.download(location)) {
+                DeltaLog.apply(state, Utils.toJsonObject(stream), keyOf);
+            }
+            appliedDeltas.add(location);
+        }
+
+        return DeltaLog.toArray(state);
+    }
+
+    public synchronized void reset() {
+        baseVersion = null;
+        appliedDeltas.clear();
+        state = new LinkedHashMap<>();
+    }
+
+    private boolean isContinuation(Long metadataBaseVersion, JsonArray deltas) {
+        if (baseVersion == null || !Objects.equals(baseVersion, metadataBaseVersion) || appliedDeltas.size() > deltas.size()) {
+            return false;
+        }
+        for (int i = 0; i < appliedDeltas.size(); i++) {
+            if (!appliedDeltas.get(i).equals(deltas.getJsonObject(i).getString("location"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
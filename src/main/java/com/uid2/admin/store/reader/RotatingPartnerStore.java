@@ -1,5 +1,6 @@
 package com.uid2.admin.store.reader;
 
+import com.uid2.admin.store.DeltaLog;
 import com.uid2.shared.Utils;
 import com.uid2.shared.attest.UidCoreClient;
 import com.uid2.shared.cloud.ICloudStorage;
@@ -9,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.util.Locale;
 
 public class RotatingPartnerStore implements IMetadataVersionedStore {
     public static final String PARTNERS_METADATA_PATH = "partners_metadata_path";
@@ -17,6 +19,7 @@ public class RotatingPartnerStore implements IMetadataVersionedStore {
     private final ICloudStorage metadataStreamProvider;
     private final ICloudStorage contentStreamProvider;
     private final String metadataPath;
+    private final DeltaLogReader deltaLogReader;
     private String configJson;
 
     public RotatingPartnerStore(ICloudStorage fileStreamProvider, String metadataPath) {
@@ -27,6 +30,12 @@ public class RotatingPartnerStore implements IMetadataVersionedStore {
             this.contentStreamProvider = fileStreamProvider;
         }
         this.metadataPath = metadataPath;
+        this.deltaLogReader = new DeltaLogReader(this.contentStreamProvider, "partners", RotatingPartnerStore::keyOf);
+    }
+
+    // Partner names are unique regardless of case, so a case-only rename is a change of the same partner
+    public static String keyOf(JsonObject partner) {
+        return partner.getString("name").toLowerCase(Locale.ROOT);
     }
 
     public String getMetadataPath() { return this.metadataPath; }
@@ -48,6 +57,13 @@ public class RotatingPartnerStore implements IMetadataVersionedStore {
 
     @Override
     public long loadContent(JsonObject metadata) throws Exception {
+        if (DeltaLog.hasDeltas(metadata, "partners")) {
+            this.configJson = deltaLogReader.load(metadata).encodePrettily();
+            LOGGER.info("Loaded partner config from delta log: " + this.configJson.length() + " chars");
+            return this.configJson.length();
+        }
+
+        deltaLogReader.reset();
         final JsonObject sitesMetadata = metadata.getJsonObject("partners");
         final String path = sitesMetadata.getString("location");
         final InputStream inputStream = this.contentStreamProvider.download(path);
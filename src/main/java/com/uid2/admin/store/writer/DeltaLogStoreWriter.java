@@ -0,0 +1,194 @@
+package com.uid2.admin.store.writer;
+
+import com.uid2.admin.store.Clock;
+import com.uid2.admin.store.DeltaLog;
+import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.FileName;
+import com.uid2.admin.store.version.VersionGenerator;
+import com.uid2.shared.store.CloudPath;
+import com.uid2.shared.store.reader.IMetadataVersionedStore;
+import com.uid2.shared.store.scope.StoreScope;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a JSON array store in delta-log mode (see {@link DeltaLog}).
+ * <p>
+ * Each upload is diffed against the state this writer last committed and only the changed entries are uploaded as a
+ * patch file. A full snapshot is written instead on the first upload and every {@code compactionInterval} patches.
+ * </p>
+ * <p>
+ * Commits are optimistic, as in {@link ScopedStoreWriter}: if the store was changed by someone else since our last
+ * commit, the store is reloaded and a {@link StoreCommitConflictException} is thrown, so that the caller can rebuild its
+ * data from the other writer's commit through {@link StoreCommitRetry}. After a compaction, the patch files and
+ * snapshots that were superseded by the snapshot it replaced are deleted.
+ * </p>
+ * Only enable this for stores whose readers replay deltas, as readers that only follow {@code location} will not see
+ * changes made after the last snapshot.
+ */
+public class DeltaLogStoreWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeltaLogStoreWriter.class);
+
+    private final IMetadataVersionedStore provider;
+    private final FileManager fileManager;
+    private final VersionGenerator versionGenerator;
+    private final Clock clock;
+    private final StoreScope scope;
+    private final FileName dataFile;
+    private final String dataType;
+    private final Function<JsonObject, String> keyOf;
+    private final int compactionInterval;
+
+    private Map<String, JsonObject> committedState = null;
+    private Long committedVersion = null;
+
+    public DeltaLogStoreWriter(
+            IMetadataVersionedStore provider,
+            FileManager fileManager,
+            VersionGenerator versionGenerator,
+            Clock clock,
+            StoreScope scope,
+            FileName dataFile,
+            String dataType,
+            Function<JsonObject, String> keyOf,
+            int compactionInterval) {
+        this.provider = provider;
+        this.fileManager = fileManager;
+        this.versionGenerator = versionGenerator;
+        this.clock = clock;
+        this.scope = scope;
+        this.dataFile = dataFile;
+        this.dataType = dataType;
+        this.keyOf = keyOf;
+        this.compactionInterval = compactionInterval;
+    }
+
+    public Long getCommittedVersion() {
+        return committedVersion;
+    }
+
+    public void upload(JsonArray data, JsonObject extraMeta) throws Exception {
+        final long generated = clock.getEpochSecond();
+        final boolean isFirstWrite = !fileManager.isPresent(scope.getMetadataPath());
+        final Metadata metadata = new Metadata(isFirstWrite ? new JsonObject() : provider.getMetadata());
+        final Long baseVersion = isFirstWrite ? null : metadata.getJson().getLong("version");
+        if (committedVersion != null && !Objects.equals(baseVersion, committedVersion)) {
+            // Someone else committed since our last write, so the caller's data may not include their changes
+            onConflict(new StoreCommitConflictException(scope.getMetadataPath(), committedVersion, baseVersion));
+        }
+        final Map<String, JsonObject> desiredState = DeltaLog.index(data, keyOf);
+
+        metadata.setGenerated(generated);
+        if (extraMeta != null) {
+            metadata.addExtra(extraMeta);
+        }
+        final Long version = versionGenerator.getVersion();
+        metadata.setVersion(version);
+
+        final JsonObject container = metadata.getJson().getJsonObject(dataType);
+        final JsonArray deltas = container == null ? new JsonArray() : container.getJsonArray(DeltaLog.DELTAS, new JsonArray());
+        final Long replacedBaseVersion = container == null ? null : container.getLong(DeltaLog.BASE_VERSION);
+        final boolean canAppend = container != null
+                && committedState != null
+                && deltas.size() < compactionInterval;
+
+        if (canAppend) {
+            JsonObject patch = DeltaLog.diff(committedState, desiredState);
+            if (!DeltaLog.isEmpty(patch)) {
+                CloudPath deltaLocation = scope.resolve(new CloudPath(dataFile.getPrefix() + ".delta." + version + dataFile.getSuffix()));
+                fileManager.uploadFile(deltaLocation, new FileName(dataFile.getPrefix() + ".delta", dataFile.getSuffix()), patch.encode());
+                deltas.add(new JsonObject().put("location", deltaLocation.toString()).put("version", version));
+                container.put(DeltaLog.DELTAS, deltas);
+                LOGGER.info("Appended delta for store={} upserts={} deletes={} pending_deltas={}",
+                        dataType, patch.getJsonArray(DeltaLog.UPSERTS).size(), patch.getJsonArray(DeltaLog.DELETES).size(), deltas.size());
+            }
+            commitMetadata(metadata, baseVersion);
+        } else {
+            CloudPath location = container == null
+                    ? scope.resolve(new CloudPath(dataFile.toString()))
+                    : metadata.locationOf(dataType);
+            if (fileManager.isVersionedDataFiles()) {
+                location = scope.resolve(new CloudPath(dataFile.getPrefix() + "." + version + dataFile.getSuffix()));
+            } else {
+                // the snapshot location is shared by all versions, so do not overwrite it after losing the race
+                checkStoredVersion(baseVersion);
+            }
+            fileManager.uploadFile(location, dataFile, data.encode());
+            metadata.setLocation(dataType, location);
+            metadata.getJson().getJsonObject(dataType)
+                    .put(DeltaLog.BASE_VERSION, version)
+                    .put(DeltaLog.DELTAS, new JsonArray());
+            commitMetadata(metadata, baseVersion);
+            LOGGER.info("Wrote compacted snapshot for store={} entries={}", dataType, desiredState.size());
+            if (replacedBaseVersion != null) {
+                deleteFilesOlderThan(replacedBaseVersion);
+            }
+        }
+        committedState = desiredState;
+
+        provider.loadContent(provider.getMetadata());
+    }
+
+    private void commitMetadata(Metadata metadata, Long baseVersion) throws Exception {
+        try {
+            fileManager.uploadMetadata(metadata.getJson(), dataType, scope.getMetadataPath(), baseVersion);
+        } catch (StoreCommitConflictException e) {
+            // another writer committed between our read and our write
+            onConflict(e);
+        }
+        committedVersion = metadata.getJson().getLong("version");
+    }
+
+    private void checkStoredVersion(Long baseVersion) throws Exception {
+        Long storedVersion = fileManager.getMetadataVersion(scope.getMetadataPath());
+        if (!Objects.equals(storedVersion, baseVersion)) {
+            onConflict(new StoreCommitConflictException(scope.getMetadataPath(), baseVersion, storedVersion));
+        }
+    }
+
+    // Refreshes the store so that the next attempt is built on top of the other writer's commit, then rethrows
+    private void onConflict(StoreCommitConflictException e) throws Exception {
+        LOGGER.warn("Commit conflict for store={}: {}", dataType, e.getMessage());
+        JsonObject storedMetadata = provider.getMetadata();
+        provider.loadContent(storedMetadata.copy());
+        // the next upload diffs against state we no longer know, so it writes a full snapshot
+        committedState = null;
+        committedVersion = storedMetadata.getLong("version");
+        throw e;
+    }
+
+    /**
+     * Deletes the patch files and versioned snapshots written before {@code version}, the base version of the snapshot
+     * the compaction replaced. That snapshot and its patch files are kept for readers that have not reloaded yet.
+     */
+    private void deleteFilesOlderThan(long version) {
+        Pattern compactedFile = Pattern.compile(Pattern.quote(scope.resolve(new CloudPath(dataFile.getPrefix())).toString())
+                + "(?:\\.delta)?\\.(\\d+)" + Pattern.quote(dataFile.getSuffix()));
+        try {
+            List<String> compacted = new ArrayList<>();
+            for (String file : fileManager.listFiles(scope.resolve(new CloudPath(dataFile.getPrefix() + ".")))) {
+                Matcher matcher = compactedFile.matcher(file);
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < version) {
+                    compacted.add(file);
+                }
+            }
+            if (!compacted.isEmpty()) {
+                fileManager.deleteFiles(compacted);
+                LOGGER.info("Deleted {} compacted files for store={}", compacted.size(), dataType);
+            }
+        } catch (Exception e) {
+            // the commit already succeeded; leftover files are deleted after the next compaction
+            LOGGER.warn("Failed to delete compacted files for store={}", dataType, e);
+        }
+    }
+}
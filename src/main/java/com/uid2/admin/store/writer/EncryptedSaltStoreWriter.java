@@ -1,11 +1,13 @@
 package com.uid2.admin.store.writer;
 
+import com.uid2.admin.cloudencryption.SiteEncryptionContext;
+import com.uid2.admin.cloudencryption.SiteEncryptionContextCache;
+import com.uid2.admin.store.ContentEncoding;
 import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.ObjectTagger;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.Utils;
 import com.uid2.shared.cloud.TaggableCloudStorage;
-import com.uid2.shared.encryption.AesGcm;
-import com.uid2.shared.model.CloudEncryptionKey;
 import com.uid2.shared.store.CloudPath;
 import com.uid2.shared.store.salt.RotatingSaltProvider;
 import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
@@ -14,28 +16,45 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.vertx.core.json.JsonObject;
 
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class EncryptedSaltStoreWriter extends SaltStoreWriter implements StoreWriter {
     private StoreScope scope;
-    private RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider;
+    private final SiteEncryptionContextCache encryptionContexts;
     private Integer siteId;
     private JsonObject unEncryptedMetadataData;
+    private final SaltCsvCache csvCache;
+    // stored metadata, read at most once per upload
+    private JsonObject storedMetadata = null;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EncryptedSaltStoreWriter.class);
     public EncryptedSaltStoreWriter(JsonObject config, RotatingSaltProvider provider, FileManager fileManager,
                                     TaggableCloudStorage cloudStorage, VersionGenerator versionGenerator, StoreScope scope,
-                                    RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider, Integer siteId) {
-        super(config, provider, fileManager, cloudStorage, versionGenerator);
+                                    RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider, Integer siteId, ObjectTagger tagger) {
+        this(config, provider, fileManager, cloudStorage, versionGenerator, scope, cloudEncryptionKeyProvider, siteId, tagger, null);
+    }
+
+    /**
+     * @param csvCache shared with the writers of the other sites in the same run, or {@code null} to serialize every
+     *                 snapshot for this site
+     */
+    public EncryptedSaltStoreWriter(JsonObject config, RotatingSaltProvider provider, FileManager fileManager,
+                                    TaggableCloudStorage cloudStorage, VersionGenerator versionGenerator, StoreScope scope,
+                                    RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider, Integer siteId,
+                                    ObjectTagger tagger, SaltCsvCache csvCache) {
+        super(config, provider, fileManager, cloudStorage, versionGenerator, tagger);
         this.scope = scope;
-        this.cloudEncryptionKeyProvider = cloudEncryptionKeyProvider;
+        this.encryptionContexts = SiteEncryptionContextCache.forProvider(cloudEncryptionKeyProvider);
         this.siteId = siteId;
+        this.csvCache = csvCache;
     }
 
     @Override
     public void upload(Object data, JsonObject extraMeta) throws Exception {
         this.unEncryptedMetadataData = extraMeta;
+        this.storedMetadata = null;
         @SuppressWarnings("unchecked")
         List<RotatingSaltProvider.SaltSnapshot> snapshots = new ArrayList<>((Collection<RotatingSaltProvider.SaltSnapshot>) data);
         this.buildAndUploadMetadata(snapshots);
@@ -51,9 +70,15 @@ public class EncryptedSaltStoreWriter extends SaltStoreWriter implements StoreWr
         return scope.resolve(new CloudPath("salts.txt." + snapshot.getEffective().toEpochMilli())).toString();
     }
 
-    private CloudEncryptionKey getActiveCloudEncryptionKey(){
+    // Encrypted files are compressed, if at all, by the binary_gzip envelope format
+    @Override
+    protected ContentEncoding getSaltsContentEncoding() {
+        return ContentEncoding.IDENTITY;
+    }
+
+    private SiteEncryptionContext getActiveEncryptionContext() {
         try {
-            return cloudEncryptionKeyProvider.getEncryptionKeyForSite(siteId);
+            return encryptionContexts.get(siteId);
         } catch (IllegalStateException e) {
             LOGGER.error("Error: No Cloud Encryption keys available for encryption for site ID: {}", siteId, e);
             throw e;
@@ -62,7 +87,7 @@ public class EncryptedSaltStoreWriter extends SaltStoreWriter implements StoreWr
 
     @Override
     protected JsonObject enrichMetadata(JsonObject metadata){
-        metadata.put("key_id", this.getActiveCloudEncryptionKey().getId());
+        metadata.put("key_id", this.getActiveEncryptionContext().getKeyId());
         return metadata;
     }
 
@@ -82,37 +107,80 @@ public class EncryptedSaltStoreWriter extends SaltStoreWriter implements StoreWr
         if (siteId == null) {
             throw new IllegalStateException("Site ID is not set.");
         }
-        CloudEncryptionKey encryptionKey = this.getActiveCloudEncryptionKey();
-        boolean fileExist = !cloudStorage.list(location).isEmpty();
-         if (fileExist) {
-             JsonObject metadata = Utils.toJsonObject(this.cloudStorage.download(this.getMetadataPath().toString()));
-             if (Objects.equals(metadata.getInteger("key_id", null), encryptionKey.getId())) {
-                 LOGGER.info("Not overwriting salt files for site {} as encryption key is already used before", this.siteId);
-                 return false;
-             }
-         }
-
-        var saltCsv = SaltSerializer.toCsv(snapshot.getAllRotatingSalts());
-        var encryptedSaltCsv = addEncryptedEnvelope(encryptionKey, saltCsv);
-        uploadSaltsFile(location, encryptedSaltCsv);
-
-        LOGGER.info("File encryption completed for site_id={} key_id={} store={}", siteId, encryptionKey.getId(), "salts");
+        SiteEncryptionContext encryptionContext = this.getActiveEncryptionContext();
+        boolean fileExist = exists(location);
+        if (fileExist && isWrittenWith(encryptionContext)) {
+            LOGGER.info("Not overwriting salt files for site {} as encryption key is already used before", this.siteId);
+            return false;
+        }
+
+        long[] written = new long[1];
+        uploadSaltsFile(location, out -> {
+            CountingOutputStream counting = new CountingOutputStream(out);
+            encryptionContext.writeEnvelope(counting, plaintextOut -> {
+                if (csvCache != null) {
+                    csvCache.writeCsv(snapshot, plaintextOut);
+                    return;
+                }
+                Writer writer = new BufferedWriter(new OutputStreamWriter(plaintextOut, StandardCharsets.UTF_8));
+                SaltSerializer.writeCsv(snapshot.getAllRotatingSalts(), writer);
+                writer.flush();
+            });
+            written[0] = counting.getCount();
+        });
+        EncryptedScopedStoreWriter.recordUploadedBytes("salts", written[0]);
+
+        LOGGER.info("File encryption completed for site_id={} key_id={} store={}", siteId, encryptionContext.getKeyId(), "salts");
         return true;
     }
 
-    private String addEncryptedEnvelope(CloudEncryptionKey encryptionKey, String data) {
-        JsonObject encryptedJson = new JsonObject();
-        if (encryptionKey != null) {
-            byte[] secret = Base64.getDecoder().decode(encryptionKey.getSecret());
-            byte[] encryptedPayload = AesGcm.encrypt(data.getBytes(StandardCharsets.UTF_8), secret);
-            encryptedJson.put("key_id", encryptionKey.getId())
-                         .put("encryption_version", "1.0")
-                         .put("encrypted_payload", Base64.getEncoder().encodeToString(encryptedPayload));
-        } else {
-            throw new IllegalStateException("No Cloud Encryption keys available for encryption for site ID: " + siteId);
+    private boolean isWrittenWith(SiteEncryptionContext encryptionContext) throws Exception {
+        JsonObject storedMetadata = getStoredMetadata();
+        return Objects.equals(storedMetadata.getInteger("key_id", null), encryptionContext.getKeyId());
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
         }
+    }
+
+    // getMetadata is the global plaintext metadata; the files this writer replaces are in the site's own metadata
+    @Override
+    protected Set<String> getStoredLocations(JsonObject metadata) throws Exception {
+        return getReferencedLocations(getStoredMetadata());
+    }
 
-        return encryptedJson.encodePrettily();
+    private JsonObject getStoredMetadata() throws Exception {
+        if (storedMetadata == null) {
+            String metadataPath = this.getMetadataPath().toString();
+            if (!exists(metadataPath)) {
+                storedMetadata = new JsonObject();
+            } else {
+                try (InputStream stream = this.cloudStorage.download(metadataPath)) {
+                    storedMetadata = Utils.toJsonObject(stream);
+                }
+            }
+        }
+        return storedMetadata;
     }
 
     @Override
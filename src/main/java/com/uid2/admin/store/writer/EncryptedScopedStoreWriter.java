@@ -1,36 +1,61 @@
 package com.uid2.admin.store.writer;
 
+import com.uid2.admin.cloudencryption.SiteEncryptionContext;
+import com.uid2.admin.cloudencryption.SiteEncryptionContextCache;
 import com.uid2.admin.store.Clock;
 import com.uid2.admin.store.FileManager;
 import com.uid2.admin.store.FileName;
 import com.uid2.admin.store.version.VersionGenerator;
-import com.uid2.shared.encryption.AesGcm;
-import com.uid2.shared.model.CloudEncryptionKey;
 import com.uid2.shared.store.reader.IMetadataVersionedStore;
 import com.uid2.shared.store.scope.StoreScope;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import io.vertx.core.json.JsonObject;
 import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Objects;
 
+/**
+ * Writes a data file encrypted with the site's current cloud encryption key.
+ * <p>
+ * The SHA-256 of the plaintext (and of the extra metadata other than the version) and the id of the key used are
+ * recorded in the metadata entry of the data type. An upload whose digest and key id match what is already stored is
+ * skipped, so unchanged sites are not re-encrypted and re-uploaded on every sync.
+ * </p>
+ */
 public class EncryptedScopedStoreWriter extends ScopedStoreWriter {
+    static final String PLAINTEXT_DIGEST = "plaintext_sha256";
+    static final String KEY_ID = "key_id";
+    private static final String UPLOADED_BYTES_METRIC = "uid2_admin_encrypted_upload_bytes_total";
 
-    private final RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider;
+    private final SiteEncryptionContextCache encryptionContexts;
     private Integer siteId;
     private static final Logger LOGGER = LoggerFactory.getLogger(EncryptedScopedStoreWriter.class);
     private String storeName;
+    private final Counter uploadedCounter;
+    private final Counter skippedCounter;
 
     public EncryptedScopedStoreWriter(IMetadataVersionedStore provider,
                                       FileManager fileManager, VersionGenerator versionGenerator, Clock clock,
                                       StoreScope scope, FileName dataFile, String dataType, RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider, Integer siteId) {
         super(provider, fileManager, versionGenerator, clock, scope, dataFile, dataType);
-        this.cloudEncryptionKeyProvider = cloudEncryptionKeyProvider;
+        this.encryptionContexts = SiteEncryptionContextCache.forProvider(cloudEncryptionKeyProvider);
         //site id is passed in to look up S3 key to encrypt
         this.siteId = siteId;
         this.storeName = dataType; // for logging purposes
+        this.uploadedCounter = Counter.builder("uid2_admin_encrypted_uploads_total")
+                .tag("store", dataType).tag("result", "uploaded")
+                .description("encrypted store uploads, by whether the content had changed")
+                .register(Metrics.globalRegistry);
+        this.skippedCounter = Counter.builder("uid2_admin_encrypted_uploads_total")
+                .tag("store", dataType).tag("result", "unchanged")
+                .description("encrypted store uploads, by whether the content had changed")
+                .register(Metrics.globalRegistry);
     }
 
     @Override
@@ -39,19 +64,23 @@ public class EncryptedScopedStoreWriter extends ScopedStoreWriter {
             throw new IllegalStateException("Site ID is not set.");
         }
 
-        CloudEncryptionKey encryptionKey = null;
+        SiteEncryptionContext encryptionContext;
         try {
-             encryptionKey = cloudEncryptionKeyProvider.getEncryptionKeyForSite(siteId);
+            encryptionContext = encryptionContexts.get(siteId);
         } catch (IllegalStateException e) {
             LOGGER.error("Error: No Cloud Encryption keys available for encryption for site ID: {}", siteId, e);
+            throw e;
         }
 
-        if (encryptionKey != null) {
-            uploadWithEncryptionKey(data, extraMeta, encryptionKey);
-            LOGGER.info("File encryption completed for site_id={} key_id={} store={}", siteId, encryptionKey.getId(), storeName);
-        } else {
-            throw new IllegalStateException("No Cloud Encryption keys available for encryption for site ID: " + siteId);
+        String digest = digestOf(data, extraMeta);
+        if (isUnchanged(digest, encryptionContext.getKeyId())) {
+            skippedCounter.increment();
+            LOGGER.debug("Skipping unchanged encrypted upload for site_id={} key_id={} store={}", siteId, encryptionContext.getKeyId(), storeName);
+            return;
         }
+        uploadWithEncryptionKey(data, extraMeta, encryptionContext, digest);
+        uploadedCounter.increment();
+        LOGGER.info("File encryption completed for site_id={} key_id={} store={}", siteId, encryptionContext.getKeyId(), storeName);
     }
 
     @Override
@@ -59,14 +88,45 @@ public class EncryptedScopedStoreWriter extends ScopedStoreWriter {
         return metadata.getJson().getLong("version");
     }
 
-    private void uploadWithEncryptionKey(String data, JsonObject extraMeta, CloudEncryptionKey encryptionKey) throws Exception {
-        byte[] secret = Base64.getDecoder().decode(encryptionKey.getSecret());
-        byte[] encryptedPayload = AesGcm.encrypt(data.getBytes(StandardCharsets.UTF_8), secret);
-        JsonObject encryptedJson = new JsonObject()
-                .put("key_id", encryptionKey.getId())
-                .put("encryption_version", "1.0")
-                .put("encrypted_payload", Base64.getEncoder().encodeToString(encryptedPayload));
+    private boolean isUnchanged(String digest, int keyId) throws Exception {
+        JsonObject current = getCurrentLocationEntry();
+        return current != null
+                && digest.equals(current.getString(PLAINTEXT_DIGEST))
+                && Objects.equals(current.getInteger(KEY_ID), keyId);
+    }
+
+    // The version is excluded as it changes with every global store write, even when this site's content does not
+    static String digestOf(String data, JsonObject extraMeta) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(data.getBytes(StandardCharsets.UTF_8));
+        if (extraMeta != null) {
+            JsonObject meta = extraMeta.copy();
+            meta.remove("version");
+            md.update(meta.encode().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private void uploadWithEncryptionKey(String data, JsonObject extraMeta, SiteEncryptionContext encryptionContext, String digest) throws Exception {
+        String content = encryptionContext.toEnvelope(data);
+        super.upload(content, extraMeta, new JsonObject()
+                .put(PLAINTEXT_DIGEST, digest)
+                .put(KEY_ID, encryptionContext.getKeyId()));
+        recordUploadedBytes(storeName, content.length());
+    }
+
+    static void recordUploadedBytes(String store, long bytes) {
+        Counter.builder(UPLOADED_BYTES_METRIC)
+                .tag("store", store)
+                .description("bytes of encrypted store files uploaded")
+                .register(Metrics.globalRegistry)
+                .increment(bytes);
+    }
 
-        super.upload(encryptedJson.encodePrettily(), extraMeta);
+    // Total encrypted bytes uploaded by this process across all stores
+    public static double getUploadedBytesTotal() {
+        return Metrics.globalRegistry.find(UPLOADED_BYTES_METRIC).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
     }
 }
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.uid2.admin.store.Clock;
 import com.uid2.admin.store.FileManager;
 import com.uid2.admin.store.FileName;
+import com.uid2.admin.store.StoreChangeEvent;
+import com.uid2.admin.store.StoreChangePublisher;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.model.EncryptionKey;
 import com.uid2.shared.store.reader.RotatingKeyStore;
@@ -18,6 +20,7 @@ import java.util.Collection;
 
 public class EncryptionKeyStoreWriter implements StoreWriter<Collection<EncryptionKey>> {
     private final ScopedStoreWriter writer;
+    private StoreChangePublisher changePublisher = StoreChangePublisher.NONE;
 
     public EncryptionKeyStoreWriter(RotatingKeyStore provider, FileManager fileManager, VersionGenerator versionGenerator, Clock clock, StoreScope scope) {
         FileName dataFile = new FileName("keys", ".json");
@@ -37,6 +40,12 @@ public class EncryptionKeyStoreWriter implements StoreWriter<Collection<Encrypti
         this.writer = new EncryptedScopedStoreWriter(provider, fileManager, versionGenerator, clock, scope, dataFile, dataType, cloudEncryptionKeyProvider, scope.getId());
     }
 
+    // Publishes a change event for every site after each upload. The reader only exposes the active keys, so a diff
+    // against it would miss the sites of keys dropped from the file once expired.
+    public void setChangePublisher(StoreChangePublisher changePublisher) {
+        this.changePublisher = changePublisher;
+    }
+
     @Override
     public void upload(Collection<EncryptionKey> data, JsonObject extraMeta) throws Exception {
         final JsonArray jsonKeys = new JsonArray();
@@ -52,6 +61,7 @@ public class EncryptionKeyStoreWriter implements StoreWriter<Collection<Encrypti
         }
         String content = jsonKeys.encodePrettily();
         writer.upload(content, extraMeta);
+        changePublisher.publish(new StoreChangeEvent("keys", writer.getLastCommittedVersion(), null));
     }
 
     public void upload(Collection<EncryptionKey> data, Integer newMaxKeyId) throws Exception {
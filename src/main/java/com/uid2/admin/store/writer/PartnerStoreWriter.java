@@ -1,9 +1,12 @@
 package com.uid2.admin.store.writer;
 
+import com.uid2.admin.store.DeltaLog;
 import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.InstantClock;
 import com.uid2.admin.store.reader.RotatingPartnerStore;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.store.CloudPath;
+import com.uid2.shared.store.scope.GlobalScope;
 import com.uid2.admin.store.FileName;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -14,15 +17,30 @@ public class PartnerStoreWriter {
     private final RotatingPartnerStore provider;
     private final FileManager fileManager;
     private final VersionGenerator versionGenerator;
+    private final DeltaLogStoreWriter deltaLogWriter;
 
 
     public PartnerStoreWriter(RotatingPartnerStore provider, FileManager fileManager, VersionGenerator versionGenerator) {
+        this(provider, fileManager, versionGenerator, 0);
+    }
+
+    // deltaCompactionInterval > 0 enables delta-log mode, writing a full snapshot after that many deltas
+    public PartnerStoreWriter(RotatingPartnerStore provider, FileManager fileManager, VersionGenerator versionGenerator, int deltaCompactionInterval) {
         this.provider = provider;
         this.fileManager = fileManager;
         this.versionGenerator = versionGenerator;
+        this.deltaLogWriter = deltaCompactionInterval > 0
+                ? new DeltaLogStoreWriter(provider, fileManager, versionGenerator, new InstantClock(), new GlobalScope(new CloudPath(provider.getMetadataPath())),
+                        new FileName("partners", ".json"), "partners", RotatingPartnerStore::keyOf, deltaCompactionInterval)
+                : null;
     }
 
     public void upload(JsonArray partners) throws Exception {
+        if (deltaLogWriter != null) {
+            deltaLogWriter.upload(partners, null);
+            return;
+        }
+
         long generated = Instant.now().getEpochSecond();
         FileName dataFile = new FileName("partners", ".json");
 
@@ -32,7 +50,11 @@ public class PartnerStoreWriter {
         metadata.put("generated", generated);
 
         // get location to upload
-        CloudPath location = new CloudPath(metadata.getJsonObject("partners").getString("location"));
+        JsonObject locationContainer = metadata.getJsonObject("partners");
+        CloudPath location = new CloudPath(locationContainer.getString("location"));
+        // the full file supersedes a delta log left behind by delta-log mode
+        locationContainer.remove(DeltaLog.DELTAS);
+        locationContainer.remove(DeltaLog.BASE_VERSION);
 
         // generate new partners
         String content = partners.encodePrettily();
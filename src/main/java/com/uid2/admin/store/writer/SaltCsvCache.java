@@ -0,0 +1,116 @@
+package com.uid2.admin.store.writer;
+
+import com.uid2.shared.model.SaltEntry;
+import com.uid2.shared.store.salt.RotatingSaltProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serialized salts CSV shared by the encrypted salt writers of one sync run.
+ * <p>
+ * Every private and public site is sent the same snapshots. The first writer to need a snapshot serializes it to a
+ * temp file, keyed by effective timestamp, and every other site streams that file into its encryption envelope, so
+ * a snapshot is serialized once per run instead of once per site and the CSV never sits on the heap.
+ * An entry is only reused for the same snapshot content, i.e. the same salts array instance.
+ * </p>
+ * Close the cache at the end of the run to delete the temp files.
+ */
+public class SaltCsvCache implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaltCsvCache.class);
+    private static final Counter SERIALIZATIONS = Counter.builder("uid2_admin_salt_csv_cache_serializations_total")
+            .description("salt snapshots serialized to CSV for encrypted uploads")
+            .register(Metrics.globalRegistry);
+    private static final Counter REUSES = Counter.builder("uid2_admin_salt_csv_cache_reuses_total")
+            .description("encrypted salt uploads that reused an already serialized snapshot")
+            .register(Metrics.globalRegistry);
+    private static final Counter SAVED_BYTES = Counter.builder("uid2_admin_salt_csv_cache_saved_bytes_total")
+            .description("CSV bytes not serialized again thanks to the salt CSV cache")
+            .register(Metrics.globalRegistry);
+
+    private record Entry(SaltEntry[] salts, Path file, long size) {}
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private Path directory = null;
+    private long serializations = 0;
+    private long reuses = 0;
+    private long savedBytes = 0;
+
+    /**
+     * Writes the CSV of the snapshot, as {@link SaltSerializer#writeCsv} would, to {@code out}.
+     */
+    public synchronized void writeCsv(RotatingSaltProvider.SaltSnapshot snapshot, OutputStream out) throws IOException {
+        long effective = snapshot.getEffective().toEpochMilli();
+        Entry entry = entries.get(effective);
+        if (entry != null && entry.salts() == snapshot.getAllRotatingSalts()) {
+            reuses++;
+            savedBytes += entry.size();
+            REUSES.increment();
+            SAVED_BYTES.increment(entry.size());
+        } else {
+            if (entry != null) {
+                Files.deleteIfExists(entry.file());
+            }
+            entry = serialize(effective, snapshot.getAllRotatingSalts());
+            entries.put(effective, entry);
+        }
+        Files.copy(entry.file(), out);
+    }
+
+    private Entry serialize(long effective, SaltEntry[] salts) throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory("salt-csv-cache");
+        }
+        Path file = directory.resolve("salts.txt." + effective);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8))) {
+            SaltSerializer.writeCsv(salts, writer);
+        }
+        serializations++;
+        SERIALIZATIONS.increment();
+        return new Entry(salts, file, Files.size(file));
+    }
+
+    public synchronized long getSerializations() {
+        return serializations;
+    }
+
+    public synchronized long getReuses() {
+        return reuses;
+    }
+
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (serializations > 0) {
+            LOGGER.info("Salt CSV cache serialized {} snapshots, reused them {} times and saved {} bytes of serialization",
+                    serializations, reuses, savedBytes);
+        }
+        for (Entry entry : entries.values()) {
+            try {
+                Files.deleteIfExists(entry.file());
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete {}", entry.file(), e);
+            }
+        }
+        entries.clear();
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete {}", directory, e);
+            }
+            directory = null;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.uid2.admin.store.writer;
 
 import com.uid2.shared.model.SaltEntry;
 
+import java.io.IOException;
+import java.io.Writer;
+
 public final class SaltSerializer {
     private SaltSerializer() {
     }
@@ -16,6 +19,16 @@ public final class SaltSerializer {
         return stringBuilder.toString();
     }
 
+    // Writes the same content as toCsv without building the whole file in memory
+    public static void writeCsv(SaltEntry[] entries, Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (SaltEntry entry : entries) {
+            line.setLength(0);
+            addLine(entry, line);
+            writer.append(line);
+        }
+    }
+
     private static void addLine(SaltEntry entry, StringBuilder stringBuilder) {
         long lastUpdated = entry.lastUpdated();
         stringBuilder
@@ -1,6 +1,8 @@
 package com.uid2.admin.store.writer;
 
+import com.uid2.admin.store.ContentEncoding;
 import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.ObjectTagger;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.cloud.CloudStorageException;
 import com.uid2.shared.cloud.TaggableCloudStorage;
@@ -11,14 +13,22 @@ import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 public class SaltStoreWriter {
@@ -27,18 +37,30 @@ public class SaltStoreWriter {
     private final FileManager fileManager;
     protected final String saltSnapshotLocationPrefix;
     private final VersionGenerator versionGenerator;
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final ObjectTagger tagger;
+    // existing snapshot files found during an upload, marked current together once all snapshots are processed
+    private final List<String> pendingCurrentLocations = new ArrayList<>();
+    // files queued by archiveSaltLocations, marked obsolete by the next upload unless still referenced
+    private final Set<String> pendingObsoleteLocations = new LinkedHashSet<>();
 
     protected final TaggableCloudStorage cloudStorage;
 
     private final Map<String, String> currentTags = Map.of("status", "current");
     private final Map<String, String> obsoleteTags = Map.of("status", "obsolete");
 
-    public SaltStoreWriter(JsonObject config, RotatingSaltProvider provider, FileManager fileManager, TaggableCloudStorage cloudStorage, VersionGenerator versionGenerator) {
+    /**
+     * @param tagger shared by every salt writer of the process, so that its threads and the tags it knows outlive
+     *               the writer; closed by its owner
+     */
+    public SaltStoreWriter(JsonObject config, RotatingSaltProvider provider, FileManager fileManager, TaggableCloudStorage cloudStorage,
+                           VersionGenerator versionGenerator, ObjectTagger tagger) {
         this.provider = provider;
         this.fileManager = fileManager;
         this.cloudStorage = cloudStorage;
         this.saltSnapshotLocationPrefix = config.getString("salt_snapshot_location_prefix");
         this.versionGenerator = versionGenerator;
+        this.tagger = tagger;
     }
 
     public void upload(RotatingSaltProvider.SaltSnapshot data) throws Exception {
@@ -47,22 +69,54 @@ public class SaltStoreWriter {
     }
 
     /**
-     * reads the metadata file, and marks each referenced file as ready for archiving
+     * reads the metadata file, and queues each referenced file to be marked as ready for archiving
+     * <p>
+     * The files are marked by the next upload, once its metadata is committed, and only if the new metadata no longer
+     * references them. Files that are kept are therefore never marked obsolete and then current again, and keep
+     * their tags untouched. If nothing is uploaded, the metadata still references every file and none is marked.
+     * </p>
      */
     public void archiveSaltLocations() throws Exception {
-        final JsonObject metadata = provider.getMetadata();
-
-        metadata.getJsonArray("salts").forEach(instance -> {
-            try {
-                JsonObject salt = (JsonObject) instance;
-                String location = salt.getString("location", "");
-                if (!location.isBlank()) {
-                    this.setStatusTagToObsolete(location);
-                }
-            } catch (Exception ex) {
-                LOGGER.error("Error marking object as ready for archiving", ex);
+        pendingObsoleteLocations.addAll(getReferencedLocations(provider.getMetadata()));
+    }
+
+    // The files referenced by the metadata this writer commits over
+    protected Set<String> getStoredLocations(JsonObject metadata) throws Exception {
+        return getReferencedLocations(metadata);
+    }
+
+    // every snapshot file referenced by a salts metadata
+    protected static Set<String> getReferencedLocations(JsonObject metadata) {
+        final Set<String> locations = new LinkedHashSet<>();
+        JsonArray salts = metadata.getJsonArray("salts");
+        if (salts == null) {
+            return locations;
+        }
+        salts.forEach(instance -> {
+            JsonObject salt = (JsonObject) instance;
+            String location = salt.getString("location", "");
+            if (!location.isBlank()) {
+                locations.add(location);
             }
         });
+        return locations;
+    }
+
+    // Marks the files no longer referenced by the committed metadata as ready for archiving
+    private void tagUnreferencedAsObsolete(Set<String> previouslyReferenced, JsonObject committedMetadata) throws Exception {
+        final Set<String> locations = new LinkedHashSet<>(pendingObsoleteLocations);
+        locations.addAll(previouslyReferenced);
+        locations.removeAll(getReferencedLocations(committedMetadata));
+        pendingObsoleteLocations.clear();
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        // failures are logged by the tagger; the remaining files are still marked
+        List<String> failed = tagger.tagAll(locations, this.obsoleteTags);
+        if (!failed.isEmpty()) {
+            LOGGER.error("Error marking {} of {} objects as ready for archiving", failed.size(), locations.size());
+        }
     }
 
     private List<RotatingSaltProvider.SaltSnapshot> getSnapshots(RotatingSaltProvider.SaltSnapshot data){
@@ -129,9 +183,11 @@ public class SaltStoreWriter {
      */
     protected void buildAndUploadMetadata(List<RotatingSaltProvider.SaltSnapshot> snapshots) throws Exception{
         JsonObject metadata = this.getMetadata();
-        JsonArray snapshotsMetadata = this.uploadAndGetSnapshotsMetadata(snapshots);
+        Set<String> previouslyReferenced = getStoredLocations(metadata);
+        JsonArray snapshotsMetadata = this.uploadAndGetSnapshotsMetadata(snapshots, metadata);
         if (snapshotsMetadata == null || snapshotsMetadata.isEmpty()) {
             LOGGER.info("No new snapshots, skipping metadata update");
+            pendingObsoleteLocations.clear();
             return;
         }
         final Instant now = Instant.now();
@@ -141,6 +197,7 @@ public class SaltStoreWriter {
         metadata.put("salts", snapshotsMetadata);
         JsonObject finalMetadata = enrichMetadata(metadata);
         fileManager.uploadMetadata(finalMetadata, "salts", this.getMetadataPath());
+        tagUnreferencedAsObsolete(previouslyReferenced, finalMetadata);
     }
 
     protected JsonObject enrichMetadata(JsonObject metadata){
@@ -154,24 +211,54 @@ public class SaltStoreWriter {
      * Returns metadata containing snapshot details and whether any uploads were performed.
      * </p>
      * @param snapshots The list of snapshots to check and upload if needed.
+     * @param currentMetadata The metadata currently in storage, used to carry over the content encoding of files that are
+     *                        not re-uploaded.
      * @return A {@code JsonArray} containing snapshot metadata
      */
-    private JsonArray uploadAndGetSnapshotsMetadata(List<RotatingSaltProvider.SaltSnapshot> snapshots) throws Exception {
+    private JsonArray uploadAndGetSnapshotsMetadata(List<RotatingSaltProvider.SaltSnapshot> snapshots, JsonObject currentMetadata) throws Exception {
         final JsonArray snapshotsMetadata = new JsonArray();
         boolean anyUploadSucceeded = false;
+        pendingCurrentLocations.clear();
         for (RotatingSaltProvider.SaltSnapshot snapshot : snapshots) {
             final String location = getSaltSnapshotLocation(snapshot);
-            anyUploadSucceeded |= tryUploadSaltsSnapshot(snapshot, location);
+            final boolean uploaded = tryUploadSaltsSnapshot(snapshot, location);
+            anyUploadSucceeded |= uploaded;
             final JsonObject snapshotMetadata = new JsonObject();
             snapshotMetadata.put("effective", snapshot.getEffective().toEpochMilli());
             snapshotMetadata.put("expires", snapshot.getExpires().toEpochMilli());
             snapshotMetadata.put("location", location);
             snapshotMetadata.put("size", snapshot.getAllRotatingSalts().length);
+            final String contentEncoding = uploaded
+                    ? getSaltsContentEncoding().getName()
+                    : getStoredContentEncoding(currentMetadata, location);
+            if (contentEncoding != null && !ContentEncoding.IDENTITY.getName().equals(contentEncoding)) {
+                snapshotMetadata.put(ContentEncoding.METADATA_KEY, contentEncoding);
+            }
             snapshotsMetadata.add(snapshotMetadata);
         }
+        tagPendingAsCurrent();
         return anyUploadSucceeded ? snapshotsMetadata : new JsonArray();
     }
 
+    private static String getStoredContentEncoding(JsonObject metadata, String location) {
+        JsonArray salts = metadata.getJsonArray("salts");
+        if (salts == null) {
+            return null;
+        }
+        for (int i = 0; i < salts.size(); i++) {
+            JsonObject salt = salts.getJsonObject(i);
+            if (location.equals(salt.getString("location"))) {
+                return salt.getString(ContentEncoding.METADATA_KEY);
+            }
+        }
+        return null;
+    }
+
+    // Encoding of the plaintext snapshot files written by tryUploadSaltsSnapshot
+    protected ContentEncoding getSaltsContentEncoding() {
+        return fileManager.getContentEncoding("salts");
+    }
+
     private void refreshProvider() throws Exception {
         provider.loadContent();
     }
@@ -191,36 +278,81 @@ public class SaltStoreWriter {
      */
     protected boolean tryUploadSaltsSnapshot(RotatingSaltProvider.SaltSnapshot snapshot, String location) throws Exception {
         // do not overwrite existing files
-        if (!cloudStorage.list(location).isEmpty()) {
+        if (exists(location)) {
             // update the tags on the file to ensure it is still marked as current
-            this.setStatusTagToCurrent(location);
+            this.markCurrent(location);
             return false;
         }
 
-        var saltCsv = SaltSerializer.toCsv(snapshot.getAllRotatingSalts());
-        uploadSaltsFile(location, saltCsv);
+        ContentEncoding encoding = getSaltsContentEncoding();
+        if (encoding == ContentEncoding.IDENTITY) {
+            var saltCsv = SaltSerializer.toCsv(snapshot.getAllRotatingSalts());
+            uploadSaltsFile(location, saltCsv);
+        } else {
+            uploadSaltsFile(location, out -> {
+                try (Writer writer = new OutputStreamWriter(encoding.wrap(out), StandardCharsets.UTF_8)) {
+                    SaltSerializer.writeCsv(snapshot.getAllRotatingSalts(), writer);
+                }
+            });
+        }
 
         return true;
     }
 
+    // list matches by prefix, which also matches later snapshots whose timestamp starts with the same digits
+    protected boolean exists(String location) throws Exception {
+        return cloudStorage.list(location).contains(location);
+    }
+
     protected void uploadSaltsFile(String location, String data) throws Exception {
         final Path newSaltsFile = Files.createTempFile("salts", ".txt");
         try (BufferedWriter w = Files.newBufferedWriter(newSaltsFile)) {
             w.write(data);
         }
+        uploadedBytes.addAndGet(Files.size(newSaltsFile));
+        this.upload(newSaltsFile.toString(), location);
+    }
+
+    @FunctionalInterface
+    protected interface SaltsFileWriter {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    // Streams the file content straight to disk instead of building it in memory first
+    protected void uploadSaltsFile(String location, SaltsFileWriter writer) throws Exception {
+        final Path newSaltsFile = Files.createTempFile("salts", ".txt");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(newSaltsFile))) {
+            writer.writeTo(out);
+        }
+        uploadedBytes.addAndGet(Files.size(newSaltsFile));
         this.upload(newSaltsFile.toString(), location);
     }
 
+    // Total size of the salt files written by this writer, excluding metadata
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
     protected void upload(String data, String location) throws Exception {
         cloudStorage.upload(data, location, this.currentTags);
+        tagger.recordTags(location, this.currentTags);
 
     }
 
     protected void setStatusTagToCurrent(String location) throws CloudStorageException {
-        this.cloudStorage.setTags(location, this.currentTags);
+        tagger.tag(location, this.currentTags);
     }
 
-    private void setStatusTagToObsolete(String location) throws CloudStorageException {
-        this.cloudStorage.setTags(location, this.obsoleteTags);
+    // Queues the file to be marked current at the end of the upload, see tagPendingAsCurrent
+    protected void markCurrent(String location) {
+        pendingCurrentLocations.add(location);
+    }
+
+    private void tagPendingAsCurrent() throws Exception {
+        List<String> failed = tagger.tagAll(pendingCurrentLocations, this.currentTags);
+        pendingCurrentLocations.clear();
+        if (!failed.isEmpty()) {
+            throw new CloudStorageException("Could not mark " + failed.size() + " existing salt files as current");
+        }
     }
 }
@@ -1,6 +1,8 @@
 package com.uid2.admin.store.writer;
 
 import com.uid2.admin.store.Clock;
+import com.uid2.admin.store.ContentEncoding;
+import com.uid2.admin.store.DeltaLog;
 import com.uid2.admin.store.FileManager;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.store.CloudPath;
@@ -8,8 +10,31 @@ import com.uid2.admin.store.FileName;
 import com.uid2.shared.store.reader.IMetadataVersionedStore;
 import com.uid2.shared.store.scope.StoreScope;
 import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a data file and its metadata for a single store scope.
+ * <p>
+ * Commits are optimistic: the metadata version the writer last committed (or read) is compared against the version
+ * in storage right before the new metadata is published, and a {@link StoreCommitConflictException} is thrown if
+ * another writer committed in between. The store is reloaded before the exception is thrown, so that the commit can
+ * be retried on top of the other writer's state, either by {@link #upload(ContentRenderer, JsonObject)} or by running
+ * the caller's read-modify-write through {@link StoreCommitRetry}.
+ * </p>
+ * The cloud storage API has no conditional put, so the version is compared with a read just before the write. This
+ * narrows the window in which two writers can both commit to that single round trip, but does not close it. When data
+ * files are not versioned, the version is also checked before the shared data file is overwritten, so a writer that
+ * has already lost the race does not replace the winner's data. Versioned data files only ever add new files; files
+ * older than the previous version are deleted after each commit.
+ */
 public class ScopedStoreWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScopedStoreWriter.class);
+
     private final IMetadataVersionedStore provider;
     private final FileManager fileManager;
     private final VersionGenerator versionGenerator;
@@ -18,6 +43,9 @@ public class ScopedStoreWriter {
     private final FileName dataFile;
     private final String dataType;
 
+    // version of the metadata this writer last committed, i.e. the version its callers' in-memory state is based on
+    private Long lastCommittedVersion = null;
+
     public ScopedStoreWriter(
             IMetadataVersionedStore provider,
             FileManager fileManager,
@@ -36,18 +64,57 @@ public class ScopedStoreWriter {
         this.dataType = dataType;
     }
 
+    @FunctionalInterface
+    public interface ContentRenderer {
+        // Called once per commit attempt, after the store has been refreshed on a conflict
+        String render() throws Exception;
+    }
+
     public void upload(String data, JsonObject extraMeta) throws Exception {
+        ContentEncoding encoding = fileManager.getContentEncoding(dataType);
+        // the full file supersedes a delta log left behind if the data type was previously written in delta-log mode
+        JsonObject locationAttributes = new JsonObject().putNull(DeltaLog.BASE_VERSION).putNull(DeltaLog.DELTAS);
+        if (encoding == ContentEncoding.IDENTITY) {
+            // clear the attribute left behind if the data type was previously written encoded
+            upload(data, extraMeta, locationAttributes.putNull(ContentEncoding.METADATA_KEY));
+        } else {
+            upload(encoding.encode(data), extraMeta, locationAttributes.put(ContentEncoding.METADATA_KEY, encoding.getName()));
+        }
+    }
+
+    /**
+     * @param locationAttributes extra fields stored next to {@code location} in the metadata entry of this data type.
+     *                           A {@code null} value removes the field.
+     */
+    protected void upload(String data, JsonObject extraMeta, JsonObject locationAttributes) throws Exception {
+        upload(location -> fileManager.uploadFile(location, dataFile, data), extraMeta, locationAttributes);
+    }
+
+    protected void upload(byte[] data, JsonObject extraMeta, JsonObject locationAttributes) throws Exception {
+        upload(location -> fileManager.uploadFile(location, dataFile, data), extraMeta, locationAttributes);
+    }
+
+    @FunctionalInterface
+    private interface DataFileUploader {
+        void upload(CloudPath location) throws Exception;
+    }
+
+    private void upload(DataFileUploader dataFileUploader, JsonObject extraMeta, JsonObject locationAttributes) throws Exception {
         final long generated = clock.getEpochSecond();
         boolean isFirstWrite = !fileManager.isPresent(scope.getMetadataPath());
         CloudPath location;
         Metadata metadata;
+        Long baseVersion;
         if (isFirstWrite) {
             metadata = new Metadata(new JsonObject());
             location = scope.resolve(new CloudPath(dataFile.toString()));
             metadata.setLocation(dataType, location);
+            baseVersion = null;
         } else {
             metadata = new Metadata(provider.getMetadata());
             location = metadata.locationOf(dataType);
+            baseVersion = metadata.getJson().getLong("version");
+            checkNotStale(metadata.getJson(), baseVersion);
         }
 
 
@@ -57,8 +124,36 @@ public class ScopedStoreWriter {
         }
         metadata.setVersion(this.getMetadataVersion(metadata));
 
-        fileManager.uploadFile(location, dataFile, data);
-        fileManager.uploadMetadata(metadata.getJson(), dataType, scope.getMetadataPath());
+        CloudPath previousLocation = location;
+        if (fileManager.isVersionedDataFiles()) {
+            location = getVersionedLocation(metadata.getJson().getLong("version"));
+            metadata.setLocation(dataType, location);
+        }
+        if (locationAttributes != null) {
+            if (metadata.getJson().getJsonObject(dataType) == null) {
+                metadata.setLocation(dataType, location);
+            }
+            JsonObject locationEntry = metadata.getJson().getJsonObject(dataType);
+            locationAttributes.forEach(attribute -> {
+                if (attribute.getValue() == null) {
+                    locationEntry.remove(attribute.getKey());
+                } else {
+                    locationEntry.put(attribute.getKey(), attribute.getValue());
+                }
+            });
+        }
+
+        if (fileManager.isVersionedDataFiles()) {
+            dataFileUploader.upload(location);
+            commitMetadata(metadata, baseVersion);
+            deleteSupersededDataFiles(location, previousLocation);
+        } else {
+            // the data file location is shared by all versions, so make sure we are still writing on top of the latest
+            // commit before overwriting it rather than finding out only when the metadata is committed
+            checkStoredVersion(baseVersion);
+            dataFileUploader.upload(location);
+            commitMetadata(metadata, baseVersion);
+        }
 
         provider.loadContent(provider.getMetadata());
     }
@@ -67,6 +162,27 @@ public class ScopedStoreWriter {
         upload(data, null);
     }
 
+    /**
+     * Renders and uploads the content, retrying on commit conflicts. Before each retry the store is reloaded so that
+     * the renderer can rebuild the content from the other writer's committed state.
+     */
+    public void upload(ContentRenderer renderer, JsonObject extraMeta) throws Exception {
+        StoreCommitRetry.run(() -> upload(renderer.render(), extraMeta));
+    }
+
+    // Version of the metadata this writer last committed, or null if it has not committed yet
+    public Long getLastCommittedVersion() {
+        return lastCommittedVersion;
+    }
+
+    // Returns the metadata entry of this data type, or null if the store has not been written yet
+    protected JsonObject getCurrentLocationEntry() throws Exception {
+        if (!fileManager.isPresent(scope.getMetadataPath())) {
+            return null;
+        }
+        return provider.getMetadata().getJsonObject(dataType);
+    }
+
     protected Long getMetadataVersion(Metadata metadata) throws Exception {
         return versionGenerator.getVersion();
     }
@@ -76,9 +192,68 @@ public class ScopedStoreWriter {
             return;
         }
         Metadata metadata = new Metadata(provider.getMetadata());
+        Long baseVersion = metadata.getJson().getLong("version");
 
         metadata.setVersion(this.getMetadataVersion(metadata));
 
-        fileManager.uploadMetadata(metadata.getJson(), dataType, scope.getMetadataPath());
+        commitMetadata(metadata, baseVersion);
+    }
+
+    private void commitMetadata(Metadata metadata, Long baseVersion) throws Exception {
+        try {
+            fileManager.uploadMetadata(metadata.getJson(), dataType, scope.getMetadataPath(), baseVersion);
+        } catch (StoreCommitConflictException e) {
+            // another writer committed between our read and our write
+            onConflict(e);
+        }
+        lastCommittedVersion = metadata.getJson().getLong("version");
+    }
+
+    private void checkStoredVersion(Long baseVersion) throws Exception {
+        Long storedVersion = fileManager.getMetadataVersion(scope.getMetadataPath());
+        if (!Objects.equals(storedVersion, baseVersion)) {
+            onConflict(new StoreCommitConflictException(scope.getMetadataPath(), baseVersion, storedVersion));
+        }
+    }
+
+    private void onConflict(StoreCommitConflictException e) throws Exception {
+        LOGGER.warn("Commit conflict for store={}: {}", dataType, e.getMessage());
+        JsonObject storedMetadata = provider.getMetadata();
+        provider.loadContent(storedMetadata);
+        lastCommittedVersion = storedMetadata.getLong("version");
+        throw e;
+    }
+
+    // Keeps the committed data file and the one it replaced, which readers that have not reloaded yet may still fetch
+    private void deleteSupersededDataFiles(CloudPath location, CloudPath previousLocation) {
+        Pattern versionedFile = Pattern.compile(Pattern.quote(scope.resolve(new CloudPath(dataFile.getPrefix())).toString())
+                + "\\.\\d+" + Pattern.quote(dataFile.getSuffix()));
+        try {
+            List<String> superseded = fileManager.listFiles(scope.resolve(new CloudPath(dataFile.getPrefix() + "."))).stream()
+                    .filter(file -> versionedFile.matcher(file).matches())
+                    .filter(file -> !file.equals(location.toString()) && !file.equals(previousLocation.toString()))
+                    .toList();
+            if (!superseded.isEmpty()) {
+                fileManager.deleteFiles(superseded);
+            }
+        } catch (Exception e) {
+            // the commit already succeeded; leftover files are retried on the next commit
+            LOGGER.warn("Failed to delete superseded data files for store={}", dataType, e);
+        }
+    }
+
+    private void checkNotStale(JsonObject storedMetadata, Long storedVersion) throws Exception {
+        if (lastCommittedVersion != null && !Objects.equals(lastCommittedVersion, storedVersion)) {
+            // Someone else committed since our last write, so the caller's data may not include their changes.
+            // Refresh the store so that the next attempt is built on top of their commit.
+            StoreCommitConflictException e = new StoreCommitConflictException(scope.getMetadataPath(), lastCommittedVersion, storedVersion);
+            provider.loadContent(storedMetadata.copy());
+            lastCommittedVersion = storedVersion;
+            throw e;
+        }
+    }
+
+    private CloudPath getVersionedLocation(Long version) {
+        return scope.resolve(new CloudPath(dataFile.getPrefix() + "." + version + dataFile.getSuffix()));
     }
 }
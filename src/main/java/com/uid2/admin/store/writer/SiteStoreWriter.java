@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.uid2.admin.store.Clock;
 import com.uid2.admin.store.FileManager;
 import com.uid2.admin.store.FileName;
+import com.uid2.admin.store.StoreChangeEvent;
+import com.uid2.admin.store.StoreChangePublisher;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.model.Site;
 import com.uid2.shared.store.reader.IMetadataVersionedStore;
@@ -14,10 +16,16 @@ import com.uid2.shared.store.scope.StoreScope;
 import io.vertx.core.json.JsonObject;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public class SiteStoreWriter implements StoreWriter<Collection<Site>> {
     private final ScopedStoreWriter writer;
     private final ObjectWriter jsonWriter;
+    private StoreChangePublisher changePublisher = StoreChangePublisher.NONE;
+    // JSON of each site as last uploaded, with its id. The handlers change the reader's sites in place before
+    // uploading them, so the reader cannot tell what changed.
+    private Map<String, Integer> uploadedSites = null;
 
     public SiteStoreWriter(IMetadataVersionedStore reader, FileManager fileManager, ObjectWriter jsonWriter, VersionGenerator versionGenerator, Clock clock, StoreScope scope) {
         this.jsonWriter = jsonWriter;
@@ -39,8 +47,28 @@ public class SiteStoreWriter implements StoreWriter<Collection<Site>> {
         this.writer = new EncryptedScopedStoreWriter(reader, fileManager, versionGenerator, clock, scope, dataFile, dataType, cloudEncryptionKeyProvider, scope.getId());
     }
 
+    // Publishes a change event with the sites changed since the previous upload after each upload, or with every site
+    // after the first one
+    public void setChangePublisher(StoreChangePublisher changePublisher) {
+        this.changePublisher = changePublisher;
+    }
+
     public void upload(Collection<Site> data, JsonObject extraMeta) throws Exception {
+        final Map<String, Integer> sites = changePublisher == StoreChangePublisher.NONE ? null : serialize(data);
         writer.upload(jsonWriter.writeValueAsString(data), extraMeta);
+        if (sites != null) {
+            changePublisher.publish(new StoreChangeEvent("sites", writer.getLastCommittedVersion(),
+                    uploadedSites == null ? null : StoreChangeEvent.changedSiteIds(uploadedSites, sites)));
+            uploadedSites = sites;
+        }
+    }
+
+    private Map<String, Integer> serialize(Collection<Site> sites) throws Exception {
+        final Map<String, Integer> serialized = new HashMap<>(sites.size() * 2);
+        for (Site site : sites) {
+            serialized.put(jsonWriter.writeValueAsString(site), site.getId());
+        }
+        return serialized;
     }
 
     @Override
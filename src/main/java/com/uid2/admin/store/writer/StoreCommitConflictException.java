@@ -0,0 +1,26 @@
+package com.uid2.admin.store.writer;
+
+import com.uid2.shared.store.CloudPath;
+
+/**
+ * Thrown when a store's metadata version changed underneath a writer, i.e. another writer committed in between this
+ * writer reading the store and publishing its own metadata.
+ */
+public class StoreCommitConflictException extends Exception {
+    private final Long expectedVersion;
+    private final Long actualVersion;
+
+    public StoreCommitConflictException(CloudPath metadataPath, Long expectedVersion, Long actualVersion) {
+        super(String.format("Concurrent commit detected for %s: expected version %s but found %s", metadataPath, expectedVersion, actualVersion));
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public Long getActualVersion() {
+        return actualVersion;
+    }
+}
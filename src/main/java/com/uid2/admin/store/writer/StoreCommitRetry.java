@@ -0,0 +1,56 @@
+package com.uid2.admin.store.writer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-runs a read-modify-write of a store when its commit conflicts with another writer's.
+ * <p>
+ * A {@link ScopedStoreWriter} that detects a conflict reloads its store from the other writer's commit before throwing
+ * {@link StoreCommitConflictException}, so a commit that rebuilds its data from the store each time it runs is built
+ * on top of that commit on the next attempt instead of overwriting it. A commit that uploads data computed beforehand
+ * gains nothing from being retried.
+ * </p>
+ */
+public final class StoreCommitRetry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreCommitRetry.class);
+    static final int MAX_ATTEMPTS = 3;
+
+    @FunctionalInterface
+    public interface Commit<T> {
+        // Called once per attempt; reads the store, applies the change and uploads the result
+        T run() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface VoidCommit {
+        void run() throws Exception;
+    }
+
+    private StoreCommitRetry() {
+    }
+
+    /**
+     * @return the result of the attempt that committed
+     * @throws StoreCommitConflictException if every attempt conflicted
+     */
+    public static <T> T run(Commit<T> commit) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return commit.run();
+            } catch (StoreCommitConflictException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.warn("Commit conflict (attempt {}/{}), retrying on the reloaded store: {}", attempt, MAX_ATTEMPTS, e.getMessage());
+            }
+        }
+    }
+
+    public static void run(VoidCommit commit) throws Exception {
+        run(() -> {
+            commit.run();
+            return null;
+        });
+    }
+}
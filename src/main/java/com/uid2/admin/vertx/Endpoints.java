@@ -19,8 +19,10 @@ public enum Endpoints {
     API_CLIENT_ENABLE("/api/client/enable"),
     API_CLIENT_ROLES("/api/client/roles"),
     API_CLIENT_RENAME("/api/client/rename"),
+    API_CLIENT_BULK("/api/client/bulk"),
 
     API_CLIENT_SIDE_KEYPAIRS_ADD("/api/client_side_keypairs/add"),
+    API_CLIENT_SIDE_KEYPAIRS_BULK_ADD("/api/client_side_keypairs/bulk_add"),
     API_CLIENT_SIDE_KEYPAIRS_UPDATE("/api/client_side_keypairs/update"),
     API_CLIENT_SIDE_KEYPAIRS_DELETE("/api/client_side_keypairs/delete"),
     API_CLIENT_SIDE_KEYPAIRS_LIST("/api/client_side_keypairs/list"),
@@ -34,6 +36,7 @@ public enum Endpoints {
 
     API_ENCRYPTED_FILES_REFRESH("/api/encrypted-files/refresh"),
     API_ENCRYPTED_FILES_SYNC_NOW("/api/encrypted-files/syncNow"),
+    API_ENCRYPTED_FILES_REENCRYPT_ROTATED("/api/encrypted-files/reencrypt-rotated"),
 
     API_KEY_LIST("/api/key/list"),
     API_KEY_LIST_KEYSET_KEYS("/api/key/list_keyset_keys"),
@@ -46,6 +49,7 @@ public enum Endpoints {
 
     API_JOB_DISPATCHER_CURRENT_JOB("/api/job-dispatcher/current-job"),
     API_JOB_DISPATCHER_JOB_QUEUE("/api/job-dispatcher/job-queue"),
+    API_JOB_DISPATCHER_JOB("/api/job-dispatcher/job"),
 
     API_KEYS_ACL_LIST("/api/keys_acl/list"),
     API_KEYS_ACL_REWRITE_METADATA("/api/keys_acl/rewrite_metadata"),
@@ -73,6 +77,7 @@ public enum Endpoints {
     API_SALT_SNAPSHOTS("/api/salt/snapshots"),
     API_SALT_REBUILD("/api/salt/rebuild"),
     API_SALT_ROTATE("/api/salt/rotate"),
+    API_SALT_SIMULATE("/api/salt/simulate"),
 
     API_SEARCH("/api/search"),
 
@@ -104,6 +109,7 @@ public enum Endpoints {
     API_SITE_DOMAIN_NAMES("/api/site/domain_names"),
     API_SITE_APP_NAMES("/api/site/app_names"),
     API_SITE_UPDATE("/api/site/update"),
+    API_SITE_BULK("/api/site/bulk"),
 
     CLOUD_ENCRYPTION_KEY_METADATA("/api/cloud-encryption-key/metadata"),
     CLOUD_ENCRYPTION_KEY_LIST("/api/cloud-encryption-key/list"),
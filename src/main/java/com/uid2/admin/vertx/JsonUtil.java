@@ -2,6 +2,7 @@ package com.uid2.admin.vertx;
 
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -9,6 +10,7 @@ import com.uid2.shared.util.Mapper;
 
 public class JsonUtil {
     private static final ObjectWriter INSTANCE;
+    private static final ObjectWriter COMPACT_INSTANCE;
 
     static {
         DefaultPrettyPrinter pp = new DefaultPrettyPrinter();
@@ -18,6 +20,7 @@ public class JsonUtil {
                 .registerModule(new JavaTimeModule())
                 .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
                 .writer(pp);
+        COMPACT_INSTANCE = INSTANCE.with(new MinimalPrettyPrinter());
     }
 
     private JsonUtil() {
@@ -26,4 +29,9 @@ public class JsonUtil {
     public static ObjectWriter createJsonWriter() {
         return INSTANCE;
     }
+
+    // Same serialization as createJsonWriter, without indentation; used for store data files that no one reads by eye
+    public static ObjectWriter createCompactJsonWriter() {
+        return COMPACT_INSTANCE;
+    }
 }
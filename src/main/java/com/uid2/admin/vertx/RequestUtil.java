@@ -230,6 +230,19 @@ public class RequestUtil {
         }
     }
 
+    public static Optional<Integer> getInteger(RoutingContext rc, String paramName) {
+        final List<String> values = rc.queryParam(paramName);
+        if (values.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Integer.valueOf(values.get(0)));
+        } catch (Exception ex) {
+            ResponseUtil.error(rc, 400, "failed to parse " + paramName + ": " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
     public static Optional<LocalDate> getDate(RoutingContext rc, String paramName, DateTimeFormatter formatter) {
         final List<String> values = rc.queryParam(paramName);
         if (values.isEmpty()) {
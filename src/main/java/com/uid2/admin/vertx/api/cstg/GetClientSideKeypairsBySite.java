@@ -10,16 +10,22 @@ import com.uid2.admin.vertx.api.annotations.Method;
 import com.uid2.admin.vertx.api.annotations.Path;
 import com.uid2.admin.vertx.api.annotations.Roles;
 import com.uid2.shared.auth.Role;
+import com.uid2.shared.model.ClientSideKeypair;
 import io.vertx.core.Handler;
 import io.vertx.ext.web.RoutingContext;
 import lombok.val;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class GetClientSideKeypairsBySite implements IRouteProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(GetClientSideKeypairsBySite.class);
 
     private final IKeypairManager keypairManager;
+    // Responses are cached per site and reused for as long as the keypair manager hands back the same keypair list
+    private final Map<Integer, CachedResponse> responseCache = new ConcurrentHashMap<>();
 
     public GetClientSideKeypairsBySite(IKeypairManager keypairManager) {
         this.keypairManager = keypairManager;
@@ -35,13 +41,27 @@ public class GetClientSideKeypairsBySite implements IRouteProvider {
     public void handleGetClientSideKeys(RoutingContext rc, int siteId) {
         val keypairs = keypairManager.getKeypairsBySite(siteId);
         if (keypairs != null) {
-            val result = Streams.stream(keypairs)
-                    .map(kp -> ClientSideKeypairResponse.fromClientSiteKeypair(kp))
-                    .toArray(ClientSideKeypairResponse[]::new);
-            rc.json(result);
+            rc.json(getResponse(siteId, keypairs));
         }
         else {
+            responseCache.remove(siteId);
             ResponseUtil.error(rc, 404, "No keypairs available for site ID: " + siteId);
         }
     }
-}
\ No newline at end of file
+
+    private ClientSideKeypairResponse[] getResponse(int siteId, Iterable<ClientSideKeypair> keypairs) {
+        val cached = responseCache.get(siteId);
+        if (cached != null && cached.source == keypairs) {
+            return cached.response;
+        }
+
+        val result = Streams.stream(keypairs)
+                .map(kp -> ClientSideKeypairResponse.fromClientSiteKeypair(kp))
+                .toArray(ClientSideKeypairResponse[]::new);
+        responseCache.put(siteId, new CachedResponse(keypairs, result));
+        return result;
+    }
+
+    private record CachedResponse(Iterable<ClientSideKeypair> source, ClientSideKeypairResponse[] response) {
+    }
+}
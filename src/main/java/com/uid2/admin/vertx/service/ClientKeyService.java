@@ -2,11 +2,14 @@ package com.uid2.admin.vertx.service;
 
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.uid2.admin.auth.AdminAuthMiddleware;
+import com.uid2.admin.AdminConst;
 import com.uid2.admin.auth.RevealedKey;
 import com.uid2.admin.legacy.LegacyClientKey;
 import com.uid2.admin.legacy.LegacyClientKeyStoreWriter;
 import com.uid2.admin.legacy.RotatingLegacyClientKeyProvider;
 import com.uid2.admin.managers.KeysetManager;
+import com.uid2.admin.store.GroupCommitter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.admin.vertx.RequestUtil;
 import com.uid2.admin.vertx.ResponseUtil;
@@ -14,6 +17,7 @@ import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.audit.AuditParams;
 import com.uid2.shared.auth.Role;
 import com.uid2.shared.model.Site;
+import com.uid2.shared.model.SiteUtil;
 import com.uid2.shared.secret.IKeyGenerator;
 import com.uid2.shared.secret.KeyHashResult;
 import com.uid2.shared.secret.KeyHasher;
@@ -28,6 +32,9 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.uid2.admin.vertx.Endpoints.*;
@@ -35,6 +42,7 @@ import static com.uid2.admin.vertx.Endpoints.*;
 public class ClientKeyService implements IService {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientKeyService.class);
     private static final ObjectWriter JSON_WRITER = JsonUtil.createJsonWriter();
+    private static final int MAX_BULK_OPERATIONS = 1000;
 
     private final AdminAuthMiddleware auth;
     private final WriteLock writeLock;
@@ -45,6 +53,7 @@ public class ClientKeyService implements IService {
     private final IKeyGenerator keyGenerator;
     private final KeyHasher keyHasher;
     private final String clientKeyPrefix;
+    private final GroupCommitter<List<LegacyClientKey>> clientKeyCommitter;
 
     public ClientKeyService(JsonObject config,
                             AdminAuthMiddleware auth,
@@ -64,6 +73,14 @@ public class ClientKeyService implements IService {
         this.keyGenerator = keyGenerator;
         this.keyHasher = keyHasher;
         this.clientKeyPrefix = config.getString("client_key_prefix");
+        this.clientKeyCommitter = new GroupCommitter<>("client_keys", writeLock,
+                () -> {
+                    // refresh manually
+                    clientKeyProvider.loadContent(clientKeyProvider.getMetadata());
+                    return getAllClientKeys();
+                },
+                clients -> storeWriter.upload(clients, null),
+                config.getLong(AdminConst.GROUP_COMMIT_WINDOW_MS, 50L));
     }
 
     @Override
@@ -109,16 +126,13 @@ public class ClientKeyService implements IService {
             }
         }, new AuditParams(List.of("contact"), Collections.emptyList()), Role.MAINTAINER));
 
+        // group-committed handlers take the write lock when their batch is committed
         router.post(API_CLIENT_DISABLE.toString()).blockingHandler(auth.handle((ctx) -> {
-            synchronized (writeLock) {
-                this.handleClientDisable(ctx);
-            }
+            this.handleClientDisable(ctx);
         }, new AuditParams(List.of("contact"), Collections.emptyList()), Role.MAINTAINER, Role.SHARING_PORTAL));
 
         router.post(API_CLIENT_ENABLE.toString()).blockingHandler(auth.handle((ctx) -> {
-            synchronized (writeLock) {
-                this.handleClientEnable(ctx);
-            }
+            this.handleClientEnable(ctx);
         }, new AuditParams(List.of("contact"), Collections.emptyList()), Role.MAINTAINER));
 
         router.post(API_CLIENT_ROLES.toString()).blockingHandler(auth.handle((ctx) -> {
@@ -134,10 +148,14 @@ public class ClientKeyService implements IService {
         }, Role.MAINTAINER));
 
         router.post(API_CLIENT_RENAME.toString()).blockingHandler(auth.handle((ctx) -> {
+            this.handleClientRename(ctx);
+        }, new AuditParams(List.of("contact", "newName"), Collections.emptyList()), Role.MAINTAINER, Role.SHARING_PORTAL));
+
+        router.post(API_CLIENT_BULK.toString()).blockingHandler(auth.handle((ctx) -> {
             synchronized (writeLock) {
-                this.handleClientRename(ctx);
+                this.handleClientBulk(ctx);
             }
-        }, new AuditParams(List.of("contact", "newName"), Collections.emptyList()), Role.MAINTAINER, Role.SHARING_PORTAL));
+        }, new AuditParams(Collections.emptyList(), List.of("operations")), Role.PRIVILEGED));
     }
 
     private void handleRewriteMetadata(RoutingContext rc) {
@@ -284,7 +302,7 @@ public class ClientKeyService implements IService {
         }
     }
 
-    private String[] generateKeyAndKeyId(Site site) throws Exception {
+    private String[] generateKeyAndKeyId(Site site, Set<String> reservedKeyIds) throws Exception {
         String keyCommonPrefix = this.clientKeyPrefix != null ? (this.clientKeyPrefix + site.getId() + "-") : "";
         String key = keyCommonPrefix + keyGenerator.generateFormattedKeyString(32);
         String keyId = key.substring(0, keyCommonPrefix.length() + 5);
@@ -293,12 +311,38 @@ public class ClientKeyService implements IService {
         Optional<LegacyClientKey> existingClientKeyId = this.clientKeyProvider.getAll()
                 .stream().filter(c -> c.getKeyId().equals(keyId))
                 .findFirst();
-        if (existingClientKeyId.isPresent()) {
-            return generateKeyAndKeyId(site);
+        if (existingClientKeyId.isPresent() || reservedKeyIds.contains(keyId)) {
+            return generateKeyAndKeyId(site, reservedKeyIds);
         }
         return new String[]{key, keyId};
     }
 
+    private LegacyClientKey createClientKey(String name, Set<Role> roles, Site site, int serviceId, Set<String> reservedKeyIds, String[] plaintextKey) throws Exception {
+        // create random key and secret
+        String[] generatedKeyAndKeyId = generateKeyAndKeyId(site, reservedKeyIds);
+        String key = generatedKeyAndKeyId[0];
+        String keyId = generatedKeyAndKeyId[1];
+        KeyHashResult khr = keyHasher.hashKey(key);
+        String secret = keyGenerator.generateRandomKeyString(32);
+        plaintextKey[0] = key;
+
+        Instant created = Instant.now();
+        return new LegacyClientKey(
+                key,
+                khr.getHash(),
+                khr.getSalt(),
+                secret,
+                name,
+                site.getName() + '_' + keyId,
+                created.getEpochSecond(),
+                roles,
+                site.getId(),
+                false,
+                serviceId,
+                keyId
+        );
+    }
+
     private void handleClientAdd(RoutingContext rc) {
         try {
             // refresh manually
@@ -321,47 +365,33 @@ public class ClientKeyService implements IService {
 
             final int serviceId = this.getServiceId(rc);
 
-            List<LegacyClientKey> clients = getAllClientKeys();
-
-            // create random key and secret
-            String[] generatedKeyAndKeyId = generateKeyAndKeyId(site);
-            String key = generatedKeyAndKeyId[0];
-            String keyId = generatedKeyAndKeyId[1];
-
-            KeyHashResult khr = keyHasher.hashKey(key);
-            String secret = keyGenerator.generateRandomKeyString(32);
-
-            // add new client to array
-            Instant created = Instant.now();
-            LegacyClientKey newClient = new LegacyClientKey(
-                    key,
-                    khr.getHash(),
-                    khr.getSalt(),
-                    secret,
-                    name,
-                    site.getName() + '_' + keyId,
-                    created.getEpochSecond(),
-                    roles,
-                    site.getId(),
-                    false,
-                    serviceId,
-                    keyId
-            );
-            if (!newClient.hasValidSiteId()) {
+            final String[] key = new String[1];
+            // on a commit conflict the key id is generated again, against the reloaded client keys
+            final LegacyClientKey newClient = StoreCommitRetry.run(() -> {
+                // create random key and secret
+                LegacyClientKey client = createClientKey(name, roles, site, serviceId, Collections.emptySet(), key);
+                if (!client.hasValidSiteId()) {
+                    return null;
+                }
+
+                List<LegacyClientKey> clients = getAllClientKeys();
+
+                // add client to the array
+                clients.add(client);
+
+                // upload to storage
+                storeWriter.upload(clients, null);
+                return client;
+            });
+            if (newClient == null) {
                 ResponseUtil.error(rc, 400, "invalid site id");
                 return;
             }
 
-            // add client to the array
-            clients.add(newClient);
-
-            // upload to storage
-            storeWriter.upload(clients, null);
-
             this.keysetManager.createKeysetForClient(newClient.toClientKey());
 
             // respond with new client created
-            rc.response().end(JSON_WRITER.writeValueAsString(new RevealedKey<>(newClient.toClientKey(), key)));
+            rc.response().end(JSON_WRITER.writeValueAsString(new RevealedKey<>(newClient.toClientKey(), key[0])));
         } catch (Exception e) {
             rc.fail(500, e);
         }
@@ -381,16 +411,16 @@ public class ClientKeyService implements IService {
                 return;
             }
 
-            List<LegacyClientKey> clients = this.clientKeyProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
-            // delete client from the array
             LegacyClientKey c = existingClient.get();
-            clients.remove(c);
+            StoreCommitRetry.run(() -> {
+                List<LegacyClientKey> clients = getAllClientKeys();
 
-            // upload to storage
-            storeWriter.upload(clients, null);
+                // delete client from the array
+                clients.removeIf(client -> client.getContact().equals(contact));
+
+                // upload to storage
+                storeWriter.upload(clients, null);
+            });
 
             // respond with client deleted
             rc.response().end(JSON_WRITER.writeValueAsString(c.toClientKey()));
@@ -416,19 +446,14 @@ public class ClientKeyService implements IService {
 
             final int serviceId = this.getServiceId(rc);
 
-            existingClient
+            final LegacyClientKey updatedClient = updateClientKey(contact, client -> client
                     .withSiteId(site.getId())
-                    .withServiceId(serviceId);
-
-            List<LegacyClientKey> clients = getAllClientKeys();
-
-            // upload to storage
-            storeWriter.upload(clients, null);
+                    .withServiceId(serviceId));
 
-            this.keysetManager.createKeysetForClient(existingClient.toClientKey());
+            this.keysetManager.createKeysetForClient(updatedClient.toClientKey());
 
             // return the updated client
-            rc.response().end(JSON_WRITER.writeValueAsString(existingClient.toClientKey()));
+            rc.response().end(JSON_WRITER.writeValueAsString(updatedClient.toClientKey()));
         } catch (Exception e) {
             rc.fail(500, e);
         }
@@ -443,25 +468,21 @@ public class ClientKeyService implements IService {
     }
 
     private void handleClientDisable(RoutingContext rc, boolean disableFlag) {
+        final String contact;
         try {
-            // refresh manually
-            clientKeyProvider.loadContent(clientKeyProvider.getMetadata());
-
-            final String contact = java.net.URLDecoder.decode(rc.queryParam("contact").get(0), "UTF-8");
-            Optional<LegacyClientKey> existingClient = this.clientKeyProvider.getAll()
-                    .stream().filter(c -> c.getContact().equals(contact))
-                    .findFirst();
-            if (existingClient.isEmpty()) {
-                ResponseUtil.error(rc, 404, "client key not found");
-                return;
-            }
-
-            List<LegacyClientKey> clients = getAllClientKeys();
+            contact = java.net.URLDecoder.decode(rc.queryParam("contact").get(0), "UTF-8");
+        } catch (Exception e) {
+            rc.fail(500, e);
+            return;
+        }
 
-            LegacyClientKey c = existingClient.get();
+        clientKeyCommitter.submit(clients -> {
+            LegacyClientKey c = clients.stream()
+                    .filter(client -> client.getContact().equals(contact))
+                    .findFirst()
+                    .orElseThrow(() -> new ClientMutationException(404, "client key not found"));
             if (c.isDisabled() == disableFlag) {
-                ResponseUtil.error(rc, 400, "no change needed");
-                return;
+                throw new ClientMutationException(400, "no change needed");
             }
 
             c.setDisabled(disableFlag);
@@ -471,15 +492,8 @@ public class ClientKeyService implements IService {
             response.put("contact", c.getContact());
             response.put("created", c.getCreated());
             response.put("disabled", c.isDisabled());
-
-            // upload to storage
-            storeWriter.upload(clients, null);
-
-            // respond with client disabled/enabled
-            rc.response().end(response.encode());
-        } catch (Exception e) {
-            rc.fail(500, e);
-        }
+            return response.encode();
+        }).whenComplete((response, e) -> endGroupCommitted(rc, response, e));
     }
 
     private void handleClientRoles(RoutingContext rc) {
@@ -502,13 +516,7 @@ public class ClientKeyService implements IService {
                 return;
             }
 
-            List<LegacyClientKey> clients = getAllClientKeys();
-
-            LegacyClientKey c = existingClient.get();
-            c.withRoles(roles);
-
-            // upload to storage
-            storeWriter.upload(clients, null);
+            LegacyClientKey c = updateClientKey(contact, client -> client.withRoles(roles));
 
             this.keysetManager.createKeysetForClient(c.toClientKey());
 
@@ -547,13 +555,7 @@ public class ClientKeyService implements IService {
                 return;
             }
 
-            List<LegacyClientKey> clients = getAllClientKeys();
-
-            LegacyClientKey existingClientObject = existingClient.get();
-            existingClientObject.withContact(newContact);
-
-            // upload to storage
-            storeWriter.upload(clients, null);
+            LegacyClientKey existingClientObject = updateClientKey(oldContact, client -> client.withContact(newContact));
 
             this.keysetManager.createKeysetForClient(existingClientObject.toClientKey());
 
@@ -565,43 +567,267 @@ public class ClientKeyService implements IService {
     }
 
     private void handleClientRename(RoutingContext rc) {
+        final String contact;
+        final String newName;
+        try {
+            contact = rc.queryParam("contact").get(0);
+            newName = rc.queryParam("newName").get(0);
+        } catch (Exception e) {
+            rc.fail(500, e);
+            return;
+        }
+        if (newName.isEmpty()) {
+            ResponseUtil.error(rc, 400, "new name cannot be blank");
+            return;
+        }
+
+        clientKeyCommitter.submit(clients -> {
+            LegacyClientKey existingClient = clients.stream()
+                    .filter(client -> client.getContact().equals(contact))
+                    .findFirst()
+                    .orElseThrow(() -> new ClientMutationException(404, "client not found"));
+
+            existingClient.withName(newName);
+
+            // return the updated client
+            return JSON_WRITER.writeValueAsString(existingClient.toClientKey());
+        }).whenComplete((response, e) -> endGroupCommitted(rc, response, e));
+    }
+
+    private static void endGroupCommitted(RoutingContext rc, String response, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (e == null) {
+            rc.response().end(response);
+        } else if (cause instanceof ClientMutationException mutationException) {
+            ResponseUtil.error(rc, mutationException.statusCode, mutationException.getMessage());
+        } else {
+            rc.fail(500, e);
+        }
+    }
+
+    private static final class ClientMutationException extends Exception {
+        private final int statusCode;
+
+        private ClientMutationException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+
+    /**
+     * Applies a batch of client key operations with a single store commit. The body is
+     * <code>{"operations": [{"op": "add" | "update" | "disable" | "enable" | "roles", ...}, ...]}</code>, where each
+     * operation takes the same parameters as its single-client endpoint. All operations are validated before
+     * anything is changed; if any is invalid, nothing is committed and the per-item errors are returned.
+     */
+    private void handleClientBulk(RoutingContext rc) {
         try {
             // refresh manually
             clientKeyProvider.loadContent(clientKeyProvider.getMetadata());
 
-            final String contact = rc.queryParam("contact").get(0);
-            final String newName = rc.queryParam("newName").get(0);
-            if (newName.isEmpty()) {
-                ResponseUtil.error(rc, 400, "new name cannot be blank");
+            final JsonObject body = rc.body().asJsonObject();
+            final JsonArray operations = body == null ? null : body.getJsonArray("operations");
+            if (operations == null || operations.isEmpty()) {
+                ResponseUtil.error(rc, 400, "required parameters: operations");
+                return;
+            }
+            if (operations.size() > MAX_BULK_OPERATIONS) {
+                ResponseUtil.error(rc, 400, "at most " + MAX_BULK_OPERATIONS + " operations are allowed per request");
                 return;
             }
 
-            final LegacyClientKey existingClient = getClientKeyByContact(contact);
-            if (existingClient == null) {
-                ResponseUtil.error(rc, 404, "client not found");
+            final JsonArray results = new JsonArray();
+            // on a commit conflict the operations are validated and applied again, against the reloaded client keys
+            final List<BulkClientChange> changes = StoreCommitRetry.run(() -> commitClientBulk(operations, results));
+            if (changes == null) {
+                rc.response().setStatusCode(400)
+                        .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .end(new JsonObject().put("committed", false).put("results", results).encode());
                 return;
             }
 
-            existingClient.withName(newName);
+            for (BulkClientChange change : changes) {
+                if (change.createsKeyset()) {
+                    this.keysetManager.createKeysetForClient(change.client().toClientKey());
+                }
+            }
 
-            List<LegacyClientKey> clients = getAllClientKeys();
+            rc.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .end(new JsonObject().put("committed", true).put("results", results).encode());
+        } catch (Exception e) {
+            rc.fail(500, e);
+        }
+    }
 
-            // upload to storage
-            storeWriter.upload(clients, null);
+    // Returns the applied changes, or null if any operation is invalid, in which case nothing is committed
+    private List<BulkClientChange> commitClientBulk(JsonArray operations, JsonArray results) throws Exception {
+        results.clear();
+        final Map<String, LegacyClientKey> clientsByContact = new HashMap<>();
+        for (LegacyClientKey c : this.clientKeyProvider.getAll()) {
+            clientsByContact.put(c.getContact(), c);
+        }
+        final Set<String> reservedKeyIds = new HashSet<>();
+        final List<BulkClientChange> changes = new ArrayList<>();
+        boolean valid = true;
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                changes.add(validateBulkOperation(operations.getJsonObject(i), clientsByContact, reservedKeyIds));
+                results.add(new JsonObject().put("index", i).put("status", "valid"));
+            } catch (IllegalArgumentException | ClassCastException e) {
+                valid = false;
+                results.add(new JsonObject().put("index", i).put("status", "error").put("message", e.getMessage()));
+            }
+        }
+        if (!valid) {
+            return null;
+        }
 
-            // return the updated client
-            rc.response().end(JSON_WRITER.writeValueAsString(existingClient.toClientKey()));
+        List<LegacyClientKey> clients = getAllClientKeys();
+        for (int i = 0; i < changes.size(); i++) {
+            BulkClientChange change = changes.get(i);
+            if (change.added()) {
+                clients.add(change.client());
+            }
+            results.set(i, change.apply().call().put("index", i));
+        }
+
+        // upload to storage
+        try {
+            storeWriter.upload(clients, null);
         } catch (Exception e) {
-            rc.fail(500, e);
+            // drop the in-memory changes that were not committed
+            clientKeyProvider.loadContent(clientKeyProvider.getMetadata());
+            throw e;
+        }
+        return changes;
+    }
+
+    private record BulkClientChange(LegacyClientKey client, boolean added, boolean createsKeyset, Callable<JsonObject> apply) {
+    }
+
+    private BulkClientChange validateBulkOperation(JsonObject operation, Map<String, LegacyClientKey> clientsByContact, Set<String> reservedKeyIds) throws Exception {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation must be an object");
+        }
+        final String op = operation.getString("op");
+        if (op == null) {
+            throw new IllegalArgumentException("required parameters: op");
+        }
+
+        switch (op) {
+            case "add": {
+                final String name = operation.getString("name");
+                if (name == null || name.isEmpty()) {
+                    throw new IllegalArgumentException("name cannot be blank");
+                }
+                final Set<Role> roles = getBulkRoles(operation);
+                final Site site = getBulkSite(operation);
+                final String[] key = new String[1];
+                final LegacyClientKey newClient = createClientKey(name, roles, site, operation.getInteger("service_id", 0), reservedKeyIds, key);
+                if (!newClient.hasValidSiteId()) {
+                    throw new IllegalArgumentException("invalid site id");
+                }
+                reservedKeyIds.add(newClient.getKeyId());
+                return new BulkClientChange(newClient, true, true,
+                        () -> okResult(JSON_WRITER.writeValueAsString(new RevealedKey<>(newClient.toClientKey(), key[0]))));
+            }
+            case "update": {
+                final LegacyClientKey client = getBulkClient(operation, clientsByContact);
+                final Site site = getBulkSite(operation);
+                final int serviceId = operation.getInteger("service_id", 0);
+                return new BulkClientChange(client, false, true, () -> {
+                    client.withSiteId(site.getId()).withServiceId(serviceId);
+                    return okResult(JSON_WRITER.writeValueAsString(client.toClientKey()));
+                });
+            }
+            case "disable":
+            case "enable": {
+                final LegacyClientKey client = getBulkClient(operation, clientsByContact);
+                final boolean disableFlag = op.equals("disable");
+                return new BulkClientChange(client, false, false, () -> {
+                    boolean changed = client.isDisabled() != disableFlag;
+                    client.setDisabled(disableFlag);
+                    return new JsonObject()
+                            .put("status", changed ? "ok" : "unchanged")
+                            .put("client", new JsonObject()
+                                    .put("name", client.getName())
+                                    .put("contact", client.getContact())
+                                    .put("created", client.getCreated())
+                                    .put("disabled", client.isDisabled()));
+                });
+            }
+            case "roles": {
+                final LegacyClientKey client = getBulkClient(operation, clientsByContact);
+                final Set<Role> roles = getBulkRoles(operation);
+                return new BulkClientChange(client, false, true, () -> {
+                    client.withRoles(roles);
+                    return okResult(JSON_WRITER.writeValueAsString(client.toClientKey()));
+                });
+            }
+            default:
+                throw new IllegalArgumentException("unsupported op: " + op);
         }
     }
 
+    private static JsonObject okResult(String client) {
+        return new JsonObject().put("status", "ok").put("client", new JsonObject(client));
+    }
+
+    private static LegacyClientKey getBulkClient(JsonObject operation, Map<String, LegacyClientKey> clientsByContact) {
+        final String contact = operation.getString("contact");
+        if (contact == null) {
+            throw new IllegalArgumentException("required parameters: contact");
+        }
+        final LegacyClientKey client = clientsByContact.get(contact);
+        if (client == null) {
+            throw new IllegalArgumentException("client not found: " + contact);
+        }
+        return client;
+    }
+
+    private static Set<Role> getBulkRoles(JsonObject operation) {
+        final String rolesSpec = operation.getString("roles");
+        final Set<Role> roles = rolesSpec == null ? null : RequestUtil.getRoles(rolesSpec);
+        if (roles == null) {
+            throw new IllegalArgumentException("incorrect or none roles specified");
+        }
+        return roles;
+    }
+
+    private Site getBulkSite(JsonObject operation) {
+        final Integer siteId = operation.getInteger("site_id");
+        if (siteId == null || !SiteUtil.isValidSiteId(siteId)) {
+            throw new IllegalArgumentException("must specify a valid site id");
+        }
+        final Site site = this.siteProvider.getSite(siteId);
+        if (site == null) {
+            throw new IllegalArgumentException("site not found: " + siteId);
+        }
+        return site;
+    }
+
     private List<LegacyClientKey> getAllClientKeys() {
         return this.clientKeyProvider.getAll()
                 .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
                 .collect(Collectors.toList());
     }
 
+    // Applies the change to the client and uploads the client keys; on a commit conflict it is applied again to the reloaded client
+    private LegacyClientKey updateClientKey(String contact, Consumer<LegacyClientKey> change) throws Exception {
+        return StoreCommitRetry.run(() -> {
+            final LegacyClientKey client = getClientKeyByContact(contact);
+            if (client == null) {
+                throw new IllegalStateException("client removed while being updated: " + contact);
+            }
+            change.accept(client);
+
+            // upload to storage
+            storeWriter.upload(getAllClientKeys(), null);
+            return client;
+        });
+    }
+
     private int getServiceId(RoutingContext rc) {
         int serviceId = 0;
         try {
@@ -4,13 +4,17 @@ import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.managers.KeysetManager;
 import com.uid2.admin.secret.IKeypairGenerator;
 import com.uid2.admin.secret.IKeypairManager;
+import com.uid2.admin.store.ClientSideKeypairRegistry;
 import com.uid2.admin.store.Clock;
+import com.uid2.admin.store.StoreReloader;
 import com.uid2.admin.store.writer.ClientSideKeypairStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.audit.AuditParams;
 import com.uid2.shared.auth.Role;
 import com.uid2.shared.model.ClientSideKeypair;
+import com.uid2.shared.model.Site;
 import com.uid2.shared.store.reader.RotatingClientSideKeypairStore;
 import com.uid2.shared.store.reader.RotatingSiteStore;
 import io.vertx.core.http.HttpHeaders;
@@ -24,23 +28,28 @@ import org.slf4j.LoggerFactory;
 import java.security.KeyPair;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static com.uid2.admin.store.writer.ClientSideKeypairStoreWriter.toJsonWithPrivateKey;
 import static com.uid2.admin.store.writer.ClientSideKeypairStoreWriter.toJsonWithoutPrivateKey;
 import static com.uid2.admin.vertx.Endpoints.*;
 
 public class ClientSideKeypairService implements IService, IKeypairManager {
+    static final int MAX_BULK_KEYPAIRS = 100;
+
     private final AdminAuthMiddleware auth;
     private final Clock clock;
     private final WriteLock writeLock;
     private final ClientSideKeypairStoreWriter storeWriter;
     private final RotatingClientSideKeypairStore keypairStore;
+    private final ClientSideKeypairRegistry keypairRegistry;
+    private final StoreReloader keypairReloader;
     private final RotatingSiteStore siteProvider;
     private final KeysetManager keysetManager;
     private final IKeypairGenerator keypairGenerator;
     private final String publicKeyPrefix;
     private final String privateKeyPrefix;
+    // The encoded list response, reused for as long as the registry hands back the same view and the sites keep their names
+    private volatile CachedList listCache;
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientSideKeypairService.class);
 
     public ClientSideKeypairService(JsonObject config,
@@ -56,6 +65,8 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
         this.writeLock = writeLock;
         this.storeWriter = storeWriter;
         this.keypairStore = keypairStore;
+        this.keypairRegistry = new ClientSideKeypairRegistry(keypairStore);
+        this.keypairReloader = StoreReloader.of("client_side_keypairs", keypairStore);
         this.keypairGenerator = keypairGenerator;
         this.siteProvider = siteProvider;
         this.keysetManager = keysetManager;
@@ -71,6 +82,11 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
                 this.handleAddKeypair(ctx);
             }
         }, new AuditParams(Collections.emptyList(), List.of("site_id", "name", "contact", "disabled")), Role.MAINTAINER, Role.SHARING_PORTAL, Role.ADMIN_CREATE));
+        router.post(API_CLIENT_SIDE_KEYPAIRS_BULK_ADD.toString()).blockingHandler(auth.handle((ctx) -> {
+            synchronized (writeLock) {
+                this.handleBulkAddKeypairs(ctx);
+            }
+        }, new AuditParams(Collections.emptyList(), List.of("site_id", "name", "contact", "disabled", "count")), Role.MAINTAINER, Role.ADMIN_CREATE));
         router.post(API_CLIENT_SIDE_KEYPAIRS_UPDATE.toString()).blockingHandler(auth.handle((ctx) -> {
             synchronized (writeLock) {
                 this.handleUpdateKeypair(ctx);
@@ -89,38 +105,63 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
     }
 
     private void handleAddKeypair(RoutingContext rc) {
-        final JsonObject body = rc.body().asJsonObject();
+        final List<ClientSideKeypair> newKeypairs = addKeypairs(rc, rc.body().asJsonObject(), 1);
+        if (newKeypairs == null) return;
+
+        final JsonObject json = createKeypairJsonObject(toJsonWithoutPrivateKey(newKeypairs.get(0)));
+        rc.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(json.encode());
+    }
+
+    private void handleBulkAddKeypairs(RoutingContext rc) {
+        JsonObject body = getRequestBody(rc);
+        if (body == null) return;
+
+        final Integer count = body.getInteger("count");
+        if (count == null || count < 1 || count > MAX_BULK_KEYPAIRS) {
+            ResponseUtil.error(rc, 400, "count must be between 1 and " + MAX_BULK_KEYPAIRS);
+            return;
+        }
+
+        final List<ClientSideKeypair> newKeypairs = addKeypairs(rc, body, count);
+        if (newKeypairs == null) return;
+
+        final JsonArray ja = new JsonArray(new ArrayList<>(newKeypairs.size()));
+        newKeypairs.forEach(k -> ja.add(createKeypairJsonObject(toJsonWithoutPrivateKey(k))));
+        rc.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(ja.encode());
+    }
+
+    // Creates the keypairs with a single upload and the site's keyset; returns null once an error response was sent
+    private List<ClientSideKeypair> addKeypairs(RoutingContext rc, JsonObject body, int count) {
         final Integer siteId = body.getInteger("site_id");
         final String contact = body.getString("contact", "");
         final boolean disabled = body.getBoolean("disabled", false);
         final String name = body.getString("name");
         if (siteId == null) {
             ResponseUtil.error(rc, 400, "Required parameters: site_id");
-            return;
+            return null;
         }
         if (siteProvider.getSite(siteId) == null) {
             ResponseUtil.error(rc, 404, "site_id: " + siteId + " not valid");
-            return;
+            return null;
         }
 
-        final ClientSideKeypair newKeypair;
+        final List<ClientSideKeypair> newKeypairs;
         try {
-            newKeypair = createAndSaveSiteKeypair(siteId, contact, disabled, name);
+            newKeypairs = createAndSaveSiteKeypairs(siteId, contact, disabled, name, count);
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "failed to upload keypairs", e);
-            return;
+            return null;
         }
 
         try {
             this.keysetManager.createKeysetForSite(siteId);
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "failed to create keyset", e);
-            return;
+            return null;
         }
-
-        final JsonObject json = createKeypairJsonObject(toJsonWithoutPrivateKey(newKeypair));
-        rc.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-                .end(json.encode());
+        return newKeypairs;
     }
 
     private void handleUpdateKeypair(RoutingContext rc) {
@@ -163,11 +204,13 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
                 name);
 
 
-        Set<ClientSideKeypair> allKeypairs = new HashSet<>(this.keypairStore.getAll());
-        allKeypairs.remove(keypair);
-        allKeypairs.add(newKeypair);
         try {
-            storeWriter.upload(allKeypairs, null);
+            StoreCommitRetry.run(() -> {
+                Set<ClientSideKeypair> allKeypairs = new HashSet<>(this.keypairStore.getAll());
+                allKeypairs.removeIf(k -> k.getSubscriptionId().equals(newKeypair.getSubscriptionId()));
+                allKeypairs.add(newKeypair);
+                storeWriter.upload(allKeypairs, null);
+            });
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "failed to upload keypairs", e);
             return;
@@ -185,11 +228,12 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
         ClientSideKeypair keypair = validateAndGetKeypair(rc, body);
         if (keypair == null) return;
 
-        Set<ClientSideKeypair> allKeypairs = new HashSet<>(this.keypairStore.getAll());
-        allKeypairs.remove(keypair);
-
         try {
-            storeWriter.upload(allKeypairs, null);
+            StoreCommitRetry.run(() -> {
+                Set<ClientSideKeypair> allKeypairs = new HashSet<>(this.keypairStore.getAll());
+                allKeypairs.removeIf(k -> k.getSubscriptionId().equals(keypair.getSubscriptionId()));
+                storeWriter.upload(allKeypairs, null);
+            });
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "failed to upload keypairs", e);
             return;
@@ -202,29 +246,52 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
                 .end(responseJson.encode());
     }
 
+    @Override
     public Iterable<ClientSideKeypair> getKeypairsBySite(int siteId) {
-        return this.keypairStore.getSnapshot().getSiteKeypairs(siteId);
+        return this.keypairRegistry.current().getSiteKeypairs(siteId);
     }
 
     private void handleListAllKeypairs(RoutingContext rc) {
-        final JsonArray ja = new JsonArray();
-        this.keypairStore.getSnapshot().getAll().forEach(k -> ja.add(createKeypairJsonObject(toJsonWithoutPrivateKey(k))));
+        final ClientSideKeypairRegistry.View keypairs = this.keypairRegistry.current();
+        // resolved once per site that has keypairs, not once per keypair
+        final Map<Integer, String> siteNames = new HashMap<>();
+        keypairs.getSiteIds().forEach(siteId -> siteNames.put(siteId, getSiteName(siteId)));
+
+        CachedList cached = this.listCache;
+        if (cached == null || cached.source != keypairs || !cached.siteNames.equals(siteNames)) {
+            final JsonArray ja = new JsonArray(new ArrayList<>(keypairs.getAll().size()));
+            for (ClientSideKeypair keypair : keypairs.getAll()) {
+                // the cached public JSON is read-only, the response adds the site name to a shallow copy
+                final JsonObject jo = new JsonObject(new LinkedHashMap<>(keypairs.getPublicJson(keypair).getMap()));
+                ja.add(jo.put("site_name", siteNames.get(keypair.getSiteId())));
+            }
+            cached = new CachedList(keypairs, siteNames, ja.encode());
+            this.listCache = cached;
+        }
         rc.response()
                 .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-                .end(ja.encode());
+                .end(cached.body);
+    }
+
+    private record CachedList(ClientSideKeypairRegistry.View source, Map<Integer, String> siteNames, String body) {
     }
 
     private JsonObject createKeypairJsonObject(JsonObject jo) {
-        String siteName = this.siteProvider.getSite(jo.getInteger("site_id")).getName();
-        jo.put("site_name", siteName);
+        jo.put("site_name", getSiteName(jo.getInteger("site_id")));
         return jo;
     }
 
+    // null for a keypair whose site no longer exists
+    private String getSiteName(int siteId) {
+        Site site = this.siteProvider.getSite(siteId);
+        return site == null ? null : site.getName();
+    }
+
     private void handleListKeypair(RoutingContext rc) {
 
         String subscriptionId = rc.pathParam("subscriptionId");
 
-        ClientSideKeypair keypair = this.keypairStore.getSnapshot().getKeypair(subscriptionId);
+        ClientSideKeypair keypair = this.keypairRegistry.current().getKeypair(subscriptionId);
         if (keypair == null) {
             ResponseUtil.error(rc, 404, "Failed to find a keypair for subscription id: " + subscriptionId);
             return;
@@ -238,33 +305,52 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
 
     @Override
     public ClientSideKeypair createAndSaveSiteKeypair(int siteId, String contact, boolean disabled, String name) throws Exception {
+        return createAndSaveSiteKeypairs(siteId, contact, disabled, name, 1).get(0);
+    }
+
+    @Override
+    public List<ClientSideKeypair> createAndSaveSiteKeypairs(int siteId, String contact, boolean disabled, String name, int count) throws Exception {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
 
         final Instant now = clock.now();
 
-        this.keypairStore.loadContent();
-        final Set<String> existingIds = this.keypairStore.getAll().stream().map(ClientSideKeypair::getSubscriptionId).collect(Collectors.toSet());
-        final List<ClientSideKeypair> keypairs = new ArrayList<>(this.keypairStore.getAll());
-        KeyPair pair = keypairGenerator.generateKeypair();
+        this.keypairReloader.reload();
+        return StoreCommitRetry.run(() -> addSiteKeypairs(siteId, contact, disabled, name, count, now));
+    }
 
-        String subscriptionId = keypairGenerator.generateRandomSubscriptionId();
-        while (existingIds.contains(subscriptionId)) {
-            subscriptionId = keypairGenerator.generateRandomSubscriptionId();
-        }
+    // Generates the keypairs against the current keypairs, so that a retried commit avoids subscription ids added meanwhile
+    private List<ClientSideKeypair> addSiteKeypairs(int siteId, String contact, boolean disabled, String name, int count, Instant now) throws Exception {
+        final ClientSideKeypairRegistry.View existing = this.keypairRegistry.current();
+        final List<ClientSideKeypair> keypairs = new ArrayList<>(existing.getAll().size() + count);
+        keypairs.addAll(existing.getAll());
 
-        ClientSideKeypair newKeypair = new ClientSideKeypair(
-                subscriptionId,
-                this.publicKeyPrefix + Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()),
-                this.privateKeyPrefix + Base64.getEncoder().encodeToString(pair.getPrivate().getEncoded()),
-                siteId,
-                contact,
-                now,
-                disabled,
-                name);
-        keypairs.add(newKeypair);
-        storeWriter.upload(keypairs, null);
+        final Set<String> newIds = new HashSet<>();
+        final List<ClientSideKeypair> newKeypairs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            KeyPair pair = keypairGenerator.generateKeypair();
 
-        return newKeypair;
+            String subscriptionId = keypairGenerator.generateRandomSubscriptionId();
+            while (existing.containsSubscriptionId(subscriptionId) || newIds.contains(subscriptionId)) {
+                subscriptionId = keypairGenerator.generateRandomSubscriptionId();
+            }
+            newIds.add(subscriptionId);
+
+            newKeypairs.add(new ClientSideKeypair(
+                    subscriptionId,
+                    this.publicKeyPrefix + Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()),
+                    this.privateKeyPrefix + Base64.getEncoder().encodeToString(pair.getPrivate().getEncoded()),
+                    siteId,
+                    contact,
+                    now,
+                    disabled,
+                    name));
+        }
+        keypairs.addAll(newKeypairs);
+        storeWriter.upload(keypairs, null);
 
+        return newKeypairs;
     }
 
     private JsonObject getRequestBody(RoutingContext rc) {
@@ -282,7 +368,7 @@ public class ClientSideKeypairService implements IService, IKeypairManager {
             return null;
         }
 
-        ClientSideKeypair keypair = this.keypairStore.getSnapshot().getKeypair(subscriptionId);
+        ClientSideKeypair keypair = this.keypairRegistry.current().getKeypair(subscriptionId);
         if (keypair == null) {
             ResponseUtil.error(rc, 404, "Failed to find a keypair for subscription id: " + subscriptionId);
             return null;
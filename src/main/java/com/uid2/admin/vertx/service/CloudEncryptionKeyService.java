@@ -4,33 +4,41 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.cloudencryption.CloudEncryptionKeyManager;
+import com.uid2.admin.cloudencryption.CloudEncryptionKeyReencryptionScheduler;
 import com.uid2.admin.cloudencryption.CloudEncryptionKeyRotationJob;
 import com.uid2.admin.job.JobDispatcher;
 import com.uid2.admin.model.CloudEncryptionKeyListResponse;
 import com.uid2.admin.vertx.Endpoints;
+import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.shared.audit.AuditParams;
 import com.uid2.shared.auth.Role;
 import com.uid2.shared.util.Mapper;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.List;
 
 public class CloudEncryptionKeyService implements IService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CloudEncryptionKeyService.class);
     private final AdminAuthMiddleware auth;
     private final CloudEncryptionKeyManager keyManager;
     private final JobDispatcher jobDispatcher;
+    private final CloudEncryptionKeyReencryptionScheduler reencryptionScheduler;
     private static final ObjectMapper OBJECT_MAPPER = Mapper.getInstance();
 
     public CloudEncryptionKeyService(
             AdminAuthMiddleware auth,
             CloudEncryptionKeyManager keyManager,
-            JobDispatcher jobDispatcher) {
+            JobDispatcher jobDispatcher,
+            CloudEncryptionKeyReencryptionScheduler reencryptionScheduler) {
         this.auth = auth;
         this.keyManager = keyManager;
         this.jobDispatcher = jobDispatcher;
+        this.reencryptionScheduler = reencryptionScheduler;
     }
 
     @Override
@@ -38,11 +46,11 @@ public class CloudEncryptionKeyService implements IService {
         router.get(Endpoints.CLOUD_ENCRYPTION_KEY_METADATA.toString()).handler(
                 auth.handle(this::handleMetadata, Role.MAINTAINER, Role.ADMIN_READ_ONLY));
 
-        router.get(Endpoints.CLOUD_ENCRYPTION_KEY_LIST.toString()).handler(
+        router.get(Endpoints.CLOUD_ENCRYPTION_KEY_LIST.toString()).blockingHandler(
                 auth.handle(this::handleList, Role.MAINTAINER, Role.ADMIN_READ_ONLY)
         );
 
-        router.post(Endpoints.CLOUD_ENCRYPTION_KEY_ROTATE.toString()).handler(
+        router.post(Endpoints.CLOUD_ENCRYPTION_KEY_ROTATE.toString()).blockingHandler(
                 auth.handle(this::handleRotate, new AuditParams(List.of("fail"), Collections.emptyList()), Role.MAINTAINER, Role.SECRET_ROTATION)
         );
     }
@@ -70,9 +78,13 @@ public class CloudEncryptionKeyService implements IService {
         try {
             var shouldFail = !rc.queryParam("fail").isEmpty();
 
-            jobDispatcher.enqueue(new CloudEncryptionKeyRotationJob(keyManager, shouldFail));
-            var isSuccess = jobDispatcher.executeNextJob().get();
-            if (isSuccess) {
+            var rotation = jobDispatcher.submit(new CloudEncryptionKeyRotationJob(keyManager, shouldFail));
+            if (rotation == null) {
+                ResponseUtil.error(rc, 409, "Cloud encryption key rotation already queued");
+                return;
+            }
+            if (rotation.get()) {
+                scheduleReencryption();
                 rc.response().end();
             } else {
                 rc.response()
@@ -85,6 +97,15 @@ public class CloudEncryptionKeyService implements IService {
         }
     }
 
+    // The keys are rotated either way; the re-encryption is still picked up by the next scheduling or a full sync
+    private void scheduleReencryption() {
+        try {
+            reencryptionScheduler.scheduleUpcomingActivations();
+        } catch (Exception e) {
+            LOGGER.error("Failed to schedule re-encryption for the rotated cloud encryption keys", e);
+        }
+    }
+
     private static void respondWithJson(RoutingContext rc, CloudEncryptionKeyListResponse response) throws JsonProcessingException {
         rc.response()
                 .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
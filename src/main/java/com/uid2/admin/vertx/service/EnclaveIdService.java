@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.store.Clock;
 import com.uid2.admin.store.writer.EnclaveStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.admin.vertx.RequestUtil;
 import com.uid2.admin.vertx.ResponseUtil;
@@ -148,15 +149,15 @@ public class EnclaveIdService implements IService {
                 return;
             }
 
-            List<EnclaveIdentifier> enclaveIds = this.enclaveIdProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
+            StoreCommitRetry.run(() -> {
+                List<EnclaveIdentifier> enclaveIds = getSortedEnclaveIds();
 
-            // add enclave id to the array
-            enclaveIds.add(newEnclaveId);
+                // add enclave id to the array
+                enclaveIds.add(newEnclaveId);
 
-            // upload to storage
-            storeWriter.upload(enclaveIds);
+                // upload to storage
+                storeWriter.upload(enclaveIds);
+            });
 
             // respond with new enclave id
             rc.response().end(jsonWriter.writeValueAsString(newEnclaveId));
@@ -184,16 +185,16 @@ public class EnclaveIdService implements IService {
                 return;
             }
 
-            List<EnclaveIdentifier> enclaveIds = this.enclaveIdProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
-            // delete client from the array
             EnclaveIdentifier e = existingEnclaveId.get();
-            enclaveIds.remove(e);
+            StoreCommitRetry.run(() -> {
+                List<EnclaveIdentifier> enclaveIds = getSortedEnclaveIds();
+
+                // delete client from the array
+                enclaveIds.remove(e);
 
-            // upload to storage
-            storeWriter.upload(enclaveIds);
+                // upload to storage
+                storeWriter.upload(enclaveIds);
+            });
 
             // respond with the deleted enclave id
             rc.response().end(jsonWriter.writeValueAsString(e));
@@ -201,4 +202,10 @@ public class EnclaveIdService implements IService {
             rc.fail(500, e);
         }
     }
+
+    private List<EnclaveIdentifier> getSortedEnclaveIds() {
+        return this.enclaveIdProvider.getAll()
+                .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
+                .collect(Collectors.toList());
+    }
 }
@@ -3,7 +3,10 @@ package com.uid2.admin.vertx.service;
 import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.job.JobDispatcher;
 import com.uid2.admin.job.jobsync.EncryptedFilesSyncJob;
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.store.ObjectTagger;
 import com.uid2.admin.vertx.Endpoints;
+import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.auth.Role;
 import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
@@ -14,6 +17,7 @@ import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public class EncryptedFilesSyncService implements IService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EncryptedFilesSyncService.class);
@@ -23,18 +27,24 @@ public class EncryptedFilesSyncService implements IService {
     private final WriteLock writeLock;
     private final JsonObject config;
     private final RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider;
+    private final ObjectTagger saltTagger;
+    private final Supplier<Job> reencryptionJobFactory;
 
     public EncryptedFilesSyncService(
             AdminAuthMiddleware auth,
             JobDispatcher jobDispatcher,
             WriteLock writeLock,
             JsonObject config,
-            RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider) {
+            RotatingCloudEncryptionKeyProvider cloudEncryptionKeyProvider,
+            ObjectTagger saltTagger,
+            Supplier<Job> reencryptionJobFactory) {
         this.auth = auth;
         this.jobDispatcher = jobDispatcher;
         this.writeLock = writeLock;
         this.config = config;
         this.cloudEncryptionKeyProvider = cloudEncryptionKeyProvider;
+        this.saltTagger = saltTagger;
+        this.reencryptionJobFactory = reencryptionJobFactory;
     }
 
     @Override
@@ -49,11 +59,15 @@ public class EncryptedFilesSyncService implements IService {
         router.post(Endpoints.API_ENCRYPTED_FILES_SYNC_NOW.toString()).blockingHandler(auth.handle(
                 this::handleEncryptedFileSyncNow,
                 Role.MAINTAINER, Role.PRIVATE_OPERATOR_SYNC));
+
+        router.post(Endpoints.API_ENCRYPTED_FILES_REENCRYPT_ROTATED.toString()).blockingHandler(auth.handle(
+                this::handleReencryptRotated,
+                Role.MAINTAINER, Role.PRIVATE_OPERATOR_SYNC));
     }
 
     private void handleEncryptedFileSync(RoutingContext rc) {
         try {
-            EncryptedFilesSyncJob encryptedFileSyncJob = new EncryptedFilesSyncJob(config, writeLock, cloudEncryptionKeyProvider);
+            EncryptedFilesSyncJob encryptedFileSyncJob = new EncryptedFilesSyncJob(config, writeLock, cloudEncryptionKeyProvider, saltTagger);
             jobDispatcher.enqueue(encryptedFileSyncJob);
 
             rc.response().end("OK");
@@ -61,11 +75,26 @@ public class EncryptedFilesSyncService implements IService {
             rc.fail(500, e);
         }
     }
+
+    // Only re-encrypts the sites whose stored files are not encrypted with their active cloud encryption key
+    private void handleReencryptRotated(RoutingContext rc) {
+        try {
+            jobDispatcher.enqueue(reencryptionJobFactory.get());
+
+            rc.response().end("OK");
+        } catch (Exception e) {
+            rc.fail(500, e);
+        }
+    }
+
     private void handleEncryptedFileSyncNow(RoutingContext rc) {
         try {
-            EncryptedFilesSyncJob encryptedFileSyncJob = new EncryptedFilesSyncJob(config, writeLock, cloudEncryptionKeyProvider);
-            jobDispatcher.enqueue(encryptedFileSyncJob);
-            CompletableFuture<Boolean> encryptedFileSyncJobFuture = jobDispatcher.executeNextJob();
+            EncryptedFilesSyncJob encryptedFileSyncJob = new EncryptedFilesSyncJob(config, writeLock, cloudEncryptionKeyProvider, saltTagger);
+            CompletableFuture<Boolean> encryptedFileSyncJobFuture = jobDispatcher.submit(encryptedFileSyncJob);
+            if (encryptedFileSyncJobFuture == null) {
+                ResponseUtil.error(rc, 409, "Encrypted files sync already queued");
+                return;
+            }
             encryptedFileSyncJobFuture.get();
 
             rc.response().end("OK");
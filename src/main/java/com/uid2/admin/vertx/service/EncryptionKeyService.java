@@ -2,13 +2,16 @@ package com.uid2.admin.vertx.service;
 
 import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.auth.AdminKeyset;
+import com.uid2.admin.secret.IBatchKeyGenerator;
 import com.uid2.admin.secret.IEncryptionKeyManager;
 import com.uid2.admin.secret.IKeysetKeyManager;
 import com.uid2.admin.store.Clock;
+import com.uid2.admin.store.StoreReloader;
 import com.uid2.admin.store.reader.RotatingAdminKeysetStore;
 import com.uid2.admin.store.writer.AdminKeysetWriter;
 import com.uid2.admin.store.writer.EncryptionKeyStoreWriter;
 import com.uid2.admin.store.writer.KeysetKeyStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.util.MaxKeyUtil;
 import com.uid2.admin.vertx.RequestUtil;
 import com.uid2.admin.vertx.ResponseUtil;
@@ -67,8 +70,11 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
     private final RotatingKeysetKeyStore keysetKeyProvider;
 
     private final RotatingAdminKeysetStore keysetProvider;
+    private final StoreReloader keyReloader;
+    private final StoreReloader keysetKeyReloader;
+    private final StoreReloader keysetReloader;
     private final AdminKeysetWriter keysetStoreWriter;
-    private final IKeyGenerator keyGenerator;
+    private final IBatchKeyGenerator keyGenerator;
 
     private final Duration masterKeyActivatesIn;
     private final Duration masterKeyExpiresAfter;
@@ -100,7 +106,10 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
         this.keysetKeyProvider = keysetKeyProvider;
         this.keysetStoreWriter = keysetStoreWriter;
         this.keysetProvider = keysetProvider;
-        this.keyGenerator = keyGenerator;
+        this.keyReloader = StoreReloader.of("keys", keyProvider);
+        this.keysetKeyReloader = StoreReloader.of("keyset_keys", keysetKeyProvider);
+        this.keysetReloader = StoreReloader.of("admin_keysets", keysetProvider);
+        this.keyGenerator = IBatchKeyGenerator.of(keyGenerator);
         this.clock = clock;
 
         masterKeyActivatesIn = Duration.ofSeconds(config.getInteger(MASTER_KEY_ACTIVATES_IN_SECONDS));
@@ -190,7 +199,7 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
 
     private EncryptionKey addSiteKey(int siteId, Duration activatesIn) throws Exception {
         // force refresh manually
-        this.keyProvider.loadContent();
+        this.keyReloader.reload();
 
         return addSiteKeys(Arrays.asList(siteId), activatesIn, siteKeyExpiresAfter, false).get(0);
     }
@@ -487,27 +496,36 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
             throws Exception {
         final Instant now = clock.now();
 
-        final List<EncryptionKey> keys = this.keyProvider.getSnapshot().getActiveKeySet().stream()
-                .sorted(Comparator.comparingInt(EncryptionKey::getId))
-                .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
-                .collect(Collectors.toList());
-
-        int maxKeyId = MaxKeyUtil.getMaxKeyId(this.keyProvider.getSnapshot().getActiveKeySet(),
-                this.keyProvider.getMetadata().getInteger("max_key_id"));
+        final List<Integer> siteIdList = new ArrayList<>();
+        siteIds.forEach(siteIdList::add);
+        final byte[][] secrets = keyGenerator.generateRandomKeys(siteIdList.size(), 32);
 
+        // key ids are allocated from the store each attempt, so a retried commit does not reuse ids committed meanwhile
         final List<EncryptionKey> addedKeys = new ArrayList<>();
-
-        for (Integer siteId : siteIds) {
-            ++maxKeyId;
-            final byte[] secret = keyGenerator.generateRandomKey(32);
-            final Instant created = now;
-            final Instant activates = created.plusSeconds(activatesIn.getSeconds());
-            final Instant expires = activates.plusSeconds(expiresAfter.getSeconds());
-            final EncryptionKey key = new EncryptionKey(maxKeyId, secret, created, activates, expires, siteId);
-            keys.add(key);
-            addedKeys.add(key);
-        }
-        storeWriter.upload(keys, maxKeyId);
+        final int maxKeyId = StoreCommitRetry.run(() -> {
+            addedKeys.clear();
+            final List<EncryptionKey> keys = this.keyProvider.getSnapshot().getActiveKeySet().stream()
+                    .sorted(Comparator.comparingInt(EncryptionKey::getId))
+                    .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
+                    .collect(Collectors.toList());
+
+            int nextKeyId = MaxKeyUtil.getMaxKeyId(this.keyProvider.getSnapshot().getActiveKeySet(),
+                    this.keyProvider.getMetadata().getInteger("max_key_id"));
+
+            for (int i = 0; i < siteIdList.size(); i++) {
+                final Integer siteId = siteIdList.get(i);
+                ++nextKeyId;
+                final byte[] secret = secrets[i];
+                final Instant created = now;
+                final Instant activates = created.plusSeconds(activatesIn.getSeconds());
+                final Instant expires = activates.plusSeconds(expiresAfter.getSeconds());
+                final EncryptionKey key = new EncryptionKey(nextKeyId, secret, created, activates, expires, siteId);
+                keys.add(key);
+                addedKeys.add(key);
+            }
+            storeWriter.upload(keys, nextKeyId);
+            return nextKeyId;
+        });
         catchUpKeysetKeys(addedKeys, isDuringRotation, maxKeyId);
 
         return addedKeys;
@@ -517,23 +535,28 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
             throws Exception {
         final Instant now = clock.now();
 
-        final List<EncryptionKey> keys = this.keyProvider.getSnapshot().getActiveKeySet().stream()
-                .sorted(Comparator.comparingInt(EncryptionKey::getId))
-                .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
-                .collect(Collectors.toList());
-
         final List<EncryptionKey> addedKeys = new ArrayList<>();
-
         for (KeysetKey key : missingKeys) {
             final int siteId = getSiteId(key.getKeysetId());
-            final EncryptionKey newKey = new EncryptionKey(key.getId(), key.getKeyBytes(), key.getCreated(), key.getActivates(), key.getExpires(), siteId);
-            keys.add(newKey);
-            addedKeys.add(newKey);
+            addedKeys.add(new EncryptionKey(key.getId(), key.getKeyBytes(), key.getCreated(), key.getActivates(), key.getExpires(), siteId));
         }
-        storeWriter.upload(keys, maxKeyId);
+
+        StoreCommitRetry.run(() -> {
+            final List<EncryptionKey> keys = this.keyProvider.getSnapshot().getActiveKeySet().stream()
+                    .sorted(Comparator.comparingInt(EncryptionKey::getId))
+                    .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
+                    .collect(Collectors.toList());
+            keys.addAll(addedKeys);
+            storeWriter.upload(keys, maxKeyId);
+        });
     }
 
     private int getOrCreateKeysetId(int siteId)
+        throws Exception {
+        return StoreCommitRetry.run(() -> lookUpOrCreateKeysetId(siteId));
+    }
+
+    private int lookUpOrCreateKeysetId(int siteId)
         throws Exception {
         Map<Integer, AdminKeyset> currentKeysets = keysetProvider.getSnapshot().getAllKeysets();
         AdminKeyset keyset = lookUpKeyset(siteId, currentKeysets);
@@ -565,30 +588,38 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
         throws Exception {
         final Instant now = clock.now();
 
-        final List<KeysetKey> keysetKeys = this.keysetKeyProvider.getSnapshot().getAllKeysetKeys();
-        final List<KeysetKey> keys = keysetKeys.stream()
-                .sorted(Comparator.comparingInt(KeysetKey::getId))
-                .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
-                .collect(Collectors.toList());
-
-        int maxKeyId = MaxKeyUtil.getMaxKeysetKeyId(keysetKeys, this.keysetKeyProvider.getMetadata().getInteger("max_key_id"));
+        final List<Integer> keysetIdList = new ArrayList<>();
+        keysetIds.forEach(keysetIdList::add);
+        final byte[][] secrets = keyGenerator.generateRandomKeys(keysetIdList.size(), 32);
 
         final List<KeysetKey> addedKeys = new ArrayList<>();
-
-        for (Integer keysetId : keysetIds) {
-            ++maxKeyId;
-            final byte[] secret = keyGenerator.generateRandomKey(32);
-            final Instant created = now;
-
-            final boolean isAddingFirstKeyForKeyset = (!isDuringRotation && keysetKeys.stream().noneMatch(key -> key.getKeysetId() == keysetId));
-
-            final Instant activates = isAddingFirstKeyForKeyset ? created : created.plusSeconds(activatesIn.getSeconds());
-            final Instant expires = activates.plusSeconds(expiresAfter.getSeconds());
-            final KeysetKey key = new KeysetKey(maxKeyId, secret, created, activates, expires, keysetId);
-            keys.add(key);
-            addedKeys.add(key);
-        }
-        keysetKeyStoreWriter.upload(keys, maxKeyId);
+        final int maxKeyId = StoreCommitRetry.run(() -> {
+            addedKeys.clear();
+            final List<KeysetKey> keysetKeys = this.keysetKeyProvider.getSnapshot().getAllKeysetKeys();
+            final List<KeysetKey> keys = keysetKeys.stream()
+                    .sorted(Comparator.comparingInt(KeysetKey::getId))
+                    .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
+                    .collect(Collectors.toList());
+
+            int nextKeyId = MaxKeyUtil.getMaxKeysetKeyId(keysetKeys, this.keysetKeyProvider.getMetadata().getInteger("max_key_id"));
+
+            for (int i = 0; i < keysetIdList.size(); i++) {
+                final Integer keysetId = keysetIdList.get(i);
+                ++nextKeyId;
+                final byte[] secret = secrets[i];
+                final Instant created = now;
+
+                final boolean isAddingFirstKeyForKeyset = (!isDuringRotation && keysetKeys.stream().noneMatch(key -> key.getKeysetId() == keysetId));
+
+                final Instant activates = isAddingFirstKeyForKeyset ? created : created.plusSeconds(activatesIn.getSeconds());
+                final Instant expires = activates.plusSeconds(expiresAfter.getSeconds());
+                final KeysetKey key = new KeysetKey(nextKeyId, secret, created, activates, expires, keysetId);
+                keys.add(key);
+                addedKeys.add(key);
+            }
+            keysetKeyStoreWriter.upload(keys, nextKeyId);
+            return nextKeyId;
+        });
         catchUpKeys(addedKeys, isDuringRotation, maxKeyId);
 
         return addedKeys;
@@ -599,21 +630,20 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
         if(!enableKeysets) return;
         final Instant now = clock.now();
 
-        final List<KeysetKey> keys = this.keysetKeyProvider.getSnapshot().getAllKeysetKeys().stream()
-                .sorted(Comparator.comparingInt(KeysetKey::getId))
-                .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
-                .collect(Collectors.toList());
-
-
         final List<KeysetKey> addedKeys = new ArrayList<>();
-
         for (EncryptionKey key : missingKeys) {
             final int keysetId = getOrCreateKeysetId(key.getSiteId());
-            final KeysetKey newKey = new KeysetKey(key.getId(), key.getKeyBytes(), key.getCreated(), key.getActivates(), key.getExpires(), keysetId);
-            keys.add(newKey);
-            addedKeys.add(newKey);
+            addedKeys.add(new KeysetKey(key.getId(), key.getKeyBytes(), key.getCreated(), key.getActivates(), key.getExpires(), keysetId));
         }
-        keysetKeyStoreWriter.upload(keys, maxKeyId);
+
+        StoreCommitRetry.run(() -> {
+            final List<KeysetKey> keys = this.keysetKeyProvider.getSnapshot().getAllKeysetKeys().stream()
+                    .sorted(Comparator.comparingInt(KeysetKey::getId))
+                    .filter(k -> isWithinCutOffTime(k, now, isDuringRotation))
+                    .collect(Collectors.toList());
+            keys.addAll(addedKeys);
+            keysetKeyStoreWriter.upload(keys, maxKeyId);
+        });
     }
 
     private JsonObject toJson(EncryptionKey key) {
@@ -663,20 +693,20 @@ public class EncryptionKeyService implements IService, IEncryptionKeyManager, IK
     }
 
     private void loadAllContent() throws Exception {
-        this.keyProvider.loadContent();
+        this.keyReloader.reload();
         loadKeysets();
         loadKeysetKeys();
     }
 
     private void loadKeysetKeys() throws Exception {
         if(enableKeysets){
-            this.keysetKeyProvider.loadContent();
+            this.keysetKeyReloader.reload();
         }
     }
 
     private void loadKeysets() throws Exception {
         if(enableKeysets) {
-            this.keysetProvider.loadContent();
+            this.keysetReloader.reload();
         }
     }
 }
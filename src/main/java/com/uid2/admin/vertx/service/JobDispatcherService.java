@@ -3,11 +3,14 @@ package com.uid2.admin.vertx.service;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.job.JobDispatcher;
+import com.uid2.admin.job.model.JobInfo;
+import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.shared.auth.Role;
 import io.vertx.ext.web.Router;
 
 import static com.uid2.admin.vertx.Endpoints.API_JOB_DISPATCHER_CURRENT_JOB;
+import static com.uid2.admin.vertx.Endpoints.API_JOB_DISPATCHER_JOB;
 import static com.uid2.admin.vertx.Endpoints.API_JOB_DISPATCHER_JOB_QUEUE;
 
 public class JobDispatcherService implements IService {
@@ -41,5 +44,24 @@ public class JobDispatcherService implements IService {
                 },
                 //can be other role
             Role.MAINTAINER, Role.ADMIN_READ_ONLY));
+
+        router.get(API_JOB_DISPATCHER_JOB.toString()).blockingHandler(auth.handle((ctx) -> {
+                    try {
+                        String jobId = ctx.queryParam("id").stream().findFirst().orElse(null);
+                        if (jobId == null) {
+                            ResponseUtil.error(ctx, 400, "must specify id");
+                            return;
+                        }
+                        JobInfo jobInfo = jobDispatcher.getJobInfo(jobId);
+                        if (jobInfo == null) {
+                            ResponseUtil.error(ctx, 404, "no queued, executing or recently finished job with id " + jobId);
+                            return;
+                        }
+                        ctx.response().end(jsonWriter.writeValueAsString(jobInfo));
+                    } catch (Exception ex) {
+                        ctx.fail(ex);
+                    }
+                },
+            Role.MAINTAINER, Role.ADMIN_READ_ONLY));
     }
 }
@@ -3,6 +3,7 @@ package com.uid2.admin.vertx.service;
 import com.uid2.admin.auth.AdminAuthMiddleware;
 import com.uid2.admin.secret.IEncryptionKeyManager;
 import com.uid2.admin.store.writer.KeyAclStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.vertx.RequestUtil;
 import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
@@ -112,10 +113,12 @@ public class KeyAclService implements IService {
             this.keyManager.addSiteKey(existingSite.getId());
 
             final EncryptionKeyAcl newAcl = new EncryptionKeyAcl(isWhitelist, new HashSet<>());
-            final Map<Integer, EncryptionKeyAcl> collection = this.keyAclProvider.getSnapshot().getAllAcls();
-            collection.put(existingSite.getId(), newAcl);
+            StoreCommitRetry.run(() -> {
+                final Map<Integer, EncryptionKeyAcl> collection = this.keyAclProvider.getSnapshot().getAllAcls();
+                collection.put(existingSite.getId(), newAcl);
 
-            storeWriter.upload(collection, null);
+                storeWriter.upload(collection, null);
+            });
 
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
@@ -133,9 +136,7 @@ public class KeyAclService implements IService {
             final Site site = RequestUtil.getSiteFromParam(rc, "site_id", siteProvider);
             if (site == null) return;
 
-            final Map<Integer, EncryptionKeyAcl> collection = this.keyAclProvider.getSnapshot().getAllAcls();
-            final EncryptionKeyAcl acl = collection.get(site.getId());
-            if (acl == null) {
+            if (this.keyAclProvider.getSnapshot().getAllAcls().get(site.getId()) == null) {
                 ResponseUtil.error(rc, 404, "ACL not found");
                 return;
             }
@@ -152,8 +153,6 @@ public class KeyAclService implements IService {
                 return;
             }
 
-            boolean added = false;
-            boolean removed = false;
             for (int addedSiteId : addedSites) {
                 if (addedSiteId == site.getId()) {
                     continue;
@@ -163,25 +162,43 @@ public class KeyAclService implements IService {
                 } else if (this.siteProvider.getSite(addedSiteId) == null) {
                     ResponseUtil.error(rc, 404, "unknown added site id: " + addedSiteId);
                     return;
-                } else if (acl.getAccessList().add(addedSiteId)) {
-                    added = true;
                 }
             }
-            for (int removedSiteId : removedSites) {
-                if (acl.getAccessList().remove(removedSiteId)) {
-                    removed = true;
+
+            // on a commit conflict the change is applied again, to the reloaded ACL
+            final boolean[] siteKeyAdded = {false};
+            final EncryptionKeyAcl acl = StoreCommitRetry.run(() -> {
+                final Map<Integer, EncryptionKeyAcl> collection = this.keyAclProvider.getSnapshot().getAllAcls();
+                final EncryptionKeyAcl siteAcl = collection.get(site.getId());
+                if (siteAcl == null) {
+                    throw new IllegalStateException("ACL removed while being updated: " + site.getId());
                 }
-            }
 
-            // we need a new site key if somebody is losing access to the current site one
-            final boolean needNewSiteKey = (acl.getIsWhitelist() && removed) || (!acl.getIsWhitelist() && added);
-            if (needNewSiteKey) {
-                this.keyManager.addSiteKey(site.getId());
-            }
+                boolean added = false;
+                boolean removed = false;
+                for (int addedSiteId : addedSites) {
+                    if (addedSiteId != site.getId() && siteAcl.getAccessList().add(addedSiteId)) {
+                        added = true;
+                    }
+                }
+                for (int removedSiteId : removedSites) {
+                    if (siteAcl.getAccessList().remove(removedSiteId)) {
+                        removed = true;
+                    }
+                }
 
-            if (added || removed) {
-                storeWriter.upload(collection, null);
-            }
+                // we need a new site key if somebody is losing access to the current site one
+                final boolean needNewSiteKey = (siteAcl.getIsWhitelist() && removed) || (!siteAcl.getIsWhitelist() && added);
+                if (needNewSiteKey && !siteKeyAdded[0]) {
+                    this.keyManager.addSiteKey(site.getId());
+                    siteKeyAdded[0] = true;
+                }
+
+                if (added || removed) {
+                    storeWriter.upload(collection, null);
+                }
+                return siteAcl;
+            });
 
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
@@ -8,6 +8,7 @@ import com.uid2.shared.audit.AuditParams;
 import com.uid2.shared.model.Site;
 import com.uid2.shared.secret.IKeyGenerator;
 import com.uid2.admin.store.writer.OperatorKeyStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.admin.vertx.RequestUtil;
 import com.uid2.admin.vertx.ResponseUtil;
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.uid2.admin.vertx.Endpoints.*;
@@ -253,10 +255,6 @@ public class OperatorKeyService implements IService {
                 return;
             }
 
-            final List<OperatorKey> operators = this.operatorKeyProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
             // create a random key
             String[] generatedKeyAndKeyId = generateKeyAndKeyId(finalSiteId);
             String key = generatedKeyAndKeyId[0];
@@ -267,11 +265,15 @@ public class OperatorKeyService implements IService {
             long created = Instant.now().getEpochSecond();
             OperatorKey newOperator = new OperatorKey(khr.getHash(), khr.getSalt(), name, name, protocol, created, false, siteId, roles, operatorType, keyId);
 
-            // add client to the array
-            operators.add(newOperator);
+            StoreCommitRetry.run(() -> {
+                final List<OperatorKey> operators = getSortedOperators();
 
-            // upload to storage
-            operatorKeyStoreWriter.upload(operators);
+                // add client to the array
+                operators.add(newOperator);
+
+                // upload to storage
+                operatorKeyStoreWriter.upload(operators);
+            });
 
             // generate cloud encryption keys as needed
             cloudEncryptionKeyManager.backfillKeys();
@@ -297,16 +299,16 @@ public class OperatorKeyService implements IService {
                 return;
             }
 
-            List<OperatorKey> operators = this.operatorKeyProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
-            // delete client from the array
             OperatorKey o = existingOperator.get();
-            operators.remove(o);
+            StoreCommitRetry.run(() -> {
+                List<OperatorKey> operators = getSortedOperators();
 
-            // upload to storage
-            operatorKeyStoreWriter.upload(operators);
+                // delete client from the array
+                operators.removeIf(operator -> operator.getName().equals(name));
+
+                // upload to storage
+                operatorKeyStoreWriter.upload(operators);
+            });
 
             // respond with client deleted
             rc.response().end(JSON_WRITER.writeValueAsString(o));
@@ -337,17 +339,12 @@ public class OperatorKeyService implements IService {
                 return;
             }
 
-            List<OperatorKey> operators = this.operatorKeyProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
-            OperatorKey operator = existingOperator.get();
-            if (operator.isDisabled() == disableFlag) {
+            if (existingOperator.get().isDisabled() == disableFlag) {
                 ResponseUtil.error(rc, 400, "no change needed");
                 return;
             }
 
-            operator.setDisabled(disableFlag);
+            OperatorKey operator = updateOperator(name, o -> o.setDisabled(disableFlag));
 
             JsonObject response = new JsonObject();
             response.put("name", operator.getName());
@@ -358,9 +355,6 @@ public class OperatorKeyService implements IService {
             response.put("roles", RequestUtil.getRolesSpec(operator.getRoles()));
             response.put("operator_type", operator.getOperatorType());
 
-            // upload to storage
-            operatorKeyStoreWriter.upload(operators);
-
             // respond with operator disabled/enabled
             rc.response().end(response.encode());
         } catch (Exception e) {
@@ -381,42 +375,44 @@ public class OperatorKeyService implements IService {
                 ResponseUtil.error(rc, 404, "operator name not found");
                 return;
             }
-            boolean siteIdChanged = false;
+            final Site site;
             if (!rc.queryParam("site_id").isEmpty()) {
-                final Site site = RequestUtil.getSiteFromParam(rc, "site_id", this.siteProvider);
+                site = RequestUtil.getSiteFromParam(rc, "site_id", this.siteProvider);
                 if (site == null) {
                     ResponseUtil.error(rc, 404, "site id not found");
                     return;
                 }
-                siteIdChanged = true;
-                existingOperator.setSiteId(site.getId());
+            } else {
+                site = null;
             }
 
+            final OperatorType operatorType;
             if (!rc.queryParam("operator_type").isEmpty() && rc.queryParam("operator_type").get(0) != null) {
-                OperatorType operatorType;
                 try {
                     operatorType = OperatorType.valueOf(rc.queryParam("operator_type").get(0).toUpperCase());
                 } catch (Exception e) {
                     ResponseUtil.error(rc, 400, "Operator type can only be either public or private");
                     return;
                 }
-
-                existingOperator.setOperatorType(operatorType);
+            } else {
+                operatorType = null;
             }
 
-            List<OperatorKey> operators = this.operatorKeyProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
-            // upload to storage
-            operatorKeyStoreWriter.upload(operators);
+            final OperatorKey updatedOperator = updateOperator(name, o -> {
+                if (site != null) {
+                    o.setSiteId(site.getId());
+                }
+                if (operatorType != null) {
+                    o.setOperatorType(operatorType);
+                }
+            });
 
-            if (siteIdChanged) {
+            if (site != null) {
                 cloudEncryptionKeyManager.backfillKeys();
             }
 
             // return the updated client
-            rc.response().end(JSON_WRITER.writeValueAsString(existingOperator));
+            rc.response().end(JSON_WRITER.writeValueAsString(updatedOperator));
         } catch (Exception e) {
             rc.fail(500, e);
         }
@@ -444,15 +440,7 @@ public class OperatorKeyService implements IService {
                 return;
             }
 
-            List<OperatorKey> operators = this.operatorKeyProvider.getAll()
-                    .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
-                    .collect(Collectors.toList());
-
-            OperatorKey o = existingOperator.get();
-            o.setRoles(roles);
-
-            // upload to storage
-            operatorKeyStoreWriter.upload(operators);
+            OperatorKey o = updateOperator(name, operator -> operator.setRoles(roles));
 
             // return client with new key
             rc.response().end(JSON_WRITER.writeValueAsString(o));
@@ -461,6 +449,29 @@ public class OperatorKeyService implements IService {
         }
     }
 
+    private List<OperatorKey> getSortedOperators() {
+        return this.operatorKeyProvider.getAll()
+                .stream().sorted((a, b) -> (int) (a.getCreated() - b.getCreated()))
+                .collect(Collectors.toList());
+    }
+
+    // Applies the change to the operator and uploads the operators; on a commit conflict it is applied again to the reloaded operator
+    private OperatorKey updateOperator(String name, Consumer<OperatorKey> change) throws Exception {
+        return StoreCommitRetry.run(() -> {
+            final OperatorKey operator = this.operatorKeyProvider.getAll()
+                    .stream().filter(o -> o.getName().equals(name))
+                    .findFirst().orElse(null);
+            if (operator == null) {
+                throw new IllegalStateException("operator removed while being updated: " + name);
+            }
+            change.accept(operator);
+
+            // upload to storage
+            operatorKeyStoreWriter.upload(getSortedOperators());
+            return operator;
+        });
+    }
+
     private boolean validateOperatorRoles(RoutingContext rc, Set<Role> roles) {
         if (roles == null) {
             ResponseUtil.error(rc, 400, "Incorrect roles specified");
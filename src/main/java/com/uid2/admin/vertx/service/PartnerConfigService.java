@@ -1,8 +1,10 @@
 package com.uid2.admin.vertx.service;
 
 import com.uid2.admin.auth.AdminAuthMiddleware;
+import com.uid2.admin.store.StoreReloader;
 import com.uid2.admin.store.reader.RotatingPartnerStore;
 import com.uid2.admin.store.writer.PartnerStoreWriter;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.audit.AuditParams;
@@ -30,6 +32,7 @@ public class PartnerConfigService implements IService {
     private final WriteLock writeLock;
     private final PartnerStoreWriter storageManager;
     private final RotatingPartnerStore partnerConfigProvider;
+    private final StoreReloader partnerConfigReloader;
 
     public PartnerConfigService(AdminAuthMiddleware auth,
                                 WriteLock writeLock,
@@ -39,13 +42,14 @@ public class PartnerConfigService implements IService {
         this.writeLock = writeLock;
         this.storageManager = storageManager;
         this.partnerConfigProvider = partnerConfigProvider;
+        this.partnerConfigReloader = StoreReloader.of("partners", partnerConfigProvider);
     }
 
     @Override
     public void setupRoutes(Router router) {
-        router.get(API_PARTNER_CONFIG_LIST.toString()).handler(
+        router.get(API_PARTNER_CONFIG_LIST.toString()).blockingHandler(
             auth.handle(this::handlePartnerConfigList, Role.MAINTAINER, Role.ADMIN_READ_ONLY));
-        router.get(API_PARTNER_CONFIG_GET.toString()).handler(
+        router.get(API_PARTNER_CONFIG_GET.toString()).blockingHandler(
             auth.handle(this::handlePartnerConfigGet, Role.MAINTAINER, Role.ADMIN_READ_ONLY));
 
         router.post(API_PARTNER_CONFIG_ADD.toString()).blockingHandler(auth.handle((ctx) -> {
@@ -73,7 +77,7 @@ public class PartnerConfigService implements IService {
 
     private void handlePartnerConfigList(RoutingContext rc) {
         try {
-            this.partnerConfigProvider.loadContent();
+            this.partnerConfigReloader.reload();
             String config = this.partnerConfigProvider.getConfig();
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
@@ -91,7 +95,7 @@ public class PartnerConfigService implements IService {
                 return;
             }
 
-            this.partnerConfigProvider.loadContent();
+            this.partnerConfigReloader.reload();
             JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
             int index = findPartnerIndex(allPartnerConfigs, partnerName);
 
@@ -122,19 +126,25 @@ public class PartnerConfigService implements IService {
             }
 
             String newPartnerName = newConfig.getString("name");
-            this.partnerConfigProvider.loadContent();
-            JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
+            this.partnerConfigReloader.reload();
+            final boolean added = StoreCommitRetry.run(() -> {
+                JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
+
+                // Validate partner doesn't exist
+                if (findPartnerIndex(allPartnerConfigs, newPartnerName) != -1) {
+                    return false;
+                }
 
-            // Validate partner doesn't exist
-            if (findPartnerIndex(allPartnerConfigs, newPartnerName) != -1) {
+                // Upload
+                allPartnerConfigs.add(newConfig);
+                storageManager.upload(allPartnerConfigs);
+                return true;
+            });
+            if (!added) {
                 ResponseUtil.error(rc, 409, "Partner '" + newPartnerName + "' already exists");
                 return;
             }
 
-            // Upload
-            allPartnerConfigs.add(newConfig);
-            storageManager.upload(allPartnerConfigs);
-
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
                     .end(newConfig.encode());
@@ -157,32 +167,36 @@ public class PartnerConfigService implements IService {
                 return;
             }
 
-            this.partnerConfigProvider.loadContent();
-            JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
-
-            // Find existing partner config
-            int existingPartnerIdx = findPartnerIndex(allPartnerConfigs, partnerName);
-            if (existingPartnerIdx == -1) {
-                ResponseUtil.error(rc, 404, "Partner '" + partnerName + "' not found");
-                return;
-            }
-
-            JsonObject existingConfig = allPartnerConfigs.getJsonObject(existingPartnerIdx);
-
             // Validate partial config
             if (!validatePartnerConfigForUpdate(rc, partialConfig)) {
                 return;
             }
 
-            // Merge: start with existing config, overlay with new fields
-            JsonObject mergedConfig = existingConfig.copy();
-            partialConfig.forEach(entry -> {
-                mergedConfig.put(entry.getKey(), entry.getValue());
-            });
+            this.partnerConfigReloader.reload();
+            final JsonObject mergedConfig = StoreCommitRetry.run(() -> {
+                JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
 
-            // Replace with merged config
-            allPartnerConfigs.set(existingPartnerIdx, mergedConfig);
-            storageManager.upload(allPartnerConfigs);
+                // Find existing partner config
+                int existingPartnerIdx = findPartnerIndex(allPartnerConfigs, partnerName);
+                if (existingPartnerIdx == -1) {
+                    return null;
+                }
+
+                // Merge: start with existing config, overlay with new fields
+                JsonObject merged = allPartnerConfigs.getJsonObject(existingPartnerIdx).copy();
+                partialConfig.forEach(entry -> {
+                    merged.put(entry.getKey(), entry.getValue());
+                });
+
+                // Replace with merged config
+                allPartnerConfigs.set(existingPartnerIdx, merged);
+                storageManager.upload(allPartnerConfigs);
+                return merged;
+            });
+            if (mergedConfig == null) {
+                ResponseUtil.error(rc, 404, "Partner '" + partnerName + "' not found");
+                return;
+            }
 
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
@@ -201,20 +215,26 @@ public class PartnerConfigService implements IService {
             }
             final String partnerName = partnerNames.getFirst();
 
-            this.partnerConfigProvider.loadContent();
-            JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
+            this.partnerConfigReloader.reload();
+            final JsonObject deletedConfig = StoreCommitRetry.run(() -> {
+                JsonArray allPartnerConfigs = new JsonArray(this.partnerConfigProvider.getConfig());
+
+                // Find partner config
+                int existingPartnerIdx = findPartnerIndex(allPartnerConfigs, partnerName);
+                if (existingPartnerIdx == -1) {
+                    return null;
+                }
 
-            // Find partner config
-            int existingPartnerIdx = findPartnerIndex(allPartnerConfigs, partnerName);
-            if (existingPartnerIdx == -1) {
+                // Remove and return the deleted config
+                JsonObject deleted = allPartnerConfigs.getJsonObject(existingPartnerIdx);
+                allPartnerConfigs.remove(existingPartnerIdx);
+                storageManager.upload(allPartnerConfigs);
+                return deleted;
+            });
+            if (deletedConfig == null) {
                 ResponseUtil.error(rc, 404, "Partner '" + partnerName + "' not found");
                 return;
             }
-
-            // Remove and return the deleted config
-            JsonObject deletedConfig = allPartnerConfigs.getJsonObject(existingPartnerIdx);
-            allPartnerConfigs.remove(existingPartnerIdx);
-            storageManager.upload(allPartnerConfigs);
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
                     .end(deletedConfig.encode());
@@ -226,7 +246,7 @@ public class PartnerConfigService implements IService {
     private void handlePartnerConfigBulkReplace(RoutingContext rc) {
         try {
             // refresh manually
-            this.partnerConfigProvider.loadContent();
+            this.partnerConfigReloader.reload();
             JsonArray partners = rc.body().asJsonArray();
 
             if (partners == null) {
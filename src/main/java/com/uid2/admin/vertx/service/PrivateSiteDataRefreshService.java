@@ -5,6 +5,7 @@ import com.uid2.admin.job.JobDispatcher;
 import com.uid2.admin.job.jobsync.EncryptedFilesSyncJob;
 import com.uid2.admin.job.jobsync.PrivateSiteDataSyncJob;
 import com.uid2.admin.job.jobsync.keyset.ReplaceSharingTypesWithSitesJob;
+import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.auth.Role;
 import io.vertx.core.json.JsonObject;
@@ -72,18 +73,21 @@ public class PrivateSiteDataRefreshService implements IService {
     private void handlePrivateSiteDataGenerateNow(RoutingContext rc) {
         try {
             ReplaceSharingTypesWithSitesJob replaceSharingTypesWithSitesJob = new ReplaceSharingTypesWithSitesJob(config, writeLock);
-            jobDispatcher.enqueue(replaceSharingTypesWithSitesJob);
-            CompletableFuture<Boolean> replaceSharingTypesWithSitesJobFuture = jobDispatcher.executeNextJob();
+            CompletableFuture<Boolean> replaceSharingTypesWithSitesJobFuture = jobDispatcher.submit(replaceSharingTypesWithSitesJob);
+            if (replaceSharingTypesWithSitesJobFuture == null) {
+                ResponseUtil.error(rc, 409, "Private site data refresh already queued");
+                return;
+            }
             replaceSharingTypesWithSitesJobFuture.get();
 
             PrivateSiteDataSyncJob privateSiteDataSyncJob = new PrivateSiteDataSyncJob(config, writeLock);
-            jobDispatcher.enqueue(privateSiteDataSyncJob);
-            CompletableFuture<Boolean> privateSiteDataSyncJobFuture = jobDispatcher.executeNextJob();
+            CompletableFuture<Boolean> privateSiteDataSyncJobFuture = jobDispatcher.submit(privateSiteDataSyncJob);
+            if (privateSiteDataSyncJobFuture == null) {
+                ResponseUtil.error(rc, 409, "Private site data refresh already queued");
+                return;
+            }
             privateSiteDataSyncJobFuture.get();
 
-            CompletableFuture<Boolean> encryptedFileSyncJobFuture = jobDispatcher.executeNextJob();
-            encryptedFileSyncJobFuture.get();
-
             rc.response().end("OK");
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
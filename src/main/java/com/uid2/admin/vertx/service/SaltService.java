@@ -1,15 +1,18 @@
 package com.uid2.admin.vertx.service;
 
 import com.uid2.admin.auth.AdminAuthMiddleware;
+import com.uid2.admin.job.JobDispatcher;
 import com.uid2.admin.salt.SaltRotation;
+import com.uid2.admin.salt.SaltRotationJob;
+import com.uid2.admin.salt.SaltRotationSimulator;
+import com.uid2.admin.salt.SaltSnapshotStats;
+import com.uid2.admin.salt.SaltSnapshotStatsCache;
 import com.uid2.admin.salt.TargetDate;
 import com.uid2.admin.store.writer.SaltStoreWriter;
 import com.uid2.admin.vertx.RequestUtil;
 import com.uid2.admin.vertx.ResponseUtil;
-import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.audit.AuditParams;
 import com.uid2.shared.auth.Role;
-import com.uid2.shared.model.SaltEntry;
 import com.uid2.shared.store.salt.RotatingSaltProvider;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.JsonArray;
@@ -28,63 +31,50 @@ import static com.uid2.admin.vertx.Endpoints.*;
 
 public class SaltService implements IService {
     private static final Logger LOGGER = LoggerFactory.getLogger(SaltService.class);
-    private static final Duration[] SALT_ROTATION_AGE_THRESHOLDS = new Duration[]{
-            Duration.ofDays(30),
-            Duration.ofDays(60),
-            Duration.ofDays(90),
-            Duration.ofDays(120),
-            Duration.ofDays(150),
-            Duration.ofDays(180),
-            Duration.ofDays(210),
-            Duration.ofDays(240),
-            Duration.ofDays(270),
-            Duration.ofDays(300),
-            Duration.ofDays(330),
-            Duration.ofDays(360),
-            Duration.ofDays(390)
-    };
+    private static final Duration[] SALT_ROTATION_AGE_THRESHOLDS = SaltRotation.DEFAULT_AGE_THRESHOLDS;
+    private static final int MAX_SIMULATION_DAYS = 3 * 365;
+    private static final int MAX_SIMULATION_BUCKETS = 1 << 22;
 
     private final AdminAuthMiddleware auth;
-    private final WriteLock writeLock;
+    private final JobDispatcher jobDispatcher;
     private final SaltStoreWriter storageManager;
     private final RotatingSaltProvider saltProvider;
     private final SaltRotation saltRotation;
+    private final SaltSnapshotStatsCache snapshotStats;
 
     public SaltService(AdminAuthMiddleware auth,
-                       WriteLock writeLock,
+                       JobDispatcher jobDispatcher,
                        SaltStoreWriter storageManager,
                        RotatingSaltProvider saltProvider,
                        SaltRotation saltRotation) {
         this.auth = auth;
-        this.writeLock = writeLock;
+        this.jobDispatcher = jobDispatcher;
         this.storageManager = storageManager;
         this.saltProvider = saltProvider;
         this.saltRotation = saltRotation;
+        this.snapshotStats = new SaltSnapshotStatsCache(saltProvider::getSnapshots);
     }
 
     @Override
     public void setupRoutes(Router router) {
-        router.get(API_SALT_SNAPSHOTS.toString()).handler(
+        router.get(API_SALT_SNAPSHOTS.toString()).blockingHandler(
                 auth.handle(this::handleSaltSnapshots, Role.MAINTAINER, Role.ADMIN_READ_ONLY));
 
-        router.post(API_SALT_REBUILD.toString()).blockingHandler(auth.handle(ctx -> {
-            synchronized (writeLock) {
-                this.handleSaltRebuild(ctx);
-            }
-        }, new AuditParams(List.of(), Collections.emptyList()), Role.MAINTAINER));
+        router.post(API_SALT_REBUILD.toString()).blockingHandler(auth.handle(
+                this::handleSaltRebuild, new AuditParams(List.of(), Collections.emptyList()), Role.MAINTAINER));
 
-        router.post(API_SALT_ROTATE.toString()).blockingHandler(auth.handle(ctx -> {
-            synchronized (writeLock) {
-                this.handleSaltRotate(ctx);
-            }
-        }, new AuditParams(List.of("fraction", "target_date"), Collections.emptyList()), Role.SUPER_USER, Role.SECRET_ROTATION));
+        router.post(API_SALT_ROTATE.toString()).blockingHandler(auth.handle(
+                this::handleSaltRotate, new AuditParams(List.of("fraction", "target_date"), Collections.emptyList()), Role.SUPER_USER, Role.SECRET_ROTATION));
+
+        router.get(API_SALT_SIMULATE.toString()).blockingHandler(
+                auth.handle(this::handleSaltSimulate, Role.MAINTAINER, Role.ADMIN_READ_ONLY));
     }
 
     private void handleSaltSnapshots(RoutingContext rc) {
         try {
+            final List<RotatingSaltProvider.SaltSnapshot> snapshots = saltProvider.getSnapshots();
             final JsonArray ja = new JsonArray();
-            saltProvider.getSnapshots().stream()
-                    .forEachOrdered(s -> ja.add(toJson(s)));
+            snapshots.forEach(s -> ja.add(toJson(s)));
 
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
@@ -97,29 +87,7 @@ public class SaltService implements IService {
 
     private void handleSaltRebuild(RoutingContext rc) {
         try {
-            Instant now = Instant.now();
-
-            // force refresh
-            saltProvider.loadContent();
-
-            // mark all the referenced files as ready to archive
-            storageManager.archiveSaltLocations();
-
-            // Unlike in regular salt rotation, this should be based on the currently effective snapshot.
-            // The latest snapshot may be in the future, and we may have changes that shouldn't be activated yet.
-            var effectiveSnapshot = saltProvider.getSnapshot(now);
-
-            var result = saltRotation.rotateSaltsZero(effectiveSnapshot, TargetDate.now(), now);
-            if (!result.hasSnapshot()) {
-                ResponseUtil.error(rc, 200, result.getReason());
-                return;
-            }
-
-            storageManager.upload(result.getSnapshot());
-
-            rc.response()
-                    .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-                    .end(toJson(result.getSnapshot()).encode());
+            enqueue(rc, SaltRotationJob.rebuild(saltProvider, storageManager, saltRotation));
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
             rc.fail(500, e);
@@ -138,43 +106,78 @@ public class SaltService implements IService {
                             .map(TargetDate::new)
                             .orElse(TargetDate.now().plusDays(1));
 
-            // Force refresh
-            saltProvider.loadContent();
-
-            // Mark all the referenced files as ready to archive
-            storageManager.archiveSaltLocations();
-
-            final List<RotatingSaltProvider.SaltSnapshot> snapshots = saltProvider.getSnapshots();
-            final RotatingSaltProvider.SaltSnapshot lastSnapshot = snapshots.getLast();
+            enqueue(rc, SaltRotationJob.rotate(saltProvider, storageManager, saltRotation, SALT_ROTATION_AGE_THRESHOLDS, fraction.get(), targetDate));
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage(), e);
+            rc.fail(500, e);
+        }
+    }
 
-            final SaltRotation.Result result = saltRotation.rotateSalts(lastSnapshot, SALT_ROTATION_AGE_THRESHOLDS, fraction.get(), targetDate);
-            if (!result.hasSnapshot()) {
-                ResponseUtil.error(rc, 200, result.getReason());
+    // Read only: replays rotations on a copy of the bucket timestamps, nothing is written
+    private void handleSaltSimulate(RoutingContext rc) {
+        try {
+            final Optional<Double> fraction = RequestUtil.getDouble(rc, "fraction");
+            if (rc.response().ended()) return;
+            if (fraction.isEmpty() || fraction.get() <= 0 || fraction.get() > 1) {
+                ResponseUtil.error(rc, 400, "fraction must be in (0, 1]");
+                return;
+            }
+            final Optional<Integer> days = RequestUtil.getInteger(rc, "days");
+            if (rc.response().ended()) return;
+            if (days.isEmpty() || days.get() <= 0 || days.get() > MAX_SIMULATION_DAYS) {
+                ResponseUtil.error(rc, 400, "days must be between 1 and " + MAX_SIMULATION_DAYS);
+                return;
+            }
+            final Optional<Integer> buckets = RequestUtil.getInteger(rc, "buckets");
+            if (rc.response().ended()) return;
+            if (buckets.isPresent() && (buckets.get() <= 0 || buckets.get() > MAX_SIMULATION_BUCKETS)) {
+                ResponseUtil.error(rc, 400, "buckets must be between 1 and " + MAX_SIMULATION_BUCKETS);
                 return;
             }
 
-            storageManager.upload(result.getSnapshot());
+            final TargetDate start = TargetDate.now().plusDays(1);
+            final SaltRotationSimulator.Buckets initial = buckets.isPresent()
+                    ? SaltRotationSimulator.Buckets.synthetic(buckets.get(), start, (int) SaltRotationSimulator.OVER_AGE_DAYS)
+                    : SaltRotationSimulator.Buckets.of(saltProvider.getSnapshots().getLast().getAllRotatingSalts());
+            final SaltRotationSimulator.Result result = new SaltRotationSimulator(fraction.get(), SALT_ROTATION_AGE_THRESHOLDS, 0)
+                    .simulate(initial, start, days.get());
 
             rc.response()
                     .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-                    .end(toJson(result.getSnapshot()).encode());
+                    .end(result.toJson().encode());
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
             rc.fail(500, e);
         }
     }
 
+    // Responds with the job id straight away; progress is available from the job dispatcher endpoints
+    private void enqueue(RoutingContext rc, SaltRotationJob job) {
+        // the jobs have distinct ids, so the dispatcher does not reject a second one; checked and queued under one lock
+        synchronized (this) {
+            final boolean alreadyQueued = jobDispatcher.getJobQueueInfo().stream()
+                    .anyMatch(queued -> SaltRotationJob.isSaltRotationJob(queued.getId()));
+            if (alreadyQueued || jobDispatcher.submit(job) == null) {
+                ResponseUtil.error(rc, 409, "A salt rotation job is already queued or running");
+                return;
+            }
+        }
+
+        rc.response()
+                .setStatusCode(202)
+                .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(new JsonObject().put("job_id", job.getId()).encode());
+    }
+
     private JsonObject toJson(RotatingSaltProvider.SaltSnapshot snapshot) {
         JsonObject jo = new JsonObject();
         jo.put("effective", snapshot.getEffective().toEpochMilli());
         jo.put("expires", snapshot.getExpires().toEpochMilli());
         jo.put("salts_count", snapshot.getAllRotatingSalts().length);
-        jo.put("min_last_updated", Arrays.stream(snapshot.getAllRotatingSalts())
-                .map(SaltEntry::lastUpdated)
-                .min(Long::compare).orElse(null));
-        jo.put("max_last_updated", Arrays.stream(snapshot.getAllRotatingSalts())
-                .map(SaltEntry::lastUpdated)
-                .max(Long::compare).orElse(null));
+        SaltSnapshotStats stats = snapshotStats.get(snapshot);
+        jo.put("min_last_updated", stats.getMinLastUpdated());
+        jo.put("max_last_updated", stats.getMaxLastUpdated());
+        jo.put("stats", stats.toJson());
         return jo;
     }
 }
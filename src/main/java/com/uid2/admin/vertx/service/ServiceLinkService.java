@@ -1,6 +1,7 @@
 package com.uid2.admin.vertx.service;
 
 import com.uid2.admin.auth.AdminAuthMiddleware;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.store.writer.StoreWriter;
 import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
@@ -136,9 +137,12 @@ public class ServiceLinkService implements IService {
 
             ServiceLink serviceLink = new ServiceLink(linkId, serviceId, siteId, name, roles);
 
-            serviceLinks.add(serviceLink);
+            StoreCommitRetry.run(() -> {
+                final List<ServiceLink> reloadedServiceLinks = getServiceLinksSortedByLinkId();
+                reloadedServiceLinks.add(serviceLink);
 
-            storeWriter.upload(serviceLinks, null);
+                storeWriter.upload(reloadedServiceLinks, null);
+            });
 
             rc.response().end(toJson(serviceLink).encodePrettily());
         } catch (Exception e) {
@@ -179,39 +183,46 @@ public class ServiceLinkService implements IService {
                 return;
             }
 
-            final List<ServiceLink> serviceLinks = this.serviceLinkProvider.getAllServiceLinks()
-                    .stream().sorted(Comparator.comparing(ServiceLink::getLinkId))
-                    .collect(Collectors.toList());
-
-            ServiceLink serviceLink = serviceLinks
-                    .stream().filter(s -> s.getServiceId() == serviceId && s.getSiteId() == siteId && s.getLinkId().equals(linkId))
-                    .findFirst()
-                    .orElse(null);
-            if (serviceLink == null) {
+            if (findServiceLink(getServiceLinksSortedByLinkId(), serviceId, siteId, linkId) == null) {
                 ResponseUtil.error(rc, 404, "failed to find a service_link for serviceId: " + serviceId + ", site_id: " + siteId + " and link_id: " + linkId);
                 return;
             }
 
-            if (name != null && !name.isEmpty()) {
-                serviceLink.setName(name);
-            }
-
-            if (disabled != null) {
-                serviceLink.setDisabled(disabled);
-            }
-
+            final Set<Role> roles;
             if (rolesJson != null && !rolesJson.isEmpty()) {
-                final Set<Role> roles;
                 try {
                     roles = validateRoles(rolesJson, serviceProvider.getService(serviceId).getRoles());
                 } catch (IllegalArgumentException e) {
                     ResponseUtil.error(rc, 400, e.getMessage());
                     return;
                 }
-                serviceLink.setRoles(roles);
+            } else {
+                roles = null;
             }
 
-            storeWriter.upload(serviceLinks, null);
+            // on a commit conflict the change is applied again, to the reloaded service link
+            final ServiceLink serviceLink = StoreCommitRetry.run(() -> {
+                final List<ServiceLink> serviceLinks = getServiceLinksSortedByLinkId();
+                final ServiceLink link = findServiceLink(serviceLinks, serviceId, siteId, linkId);
+                if (link == null) {
+                    throw new IllegalStateException("service link removed while being updated: " + linkId);
+                }
+
+                if (name != null && !name.isEmpty()) {
+                    link.setName(name);
+                }
+
+                if (disabled != null) {
+                    link.setDisabled(disabled);
+                }
+
+                if (roles != null) {
+                    link.setRoles(roles);
+                }
+
+                storeWriter.upload(serviceLinks, null);
+                return link;
+            });
 
             rc.response().end(toJson(serviceLink).encodePrettily());
         } catch (Exception e) {
@@ -245,18 +256,33 @@ public class ServiceLinkService implements IService {
                 return;
             }
 
-            final List<ServiceLink> serviceLinks = this.serviceLinkProvider.getAllServiceLinks()
-                    .stream().sorted(Comparator.comparingInt(ServiceLink::getServiceId))
-                    .collect(Collectors.toList());
+            StoreCommitRetry.run(() -> {
+                final List<ServiceLink> serviceLinks = this.serviceLinkProvider.getAllServiceLinks()
+                        .stream().sorted(Comparator.comparingInt(ServiceLink::getServiceId))
+                        .collect(Collectors.toList());
 
-            serviceLinks.remove(serviceLink);
-            storeWriter.upload(serviceLinks, null);
+                serviceLinks.removeIf(s -> s.getServiceId() == serviceId && s.getLinkId().equals(linkId));
+                storeWriter.upload(serviceLinks, null);
+            });
             rc.response().end(toJson(serviceLink).encodePrettily());
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "Internal Server Error", e);
         }
     }
 
+    private List<ServiceLink> getServiceLinksSortedByLinkId() {
+        return this.serviceLinkProvider.getAllServiceLinks()
+                .stream().sorted(Comparator.comparing(ServiceLink::getLinkId))
+                .collect(Collectors.toList());
+    }
+
+    private static ServiceLink findServiceLink(List<ServiceLink> serviceLinks, int serviceId, int siteId, String linkId) {
+        return serviceLinks
+                .stream().filter(s -> s.getServiceId() == serviceId && s.getSiteId() == siteId && s.getLinkId().equals(linkId))
+                .findFirst()
+                .orElse(null);
+    }
+
     private JsonObject toJson(ServiceLink s) {
         JsonObject jsonObject = new JsonObject();
         jsonObject.put("link_id", s.getLinkId());
@@ -1,6 +1,7 @@
 package com.uid2.admin.vertx.service;
 
 import com.uid2.admin.auth.AdminAuthMiddleware;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.store.writer.StoreWriter;
 import com.uid2.admin.vertx.ResponseUtil;
 import com.uid2.admin.vertx.WriteLock;
@@ -20,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
@@ -164,15 +166,18 @@ public class ServiceService implements IService {
                 linkIdRegex = null;
             }
 
-            final List<Service> services = this.serviceProvider.getAllServices()
-                    .stream().sorted(Comparator.comparingInt(Service::getServiceId))
-                    .collect(Collectors.toList());
-            final int serviceId = 1 + services.stream().mapToInt(Service::getServiceId).max().orElse(0);
-            Service service = new Service(serviceId, siteId, name, roles, linkIdRegex);
+            // on a commit conflict the service id is picked again from the reloaded services
+            final String serviceLinkIdRegex = linkIdRegex;
+            Service service = StoreCommitRetry.run(() -> {
+                final List<Service> services = getSortedServices();
+                final int serviceId = 1 + services.stream().mapToInt(Service::getServiceId).max().orElse(0);
+                final Service newService = new Service(serviceId, siteId, name, roles, serviceLinkIdRegex);
 
-            services.add(service);
+                services.add(newService);
 
-            storeWriter.upload(services, null);
+                storeWriter.upload(services, null);
+                return newService;
+            });
 
             rc.response().end(toJson(service).encodePrettily());
         } catch (Exception e) {
@@ -217,8 +222,8 @@ public class ServiceService implements IService {
                 return;
             }
 
+            final Set<Role> roles;
             if (rolesSpec != null) {
-                final Set<Role> roles;
                 try {
                     roles = rolesSpec.stream().map(s -> Role.valueOf((String) s)).collect(Collectors.toSet());
                 } catch (IllegalArgumentException e) {
@@ -232,34 +237,38 @@ public class ServiceService implements IService {
                     ResponseUtil.error(rc, 400, "roles: " + rolesToRemove.stream().map(Role::toString).collect(Collectors.joining(", ")) + " may still be in use");
                     return;
                 }
-                service.setRoles(roles);
+            } else {
+                roles = null;
             }
 
-            if (linkIdRegex != null && !linkIdRegex.isBlank()) {
-                if (!isValidRegex(linkIdRegex)) {
-                    ResponseUtil.error(rc, 400, "invalid parameter: link_id_regex; not a valid regex");
-                    return;
-                }
-                service.setLinkIdRegex(linkIdRegex);
+            if (linkIdRegex != null && !linkIdRegex.isBlank() && !isValidRegex(linkIdRegex)) {
+                ResponseUtil.error(rc, 400, "invalid parameter: link_id_regex; not a valid regex");
+                return;
             }
 
-            if (disabled != null) {
-                service.setDisabled(disabled);
-            }
+            final Service updatedService = updateService(serviceId, s -> {
+                if (roles != null) {
+                    s.setRoles(roles);
+                }
 
-            if (siteId != null && siteId != 0) {
-                service.setSiteId(siteId);
-            }
+                if (linkIdRegex != null && !linkIdRegex.isBlank()) {
+                    s.setLinkIdRegex(linkIdRegex);
+                }
 
-            if (name != null && !name.isEmpty()) {
-                service.setName(name);
-            }
+                if (disabled != null) {
+                    s.setDisabled(disabled);
+                }
 
-            List<Service> services = getSortedServices();
+                if (siteId != null && siteId != 0) {
+                    s.setSiteId(siteId);
+                }
 
-            storeWriter.upload(services, null);
+                if (name != null && !name.isEmpty()) {
+                    s.setName(name);
+                }
+            });
 
-            rc.response().end(toJson(service).encodePrettily());
+            rc.response().end(toJson(updatedService).encodePrettily());
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "Internal Server Error", e);
         }
@@ -270,9 +279,11 @@ public class ServiceService implements IService {
             serviceProvider.loadContent();
             Service service = findServiceFromRequest(rc);
             if (service == null) return; // error already handled
-            List<Service> services = getSortedServices();
-            services.remove(service);
-            storeWriter.upload(services, null);
+            StoreCommitRetry.run(() -> {
+                List<Service> services = getSortedServices();
+                services.removeIf(s -> s.getServiceId() == service.getServiceId());
+                storeWriter.upload(services, null);
+            });
             rc.response().end(toJson(service).encodePrettily());
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "Internal Server Error", e);
@@ -284,10 +295,8 @@ public class ServiceService implements IService {
             serviceProvider.loadContent();
             Service service = findServiceFromRequest(rc);
             if (service == null) return; // error already handled
-            service.setLinkIdRegex(null);
-            List<Service> services = getSortedServices();
-            storeWriter.upload(services, null);
-            rc.response().end(toJson(service).encodePrettily());
+            final Service updatedService = updateService(service.getServiceId(), s -> s.setLinkIdRegex(null));
+            rc.response().end(toJson(updatedService).encodePrettily());
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "Internal Server Error", e);
         }
@@ -336,6 +345,20 @@ public class ServiceService implements IService {
         return service;
     }
 
+    // Applies the change to the service and uploads the services; on a commit conflict it is applied again to the reloaded service
+    private Service updateService(int serviceId, Consumer<Service> change) throws Exception {
+        return StoreCommitRetry.run(() -> {
+            final Service service = serviceProvider.getService(serviceId);
+            if (service == null) {
+                throw new IllegalStateException("service removed while being updated: " + serviceId);
+            }
+            change.accept(service);
+
+            storeWriter.upload(getSortedServices(), null);
+            return service;
+        });
+    }
+
     private List<Service> getSortedServices() {
         return serviceProvider.getAllServices()
                 .stream()
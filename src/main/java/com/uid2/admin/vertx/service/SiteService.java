@@ -7,6 +7,7 @@ import com.uid2.admin.legacy.LegacyClientKey;
 import com.uid2.shared.audit.AuditParams;
 import com.uid2.shared.model.ClientType;
 import com.google.common.net.InternetDomainName;
+import com.uid2.admin.store.writer.StoreCommitRetry;
 import com.uid2.admin.store.writer.StoreWriter;
 import com.uid2.admin.vertx.JsonUtil;
 import com.uid2.admin.vertx.RequestUtil;
@@ -15,6 +16,7 @@ import com.uid2.admin.vertx.WriteLock;
 import com.uid2.shared.Const;
 import com.uid2.shared.auth.Role;
 import com.uid2.shared.model.Site;
+import com.uid2.shared.model.SiteUtil;
 import com.uid2.shared.store.reader.RotatingSiteStore;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.JsonArray;
@@ -30,6 +32,8 @@ import static com.uid2.admin.vertx.RequestUtil.getTypes;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 public class SiteService implements IService {
@@ -40,6 +44,7 @@ public class SiteService implements IService {
     private final ILegacyClientKeyProvider legacyClientKeyProvider;
     private final ObjectWriter jsonWriter = JsonUtil.createJsonWriter();
     private static final Logger LOGGER = LoggerFactory.getLogger(SiteService.class);
+    private static final int MAX_BULK_OPERATIONS = 1000;
 
     public SiteService(AdminAuthMiddleware auth,
                        WriteLock writeLock,
@@ -95,6 +100,11 @@ public class SiteService implements IService {
                 this.handleSiteUpdate(ctx);
             }
         }, new AuditParams(List.of("description", "visible", "name"), Collections.emptyList()), Role.MAINTAINER));
+        router.post(API_SITE_BULK.toString()).blockingHandler(auth.handle((ctx) -> {
+            synchronized (writeLock) {
+                this.handleSiteBulk(ctx);
+            }
+        }, new AuditParams(Collections.emptyList(), List.of("operations")), Role.MAINTAINER));
     }
 
     private void handleRewriteMetadata(RoutingContext rc) {
@@ -226,17 +236,11 @@ public class SiteService implements IService {
 
             String description = rc.queryParam("description").stream().findFirst().orElse(null);
 
-            final List<Site> sites = this.siteProvider.getAllSites()
-                    .stream().sorted(Comparator.comparingInt(Site::getId))
-                    .collect(Collectors.toList());
-            final int siteId = 1 + sites.stream().mapToInt(Site::getId).max().orElse(Const.Data.AdvertisingTokenSiteId);
-
-            final Site newSite = new Site(siteId, name, description, enabled, types, new HashSet<>(normalizedDomainNames), normalizedAppNames, true);
-            // add site to the array
-            sites.add(newSite);
-
-            // upload to storage
-            storeWriter.upload(sites, null);
+            final boolean siteEnabled = enabled;
+            final Set<ClientType> siteTypes = types;
+            final Set<String> siteDomainNames = new HashSet<>(normalizedDomainNames);
+            final Set<String> siteAppNames = normalizedAppNames;
+            final Site newSite = addSite(siteId -> new Site(siteId, name, description, siteEnabled, siteTypes, siteDomainNames, siteAppNames, true));
 
             // respond with new client created
             rc.response().end(jsonWriter.writeValueAsString(newSite));
@@ -258,9 +262,7 @@ public class SiteService implements IService {
                 return;
             }
 
-            existingSite.setClientTypes(types);
-
-            uploadSiteToStoreWriterAndWriteExistingSiteToResponse(existingSite, rc);
+            updateSite(existingSite, site -> site.setClientTypes(types), rc);
         } catch (Exception e) {
             rc.fail(500, e);
         }
@@ -287,16 +289,12 @@ public class SiteService implements IService {
                 }
             }
 
-            final List<Site> sites = this.siteProvider.getAllSites()
-                    .stream().sorted(Comparator.comparingInt(Site::getId))
-                    .collect(Collectors.toList());
-
-            if (existingSite.isEnabled() != enabled) {
-                existingSite.setEnabled(enabled);
-                storeWriter.upload(sites, null);
+            final boolean siteEnabled = enabled;
+            if (existingSite.isEnabled() != siteEnabled) {
+                updateSite(existingSite, site -> site.setEnabled(siteEnabled), rc);
+            } else {
+                rc.response().end(jsonWriter.writeValueAsString(existingSite));
             }
-
-            rc.response().end(jsonWriter.writeValueAsString(existingSite));
         } catch (Exception e) {
             rc.fail(500, e);
         }
@@ -321,9 +319,7 @@ public class SiteService implements IService {
             List<String> normalizedDomainNames = getNormalizedDomainNames(rc, domainNamesJa);
             if (normalizedDomainNames == null) return;
 
-            existingSite.setDomainNames(new HashSet<>(normalizedDomainNames));
-
-            uploadSiteToStoreWriterAndWriteExistingSiteToResponse(existingSite, rc);
+            updateSite(existingSite, site -> site.setDomainNames(new HashSet<>(normalizedDomainNames)), rc);
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "set site domain_names failed", e);
         }
@@ -348,9 +344,7 @@ public class SiteService implements IService {
             Set<String> normalizedAppNames = getNormalizedAppNames(rc, appNamesJa);
             if (normalizedAppNames == null) return;
 
-            existingSite.setAppNames(normalizedAppNames);
-
-            uploadSiteToStoreWriterAndWriteExistingSiteToResponse(existingSite, rc);
+            updateSite(existingSite, site -> site.setAppNames(normalizedAppNames), rc);
         } catch (Exception e) {
             ResponseUtil.errorInternal(rc, "set site app_names failed", e);
         }
@@ -369,48 +363,64 @@ public class SiteService implements IService {
             String visibleParam = rc.queryParam("visible").stream().findFirst().orElse(null);
             String name = rc.queryParam("name").stream().findFirst().orElse(null);
 
-            if (description != null) {
-                existingSite.setDescription(description);
+            if (visibleParam != null && !"true".equalsIgnoreCase(visibleParam) && !"false".equalsIgnoreCase(visibleParam)) {
+                ResponseUtil.error(rc, 400, "Invalid parameter for visible: " + visibleParam);
             }
-            if (visibleParam != null) {
+            if (name != null && !validateSiteName(rc, name)) {
+                return;
+            }
+
+            updateSite(existingSite, site -> {
+                if (description != null) {
+                    site.setDescription(description);
+                }
                 if ("true".equalsIgnoreCase(visibleParam)) {
-                    existingSite.setVisible(true);
+                    site.setVisible(true);
                 } else if ("false".equalsIgnoreCase(visibleParam)) {
-                    existingSite.setVisible(false);
-                } else {
-                    ResponseUtil.error(rc, 400, "Invalid parameter for visible: " + visibleParam);
+                    site.setVisible(false);
                 }
-            }
-            if (name != null) {
-                if (!validateSiteName(rc, name)) {
-                    return;
+                if (name != null) {
+                    site.setName(name);
                 }
-                existingSite.setName(name);
-            }
-
-            uploadSiteToStoreWriterAndWriteExistingSiteToResponse(existingSite, rc);
+            }, rc);
         } catch (Exception e) {
             rc.fail(500, e);
         }
     }
 
     private boolean validateSiteName(RoutingContext rc, String name) {
-        if (name == null || name.isEmpty()) {
-            ResponseUtil.error(rc, 400, "must specify a valid site name");
+        try {
+            validateSiteName(name, Collections.emptySet());
+            return true;
+        } catch (IllegalArgumentException e) {
+            ResponseUtil.error(rc, 400, e.getMessage());
             return false;
         }
+    }
+
+    private void validateSiteName(String name, Set<String> reservedNames) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("must specify a valid site name");
+        }
 
         Optional<Site> existingSite = this.siteProvider.getAllSites()
                 .stream().filter(c -> c.getName().equals(name))
                 .findFirst();
-        if (existingSite.isPresent()) {
-            ResponseUtil.error(rc, 400, "site with name " + name + " already exists");
-            return false;
+        if (existingSite.isPresent() || reservedNames.contains(name)) {
+            throw new IllegalArgumentException("site with name " + name + " already exists");
         }
-        return true;
     }
 
     private static List<String> getNormalizedDomainNames(RoutingContext rc, JsonArray domainNamesJa) {
+        try {
+            return normalizeDomainNames(domainNamesJa);
+        } catch (IllegalArgumentException e) {
+            ResponseUtil.error(rc, 400, e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<String> normalizeDomainNames(JsonArray domainNamesJa) {
         List<String> domainNames = domainNamesJa.stream().map(String::valueOf).collect(Collectors.toList());
 
         List<String> normalizedDomainNames = new ArrayList<>();
@@ -426,26 +436,32 @@ public class SiteService implements IService {
         }
 
         if (!invalidDomainNames.isEmpty()) {
-            ResponseUtil.error(rc, 400, "Invalid Domain Names: " + invalidDomainNames.toString());
-            return null;
+            throw new IllegalArgumentException("Invalid Domain Names: " + invalidDomainNames.toString());
         }
       
 
         boolean containsDuplicates = normalizedDomainNames.stream().distinct().count() < normalizedDomainNames.size();
         if (containsDuplicates) {
-            ResponseUtil.error(rc, 400, "duplicate domain_names not permitted");
-            return null;
+            throw new IllegalArgumentException("duplicate domain_names not permitted");
         }
         return normalizedDomainNames;
     }
 
     private static Set<String> getNormalizedAppNames(RoutingContext rc, JsonArray appNamesJa) {
+        try {
+            return normalizeAppNames(appNamesJa);
+        } catch (IllegalArgumentException e) {
+            ResponseUtil.error(rc, 400, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Set<String> normalizeAppNames(JsonArray appNamesJa) {
         List<String> appNames = appNamesJa.stream().map(String::valueOf).collect(Collectors.toList());
 
         boolean containsDuplicates = appNames.stream().distinct().count() < appNames.size();
         if (containsDuplicates) {
-            ResponseUtil.error(rc, 400, "duplicate app_names not permitted");
-            return null;
+            throw new IllegalArgumentException("duplicate app_names not permitted");
         }
         return new HashSet<>(appNames);
     }
@@ -471,12 +487,200 @@ public class SiteService implements IService {
         throw new MalformedURLException();
     }
 
-    private void uploadSiteToStoreWriterAndWriteExistingSiteToResponse(Site existingSite, RoutingContext rc) throws Exception {
-        final List<Site> sites = this.siteProvider.getAllSites()
+    /**
+     * Applies a batch of site operations with a single store commit. The body is
+     * <code>{"operations": [{"op": "add" | "enable" | "set_types" | "domain_names" | "app_names", ...}, ...]}</code>,
+     * where each operation takes the same parameters as its single-site endpoint, with {@code id} identifying an
+     * existing site. All operations are validated before anything is changed; if any is invalid, nothing is committed
+     * and the per-item errors are returned.
+     */
+    private void handleSiteBulk(RoutingContext rc) {
+        try {
+            // refresh manually
+            siteProvider.loadContent();
+
+            final JsonObject body = rc.body().asJsonObject();
+            final JsonArray operations = body == null ? null : body.getJsonArray("operations");
+            if (operations == null || operations.isEmpty()) {
+                ResponseUtil.error(rc, 400, "required parameters: operations");
+                return;
+            }
+            if (operations.size() > MAX_BULK_OPERATIONS) {
+                ResponseUtil.error(rc, 400, "at most " + MAX_BULK_OPERATIONS + " operations are allowed per request");
+                return;
+            }
+
+            final JsonArray results = new JsonArray();
+            // on a commit conflict the operations are validated and applied again, against the reloaded sites
+            final List<Site> changedSites = StoreCommitRetry.run(() -> commitSiteBulk(operations, results));
+            if (changedSites == null) {
+                rc.response().setStatusCode(400)
+                        .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .end(new JsonObject().put("committed", false).put("results", results).encode());
+                return;
+            }
+
+            for (int i = 0; i < changedSites.size(); i++) {
+                results.set(i, new JsonObject()
+                        .put("index", i)
+                        .put("status", "ok")
+                        .put("site", new JsonObject(jsonWriter.writeValueAsString(changedSites.get(i)))));
+            }
+            rc.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .end(new JsonObject().put("committed", true).put("results", results).encode());
+        } catch (Exception e) {
+            rc.fail(500, e);
+        }
+    }
+
+    // Returns the changed sites, or null if any operation is invalid, in which case nothing is committed
+    private List<Site> commitSiteBulk(JsonArray operations, JsonArray results) throws Exception {
+        results.clear();
+        final List<Site> sites = getSortedSites();
+        int nextSiteId = 1 + sites.stream().mapToInt(Site::getId).max().orElse(Const.Data.AdvertisingTokenSiteId);
+        final Set<String> reservedNames = new HashSet<>();
+        final List<Runnable> changes = new ArrayList<>();
+        final List<Site> changedSites = new ArrayList<>();
+        boolean valid = true;
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                final JsonObject operation = operations.getJsonObject(i);
+                if (operation == null) {
+                    throw new IllegalArgumentException("operation must be an object");
+                }
+                final String op = operation.getString("op");
+                if ("add".equals(op)) {
+                    final Site newSite = validateBulkSiteAdd(operation, nextSiteId, reservedNames);
+                    nextSiteId++;
+                    reservedNames.add(newSite.getName());
+                    changes.add(() -> sites.add(newSite));
+                    changedSites.add(newSite);
+                } else {
+                    final Site existingSite = getBulkSite(operation);
+                    changes.add(validateBulkSiteChange(op, operation, existingSite));
+                    changedSites.add(existingSite);
+                }
+                results.add(new JsonObject().put("index", i).put("status", "valid"));
+            } catch (IllegalArgumentException | ClassCastException e) {
+                valid = false;
+                results.add(new JsonObject().put("index", i).put("status", "error").put("message", e.getMessage()));
+            }
+        }
+        if (!valid) {
+            return null;
+        }
+
+        changes.forEach(Runnable::run);
+
+        // upload to storage
+        try {
+            storeWriter.upload(sites, null);
+        } catch (Exception e) {
+            // drop the in-memory changes that were not committed
+            siteProvider.loadContent();
+            throw e;
+        }
+        return changedSites;
+    }
+
+    private Site validateBulkSiteAdd(JsonObject operation, int siteId, Set<String> reservedNames) {
+        final String name = operation.getString("name", "").trim();
+        validateSiteName(name, reservedNames);
+
+        final JsonArray domainNamesJa = operation.getJsonArray("domain_names");
+        final List<String> normalizedDomainNames = domainNamesJa == null ? new ArrayList<>() : normalizeDomainNames(domainNamesJa);
+        final JsonArray appNamesJa = operation.getJsonArray("app_names");
+        final Set<String> normalizedAppNames = appNamesJa == null ? new HashSet<>() : normalizeAppNames(appNamesJa);
+        final String typesSpec = operation.getString("types");
+        final Set<ClientType> types = typesSpec == null ? new HashSet<>() : getTypes(typesSpec);
+        if (types == null) {
+            throw new IllegalArgumentException("Invalid Types");
+        }
+
+        return new Site(siteId, name, operation.getString("description"), operation.getBoolean("enabled", false), types,
+                new HashSet<>(normalizedDomainNames), normalizedAppNames, true);
+    }
+
+    private Runnable validateBulkSiteChange(String op, JsonObject operation, Site existingSite) {
+        if (op == null) {
+            throw new IllegalArgumentException("required parameters: op");
+        }
+        switch (op) {
+            case "enable": {
+                final Boolean enabled = operation.getBoolean("enabled");
+                if (enabled == null) {
+                    throw new IllegalArgumentException("required parameters: enabled");
+                }
+                return () -> existingSite.setEnabled(enabled);
+            }
+            case "set_types": {
+                final String typesSpec = operation.getString("types");
+                final Set<ClientType> types = typesSpec == null ? null : getTypes(typesSpec);
+                if (types == null) {
+                    throw new IllegalArgumentException("Invalid Types");
+                }
+                return () -> existingSite.setClientTypes(types);
+            }
+            case "domain_names": {
+                final JsonArray domainNamesJa = operation.getJsonArray("domain_names");
+                if (domainNamesJa == null) {
+                    throw new IllegalArgumentException("required parameters: domain_names");
+                }
+                final List<String> normalizedDomainNames = normalizeDomainNames(domainNamesJa);
+                return () -> existingSite.setDomainNames(new HashSet<>(normalizedDomainNames));
+            }
+            case "app_names": {
+                final JsonArray appNamesJa = operation.getJsonArray("app_names");
+                if (appNamesJa == null) {
+                    throw new IllegalArgumentException("required parameters: app_names");
+                }
+                final Set<String> normalizedAppNames = normalizeAppNames(appNamesJa);
+                return () -> existingSite.setAppNames(normalizedAppNames);
+            }
+            default:
+                throw new IllegalArgumentException("unsupported op: " + op);
+        }
+    }
+
+    private Site getBulkSite(JsonObject operation) {
+        final Integer siteId = operation.getInteger("id");
+        if (siteId == null || !SiteUtil.isValidSiteId(siteId)) {
+            throw new IllegalArgumentException("must specify a valid site id");
+        }
+        final Site site = this.siteProvider.getSite(siteId);
+        if (site == null) {
+            throw new IllegalArgumentException("site not found: " + siteId);
+        }
+        return site;
+    }
+
+    private List<Site> getSortedSites() {
+        return this.siteProvider.getAllSites()
                 .stream().sorted(Comparator.comparingInt(Site::getId))
                 .collect(Collectors.toList());
+    }
+
+    // Adds the site built for the next free site id; on a commit conflict the id is picked again from the reloaded store
+    private Site addSite(IntFunction<Site> siteWithId) throws Exception {
+        return StoreCommitRetry.run(() -> {
+            final List<Site> sites = getSortedSites();
+            final int siteId = 1 + sites.stream().mapToInt(Site::getId).max().orElse(Const.Data.AdvertisingTokenSiteId);
+            final Site newSite = siteWithId.apply(siteId);
+            sites.add(newSite);
+            storeWriter.upload(sites, null);
+            return newSite;
+        });
+    }
 
-        storeWriter.upload(sites, null);
-        rc.response().end(jsonWriter.writeValueAsString(existingSite));
+    // Applies the change to the site and uploads the sites; on a commit conflict it is applied again to the reloaded site
+    private void updateSite(Site existingSite, Consumer<Site> change, RoutingContext rc) throws Exception {
+        final Site updatedSite = StoreCommitRetry.run(() -> {
+            final Site site = this.siteProvider.getSite(existingSite.getId());
+            change.accept(site);
+            storeWriter.upload(getSortedSites(), null);
+            return site;
+        });
+        rc.response().end(jsonWriter.writeValueAsString(updatedSite));
     }
 }
@@ -0,0 +1,73 @@
+package com.uid2.admin.secret;
+
+import com.uid2.shared.secret.SecureKeyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares generating the key material of a v4 salt rotation (a 24 and a 32 byte key string per bucket) one key at a
+ * time with {@link SecureKeyGenerator} against {@link BatchKeyGenerator}, from one and from four threads.
+ * <p>
+ * Built only with the {@code perf} profile, run it with
+ * {@code mvn -Pperf test-compile exec:exec -Dperf.benchmark=KeyGeneratorBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KeyGeneratorBenchmark {
+    @Param({"10000", "200000"})
+    public int buckets;
+
+    private final SecureKeyGenerator secureKeyGenerator = new SecureKeyGenerator();
+    private final BatchKeyGenerator batchKeyGenerator = new BatchKeyGenerator();
+
+    @Benchmark
+    public void oneAtATime(Blackhole blackhole) {
+        generateOneAtATime(blackhole);
+    }
+
+    @Benchmark
+    public void batched(Blackhole blackhole) {
+        generateBatched(blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void oneAtATimeConcurrently(Blackhole blackhole) {
+        generateOneAtATime(blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void batchedConcurrently(Blackhole blackhole) {
+        generateBatched(blackhole);
+    }
+
+    private void generateOneAtATime(Blackhole blackhole) {
+        for (int i = 0; i < buckets; i++) {
+            blackhole.consume(secureKeyGenerator.generateRandomKeyString(24));
+            blackhole.consume(secureKeyGenerator.generateRandomKeyString(32));
+        }
+    }
+
+    private void generateBatched(Blackhole blackhole) {
+        blackhole.consume(batchKeyGenerator.generateRandomKeyStrings(buckets, 24));
+        blackhole.consume(batchKeyGenerator.generateRandomKeyStrings(buckets, 32));
+    }
+}
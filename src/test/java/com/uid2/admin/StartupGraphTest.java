@@ -0,0 +1,65 @@
+package com.uid2.admin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StartupGraphTest {
+    @Test
+    void runsIndependentStagesConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        StartupGraph graph = new StartupGraph(2);
+        StartupGraph.Stage stage = () -> {
+            bothStarted.countDown();
+            if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("stages did not run concurrently");
+            }
+        };
+
+        graph.stage("a", stage).stage("b", stage).await();
+    }
+
+    @Test
+    void runsStageAfterItsDependencies() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        StartupGraph graph = new StartupGraph(4);
+        graph.stage("a", () -> {
+            Thread.sleep(50);
+            order.add("a");
+        });
+        graph.stage("b", () -> order.add("b"));
+        graph.stage("c", List.of("a", "b"), () -> order.add("c"));
+
+        graph.await();
+
+        assertThat(order).hasSize(3).endsWith("c");
+    }
+
+    @Test
+    void failureSkipsDependentsAndIsRethrown() {
+        AtomicBoolean dependentRan = new AtomicBoolean(false);
+        StartupGraph graph = new StartupGraph(2);
+        graph.stage("a", () -> {
+            throw new IllegalStateException("boom");
+        });
+        graph.stage("b", List.of("a"), () -> dependentRan.set(true));
+
+        assertThatThrownBy(graph::await).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+        assertThat(dependentRan).isFalse();
+    }
+
+    @Test
+    void rejectsUnknownDependency() {
+        StartupGraph graph = new StartupGraph(1);
+
+        assertThatThrownBy(() -> graph.stage("a", List.of("missing"), () -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,23 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.shared.model.CloudEncryptionKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudEncryptionKeyManagerTest {
+    private final long now = 1000L;
+    private final long inOneHour = now + 3600;
+    private final CloudEncryptionKey site1Old = new CloudEncryptionKey(1, 1, 0, 0, "secret 1");
+    private final CloudEncryptionKey site1New = new CloudEncryptionKey(2, 1, inOneHour, now, "secret 2");
+    private final CloudEncryptionKey site2New = new CloudEncryptionKey(3, 2, inOneHour, now, "secret 3");
+
+    @Test
+    void getNewKeys_returnsOnlyCreatedKeys() {
+        var newKeys = CloudEncryptionKeyManager.getNewKeys(Set.of(site1Old), Set.of(site1Old, site1New, site2New));
+
+        assertThat(newKeys).containsExactlyInAnyOrder(site1New, site2New);
+    }
+}
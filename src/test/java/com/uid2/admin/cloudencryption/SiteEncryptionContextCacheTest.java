@@ -0,0 +1,97 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.shared.model.CloudEncryptionKey;
+import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.uid2.shared.util.CloudEncryptionHelpers.decryptInputStream;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class SiteEncryptionContextCacheTest {
+    private static final int SITE_ID = 5;
+    private final long now = Instant.now().getEpochSecond();
+    private final CloudEncryptionKey key1 = new CloudEncryptionKey(1, SITE_ID, now - 100, now - 100, randomSecret());
+    private final CloudEncryptionKey key2 = new CloudEncryptionKey(2, SITE_ID, now - 10, now - 10, randomSecret());
+
+    private RotatingCloudEncryptionKeyProvider keyProvider;
+    private SiteEncryptionContextCache cache;
+
+    @BeforeEach
+    void setup() {
+        keyProvider = mock(RotatingCloudEncryptionKeyProvider.class);
+        when(keyProvider.getKey(1)).thenReturn(key1);
+        when(keyProvider.getKey(2)).thenReturn(key2);
+        cache = new SiteEncryptionContextCache(keyProvider);
+    }
+
+    @Test
+    void reusesContextUntilProviderReloads() {
+        Map<Integer, CloudEncryptionKey> snapshot = keys(key1);
+        when(keyProvider.getAll()).thenReturn(snapshot);
+        when(keyProvider.getEncryptionKeyForSite(SITE_ID)).thenReturn(key1);
+
+        SiteEncryptionContext first = cache.get(SITE_ID);
+        SiteEncryptionContext second = cache.get(SITE_ID);
+
+        assertThat(second).isSameAs(first);
+        verify(keyProvider, times(1)).getEncryptionKeyForSite(SITE_ID);
+
+        when(keyProvider.getAll()).thenReturn(keys(key1, key2));
+        when(keyProvider.getEncryptionKeyForSite(SITE_ID)).thenReturn(key2);
+
+        assertThat(cache.get(SITE_ID).getKeyId()).isEqualTo(2);
+    }
+
+    @Test
+    void throwsWhenSiteHasNoKey() {
+        when(keyProvider.getAll()).thenReturn(keys());
+        when(keyProvider.getEncryptionKeyForSite(SITE_ID)).thenReturn(null);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(SITE_ID));
+    }
+
+    @Test
+    void envelopesCanBeDecryptedByReaders() throws Exception {
+        when(keyProvider.getAll()).thenReturn(keys(key1));
+        when(keyProvider.getEncryptionKeyForSite(SITE_ID)).thenReturn(key1);
+        SiteEncryptionContext context = cache.get(SITE_ID);
+        String plaintext = "line 1\nline 2 é\n".repeat(1000);
+
+        String inMemory = context.toEnvelope(plaintext);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        context.writeEnvelope(streamed, out -> out.write(plaintext.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(decrypt(inMemory.getBytes(StandardCharsets.UTF_8))).isEqualTo(plaintext);
+        assertThat(decrypt(streamed.toByteArray())).isEqualTo(plaintext);
+    }
+
+    private String decrypt(byte[] envelope) throws Exception {
+        return decryptInputStream(new ByteArrayInputStream(envelope), keyProvider, "test");
+    }
+
+    private static Map<Integer, CloudEncryptionKey> keys(CloudEncryptionKey... keys) {
+        Map<Integer, CloudEncryptionKey> map = new HashMap<>();
+        for (CloudEncryptionKey key : keys) {
+            map.put(key.getId(), key);
+        }
+        return map;
+    }
+
+    private static String randomSecret() {
+        byte[] secret = new byte[32];
+        new Random().nextBytes(secret);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+}
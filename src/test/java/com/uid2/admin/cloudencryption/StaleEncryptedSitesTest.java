@@ -0,0 +1,75 @@
+package com.uid2.admin.cloudencryption;
+
+import com.uid2.shared.auth.OperatorKey;
+import com.uid2.shared.auth.OperatorType;
+import com.uid2.shared.cloud.InMemoryStorageMock;
+import com.uid2.shared.model.CloudEncryptionKey;
+import com.uid2.shared.store.CloudPath;
+import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
+import com.uid2.shared.store.scope.EncryptedScope;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class StaleEncryptedSitesTest {
+    private final CloudPath sitesMetadataPath = new CloudPath("sites/metadata.json");
+    private final CloudPath saltsMetadataPath = new CloudPath("salts/metadata.json");
+    private final CloudEncryptionKey site1Key = new CloudEncryptionKey(11, 1, 0, 0, "secret 11");
+    private final CloudEncryptionKey site2Key = new CloudEncryptionKey(22, 2, 0, 0, "secret 22");
+    private final OperatorKey privateOperator1 = operator(1, OperatorType.PRIVATE);
+    private final OperatorKey publicOperator2 = operator(2, OperatorType.PUBLIC);
+
+    private InMemoryStorageMock cloudStorage;
+    private RotatingCloudEncryptionKeyProvider keyProvider;
+    private StaleEncryptedSites staleEncryptedSites;
+
+    @BeforeEach
+    void setup() {
+        cloudStorage = new InMemoryStorageMock();
+        keyProvider = mock(RotatingCloudEncryptionKeyProvider.class);
+        when(keyProvider.getEncryptionKeyForSite(1)).thenReturn(site1Key);
+        when(keyProvider.getEncryptionKeyForSite(2)).thenReturn(site2Key);
+        staleEncryptedSites = new StaleEncryptedSites(cloudStorage, List.of(sitesMetadataPath, saltsMetadataPath), keyProvider);
+    }
+
+    @Test
+    void findsSitesWhoseFilesRecordAnotherKey() throws Exception {
+        storeMetadata(sitesMetadataPath, 1, false, new JsonObject().put("sites", new JsonObject().put("key_id", 10)));
+        storeMetadata(sitesMetadataPath, 2, true, new JsonObject().put("sites", new JsonObject().put("key_id", 22)));
+
+        assertThat(staleEncryptedSites.find(List.of(privateOperator1, publicOperator2))).containsExactly(1);
+    }
+
+    @Test
+    void findsSitesWhoseSaltsRecordAnotherKey() throws Exception {
+        storeMetadata(sitesMetadataPath, 2, true, new JsonObject().put("sites", new JsonObject().put("key_id", 22)));
+        storeMetadata(saltsMetadataPath, 2, true, new JsonObject().put("key_id", 20));
+
+        assertThat(staleEncryptedSites.find(List.of(privateOperator1, publicOperator2))).containsExactly(2);
+    }
+
+    @Test
+    void ignoresStoresNotWrittenYetAndSitesWithoutKeys() throws Exception {
+        when(keyProvider.getEncryptionKeyForSite(2)).thenReturn(null);
+        storeMetadata(sitesMetadataPath, 2, true, new JsonObject().put("sites", new JsonObject().put("key_id", 20)));
+
+        assertThat(staleEncryptedSites.find(List.of(privateOperator1, publicOperator2))).isEmpty();
+    }
+
+    private void storeMetadata(CloudPath rootMetadataPath, int siteId, boolean isPublic, JsonObject metadata) throws Exception {
+        String path = new EncryptedScope(rootMetadataPath, siteId, isPublic).getMetadataPath().toString();
+        cloudStorage.upload(new ByteArrayInputStream(metadata.encode().getBytes(StandardCharsets.UTF_8)), path);
+    }
+
+    private static OperatorKey operator(int siteId, OperatorType type) {
+        return new OperatorKey("keyHash" + siteId, "keySalt" + siteId, "name" + siteId, "contact" + siteId, "aws-nitro", 2, false, siteId, new HashSet<>(), type, "key-id-" + siteId);
+    }
+}
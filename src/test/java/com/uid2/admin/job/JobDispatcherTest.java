@@ -10,6 +10,8 @@ import org.junit.jupiter.api.Test;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -265,6 +267,74 @@ public class JobDispatcherTest {
         assertEquals(1000, jobDispatcher.getExecutionDuration());
     }
 
+    @Test
+    public void testEnqueueReportsDuplicateJobs() {
+        assertTrue(jobDispatcher.enqueue(new TestJob()));
+        assertFalse(jobDispatcher.enqueue(new TestJob()));
+    }
+
+    @Test
+    public void testGetJobInfoOfQueuedAndFinishedJobs() throws Exception {
+        jobDispatcher.enqueue(new TestJob());
+        jobDispatcher.enqueue(new TestExceptionJob());
+
+        assertFalse(jobDispatcher.getJobInfo("id").isExecuting());
+        assertNull(jobDispatcher.getJobInfo("id").getSucceeded());
+        assertNull(jobDispatcher.getJobInfo("unknown id"));
+
+        jobDispatcher.executeNextJob().get();
+        jobDispatcher.executeNextJob().get();
+
+        assertEquals(true, jobDispatcher.getJobInfo("id").getSucceeded());
+        assertEquals(false, jobDispatcher.getJobInfo("exception id").getSucceeded());
+    }
+
+    @Test
+    public void testEnqueueWakesUpStartedDispatcher() throws Exception {
+        jobDispatcher.shutdown();
+        jobDispatcher = new JobDispatcher("test dispatcher", 60_000, 3, clock);
+        jobDispatcher.start();
+        Thread.sleep(INTERVAL_TIME);
+
+        jobDispatcher.enqueue(new TestJob());
+        jobDispatcher.enqueue(new Test2Job());
+        Thread.sleep(INTERVAL_TIME);
+
+        assertEquals(2, executionCount);
+        assertTrue(jobDispatcher.getJobQueueInfo().isEmpty());
+    }
+
+    @Test
+    public void testExecuteNextJobReturnsFutureOfExecutingJob() throws Exception {
+        jobDispatcher.enqueue(new TestLongRunningJob());
+        jobDispatcher.executeNextJob();
+
+        assertNotNull(jobDispatcher.executeNextJob().get());
+        assertFalse(jobDispatcher.isExecutingJob());
+        assertEquals(1, executionCount);
+    }
+
+    @Test
+    public void testSubmitReturnsFutureOfTheSubmittedJob() throws Exception {
+        jobDispatcher.start();
+
+        CompletableFuture<Boolean> longRunning = jobDispatcher.submit(new TestLongRunningJob());
+        CompletableFuture<Boolean> failing = jobDispatcher.submit(new TestExceptionJob());
+
+        assertFalse(failing.get(5, TimeUnit.SECONDS));
+        assertTrue(longRunning.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSubmitRejectsDuplicateAndClearCancelsQueuedJobs() {
+        CompletableFuture<Boolean> queued = jobDispatcher.submit(new TestJob());
+
+        assertNull(jobDispatcher.submit(new TestJob()));
+
+        jobDispatcher.clear();
+        assertTrue(queued.isCancelled());
+    }
+
     private void addJobInfo(List<JobInfo> jobInfos, Job job, boolean executing) {
         job.setAddedToQueueAt(Instant.EPOCH);
         if (executing) {
@@ -0,0 +1,97 @@
+package com.uid2.admin.job.jobsync;
+
+import com.uid2.admin.job.JobDispatcher;
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.store.StoreChangeEvent;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class StoreChangeSyncCoordinatorTest {
+    private record Scope(Set<Integer> siteIds, Set<String> dataTypes) {}
+
+    private final List<Scope> created = new ArrayList<>();
+    private Vertx vertx;
+    private JobDispatcher jobDispatcher;
+    private StoreChangeSyncCoordinator coordinator;
+
+    @BeforeEach
+    void setup() {
+        vertx = mock(Vertx.class);
+        jobDispatcher = mock(JobDispatcher.class);
+        when(jobDispatcher.enqueue(any())).thenReturn(true);
+        coordinator = new StoreChangeSyncCoordinator(vertx, jobDispatcher, (siteIds, dataTypes) -> {
+            created.add(new Scope(siteIds, dataTypes));
+            return mock(Job.class);
+        }, 1000);
+    }
+
+    @Test
+    void mergesEventsWithinTheDebounceWindow() {
+        coordinator.onChange(new StoreChangeEvent("client_keys", 1L, Set.of(12)));
+        coordinator.onChange(new StoreChangeEvent("client_keys", 2L, Set.of(47)));
+        coordinator.flush();
+
+        verify(vertx, times(1)).setTimer(eq(1000L), any());
+        assertThat(created).containsExactly(new Scope(Set.of(12, 47), Set.of("client_keys")));
+    }
+
+    @Test
+    void syncsEverySiteForDataTypesSharedAcrossSites() {
+        coordinator.onChange(new StoreChangeEvent("client_keys", 1L, Set.of(12)));
+        coordinator.onChange(new StoreChangeEvent("keys", 2L, Set.of(12)));
+        coordinator.flush();
+
+        assertThat(created).containsExactly(new Scope(null, Set.of("client_keys", "keys")));
+    }
+
+    @Test
+    void skipsChangesThatAffectNoSite() {
+        coordinator.onChange(new StoreChangeEvent("client_keys", 1L, Set.of()));
+        coordinator.flush();
+
+        assertThat(created).isEmpty();
+        verify(jobDispatcher, never()).enqueue(any());
+    }
+
+    @Test
+    void retriesWhenASyncIsAlreadyQueued() {
+        when(jobDispatcher.enqueue(any())).thenReturn(false, true);
+
+        coordinator.onChange(new StoreChangeEvent("sites", 1L, Set.of(12)));
+        coordinator.flush();
+        coordinator.onChange(new StoreChangeEvent("client_keys", 2L, Set.of(47)));
+        coordinator.flush();
+
+        verify(vertx, times(2)).setTimer(anyLong(), any());
+        assertThat(created).containsExactly(
+                new Scope(null, Set.of("sites")),
+                new Scope(null, Set.of("sites", "client_keys")));
+    }
+
+    @Test
+    void changedSiteIdsAreTheSitesOfAddedRemovedOrChangedEntries() {
+        Map<String, Integer> before = Map.of("{\"a\"}", 1, "{\"b\"}", 2, "{\"c\"}", 3);
+        Map<String, Integer> after = Map.of("{\"a\"}", 1, "{\"changed\"}", 2, "{\"d\"}", 4);
+
+        assertThat(StoreChangeEvent.changedSiteIds(before, after)).containsExactlyInAnyOrder(2, 3, 4);
+    }
+
+    @Test
+    void eventsRoundTripThroughJson() {
+        StoreChangeEvent event = new StoreChangeEvent("client_keys", 5L, Set.of(1, 2));
+
+        assertThat(StoreChangeEvent.fromJson(event.toJson())).isEqualTo(event);
+        assertThat(StoreChangeEvent.fromJson(new StoreChangeEvent("keys", null, null).toJson()).siteIds()).isNull();
+    }
+}
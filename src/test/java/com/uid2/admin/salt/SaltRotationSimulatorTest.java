@@ -0,0 +1,74 @@
+package com.uid2.admin.salt;
+
+import com.uid2.admin.salt.helper.SaltBuilder;
+import com.uid2.shared.model.SaltEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SaltRotationSimulatorTest {
+    private final TargetDate targetDate = TargetDate.of(2025, 1, 10);
+    private final Duration[] minAges = {Duration.ofDays(30), Duration.ofDays(60)};
+
+    @Test
+    void rotatesRefreshableBucketsAboveMinAge() {
+        SaltEntry[] salts = {
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(90)).refreshFrom(targetDate).build(),
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(40)).refreshFrom(targetDate).build(),
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(10)).refreshFrom(targetDate).build(),
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(90)).refreshFrom(targetDate.plusDays(1)).build(),
+        };
+        SaltRotationSimulator.Buckets buckets = SaltRotationSimulator.Buckets.of(salts);
+
+        SaltRotationSimulator.Result result = new SaltRotationSimulator(1, minAges, 0).simulate(buckets, targetDate, 1);
+
+        assertThat(result.days()[0].rotated()).isEqualTo(2);
+        assertThat(result.days()[0].maxAgeInDays()).isEqualTo(90);
+        assertThat(result.days()[0].ageBandCounts()[0]).isEqualTo(3);
+        assertThat(result.days()[0].ageBandCounts()[3]).isEqualTo(1);
+    }
+
+    @Test
+    void leavesBucketsUnchangedWhenNothingIsRotated() {
+        SaltEntry[] salts = {
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(10)).refreshFrom(targetDate).build(),
+        };
+        SaltRotationSimulator.Buckets buckets = SaltRotationSimulator.Buckets.of(salts);
+
+        SaltRotationSimulator.Result result = new SaltRotationSimulator(1, minAges, 0).simulate(buckets, targetDate, 2);
+
+        assertThat(result.days()[0].rotated()).isZero();
+        assertThat(result.days()[1].rotated()).isZero();
+        assertThat(result.days()[1].maxAgeInDays()).isEqualTo(11);
+    }
+
+    @Test
+    void rotatesAtMostTheDailyQuota() {
+        int bucketCount = 10_000;
+        double fraction = 0.01;
+        SaltRotationSimulator.Buckets buckets = SaltRotationSimulator.Buckets.synthetic(bucketCount, targetDate, 390);
+
+        SaltRotationSimulator.Result result = new SaltRotationSimulator(fraction, SaltRotation.DEFAULT_AGE_THRESHOLDS, 0)
+                .simulate(buckets, targetDate, 60);
+
+        assertThat(result.days()).hasSize(60);
+        assertThat(result.days()).allSatisfy(day -> {
+            assertThat(day.rotated()).isLessThanOrEqualTo(SaltRotation.getNumSaltsToRotate(bucketCount, fraction));
+            assertThat(Arrays.stream(day.ageBandCounts()).sum()).isEqualTo(bucketCount);
+        });
+        assertThat(result.toJson().getJsonArray("days")).hasSize(60);
+    }
+
+    @Test
+    void isDeterministicForASeed() {
+        SaltRotationSimulator.Result first = new SaltRotationSimulator(0.01, SaltRotation.DEFAULT_AGE_THRESHOLDS, 42)
+                .simulate(SaltRotationSimulator.Buckets.synthetic(5_000, targetDate, 390), targetDate, 30);
+        SaltRotationSimulator.Result second = new SaltRotationSimulator(0.01, SaltRotation.DEFAULT_AGE_THRESHOLDS, 42)
+                .simulate(SaltRotationSimulator.Buckets.synthetic(5_000, targetDate, 390), targetDate, 30);
+
+        assertThat(first.toJson()).isEqualTo(second.toJson());
+    }
+}
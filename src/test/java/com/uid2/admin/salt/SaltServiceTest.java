@@ -1,6 +1,10 @@
 package com.uid2.admin.salt;
 
+import com.uid2.admin.job.JobDispatcher;
+import com.uid2.admin.job.model.Job;
+import com.uid2.admin.job.model.JobInfo;
 import com.uid2.admin.salt.helper.SaltSnapshotBuilder;
+import com.uid2.admin.store.InstantClock;
 import com.uid2.admin.vertx.service.IService;
 import com.uid2.admin.vertx.service.SaltService;
 import com.uid2.admin.vertx.test.ServiceTestBase;
@@ -9,11 +13,17 @@ import com.uid2.shared.store.salt.RotatingSaltProvider;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import static com.uid2.admin.salt.helper.TargetDateUtil.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,6 +32,9 @@ import static org.mockito.Mockito.*;
 
 class SaltServiceTest extends ServiceTestBase {
     private final TargetDate utcTomorrow = TargetDate.now().plusDays(1);
+    private final JobDispatcher jobDispatcher = spy(new JobDispatcher("salt test dispatcher", 60 * 1000, 1, new InstantClock()));
+    private final List<Job> submittedJobs = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Boolean>> submittedJobFutures = new CopyOnWriteArrayList<>();
 
     @Mock
     private RotatingSaltProvider saltProvider;
@@ -30,7 +43,26 @@ class SaltServiceTest extends ServiceTestBase {
 
     @Override
     protected IService createService() {
-        return new SaltService(auth, writeLock, saltStoreWriter, saltProvider, saltRotation);
+        return new SaltService(auth, jobDispatcher, saltStoreWriter, saltProvider, saltRotation);
+    }
+
+    @BeforeEach
+    void startDispatcher() {
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Boolean> future = (CompletableFuture<Boolean>) invocation.callRealMethod();
+            if (future != null) {
+                submittedJobs.add(invocation.getArgument(0));
+                submittedJobFutures.add(future);
+            }
+            return future;
+        }).when(jobDispatcher).submit(any());
+        jobDispatcher.start();
+    }
+
+    @AfterEach
+    void shutdownDispatcher() {
+        jobDispatcher.shutdown();
     }
 
     @Test
@@ -81,8 +113,13 @@ class SaltServiceTest extends ServiceTestBase {
         when(saltRotation.rotateSalts(any(), any(), eq(0.2), eq(utcTomorrow))).thenReturn(result);
 
         post(vertx, testContext, "api/salt/rotate?fraction=0.2", "", response -> {
-            assertEquals(200, response.statusCode());
-            checkSnapshotsResponse(addedSnapshots, new Object[]{response.bodyAsJsonObject()});
+            assertEquals(202, response.statusCode());
+            String jobId = response.bodyAsJsonObject().getString("job_id");
+            assertTrue(jobId.startsWith(SaltRotationJob.JOB_ID_PREFIX));
+            JobInfo job = awaitSaltRotationJob();
+            assertEquals(jobId, job.getId());
+            assertTrue(job.getSucceeded());
+            assertEquals(10, job.getProgress().getBucketsProcessed());
             verify(saltStoreWriter).upload(any());
             verify(saltStoreWriter, times(1)).archiveSaltLocations();
             testContext.completeNow();
@@ -104,10 +141,10 @@ class SaltServiceTest extends ServiceTestBase {
         when(saltRotation.rotateSalts(any(), any(), eq(0.2), eq(utcTomorrow))).thenReturn(result);
 
         post(vertx, testContext, "api/salt/rotate?fraction=0.2", "", response -> {
-            assertEquals(200, response.statusCode());
-            JsonObject jo = response.bodyAsJsonObject();
-            assertFalse(jo.containsKey("effective"));
-            assertFalse(jo.containsKey("expires"));
+            assertEquals(202, response.statusCode());
+            JobInfo job = awaitSaltRotationJob();
+            assertTrue(job.getSucceeded());
+            assertEquals("test", job.getProgress().getResult());
             verify(saltStoreWriter, times(0)).upload(any());
             testContext.completeNow();
         });
@@ -131,7 +168,8 @@ class SaltServiceTest extends ServiceTestBase {
         when(saltRotation.rotateSalts(any(), any(), eq(0.2), eq(targetDate()))).thenReturn(result);
 
         post(vertx, testContext, "api/salt/rotate?fraction=0.2&target_date=2025-01-01", "", response -> {
-            assertEquals(200, response.statusCode());
+            assertEquals(202, response.statusCode());
+            assertTrue(awaitSaltRotationJob().getSucceeded());
             testContext.completeNow();
         });
     }
@@ -155,12 +193,41 @@ class SaltServiceTest extends ServiceTestBase {
         when(saltRotation.rotateSalts(any(), eq(expectedDefaultAgeThresholds), eq(0.2), eq(utcTomorrow))).thenReturn(result);
 
         post(vertx, testContext, "api/salt/rotate?fraction=0.2", "", response -> {
+            assertEquals(202, response.statusCode());
+            awaitSaltRotationJob();
             verify(saltRotation).rotateSalts(any(), eq(expectedDefaultAgeThresholds), eq(0.2), eq(utcTomorrow));
-            assertEquals(200, response.statusCode());
             testContext.completeNow();
         });
     }
 
+    @Test
+    void rotateSaltsGivesEachJobItsOwnId(Vertx vertx, VertxTestContext testContext) throws Exception {
+        fakeAuth(Role.SUPER_USER);
+
+        setSnapshots(SaltSnapshotBuilder.start().effective(daysLater(1)).expires(daysLater(4)).entries(10, daysLater(1)));
+        when(saltRotation.rotateSalts(any(), any(), eq(0.2), eq(utcTomorrow))).thenReturn(SaltRotation.Result.noSnapshot("test"));
+
+        post(vertx, testContext, "api/salt/rotate?fraction=0.2", "", first -> {
+            assertEquals(202, first.statusCode());
+            awaitSaltRotationJob();
+
+            post(vertx, testContext, "api/salt/rotate?fraction=0.2", "", second -> {
+                assertEquals(202, second.statusCode());
+                assertEquals(2, submittedJobFutures.size());
+                submittedJobFutures.get(1).get(5, TimeUnit.SECONDS);
+                assertNotEquals(first.bodyAsJsonObject().getString("job_id"), second.bodyAsJsonObject().getString("job_id"));
+                assertEquals(second.bodyAsJsonObject().getString("job_id"), submittedJobs.get(1).getId());
+                testContext.completeNow();
+            });
+        });
+    }
+
+    private JobInfo awaitSaltRotationJob() throws Exception {
+        assertEquals(1, submittedJobFutures.size());
+        submittedJobFutures.getFirst().get(5, TimeUnit.SECONDS);
+        return jobDispatcher.getJobInfo(submittedJobs.getFirst().getId());
+    }
+
     private void checkSnapshotsResponse(SaltSnapshotBuilder[] expectedSnapshots, Object[] actualSnapshots) {
         assertEquals(expectedSnapshots.length, actualSnapshots.length);
         for (int i = 0; i < expectedSnapshots.length; ++i) {
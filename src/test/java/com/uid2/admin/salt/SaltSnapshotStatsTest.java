@@ -0,0 +1,71 @@
+package com.uid2.admin.salt;
+
+import com.uid2.admin.salt.helper.SaltBuilder;
+import com.uid2.shared.model.SaltEntry;
+import com.uid2.shared.store.salt.RotatingSaltProvider.SaltSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SaltSnapshotStatsTest {
+    private final TargetDate targetDate = TargetDate.of(2025, 1, 10);
+
+    @Test
+    void computesStatsInOnePass() {
+        SaltEntry[] buckets = {
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(5)).refreshFrom(targetDate).currentSalt().build(),
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(5)).refreshFrom(targetDate).currentKeySalt(1).previousSalt("old").build(),
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(1)).refreshFrom(targetDate.plusDays(1)).currentKeySalt(2).previousKeySalt(1).build(),
+        };
+
+        SaltSnapshotStats stats = SaltSnapshotStats.compute(buckets, targetDate);
+
+        assertThat(stats.getBucketCount()).isEqualTo(3);
+        assertThat(stats.getMinLastUpdated()).isEqualTo(targetDate.minusDays(5).asEpochMs());
+        assertThat(stats.getMaxLastUpdated()).isEqualTo(targetDate.minusDays(1).asEpochMs());
+        assertThat(stats.getAgeInDaysCounts()).isEqualTo(Map.of(1L, 1L, 5L, 2L));
+        assertThat(stats.getCurrentSaltBuckets()).isEqualTo(1);
+        assertThat(stats.getCurrentKeyBuckets()).isEqualTo(2);
+        assertThat(stats.getPreviousSaltBuckets()).isEqualTo(1);
+        assertThat(stats.getPreviousKeyBuckets()).isEqualTo(1);
+        assertThat(stats.getRefreshableByDateCounts()).isEqualTo(Map.of("2025-01-10", 2L, "2025-01-11", 1L));
+    }
+
+    @Test
+    void computesStatsOfEmptySnapshot() {
+        SaltSnapshotStats stats = SaltSnapshotStats.compute(new SaltEntry[0], targetDate);
+
+        assertThat(stats.getBucketCount()).isZero();
+        assertThat(stats.getMinLastUpdated()).isNull();
+        assertThat(stats.getMaxLastUpdated()).isNull();
+        assertThat(stats.getAgeInDaysCounts()).isEmpty();
+    }
+
+    @Test
+    void cacheFollowsTheSnapshotSource() {
+        Instant day1 = targetDate.asInstant();
+        Instant day2 = targetDate.plusDays(1).asInstant();
+        SaltSnapshot first = new SaltSnapshot(day1, day2.plusSeconds(86400), new SaltEntry[]{
+                SaltBuilder.start().lastUpdated(targetDate.minusDays(1)).currentSalt().build()}, "first_level");
+        SaltSnapshot second = new SaltSnapshot(day2, day2.plusSeconds(86400), new SaltEntry[]{
+                SaltBuilder.start().lastUpdated(targetDate).currentSalt().build(),
+                SaltBuilder.start().lastUpdated(targetDate).currentSalt().build()}, "first_level");
+        AtomicReference<List<SaltSnapshot>> snapshots = new AtomicReference<>();
+        SaltSnapshotStatsCache cache = new SaltSnapshotStatsCache(snapshots::get);
+
+        assertThat(cache.getEffective(day1)).isNull();
+
+        snapshots.set(List.of(first));
+        assertThat(cache.getEffective(day1).getBucketCount()).isEqualTo(1);
+
+        // a reload adds a snapshot, which is picked up once it becomes effective
+        snapshots.set(List.of(first, second));
+        assertThat(cache.getEffective(day1).getBucketCount()).isEqualTo(1);
+        assertThat(cache.getEffective(day2).getBucketCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,136 @@
+package com.uid2.admin.secret;
+
+import com.uid2.shared.secret.IKeyGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchKeyGeneratorTest {
+    private final BatchKeyGenerator generator = new BatchKeyGenerator();
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 3, 16, 24, 32, 33})
+    void keyStringsAreBase64OfTheKeyBytes(int length) {
+        byte[][] keys = new BatchKeyGenerator(() -> seeded(length)).generateRandomKeys(3, length);
+        String[] keyStrings = new BatchKeyGenerator(() -> seeded(length)).generateRandomKeyStrings(3, length);
+
+        assertThat(keyStrings).containsExactly(Arrays.stream(keys).map(Base64.getEncoder()::encodeToString).toArray(String[]::new));
+    }
+
+    @Test
+    void generatesKeyStringsOfRequestedLength() {
+        String[] keys = new BatchKeyGenerator(() -> seeded(1)).generateRandomKeyStrings(1000, 24);
+
+        assertThat(keys).hasSize(1000);
+        assertThat(keys).allSatisfy(key -> {
+            assertThat(key).hasSize(BatchKeyGenerator.encodedLength(24)).matches("[A-Za-z0-9+/]*={0,2}");
+            assertThat(Base64.getDecoder().decode(key)).hasSize(24);
+        });
+        assertThat(new HashSet<>(Arrays.asList(keys))).hasSize(1000);
+    }
+
+    @Test
+    void generatesDistinctKeys() {
+        byte[][] keys = new BatchKeyGenerator(() -> seeded(2)).generateRandomKeys(1000, 32);
+
+        Set<String> distinct = new HashSet<>();
+        for (byte[] key : keys) {
+            assertThat(key).hasSize(32);
+            distinct.add(Base64.getEncoder().encodeToString(key));
+        }
+        assertThat(distinct).hasSize(1000);
+    }
+
+    @Test
+    void drawsTheBatchFromTheThreadsGenerator() {
+        byte[] expected = new byte[4 * 32];
+        seeded(3).nextBytes(expected);
+
+        byte[][] keys = new BatchKeyGenerator(() -> seeded(3)).generateRandomKeys(4, 32);
+
+        for (int i = 0; i < keys.length; i++) {
+            assertThat(keys[i]).isEqualTo(Arrays.copyOfRange(expected, i * 32, (i + 1) * 32));
+        }
+    }
+
+    @Test
+    void singleKeysComeFromTheBatchGenerator() {
+        assertThat(generator.generateRandomKey(32)).hasSize(32);
+        assertThat(Base64.getDecoder().decode(generator.generateRandomKeyString(32))).hasSize(32);
+    }
+
+    @Test
+    void rejectsNegativeCounts() {
+        assertThatThrownBy(() -> generator.generateRandomKeys(-1, 32)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // The statistical checks draw from the real per-thread DRBG. Their thresholds are set so far out in the tail that a
+    // healthy generator fails less than once in 10^10 runs, while a stuck or biased generator fails every time.
+
+    @Test
+    void byteValuesAreUniformlyDistributed() {
+        // chi-squared with 255 degrees of freedom; P(X > 430) is about 4e-11
+        long[] counts = new long[256];
+        long total = 0;
+        for (byte[] key : generator.generateRandomKeys(40_000, 32)) {
+            for (byte b : key) {
+                counts[b & 0xff]++;
+                total++;
+            }
+        }
+        double expected = total / 256.0;
+        double chiSquared = 0;
+        for (long count : counts) {
+            chiSquared += (count - expected) * (count - expected) / expected;
+        }
+
+        assertThat(chiSquared).isLessThan(430);
+    }
+
+    @Test
+    void bitsAreBalanced() {
+        // 10.24M bits, so one standard deviation of the set bit count is 1600; 7 deviations is a 3e-12 chance
+        long setBits = 0;
+        long totalBits = 0;
+        for (byte[] key : generator.generateRandomKeys(40_000, 32)) {
+            for (byte b : key) {
+                setBits += Integer.bitCount(b & 0xff);
+                totalBits += 8;
+            }
+        }
+
+        assertThat(Math.abs(setBits - totalBits / 2)).isLessThan(7 * 1600);
+    }
+
+    @Test
+    void adapterRequestsOneKeyAtATime() throws Exception {
+        IKeyGenerator keyGenerator = mock(IKeyGenerator.class);
+        when(keyGenerator.generateRandomKeyString(24)).thenReturn("a", "b");
+
+        assertThat(IBatchKeyGenerator.of(keyGenerator).generateRandomKeyStrings(2, 24)).containsExactly("a", "b");
+        assertThat(IBatchKeyGenerator.of(generator)).isSameAs(generator);
+    }
+
+    // SHA1PRNG seeded before its first use produces a fixed sequence
+    private static SecureRandom seeded(long seed) {
+        try {
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(seed);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class CachingCloudStorageTest {
+    private static final String METADATA = "sites/metadata.json";
+    private static final String SITES = "sites/sites.json";
+
+    @TempDir
+    Path dir;
+    private TaggableCloudStorage delegate;
+    private CachingCloudStorage storage;
+
+    @BeforeEach
+    void setup() throws Exception {
+        delegate = mock(TaggableCloudStorage.class);
+        storage = new CachingCloudStorage(delegate, new StoreFileCache(dir, 1 << 20), Set.of(METADATA));
+    }
+
+    @Test
+    void cachesOnlyStoresWithoutSecrets() {
+        JsonObject config = new JsonObject()
+                .put("sites_metadata_path", "sites/metadata.json")
+                .put("keys_metadata_path", "keys/metadata.json")
+                .put("salts_metadata_path", "salts/metadata.json")
+                .put("clients_metadata_path", "clients/metadata.json")
+                .put("operators_metadata_path", "operators/metadata.json");
+
+        assertThat(CachingCloudStorage.metadataPathsToCache(config)).containsExactly("sites/metadata.json");
+    }
+
+    @Test
+    void downloadsUnchangedVersionOnce() throws Exception {
+        givenMetadata(1);
+        when(delegate.download(SITES)).thenAnswer(i -> stream("[1]"));
+
+        assertThat(read(storage.download(METADATA))).contains("\"version\":1");
+        assertThat(read(storage.download(SITES))).isEqualTo("[1]");
+        read(storage.download(METADATA));
+        assertThat(read(storage.download(SITES))).isEqualTo("[1]");
+
+        verify(delegate, times(1)).download(SITES);
+        verify(delegate, times(2)).download(METADATA);
+    }
+
+    @Test
+    void downloadsAgainWhenVersionChanges() throws Exception {
+        givenMetadata(1);
+        when(delegate.download(SITES)).thenAnswer(i -> stream("[1]"));
+        read(storage.download(METADATA));
+        read(storage.download(SITES));
+
+        givenMetadata(2);
+        when(delegate.download(SITES)).thenAnswer(i -> stream("[1,2]"));
+        read(storage.download(METADATA));
+
+        assertThat(read(storage.download(SITES))).isEqualTo("[1,2]");
+        verify(delegate, times(2)).download(SITES);
+    }
+
+    @Test
+    void indexesLocationsInArrays() throws Exception {
+        JsonObject metadata = new JsonObject().put("version", 3)
+                .put("salts", new JsonArray().add(new JsonObject().put("location", "salts/salts.txt.1")));
+        when(delegate.download("salts/metadata.json")).thenAnswer(i -> stream(metadata.encode()));
+        when(delegate.download("salts/salts.txt.1")).thenAnswer(i -> stream("salt"));
+        storage = new CachingCloudStorage(delegate, new StoreFileCache(dir, 1 << 20), Set.of("salts/metadata.json"));
+
+        read(storage.download("salts/metadata.json"));
+        read(storage.download("salts/salts.txt.1"));
+        read(storage.download("salts/salts.txt.1"));
+
+        verify(delegate, times(1)).download("salts/salts.txt.1");
+    }
+
+    @Test
+    void passesThroughFilesWithoutKnownVersion() throws Exception {
+        when(delegate.download(SITES)).thenAnswer(i -> stream("[1]"));
+
+        read(storage.download(SITES));
+        read(storage.download(SITES));
+
+        verify(delegate, times(2)).download(SITES);
+    }
+
+    @Test
+    void uploadInvalidatesCachedCopy() throws Exception {
+        givenMetadata(1);
+        when(delegate.download(SITES)).thenAnswer(i -> stream("[1]"));
+        read(storage.download(METADATA));
+        read(storage.download(SITES));
+
+        storage.upload("/tmp/sites.json", SITES);
+        read(storage.download(SITES));
+
+        verify(delegate, times(2)).download(SITES);
+    }
+
+    private void givenMetadata(long version) throws Exception {
+        JsonObject metadata = new JsonObject().put("version", version).put("sites", new JsonObject().put("location", SITES));
+        when(delegate.download(METADATA)).thenAnswer(i -> stream(metadata.encode()));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
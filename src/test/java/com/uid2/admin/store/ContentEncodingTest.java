@@ -0,0 +1,55 @@
+package com.uid2.admin.store;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentEncodingTest {
+    private static final String CONTENT = "[{\"id\":1,\"name\":\"site\"}]".repeat(100);
+
+    @Test
+    void gzipRoundTrips() throws Exception {
+        byte[] encoded = ContentEncoding.GZIP.encode(CONTENT);
+
+        assertThat(encoded.length).isLessThan(CONTENT.length());
+        assertThat(decode(encoded)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void decodePassesPlainContentThrough() throws Exception {
+        byte[] plain = ContentEncoding.IDENTITY.encode(CONTENT);
+
+        assertThat(decode(plain)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void decodeHandlesEmptyContent() throws Exception {
+        assertThat(decode(new byte[0])).isEmpty();
+    }
+
+    @Test
+    void readsEncodingsFromConfig() {
+        JsonObject config = new JsonObject().put("store_content_encodings", new JsonObject().put("salts", "gzip"));
+
+        assertThat(ContentEncoding.fromConfig(config)).isEqualTo(Map.of("salts", ContentEncoding.GZIP));
+        assertThat(ContentEncoding.fromConfig(new JsonObject())).isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownEncoding() {
+        assertThatThrownBy(() -> ContentEncoding.fromName("zstd")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String decode(byte[] bytes) throws Exception {
+        try (InputStream stream = ContentEncoding.decode(new ByteArrayInputStream(bytes))) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
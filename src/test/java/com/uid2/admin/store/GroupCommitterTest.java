@@ -0,0 +1,96 @@
+package com.uid2.admin.store;
+
+import com.uid2.admin.store.writer.StoreCommitConflictException;
+import com.uid2.shared.store.CloudPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitterTest {
+    private final Object writeLock = new Object();
+    private final List<String> stored = new ArrayList<>();
+    private final List<List<String>> commits = new ArrayList<>();
+
+    private GroupCommitter<List<String>> createCommitter() {
+        return new GroupCommitter<>("test", writeLock,
+                () -> new ArrayList<>(stored),
+                state -> {
+                    commits.add(new ArrayList<>(state));
+                    stored.clear();
+                    stored.addAll(state);
+                },
+                200);
+    }
+
+    @Test
+    void coalescesMutationsWithinWindowIntoOneCommit() throws Exception {
+        GroupCommitter<List<String>> committer = createCommitter();
+
+        CompletableFuture<Integer> first = committer.submit(state -> { state.add("a"); return state.size(); });
+        CompletableFuture<Integer> second = committer.submit(state -> { state.add("b"); return state.size(); });
+        CompletableFuture<Integer> third = committer.submit(state -> { state.add("c"); return state.size(); });
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThat(third.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(commits).containsExactly(List.of("a", "b", "c"));
+    }
+
+    @Test
+    void failedMutationDoesNotAffectTheRestOfTheBatch() throws Exception {
+        GroupCommitter<List<String>> committer = createCommitter();
+
+        CompletableFuture<String> failing = committer.submit(state -> { throw new IllegalStateException("rejected"); });
+        CompletableFuture<String> succeeding = committer.submit(state -> { state.add("a"); return "ok"; });
+
+        assertThat(succeeding.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        assertThatThrownBy(() -> failing.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(commits).containsExactly(List.of("a"));
+    }
+
+    @Test
+    void failsAllAppliedMutationsWhenCommitFails() {
+        GroupCommitter<List<String>> committer = new GroupCommitter<>("test", writeLock,
+                ArrayList::new,
+                state -> { throw new IllegalStateException("upload failed"); },
+                10);
+
+        CompletableFuture<String> future = committer.submit(state -> { state.add("a"); return "ok"; });
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("upload failed");
+    }
+
+    @Test
+    void reappliesBatchToReloadedStateAfterCommitConflict() throws Exception {
+        List<String> otherWriterCommit = List.of("other");
+        GroupCommitter<List<String>> committer = new GroupCommitter<>("test", writeLock,
+                () -> new ArrayList<>(stored),
+                state -> {
+                    if (commits.isEmpty() && !stored.equals(otherWriterCommit)) {
+                        // another writer commits first
+                        stored.addAll(otherWriterCommit);
+                        throw new StoreCommitConflictException(new CloudPath("test-metadata.json"), 1L, 2L);
+                    }
+                    commits.add(new ArrayList<>(state));
+                    stored.clear();
+                    stored.addAll(state);
+                },
+                10);
+
+        CompletableFuture<Integer> future = committer.submit(state -> { state.add("a"); return state.size(); });
+
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThat(commits).containsExactly(List.of("other", "a"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class InstrumentedCloudStorageTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private TaggableCloudStorage delegate;
+    private InstrumentedCloudStorage storage;
+
+    @BeforeEach
+    void setup() {
+        Metrics.globalRegistry.add(registry);
+        delegate = mock(TaggableCloudStorage.class);
+        storage = new InstrumentedCloudStorage(delegate);
+    }
+
+    @AfterEach
+    void teardown() {
+        Metrics.globalRegistry.remove(registry);
+    }
+
+    @Test
+    void countsDownloadedBytesAsTheStreamIsRead() throws Exception {
+        when(delegate.download("sites/sites.json")).thenReturn(new ByteArrayInputStream(new byte[1000]));
+
+        try (InputStream in = storage.download("sites/sites.json")) {
+            in.readAllBytes();
+        }
+
+        assertThat(registry.get("uid2_admin_cloud_storage_bytes_total").tags("operation", "download", "data_type", "sites").counter().count())
+                .isEqualTo(1000);
+        assertThat(registry.get("uid2_admin_cloud_storage_duration").tags("operation", "download", "data_type", "sites", "outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void timesDownloadTransferUntilTheStreamIsClosed() throws Exception {
+        when(delegate.download("salts/salts.txt.1")).thenReturn(new ByteArrayInputStream(new byte[10]));
+
+        InputStream in = storage.download("salts/salts.txt.1");
+        assertThat(registry.find("uid2_admin_cloud_storage_download_transfer_duration").tags("data_type", "salts").timer()).isNull();
+
+        in.readAllBytes();
+        in.close();
+        in.close();
+
+        assertThat(registry.get("uid2_admin_cloud_storage_download_transfer_duration").tags("data_type", "salts", "outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void recordsFailedDownloadTransfer() throws Exception {
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        when(delegate.download("keys/keys.json")).thenReturn(broken);
+
+        try (InputStream in = storage.download("keys/keys.json")) {
+            assertThatThrownBy(in::read).isInstanceOf(IOException.class);
+        }
+
+        assertThat(registry.get("uid2_admin_cloud_storage_download_transfer_duration").tags("data_type", "keys", "outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void recordsFailedCalls() throws Exception {
+        when(delegate.list("salts/")).thenThrow(new CloudStorageException("unavailable"));
+
+        assertThatThrownBy(() -> storage.list("salts/")).isInstanceOf(CloudStorageException.class);
+
+        assertThat(registry.get("uid2_admin_cloud_storage_duration").tags("operation", "list", "data_type", "salts", "outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void passesResultsThrough() throws Exception {
+        when(delegate.list("keys/")).thenReturn(List.of("keys/keys.json"));
+
+        assertThat(storage.list("keys/")).containsExactly("keys/keys.json");
+    }
+
+    @Test
+    void returnsStorageUnchangedWhenDisabled() {
+        assertThat(InstrumentedCloudStorage.wrap(delegate, new JsonObject().put("cloud_storage_metrics", false))).isSameAs(delegate);
+        assertThat(InstrumentedCloudStorage.wrap(delegate, new JsonObject())).isInstanceOf(InstrumentedCloudStorage.class);
+    }
+
+    @Test
+    void derivesDataTypeFromFirstPathSegment() {
+        assertThat(InstrumentedCloudStorage.dataType("sites/site/123/sites.json")).isEqualTo("sites");
+        assertThat(InstrumentedCloudStorage.dataType("/salts/salts.txt.1")).isEqualTo("salts");
+        assertThat(InstrumentedCloudStorage.dataType("metadata.json")).isEqualTo("root");
+    }
+}
@@ -0,0 +1,87 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ObjectTaggerTest {
+    private static final Map<String, String> CURRENT = Map.of("status", "current");
+    private static final Map<String, String> OBSOLETE = Map.of("status", "obsolete");
+
+    private final TaggableCloudStorage cloudStorage = mock(TaggableCloudStorage.class);
+
+    @Test
+    void tagsAllLocations() throws Exception {
+        ObjectTagger tagger = new ObjectTagger(cloudStorage, 4);
+        List<String> locations = IntStream.range(0, 20).mapToObj(i -> "salts.txt." + i).toList();
+
+        List<String> failed = tagger.tagAll(locations, OBSOLETE);
+
+        assertThat(failed).isEmpty();
+        for (String location : locations) {
+            verify(cloudStorage).setTags(location, OBSOLETE);
+        }
+    }
+
+    @Test
+    void skipsLocationsThatAlreadyHaveTheTags() throws Exception {
+        ObjectTagger tagger = new ObjectTagger(cloudStorage, 4);
+        tagger.recordTags("uploaded", CURRENT);
+
+        tagger.tagAll(List.of("uploaded", "tagged"), CURRENT);
+        tagger.tagAll(List.of("uploaded", "tagged"), CURRENT);
+        tagger.tagAll(List.of("uploaded"), OBSOLETE);
+
+        verify(cloudStorage, never()).setTags("uploaded", CURRENT);
+        verify(cloudStorage, times(1)).setTags("tagged", CURRENT);
+        verify(cloudStorage, times(1)).setTags("uploaded", OBSOLETE);
+    }
+
+    @Test
+    void reportsFailedLocationsAndTagsTheRest() throws Exception {
+        ObjectTagger tagger = new ObjectTagger(cloudStorage, 2);
+        doThrow(new CloudStorageException("failed")).when(cloudStorage).setTags(eq("broken"), any());
+
+        List<String> failed = tagger.tagAll(List.of("a", "broken", "b"), OBSOLETE);
+
+        assertThat(failed).containsExactly("broken");
+        verify(cloudStorage).setTags("a", OBSOLETE);
+        verify(cloudStorage).setTags("b", OBSOLETE);
+
+        // a failed location is retried next time
+        doNothing().when(cloudStorage).setTags(eq("broken"), any());
+        assertThat(tagger.tagAll(List.of("broken"), OBSOLETE)).isEmpty();
+    }
+
+    @Test
+    void boundsTheNumberOfConcurrentRequests() throws Exception {
+        int parallelism = 3;
+        ObjectTagger tagger = new ObjectTagger(cloudStorage, parallelism);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch saturated = new CountDownLatch(parallelism);
+        doAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            saturated.countDown();
+            saturated.await(1, TimeUnit.SECONDS);
+            inFlight.decrementAndGet();
+            return null;
+        }).when(cloudStorage).setTags(any(), any());
+
+        tagger.tagAll(IntStream.range(0, 12).mapToObj(i -> "salts.txt." + i).toList(), OBSOLETE);
+
+        assertThat(maxInFlight.get()).isEqualTo(parallelism);
+    }
+}
@@ -0,0 +1,161 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.cloud.CloudStorageException;
+import com.uid2.shared.cloud.TaggableCloudStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class ResilientCloudStorageTest {
+    private TaggableCloudStorage delegate;
+
+    @BeforeEach
+    void setup() {
+        delegate = mock(TaggableCloudStorage.class);
+    }
+
+    @Test
+    void retriesTransientErrors() throws Exception {
+        when(delegate.list("sites/"))
+                .thenThrow(new CloudStorageException("connection reset"))
+                .thenReturn(List.of("sites/sites.json"));
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 1000, 3, false);
+
+        assertThat(storage.list("sites/")).containsExactly("sites/sites.json");
+        verify(delegate, times(2)).list("sites/");
+    }
+
+    @Test
+    void doesNotRetryMissingKey() throws Exception {
+        when(delegate.download("sites/metadata.json")).thenThrow(new CloudStorageException("Failed to download sites/metadata.json", new HttpStatusException(404)));
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 1000, 3, true);
+
+        assertThatThrownBy(() -> storage.download("sites/metadata.json"))
+                .isInstanceOf(CloudStorageException.class)
+                .hasMessageContaining("sites/metadata.json");
+        verify(delegate, times(1)).download("sites/metadata.json");
+    }
+
+    @Test
+    void retriesServerErrorsAndThrottling() throws Exception {
+        when(delegate.list("sites/"))
+                .thenThrow(new CloudStorageException("Failed to list sites/", new HttpStatusException(503)))
+                .thenThrow(new CloudStorageException("Failed to list sites/", new HttpStatusException(429)))
+                .thenReturn(List.of("sites/sites.json"));
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 1000, 3, false);
+
+        assertThat(storage.list("sites/")).containsExactly("sites/sites.json");
+        verify(delegate, times(3)).list("sites/");
+    }
+
+    @Test
+    void doesNotRetryMissingLocalFile() throws Exception {
+        when(delegate.download("sites/metadata.json")).thenThrow(new CloudStorageException("Failed to download sites/metadata.json", new NoSuchFileException("sites/metadata.json")));
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 1000, 3, false);
+
+        assertThatThrownBy(() -> storage.download("sites/metadata.json")).isInstanceOf(CloudStorageException.class);
+        verify(delegate, times(1)).download("sites/metadata.json");
+    }
+
+    @Test
+    void retriesAttemptThatExceedsDeadline() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.list("keys/")).thenAnswer(i -> {
+            if (calls.incrementAndGet() == 1) {
+                never.await();
+            }
+            return List.of("keys/keys.json");
+        });
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 100, 2, false);
+
+        assertThat(storage.list("keys/")).containsExactly("keys/keys.json");
+        assertThat(calls).hasValue(2);
+        never.countDown();
+    }
+
+    @Test
+    void cancelsAttemptThatExceedsDeadline() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(delegate.list("keys/")).thenAnswer(i -> {
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return List.of("keys/keys.json");
+        });
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 100, 1, false);
+
+        assertThatThrownBy(() -> storage.list("keys/")).isInstanceOf(ResilientCloudStorage.DeadlineExceededException.class);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void hedgesSlowReadOnceLatencyIsKnown() throws Exception {
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 5000, 1, true);
+        when(delegate.list("salts/")).thenReturn(List.of("salts/salts.txt.1"));
+        for (int i = 0; i < 20; i++) {
+            storage.list("salts/");
+        }
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.list("salts/")).thenAnswer(i -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await();
+                return List.of("slow");
+            }
+            return List.of("hedged");
+        });
+
+        long start = System.nanoTime();
+        assertThat(storage.list("salts/")).containsExactly("hedged");
+        assertThat(System.nanoTime() - start).isLessThan(2_000_000_000L);
+        release.countDown();
+    }
+
+    @Test
+    void doesNotHedgeOnLatencyOfOtherDataType() throws Exception {
+        ResilientCloudStorage storage = new ResilientCloudStorage(delegate, 5000, 1, true);
+        when(delegate.list("salts/")).thenReturn(List.of("salts/salts.txt.1"));
+        for (int i = 0; i < 20; i++) {
+            storage.list("salts/");
+        }
+
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.list("sites/")).thenAnswer(i -> {
+            calls.incrementAndGet();
+            Thread.sleep(200);
+            return List.of("sites/sites.json");
+        });
+
+        assertThat(storage.list("sites/")).containsExactly("sites/sites.json");
+        assertThat(calls).hasValue(1);
+    }
+
+    private static class HttpStatusException extends RuntimeException {
+        private final int statusCode;
+
+        HttpStatusException(int statusCode) {
+            super("status " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        // same accessor as the AWS SDK 2 service exceptions
+        public int statusCode() {
+            return statusCode;
+        }
+    }
+}
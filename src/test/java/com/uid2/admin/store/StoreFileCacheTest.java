@@ -0,0 +1,98 @@
+package com.uid2.admin.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreFileCacheTest {
+    @Test
+    void servesStoredVersionOnly(@TempDir Path dir) throws Exception {
+        StoreFileCache cache = new StoreFileCache(dir, 1024);
+
+        assertThat(read(cache.put("sites/sites.json", 1, stream("v1")))).isEqualTo("v1");
+
+        assertThat(read(cache.get("sites/sites.json", 1))).isEqualTo("v1");
+        assertThat(cache.get("sites/sites.json", 2)).isNull();
+        assertThat(cache.get("keys/keys.json", 1)).isNull();
+    }
+
+    @Test
+    void directoryIsAccessibleToOwnerOnly(@TempDir Path dir) throws Exception {
+        Path cacheDir = dir.resolve("cache");
+        new StoreFileCache(cacheDir, 1024).put("sites/sites.json", 1, stream("v1")).close();
+
+        if (Files.getFileAttributeView(cacheDir, PosixFileAttributeView.class) != null) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDir))).isEqualTo("rwx------");
+        }
+    }
+
+    @Test
+    void survivesRestart(@TempDir Path dir) throws Exception {
+        new StoreFileCache(dir, 1024).put("sites/sites.json", 7, stream("content")).close();
+
+        StoreFileCache reopened = new StoreFileCache(dir, 1024);
+
+        assertThat(reopened.size()).isEqualTo(1);
+        assertThat(read(reopened.get("sites/sites.json", 7))).isEqualTo("content");
+    }
+
+    @Test
+    void dropsCorruptEntry(@TempDir Path dir) throws Exception {
+        StoreFileCache cache = new StoreFileCache(dir, 1024);
+        cache.put("sites/sites.json", 1, stream("original")).close();
+        try (Stream<Path> files = Files.list(dir)) {
+            Path content = files.filter(f -> !f.toString().endsWith(".meta")).findFirst().orElseThrow();
+            Files.writeString(content, "tampered");
+        }
+
+        assertThat(cache.get("sites/sites.json", 1)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxBytes(@TempDir Path dir) throws Exception {
+        StoreFileCache cache = new StoreFileCache(dir, 10);
+        cache.put("a", 1, stream("aaaa")).close();
+        cache.put("b", 1, stream("bbbb")).close();
+        cache.get("a", 1).close();
+
+        cache.put("c", 1, stream("cccc")).close();
+
+        assertThat(cache.getTotalBytes()).isEqualTo(8);
+        assertThat(cache.get("b", 1)).isNull();
+        assertThat(read(cache.get("a", 1))).isEqualTo("aaaa");
+        assertThat(read(cache.get("c", 1))).isEqualTo("cccc");
+    }
+
+    @Test
+    void invalidateDropsEveryVersion(@TempDir Path dir) throws Exception {
+        StoreFileCache cache = new StoreFileCache(dir, 1024);
+        cache.put("a", 1, stream("one")).close();
+        cache.put("a", 2, stream("two")).close();
+
+        cache.invalidate("a");
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getTotalBytes()).isZero();
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.uid2.admin.store;
+
+import com.uid2.shared.store.reader.IMetadataVersionedStore;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StoreReloaderTest {
+    private final AtomicLong version = new AtomicLong(1);
+    private IMetadataVersionedStore store;
+    private StoreReloader reloader;
+
+    @BeforeEach
+    void setup() throws Exception {
+        store = mock(IMetadataVersionedStore.class);
+        when(store.getMetadata()).thenAnswer(i -> new JsonObject().put("version", version.get()));
+        when(store.getVersion(any())).thenAnswer(i -> i.<JsonObject>getArgument(0).getLong("version"));
+        reloader = new StoreReloader("test", store);
+    }
+
+    @Test
+    void skipsDataLoadWhenVersionIsUnchanged() throws Exception {
+        assertThat(reloader.reload()).isEqualTo(1);
+        assertThat(reloader.reload()).isEqualTo(1);
+        version.set(2);
+        assertThat(reloader.reload()).isEqualTo(2);
+
+        verify(store, times(3)).getMetadata();
+        verify(store, times(2)).loadContent(any());
+    }
+
+    @Test
+    void callersArrivingDuringReloadShareTheNextOne() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(i -> {
+            loading.countDown();
+            release.await();
+            return 0L;
+        }).doReturn(0L).when(store).loadContent(any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        try {
+            Future<Long> first = executor.submit(reloader::reload);
+            loading.await();
+            version.set(2);
+            List<Future<Long>> waiting = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                waiting.add(executor.submit(reloader::reload));
+            }
+            while (reloader.getCoalescingRatio() < 9) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThat(first.get()).isEqualTo(1);
+            for (Future<Long> future : waiting) {
+                assertThat(future.get()).isEqualTo(2);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(store, times(2)).getMetadata();
+        assertThat(reloader.getCoalescingRatio()).isEqualTo(4.5);
+    }
+
+    @Test
+    void failureIsReportedToCallersAndNextReloadRetries() throws Exception {
+        when(store.loadContent(any())).thenThrow(new IllegalStateException("download failed")).thenReturn(0L);
+
+        assertThatThrownBy(reloader::reload).isInstanceOf(IllegalStateException.class).hasMessage("download failed");
+        assertThat(reloader.reload()).isEqualTo(1);
+
+        verify(store, times(2)).loadContent(any());
+    }
+}
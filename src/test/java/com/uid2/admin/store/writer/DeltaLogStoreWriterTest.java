@@ -0,0 +1,146 @@
+package com.uid2.admin.store.writer;
+
+import com.uid2.admin.store.DeltaLog;
+import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.reader.RotatingPartnerStore;
+import com.uid2.admin.store.version.VersionGenerator;
+import com.uid2.admin.store.writer.mocks.FileStorageMock;
+import com.uid2.shared.Utils;
+import com.uid2.shared.cloud.InMemoryStorageMock;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeltaLogStoreWriterTest {
+    private static final String METADATA_PATH = "partners/metadata.json";
+
+    private InMemoryStorageMock cloudStorage;
+    private FileManager fileManager;
+    private VersionGenerator versionGenerator;
+    private RotatingPartnerStore partnerStore;
+
+    @BeforeEach
+    void setUp() {
+        cloudStorage = new InMemoryStorageMock();
+        fileManager = new FileManager(cloudStorage, new FileStorageMock(cloudStorage));
+        versionGenerator = mock(VersionGenerator.class);
+        when(versionGenerator.getVersion()).thenReturn(1L, 2L, 3L, 4L);
+        partnerStore = new RotatingPartnerStore(cloudStorage, METADATA_PATH);
+    }
+
+    @Test
+    void appendsDeltasAndCompacts() throws Exception {
+        PartnerStoreWriter writer = new PartnerStoreWriter(partnerStore, fileManager, versionGenerator, 2);
+
+        JsonArray v1 = new JsonArray().add(partner("a", "1")).add(partner("b", "1"));
+        JsonArray v2 = new JsonArray().add(partner("a", "2")).add(partner("b", "1"));
+        JsonArray v3 = new JsonArray().add(partner("a", "2")).add(partner("c", "1"));
+        JsonArray v4 = new JsonArray().add(partner("c", "2"));
+
+        writer.upload(v1);
+        assertThat(deltaCount()).isEqualTo(0);
+
+        writer.upload(v2);
+        assertThat(deltaCount()).isEqualTo(1);
+        assertThat(new JsonArray(partnerStore.getConfig())).isEqualTo(v2);
+
+        writer.upload(v3);
+        assertThat(deltaCount()).isEqualTo(2);
+        assertThat(new JsonArray(partnerStore.getConfig())).isEqualTo(v3);
+
+        RotatingPartnerStore freshReader = new RotatingPartnerStore(cloudStorage, METADATA_PATH);
+        freshReader.loadContent();
+        assertThat(new JsonArray(freshReader.getConfig())).isEqualTo(v3);
+
+        writer.upload(v4);
+        assertThat(deltaCount()).isEqualTo(0);
+        assertThat(new JsonArray(partnerStore.getConfig())).isEqualTo(v4);
+        freshReader.loadContent();
+        assertThat(new JsonArray(freshReader.getConfig())).isEqualTo(v4);
+    }
+
+    @Test
+    void rejectsUploadWhenStoreChangedByAnotherWriter() throws Exception {
+        PartnerStoreWriter writer = new PartnerStoreWriter(partnerStore, fileManager, versionGenerator, 10);
+        PartnerStoreWriter otherWriter = new PartnerStoreWriter(new RotatingPartnerStore(cloudStorage, METADATA_PATH), fileManager, versionGenerator, 10);
+
+        writer.upload(new JsonArray().add(partner("a", "1")));
+        JsonArray other = new JsonArray().add(partner("b", "1"));
+        otherWriter.upload(other);
+
+        assertThatThrownBy(() -> writer.upload(new JsonArray().add(partner("c", "1"))))
+                .isInstanceOf(StoreCommitConflictException.class);
+        assertThat(new JsonArray(partnerStore.getConfig())).isEqualTo(other);
+
+        JsonArray latest = new JsonArray().add(partner("b", "1")).add(partner("c", "1"));
+        writer.upload(latest);
+
+        assertThat(deltaCount()).isEqualTo(0);
+        assertThat(new JsonArray(partnerStore.getConfig())).isEqualTo(latest);
+    }
+
+    @Test
+    void deletesFilesSupersededBeforeReplacedSnapshot() throws Exception {
+        when(versionGenerator.getVersion()).thenReturn(1L, 2L, 3L, 4L, 5L);
+        PartnerStoreWriter writer = new PartnerStoreWriter(partnerStore, fileManager, versionGenerator, 1);
+
+        writer.upload(new JsonArray().add(partner("a", "1")));
+        writer.upload(new JsonArray().add(partner("a", "2")));
+        writer.upload(new JsonArray().add(partner("a", "3")));
+        writer.upload(new JsonArray().add(partner("a", "4")));
+        assertThat(cloudStorage.list("partners/partners.delta.")).containsExactlyInAnyOrder("partners/partners.delta.2.json", "partners/partners.delta.4.json");
+
+        JsonArray latest = new JsonArray().add(partner("a", "5"));
+        writer.upload(latest);
+
+        assertThat(cloudStorage.list("partners/partners.delta.")).containsExactly("partners/partners.delta.4.json");
+        RotatingPartnerStore freshReader = new RotatingPartnerStore(cloudStorage, METADATA_PATH);
+        freshReader.loadContent();
+        assertThat(new JsonArray(freshReader.getConfig())).isEqualTo(latest);
+    }
+
+    @Test
+    void caseOnlyRenameIsAnUpdate() throws Exception {
+        PartnerStoreWriter writer = new PartnerStoreWriter(partnerStore, fileManager, versionGenerator, 10);
+
+        writer.upload(new JsonArray().add(partner("Acme", "1")).add(partner("b", "1")));
+        JsonArray renamed = new JsonArray().add(partner("acme", "1")).add(partner("b", "1"));
+        writer.upload(renamed);
+
+        JsonObject delta = partnerStore.getMetadata().getJsonObject("partners").getJsonArray(DeltaLog.DELTAS).getJsonObject(0);
+        JsonObject patch = Utils.toJsonObject(cloudStorage.download(delta.getString("location")));
+        assertThat(patch.getJsonArray(DeltaLog.UPSERTS)).containsExactly(partner("acme", "1"));
+        assertThat(patch.getJsonArray(DeltaLog.DELETES)).isEmpty();
+        assertThat(new JsonArray(partnerStore.getConfig())).isEqualTo(renamed);
+    }
+
+    @Test
+    void fullWriteDropsDeltaLog() throws Exception {
+        PartnerStoreWriter deltaWriter = new PartnerStoreWriter(partnerStore, fileManager, versionGenerator, 10);
+        deltaWriter.upload(new JsonArray().add(partner("a", "1")));
+        deltaWriter.upload(new JsonArray().add(partner("a", "2")));
+        assertThat(deltaCount()).isEqualTo(1);
+
+        JsonArray latest = new JsonArray().add(partner("b", "1"));
+        new PartnerStoreWriter(partnerStore, fileManager, versionGenerator).upload(latest);
+
+        assertThat(partnerStore.getMetadata().getJsonObject("partners").containsKey(DeltaLog.DELTAS)).isFalse();
+        RotatingPartnerStore freshReader = new RotatingPartnerStore(cloudStorage, METADATA_PATH);
+        freshReader.loadContent();
+        assertThat(new JsonArray(freshReader.getConfig())).isEqualTo(latest);
+    }
+
+    private int deltaCount() throws Exception {
+        return partnerStore.getMetadata().getJsonObject("partners").getJsonArray(DeltaLog.DELTAS).size();
+    }
+
+    private static JsonObject partner(String name, String url) {
+        return new JsonObject().put("name", name).put("url", url);
+    }
+}
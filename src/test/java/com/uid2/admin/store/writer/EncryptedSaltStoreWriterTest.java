@@ -1,6 +1,7 @@
 package com.uid2.admin.store.writer;
 
 import com.uid2.admin.store.FileManager;
+import com.uid2.admin.store.ObjectTagger;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.shared.cloud.CloudStorageException;
 import com.uid2.shared.cloud.TaggableCloudStorage;
@@ -13,6 +14,7 @@ import com.uid2.shared.store.reader.RotatingCloudEncryptionKeyProvider;
 import com.uid2.shared.store.scope.StoreScope;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,6 +25,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -64,11 +67,13 @@ public class EncryptedSaltStoreWriterTest {
     private ArgumentCaptor<String> cloudPathCaptor;
 
     private JsonObject config;
+    private ObjectTagger tagger;
 
     @BeforeEach
     public void setup() throws Exception {
         config = new JsonObject();
         config.put("salt_snapshot_location_prefix", "test");
+        tagger = new ObjectTagger(taggableCloudStorage, 4);
 
         when(versionGenerator.getVersion()).thenReturn(1L);
         when(rotatingSaltProvider.getMetadataPath()).thenReturn("test/path/");
@@ -87,6 +92,11 @@ public class EncryptedSaltStoreWriterTest {
         when(rotatingCloudEncryptionKeyProvider.getEncryptionKeyForSite(SITE_ID)).thenReturn(encryptionKey);
     }
 
+    @AfterEach
+    public void teardown() {
+        tagger.close();
+    }
+
     @Test
     public void testUploadNew() throws Exception {
         RotatingSaltProvider.SaltSnapshot olderSnapshot = makeSnapshot(
@@ -118,7 +128,7 @@ public class EncryptedSaltStoreWriterTest {
         ArgumentCaptor<CloudPath> locationCaptor = ArgumentCaptor.forClass(CloudPath.class);
 
         EncryptedSaltStoreWriter encryptedSaltStoreWriter = new EncryptedSaltStoreWriter(config, rotatingSaltProvider,
-                fileManager, taggableCloudStorage, versionGenerator, storeScope, rotatingCloudEncryptionKeyProvider, SITE_ID);
+                fileManager, taggableCloudStorage, versionGenerator, storeScope, rotatingCloudEncryptionKeyProvider, SITE_ID, tagger);
 
         encryptedSaltStoreWriter.upload(List.of(olderSnapshot,activeSnapshot), metadata);
         verify(fileManager).uploadMetadata(metadataCaptor.capture(), nameCaptor.capture(), locationCaptor.capture());
@@ -159,7 +169,7 @@ public class EncryptedSaltStoreWriterTest {
         ArgumentCaptor<CloudPath> locationCaptor = ArgumentCaptor.forClass(CloudPath.class);
 
         SaltStoreWriter saltStoreWriter = new SaltStoreWriter(config, rotatingSaltProvider,
-                fileManager, taggableCloudStorage, versionGenerator);
+                fileManager, taggableCloudStorage, versionGenerator, tagger);
 
         saltStoreWriter.upload(snapshot);
         verify(fileManager).uploadMetadata(metadataCaptor.capture(), nameCaptor.capture(), locationCaptor.capture());
@@ -179,7 +189,7 @@ public class EncryptedSaltStoreWriterTest {
 
         //Now sending snapshot2 to encrypted to verify that does the same.
         EncryptedSaltStoreWriter encryptedSaltStoreWriter = new EncryptedSaltStoreWriter(config, rotatingSaltProvider,
-                fileManager, taggableCloudStorage, versionGenerator, storeScope, rotatingCloudEncryptionKeyProvider, SITE_ID);
+                fileManager, taggableCloudStorage, versionGenerator, storeScope, rotatingCloudEncryptionKeyProvider, SITE_ID, tagger);
 
         JsonObject metadata = new JsonObject()
                 .put("version", mar25.toEpochMilli())
@@ -206,6 +216,94 @@ public class EncryptedSaltStoreWriterTest {
         verify(taggableCloudStorage,atLeastOnce()).upload(pathCaptor.capture(), cloudPathCaptor.capture(), any());
     }
 
+    @Test
+    public void testKeptFilesAreNotMarkedObsoleteBeforeBeingMarkedCurrent() throws Exception {
+        RotatingSaltProvider.SaltSnapshot existing = makeSnapshot(feb26, Instant.now().plus(Duration.ofDays(1)), 10);
+        RotatingSaltProvider.SaltSnapshot next = makeSnapshot(Instant.now().plus(Duration.ofHours(1)), Instant.now().plus(Duration.ofDays(2)), 10);
+        String existingLocation = "test" + feb26.toEpochMilli();
+        JsonObject storedMetadata = new JsonObject().put("salts", new JsonArray()
+                .add(new JsonObject().put("location", existingLocation))
+                .add(new JsonObject().put("location", "test-dropped")));
+
+        when(rotatingSaltProvider.getMetadata()).thenReturn(storedMetadata);
+        when(rotatingSaltProvider.getSnapshots()).thenReturn(List.of(existing));
+        when(taggableCloudStorage.list(anyString())).thenReturn(new ArrayList<>());
+        when(taggableCloudStorage.list(existingLocation)).thenReturn(List.of(existingLocation));
+
+        SaltStoreWriter saltStoreWriter = new SaltStoreWriter(config, rotatingSaltProvider,
+                fileManager, taggableCloudStorage, versionGenerator, tagger);
+        for (int i = 0; i < 2; i++) {
+            saltStoreWriter.archiveSaltLocations();
+            saltStoreWriter.upload(next);
+        }
+
+        verify(taggableCloudStorage, never()).setTags(existingLocation, Map.of("status", "obsolete"));
+        verify(taggableCloudStorage, times(1)).setTags(existingLocation, Map.of("status", "current"));
+        verify(taggableCloudStorage, times(1)).setTags("test-dropped", Map.of("status", "obsolete"));
+    }
+
+    @Test
+    public void testWritersSharingATaggerDoNotRetagKeptFiles() throws Exception {
+        RotatingSaltProvider.SaltSnapshot existing = makeSnapshot(feb26, Instant.now().plus(Duration.ofDays(1)), 10);
+        RotatingSaltProvider.SaltSnapshot next = makeSnapshot(Instant.now().plus(Duration.ofHours(1)), Instant.now().plus(Duration.ofDays(2)), 10);
+        String existingLocation = "test" + feb26.toEpochMilli();
+
+        when(rotatingSaltProvider.getMetadata()).thenReturn(new JsonObject().put("salts", new JsonArray()
+                .add(new JsonObject().put("location", existingLocation))));
+        when(rotatingSaltProvider.getSnapshots()).thenReturn(List.of(existing));
+        when(taggableCloudStorage.list(anyString())).thenReturn(new ArrayList<>());
+        when(taggableCloudStorage.list(existingLocation)).thenReturn(List.of(existingLocation));
+
+        for (int i = 0; i < 2; i++) {
+            new SaltStoreWriter(config, rotatingSaltProvider, fileManager, taggableCloudStorage, versionGenerator, tagger).upload(next);
+        }
+
+        verify(taggableCloudStorage, times(1)).setTags(existingLocation, Map.of("status", "current"));
+    }
+
+    @Test
+    public void testSnapshotIsUploadedWhenOnlyLongerKeysShareItsLocation() throws Exception {
+        RotatingSaltProvider.SaltSnapshot existing = makeSnapshot(feb26, Instant.now().plus(Duration.ofDays(1)), 10);
+        RotatingSaltProvider.SaltSnapshot next = makeSnapshot(Instant.now().plus(Duration.ofHours(1)), Instant.now().plus(Duration.ofDays(2)), 10);
+        String nextLocation = "test" + next.getEffective().toEpochMilli();
+
+        when(rotatingSaltProvider.getMetadata()).thenReturn(new JsonObject().put("salts", new JsonArray()));
+        when(rotatingSaltProvider.getSnapshots()).thenReturn(List.of(existing));
+        when(taggableCloudStorage.list(anyString())).thenReturn(new ArrayList<>());
+        when(taggableCloudStorage.list(nextLocation)).thenReturn(List.of(nextLocation + "0"));
+
+        SaltStoreWriter saltStoreWriter = new SaltStoreWriter(config, rotatingSaltProvider,
+                fileManager, taggableCloudStorage, versionGenerator, tagger);
+        saltStoreWriter.upload(next);
+
+        verify(taggableCloudStorage).upload(anyString(), eq(nextLocation), any());
+    }
+
+    @Test
+    public void testEncryptedWriterMarksFilesNoLongerReferencedObsolete() throws Exception {
+        RotatingSaltProvider.SaltSnapshot snapshot = makeSnapshot(feb27, Instant.now().plus(Duration.ofDays(1)), 10);
+        when(storeScope.resolve(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        String location = "salts.txt." + feb27.toEpochMilli();
+        JsonObject storedMetadata = new JsonObject()
+                .put("key_id", 1)
+                .put("salts", new JsonArray()
+                        .add(new JsonObject().put("location", "salts.txt.1"))
+                        .add(new JsonObject().put("location", "salts.txt.2")));
+
+        when(rotatingSaltProvider.getMetadataPath()).thenReturn("salts/metadata.json");
+        when(taggableCloudStorage.list(anyString())).thenReturn(new ArrayList<>());
+        when(taggableCloudStorage.list("salts/metadata.json")).thenReturn(List.of("salts/metadata.json"));
+        when(taggableCloudStorage.download("salts/metadata.json")).thenReturn(new ByteArrayInputStream(storedMetadata.toBuffer().getBytes()));
+
+        EncryptedSaltStoreWriter encryptedSaltStoreWriter = new EncryptedSaltStoreWriter(config, rotatingSaltProvider,
+                fileManager, taggableCloudStorage, versionGenerator, storeScope, rotatingCloudEncryptionKeyProvider, SITE_ID, tagger);
+        encryptedSaltStoreWriter.upload(List.of(snapshot), new JsonObject());
+
+        verify(taggableCloudStorage).setTags("salts.txt.1", Map.of("status", "obsolete"));
+        verify(taggableCloudStorage).setTags("salts.txt.2", Map.of("status", "obsolete"));
+        verify(taggableCloudStorage, never()).setTags(eq(location), any());
+    }
+
     private RotatingSaltProvider.SaltSnapshot makeSnapshot(Instant effective, Instant expires, int nsalts) {
         SaltEntry[] entries = new SaltEntry[nsalts];
 
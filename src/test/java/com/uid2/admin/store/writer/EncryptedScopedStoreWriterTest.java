@@ -136,5 +136,47 @@ class EncryptedScopedStoreWriterTest {
 
         assertThrows(IllegalStateException.class, () -> encryptedScopedStoreWriter.upload(testData, extraMeta));
     }
-}
 
+    @Test
+    void testSkipsUploadWhenContentAndKeyUnchanged() throws Exception {
+        String testData = "Test data to be encrypted";
+        JsonObject extraMeta = new JsonObject().put("version", 2L);
+        givenStoredEntry(EncryptedScopedStoreWriter.digestOf(testData, new JsonObject().put("version", 1L)), encryptionKey.getId());
+
+        encryptedScopedStoreWriter.upload(testData, extraMeta);
+
+        verify(fileManager, never()).uploadFile(any(CloudPath.class), any(FileName.class), anyString());
+    }
+
+    @Test
+    void testUploadsWhenKeyChanged() throws Exception {
+        String testData = "Test data to be encrypted";
+        JsonObject extraMeta = new JsonObject().put("version", 2L);
+        givenStoredEntry(EncryptedScopedStoreWriter.digestOf(testData, extraMeta), encryptionKey.getId() + 1);
+
+        encryptedScopedStoreWriter.upload(testData, extraMeta);
+
+        verify(fileManager).uploadFile(any(CloudPath.class), any(FileName.class), anyString());
+    }
+
+    @Test
+    void testUploadsWhenContentChanged() throws Exception {
+        JsonObject extraMeta = new JsonObject().put("version", 2L);
+        givenStoredEntry(EncryptedScopedStoreWriter.digestOf("old data", extraMeta), encryptionKey.getId());
+
+        encryptedScopedStoreWriter.upload("new data", extraMeta);
+
+        verify(fileManager).uploadFile(any(CloudPath.class), any(FileName.class), anyString());
+    }
+
+    private void givenStoredEntry(String digest, int keyId) throws Exception {
+        JsonObject storedMetadata = new JsonObject()
+                .put("version", 1L)
+                .put(dataType, new JsonObject()
+                        .put("location", "sites/encrypted/123_private/sites.json")
+                        .put(EncryptedScopedStoreWriter.PLAINTEXT_DIGEST, digest)
+                        .put(EncryptedScopedStoreWriter.KEY_ID, keyId));
+        when(fileManager.isPresent(any(CloudPath.class))).thenReturn(true);
+        when(provider.getMetadata()).thenAnswer(i -> storedMetadata.copy());
+    }
+}
@@ -0,0 +1,75 @@
+package com.uid2.admin.store.writer;
+
+import com.uid2.shared.model.SaltEntry;
+import com.uid2.shared.store.salt.RotatingSaltProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SaltCsvCacheTest {
+    private final Instant effective = Instant.parse("2025-02-26T00:00:00Z");
+
+    @Test
+    void serializesEachSnapshotOnce() throws Exception {
+        RotatingSaltProvider.SaltSnapshot snapshot = makeSnapshot(effective, 100);
+        String expected = SaltSerializer.toCsv(snapshot.getAllRotatingSalts());
+
+        try (SaltCsvCache cache = new SaltCsvCache()) {
+            for (int site = 0; site < 3; site++) {
+                assertThat(write(cache, snapshot)).isEqualTo(expected);
+            }
+
+            assertThat(cache.getSerializations()).isEqualTo(1);
+            assertThat(cache.getReuses()).isEqualTo(2);
+            assertThat(cache.getSavedBytes()).isEqualTo(2L * expected.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    @Test
+    void serializesAgainWhenTheContentChanges() throws Exception {
+        RotatingSaltProvider.SaltSnapshot first = makeSnapshot(effective, 10);
+        RotatingSaltProvider.SaltSnapshot second = makeSnapshot(effective, 20);
+
+        try (SaltCsvCache cache = new SaltCsvCache()) {
+            write(cache, first);
+
+            assertThat(write(cache, second)).isEqualTo(SaltSerializer.toCsv(second.getAllRotatingSalts()));
+            assertThat(cache.getSerializations()).isEqualTo(2);
+            assertThat(cache.getReuses()).isZero();
+        }
+    }
+
+    @Test
+    void keepsSnapshotsApartByEffectiveTimestamp() throws Exception {
+        RotatingSaltProvider.SaltSnapshot first = makeSnapshot(effective, 10);
+        RotatingSaltProvider.SaltSnapshot second = makeSnapshot(effective.plusSeconds(86400), 20);
+
+        try (SaltCsvCache cache = new SaltCsvCache()) {
+            write(cache, first);
+            write(cache, second);
+
+            assertThat(write(cache, first)).isEqualTo(SaltSerializer.toCsv(first.getAllRotatingSalts()));
+            assertThat(write(cache, second)).isEqualTo(SaltSerializer.toCsv(second.getAllRotatingSalts()));
+            assertThat(cache.getSerializations()).isEqualTo(2);
+            assertThat(cache.getReuses()).isEqualTo(2);
+        }
+    }
+
+    private static String write(SaltCsvCache cache, RotatingSaltProvider.SaltSnapshot snapshot) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.writeCsv(snapshot, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static RotatingSaltProvider.SaltSnapshot makeSnapshot(Instant effective, int count) {
+        SaltEntry[] entries = new SaltEntry[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = new SaltEntry(i, "hashed_id", effective.toEpochMilli(), "salt" + i, 1000L, null, null, null);
+        }
+        return new RotatingSaltProvider.SaltSnapshot(effective, effective.plusSeconds(7 * 86400), entries, "first_level_salt");
+    }
+}
@@ -3,6 +3,8 @@ package com.uid2.admin.store.writer;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.collect.ImmutableList;
 import com.uid2.admin.store.Clock;
+import com.uid2.admin.store.ContentDecodingCloudStorage;
+import com.uid2.admin.store.ContentEncoding;
 import com.uid2.admin.store.FileManager;
 import com.uid2.admin.store.version.VersionGenerator;
 import com.uid2.admin.store.writer.mocks.FileStorageMock;
@@ -19,12 +21,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -98,6 +103,99 @@ class ScopedStoreWriterTest {
             assertThat(files).contains(dataFile, metaFile);
         }
 
+        @Test
+        void rejectsCommitWhenAnotherWriterCommittedInBetween() throws Exception {
+            ScopedStoreWriter writer = new ScopedStoreWriter(globalStore, fileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+            ScopedStoreWriter otherWriter = new ScopedStoreWriter(new RotatingSiteStore(cloudStorage, globalScope), fileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+
+            when(versionGenerator.getVersion()).thenReturn(10L);
+            writer.upload(jsonWriter.writeValueAsString(oneSite));
+            when(versionGenerator.getVersion()).thenReturn(11L);
+            otherWriter.upload(jsonWriter.writeValueAsString(anotherSite));
+
+            when(versionGenerator.getVersion()).thenReturn(12L);
+            assertThatThrownBy(() -> writer.upload(jsonWriter.writeValueAsString(oneSite)))
+                    .isInstanceOf(StoreCommitConflictException.class);
+            assertThat(globalStore.getAllSites()).containsExactlyElementsOf(anotherSite);
+        }
+
+        @Test
+        void retriesRenderedUploadAfterConflict() throws Exception {
+            ScopedStoreWriter writer = new ScopedStoreWriter(globalStore, fileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+            ScopedStoreWriter otherWriter = new ScopedStoreWriter(new RotatingSiteStore(cloudStorage, globalScope), fileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+
+            when(versionGenerator.getVersion()).thenReturn(10L);
+            writer.upload(jsonWriter.writeValueAsString(oneSite));
+            when(versionGenerator.getVersion()).thenReturn(11L);
+            otherWriter.upload(jsonWriter.writeValueAsString(anotherSite));
+
+            when(versionGenerator.getVersion()).thenReturn(12L);
+            writer.upload(() -> {
+                List<Site> sites = new ArrayList<>(globalStore.getAllSites());
+                sites.addAll(oneSite);
+                return jsonWriter.writeValueAsString(sites);
+            }, null);
+
+            assertThat(globalStore.getAllSites()).containsExactlyInAnyOrder(oneSite.get(0), anotherSite.get(0));
+            assertThat(globalStore.getMetadata().getLong("version")).isEqualTo(12L);
+        }
+
+        @Test
+        void writesVersionedDataFilesWhenEnabled() throws Exception {
+            FileManager versionedFileManager = new FileManager(cloudStorage, new FileStorageMock(cloudStorage), true);
+            ScopedStoreWriter writer = new ScopedStoreWriter(globalStore, versionedFileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+
+            when(versionGenerator.getVersion()).thenReturn(10L);
+            writer.upload(jsonWriter.writeValueAsString(oneSite));
+            when(versionGenerator.getVersion()).thenReturn(11L);
+            writer.upload(jsonWriter.writeValueAsString(anotherSite));
+
+            assertThat(cloudStorage.list(sitesDir)).contains(sitesDir + "/sites.10.json", sitesDir + "/sites.11.json");
+            assertThat(globalStore.getMetadata().getJsonObject(dataType).getString("location")).isEqualTo(sitesDir + "/sites.11.json");
+            assertThat(globalStore.getAllSites()).containsExactlyElementsOf(anotherSite);
+        }
+
+        @Test
+        void deletesVersionedDataFilesOlderThanPreviousVersion() throws Exception {
+            FileManager versionedFileManager = new FileManager(cloudStorage, new FileStorageMock(cloudStorage), true);
+            ScopedStoreWriter writer = new ScopedStoreWriter(globalStore, versionedFileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+
+            when(versionGenerator.getVersion()).thenReturn(10L, 11L, 12L);
+            writer.upload(jsonWriter.writeValueAsString(oneSite));
+            writer.upload(jsonWriter.writeValueAsString(anotherSite));
+            writer.upload(jsonWriter.writeValueAsString(oneSite));
+
+            assertThat(cloudStorage.list(sitesDir))
+                    .contains(sitesDir + "/sites.11.json", sitesDir + "/sites.12.json")
+                    .doesNotContain(sitesDir + "/sites.10.json");
+            assertThat(globalStore.getAllSites()).containsExactlyElementsOf(oneSite);
+        }
+
+        @Test
+        void writesEncodedDataFilesReadableThroughDecodingStorage() throws Exception {
+            FileManager encodingFileManager = new FileManager(cloudStorage, new FileStorageMock(cloudStorage), false, Map.of(dataType, ContentEncoding.GZIP));
+            RotatingSiteStore decodingStore = new RotatingSiteStore(new ContentDecodingCloudStorage(cloudStorage), globalScope);
+            ScopedStoreWriter writer = new ScopedStoreWriter(decodingStore, encodingFileManager, versionGenerator, clock, globalScope, dataFile, dataType);
+
+            writer.upload(jsonWriter.writeValueAsString(oneSite));
+
+            assertThat(decodingStore.getMetadata().getJsonObject(dataType).getString(ContentEncoding.METADATA_KEY)).isEqualTo("gzip");
+            assertThat(decodingStore.getAllSites()).containsExactlyElementsOf(oneSite);
+        }
+
+        @Test
+        void clearsContentEncodingWhenWrittenPlainAgain() throws Exception {
+            FileManager encodingFileManager = new FileManager(cloudStorage, new FileStorageMock(cloudStorage), false, Map.of(dataType, ContentEncoding.GZIP));
+            new ScopedStoreWriter(globalStore, encodingFileManager, versionGenerator, clock, globalScope, dataFile, dataType)
+                    .upload(jsonWriter.writeValueAsString(oneSite));
+
+            new ScopedStoreWriter(globalStore, fileManager, versionGenerator, clock, globalScope, dataFile, dataType)
+                    .upload(jsonWriter.writeValueAsString(anotherSite));
+
+            assertThat(globalStore.getMetadata().getJsonObject(dataType).containsKey(ContentEncoding.METADATA_KEY)).isFalse();
+            assertThat(globalStore.getAllSites()).containsExactlyElementsOf(anotherSite);
+        }
+
         @Test
         void addsExtraMetadata() throws Exception {
             ScopedStoreWriter writer = new ScopedStoreWriter(globalStore, fileManager, versionGenerator, clock, globalScope, dataFile, dataType);
@@ -27,6 +27,13 @@ public class FileStorageMock implements FileStorage {
         return path;
     }
 
+    @Override
+    public String create(FileName fileName, byte[] content) {
+        String path = "/tmp/" + fileName.toString();
+        cloudStorageMock.save(content, path);
+        return path;
+    }
+
     @Override
     public String create(FileName fileName, InputStream content) {
         String bufferedContent = new BufferedReader(new InputStreamReader(content))
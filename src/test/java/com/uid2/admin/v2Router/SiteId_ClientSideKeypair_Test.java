@@ -59,4 +59,23 @@ public class SiteId_ClientSideKeypair_Test {
         assertEquals(siteIdToTest, item.siteId);
         assertEquals(fakePublicKey, item.publicKey);
     }
+
+    @Test
+    public void WhenTheSiteKeypairsAreUnchanged_TheCachedResponseIsReused() {
+        val siteIdToTest = 5;
+        val keypair = createKeypairMock(siteIdToTest, "Fake public key");
+        val keypairs = new ArrayList<ClientSideKeypair>(List.of(keypair));
+
+        when(clientSideKeypairMock.getKeypairsBySite(siteIdToTest))
+                .thenReturn(keypairs);
+
+        val service = new GetClientSideKeypairsBySite(clientSideKeypairMock);
+        service.handleGetClientSideKeys(contextMock, siteIdToTest);
+        service.handleGetClientSideKeys(contextMock, siteIdToTest);
+
+        verify(contextMock, times(2)).json(keypairResponseCaptor.capture());
+        val responses = keypairResponseCaptor.getAllValues();
+        assertSame(responses.get(0), responses.get(1));
+        verify(keypair, times(1)).encodePublicKeyToString();
+    }
 }
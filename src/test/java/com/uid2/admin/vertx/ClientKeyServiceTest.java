@@ -13,6 +13,8 @@ import com.uid2.shared.auth.Role;
 import com.uid2.shared.model.Site;
 import com.uid2.shared.util.Mapper;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxTestContext;
 import org.assertj.core.util.Sets;
 import org.junit.jupiter.api.BeforeEach;
@@ -453,6 +455,57 @@ public class ClientKeyServiceTest extends ServiceTestBase {
         post(vertx, testContext, "api/client/contact?oldContact=test_contact&newContact=", "", expectHttpStatus(testContext, 400));
     }
 
+    @Test
+    public void clientBulkCommitsOnce(Vertx vertx, VertxTestContext testContext) {
+        fakeAuth(Role.PRIVILEGED);
+        setClientKeys(new LegacyClientBuilder().build());
+        when(keyGenerator.generateFormattedKeyString(anyInt())).thenReturn("abcdef.abcdefabcdefabcdef", "bcdefg.abcdefabcdefabcdef");
+
+        JsonArray operations = new JsonArray()
+                .add(new JsonObject().put("op", "add").put("name", "bulk_client_1").put("roles", "generator").put("site_id", 999))
+                .add(new JsonObject().put("op", "add").put("name", "bulk_client_2").put("roles", "mapper").put("site_id", 999))
+                .add(new JsonObject().put("op", "disable").put("contact", "test_contact"))
+                .add(new JsonObject().put("op", "roles").put("contact", "test_contact").put("roles", "mapper,sharer"));
+        post(vertx, testContext, "api/client/bulk", new JsonObject().put("operations", operations).encode(), response -> {
+            JsonObject body = response.bodyAsJsonObject();
+            JsonArray results = body.getJsonArray("results");
+            assertAll(
+                    "clientBulkCommitsOnce",
+                    () -> assertEquals(200, response.statusCode()),
+                    () -> assertTrue(body.getBoolean("committed")),
+                    () -> assertEquals(4, results.size()),
+                    () -> assertEquals("bulk_client_1", results.getJsonObject(0).getJsonObject("client").getJsonObject("authorizable").getString("name")),
+                    () -> assertNotNull(results.getJsonObject(1).getJsonObject("client").getString("plaintext_key")),
+                    () -> assertTrue(results.getJsonObject(2).getJsonObject("client").getBoolean("disabled")),
+                    () -> verify(clientKeyStoreWriter, times(1)).upload(collectionOfSize(3), isNull())
+            );
+            testContext.completeNow();
+        });
+    }
+
+    @Test
+    public void clientBulkRejectsWholeBatchOnInvalidItem(Vertx vertx, VertxTestContext testContext) {
+        fakeAuth(Role.PRIVILEGED);
+        setClientKeys(new LegacyClientBuilder().build());
+
+        JsonArray operations = new JsonArray()
+                .add(new JsonObject().put("op", "disable").put("contact", "test_contact"))
+                .add(new JsonObject().put("op", "disable").put("contact", "unknown_contact"));
+        post(vertx, testContext, "api/client/bulk", new JsonObject().put("operations", operations).encode(), response -> {
+            JsonObject body = response.bodyAsJsonObject();
+            JsonArray results = body.getJsonArray("results");
+            assertAll(
+                    "clientBulkRejectsWholeBatchOnInvalidItem",
+                    () -> assertEquals(400, response.statusCode()),
+                    () -> assertFalse(body.getBoolean("committed")),
+                    () -> assertEquals("valid", results.getJsonObject(0).getString("status")),
+                    () -> assertEquals("error", results.getJsonObject(1).getString("status")),
+                    () -> verify(clientKeyStoreWriter, never()).upload(any(), any())
+            );
+            testContext.completeNow();
+        });
+    }
+
     private static void assertAddedClientKeyEquals(ClientKey expected, ClientKey actual) {
         assertThat(actual)
                 .usingRecursiveComparison()
@@ -134,6 +134,29 @@ public class ClientSideKeypairServiceTest extends ServiceTestBase {
         });
     }
 
+    @Test
+    void listAllWithKeypairOfMissingSite(Vertx vertx, VertxTestContext testContext) throws Exception {
+        fakeAuth(Role.MAINTAINER);
+
+        setKeypairs(List.of(
+                new ClientSideKeypair("aZ23456789", pub1, priv1, 123, "test@example.com", Instant.now(), false, name1),
+                new ClientSideKeypair("89aZ234567", pub2, priv2, 124, "test-two@example.com", Instant.now(), true, name2)));
+        setSites(new Site(123, "site1", false));
+
+        get(vertx, testContext, "api/client_side_keypairs/list", response -> {
+            assertEquals(200, response.statusCode());
+
+            JsonArray respArray = response.bodyAsJsonArray();
+            assertEquals(2, respArray.size());
+            for (int i = 0; i < respArray.size(); i++) {
+                JsonObject resp = respArray.getJsonObject(i);
+                assertEquals(resp.getInteger("site_id") == 123 ? "site1" : null, resp.getString("site_name"));
+            }
+
+            testContext.completeNow();
+        });
+    }
+
     @Test
     void listKeypairSubscriptionIdNotFound(Vertx vertx, VertxTestContext testContext) throws Exception {
         fakeAuth(Role.MAINTAINER);
@@ -349,6 +372,53 @@ public class ClientSideKeypairServiceTest extends ServiceTestBase {
         });
     }
 
+    @Test
+    void bulkAddKeypairs(Vertx vertx, VertxTestContext testContext) throws Exception {
+        fakeAuth(Role.MAINTAINER);
+
+        setKeypairs(List.of(new ClientSideKeypair("89aZ234567", pub1, priv1, 124, "test-two@example.com", Instant.now(), true, name1)));
+        setSites(new Site(123, "test", true));
+
+        JsonObject jo = new JsonObject();
+        jo.put("site_id", 123);
+        jo.put("contact", "email@email.com");
+        jo.put("count", 3);
+
+        post(vertx, testContext, "api/client_side_keypairs/bulk_add", jo.encode(), response -> {
+            assertEquals(200, response.statusCode());
+            JsonArray resp = response.bodyAsJsonArray();
+            assertEquals(3, resp.size());
+            Set<String> subscriptionIds = new HashSet<>();
+            for (int i = 0; i < resp.size(); i++) {
+                JsonObject keypair = resp.getJsonObject(i);
+                assertEquals(123, keypair.getInteger("site_id"));
+                assertEquals("test", keypair.getString("site_name"));
+                assertNull(keypair.getString("private_key"));
+                subscriptionIds.add(keypair.getString("subscription_id"));
+            }
+            assertEquals(3, subscriptionIds.size());
+            verify(keypairStoreWriter, times(1)).upload(any(), isNull());
+            verify(keysetManager, times(1)).createKeysetForSite(123);
+            testContext.completeNow();
+        });
+    }
+
+    @Test
+    void bulkAddKeypairsCountOutOfRange(Vertx vertx, VertxTestContext testContext) throws Exception {
+        fakeAuth(Role.MAINTAINER);
+        setSites(new Site(123, "test", true));
+
+        JsonObject jo = new JsonObject();
+        jo.put("site_id", 123);
+        jo.put("count", 101);
+
+        post(vertx, testContext, "api/client_side_keypairs/bulk_add", jo.encode(), response -> {
+            assertEquals(400, response.statusCode());
+            verify(keypairStoreWriter, never()).upload(any(), any());
+            testContext.completeNow();
+        });
+    }
+
     @Test
     void updateKeypairNoSubscriptionId(Vertx vertx, VertxTestContext testContext) throws Exception {
         fakeAuth(Role.MAINTAINER);
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.uid2.admin.cloudencryption.CloudEncryptionKeyManager;
+import com.uid2.admin.cloudencryption.CloudEncryptionKeyReencryptionScheduler;
 import com.uid2.admin.cloudencryption.CloudKeyStatePlanner;
 import com.uid2.admin.cloudencryption.ExpiredKeyCountRetentionStrategy;
 import com.uid2.admin.job.JobDispatcher;
@@ -47,6 +48,7 @@ public class CloudEncryptionKeyServiceTest extends ServiceTestBase {
     private final String secret2 = "secret 2";
     private final String secret3 = "secret 3";
     private final String secret4 = "secret 4";
+    private final CloudEncryptionKeyReencryptionScheduler reencryptionScheduler = mock(CloudEncryptionKeyReencryptionScheduler.class);
 
     @Override
     protected IService createService() {
@@ -61,7 +63,7 @@ public class CloudEncryptionKeyServiceTest extends ServiceTestBase {
 
         var dispatcher = new JobDispatcher("test-job-dispatcher", 10, 5, new InstantClock());
 
-        return new CloudEncryptionKeyService(auth, manager, dispatcher);
+        return new CloudEncryptionKeyService(auth, manager, dispatcher, reencryptionScheduler);
     }
 
     @Test
@@ -127,6 +129,7 @@ public class CloudEncryptionKeyServiceTest extends ServiceTestBase {
         fakeAuth(Role.MAINTAINER);
         post(vertx, testContext, Endpoints.CLOUD_ENCRYPTION_KEY_ROTATE + "?fail=true", null, response -> {
             assertEquals(500, response.statusCode());
+            verifyNoInteractions(reencryptionScheduler);
 
             testContext.completeNow();
         });
@@ -174,6 +177,7 @@ public class CloudEncryptionKeyServiceTest extends ServiceTestBase {
         post(vertx, testContext, Endpoints.CLOUD_ENCRYPTION_KEY_ROTATE, null, rotateResponse -> {
             assertEquals(200, rotateResponse.statusCode());
             verify(cloudEncryptionKeyStoreWriter).upload(expected, null);
+            verify(reencryptionScheduler).scheduleUpcomingActivations();
             testContext.completeNow();
         });
     }
@@ -968,4 +968,48 @@ public class SiteServiceTest extends ServiceTestBase {
             testContext.completeNow();
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void bulkSiteOperationsCommitOnce(Vertx vertx, VertxTestContext testContext) {
+        fakeAuth(Role.MAINTAINER);
+        Site existing = new Site(3, "test_site", false);
+        setSites(existing);
+
+        JsonArray operations = new JsonArray()
+                .add(new JsonObject().put("op", "add").put("name", "bulk_site_1"))
+                .add(new JsonObject().put("op", "add").put("name", "bulk_site_2").put("domain_names", new JsonArray().add("bulk.com")))
+                .add(new JsonObject().put("op", "enable").put("id", 3).put("enabled", true));
+        post(vertx, testContext, "api/site/bulk", new JsonObject().put("operations", operations).encode(), response -> {
+            JsonObject body = response.bodyAsJsonObject();
+            JsonArray results = body.getJsonArray("results");
+            assertAll(
+                    "bulkSiteOperationsCommitOnce",
+                    () -> assertEquals(200, response.statusCode()),
+                    () -> assertTrue(body.getBoolean("committed")),
+                    () -> assertEquals(4, results.getJsonObject(0).getJsonObject("site").getInteger("id")),
+                    () -> assertEquals(5, results.getJsonObject(1).getJsonObject("site").getInteger("id")),
+                    () -> assertTrue(existing.isEnabled()));
+            verify(storeWriter, times(1)).upload(collectionOfSize(3), isNull());
+            testContext.completeNow();
+        });
+    }
+
+    @Test
+    void bulkSiteOperationsRejectDuplicateNamesInBatch(Vertx vertx, VertxTestContext testContext) {
+        fakeAuth(Role.MAINTAINER);
+        setSites(new Site(3, "test_site", false));
+
+        JsonArray operations = new JsonArray()
+                .add(new JsonObject().put("op", "add").put("name", "bulk_site"))
+                .add(new JsonObject().put("op", "add").put("name", "bulk_site"));
+        post(vertx, testContext, "api/site/bulk", new JsonObject().put("operations", operations).encode(), response -> {
+            JsonArray results = response.bodyAsJsonObject().getJsonArray("results");
+            assertAll(
+                    "bulkSiteOperationsRejectDuplicateNamesInBatch",
+                    () -> assertEquals(400, response.statusCode()),
+                    () -> assertEquals("error", results.getJsonObject(1).getString("status")));
+            verify(storeWriter, never()).upload(any(), any());
+            testContext.completeNow();
+        });
+    }
+}